@@ -0,0 +1,124 @@
+package flashcarder.benchmarks;
+
+import flashcarder.Card;
+import flashcarder.CardStack;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * @author Atlee
+ *
+ * Makes synthetic decks that look like demolist.txt, only bigger.
+ *
+ * Sides are short lowercase phrases, a mix of "card 12 side a" style numbered cards and
+ * phrases built from the demo deck's vocabulary. About a quarter of the cards have never
+ * been seen, so they're written without the three lines of numbers, like a freshly authored deck.
+ * The rest carry ease biases, last seen times and view counts like a deck in use.
+ *
+ * The same seed and card count always give the same deck, byte for byte.
+ *
+ * Example:
+ *		java flashcarder.benchmarks.DeckGenerator 1000000 million.txt
+ */
+public class DeckGenerator {
+// defaults
+	public static final long DEFAULT_SEED = 0x5EED;
+	private static final long START_TIME = 1262304000000L; // first card seen 2010-01-01, unix time in milliseconds
+	private static final long TIME_SPAN = 10L * 365 * 24 * 60 * 60 * 1000; // ten years of reviews
+	private static final String CHARSET = "ISO-8859-1"; // same as the decks themselves
+	private static final String[] WORDS = {
+		"card", "side", "you", "can", "see", "how", "this", "goes", "a", "pair", "of", "lines", "makes",
+		"the", "two", "sides", "an", "empty", "line", "between", "cards", "separates", "them", "from",
+		"each", "other", "when", "open", "file", "is", "written", "gain", "numbers", "first", "number",
+		"ease", "bias", "second", "unix", "last", "seen", "time", "third", "view", "count", "end",
+		"demo", "flash", "carder", "word", "meaning", "über", "café", "naïve", "señor", "façade"
+	};
+
+// data
+	private final Random random;
+
+// public static methods
+	public static void main(String args[]) throws IOException {
+		if(args.length != 2) {
+			System.err.println("usage: DeckGenerator <card count> <deck file>");
+			System.exit(2);
+		}
+		writeDeck(args[1], Integer.parseInt(args[0]), DEFAULT_SEED);
+	}
+
+	/**
+	 * Creates a deck in memory.
+	 * @param cardCount How many cards.
+	 * @param seed Which deck, the same seed giving the same cards.
+	 * @return A new CardStack in generated order.
+	 */
+	public static CardStack createStack(int cardCount, long seed) {
+		DeckGenerator generator = new DeckGenerator(seed);
+		ArrayList<Card> cards = new ArrayList<Card>(cardCount);
+		for(int i = 0; i < cardCount; ++i) cards.add(generator.nextCard(i));
+		return new CardStack(cards);
+	}
+
+	/**
+	 * Writes a deck straight to a text file, without holding it all in memory.
+	 * @param fileName The name of the file that will be created or overwritten.
+	 * @param cardCount How many cards.
+	 * @param seed Which deck, the same seed giving the same cards as createStack.
+	 * @throws IOException If the file can't be written.
+	 */
+	public static void writeDeck(String fileName, int cardCount, long seed) throws IOException {
+		DeckGenerator generator = new DeckGenerator(seed);
+		BufferedWriter output = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileName), CHARSET), 1 << 16);
+		try {
+			for(int i = 0; i < cardCount; ++i) {
+				Card card = generator.nextCard(i);
+				if(card.getViewCount() > 0) {
+					card.write(output);
+				} else { // never seen, so no numbers, like the demo deck
+					output.write(card.getSideA()); output.newLine();
+					output.write(card.getSideB()); output.newLine();
+					output.newLine();
+				}
+			}
+		} finally {
+			output.close();
+		}
+	}
+
+// public methods
+	public DeckGenerator(long seed) {
+		random = new Random(seed);
+	}
+
+	/**
+	 * @param number The card's position in the deck, used by the numbered cards.
+	 * @return The next generated Card.
+	 */
+	public Card nextCard(int number) {
+		String sideA, sideB;
+		if(random.nextInt(4) == 0) {
+			sideA = "card " + (number + 1) + " side a";
+			sideB = "card " + (number + 1) + " side b";
+		} else {
+			sideA = phrase(2 + random.nextInt(4));
+			sideB = phrase(2 + random.nextInt(5));
+		}
+		if(random.nextInt(4) == 0) return new Card(sideA, sideB);
+		int viewCount = 1 + random.nextInt(40);
+		int easeBias = random.nextInt(2 * viewCount + 1) - viewCount; // somewhere between all difficult and all easy
+		long lastSeenTime = START_TIME + (long)(random.nextDouble() * TIME_SPAN);
+		return new Card(sideA, sideB, easeBias, lastSeenTime, viewCount);
+	}
+
+// private methods
+	private String phrase(int wordCount) {
+		StringBuilder phrase = new StringBuilder(wordCount * 6);
+		for(int i = 0; i < wordCount; ++i) {
+			if(i > 0) phrase.append(' ');
+			phrase.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return phrase.toString();
+	}
+}
@@ -0,0 +1,61 @@
+package flashcarder.benchmarks;
+
+import flashcarder.Card;
+import flashcarder.CardStack;
+import flashcarder.SideInterner;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Atlee
+ *
+ * Reading decks from text files: one Card at a time through Card.createFromFile,
+ * and a whole stack through CardStack.createFromFile, with and without sharing identical sides.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadBenchmark {
+	@Param({ "1000", "100000", "1000000", "10000000" })
+	public int cardCount;
+
+	private File deckFile;
+
+	@Setup(Level.Trial)
+	public void writeDeck() throws IOException {
+		deckFile = File.createTempFile("deck", ".txt");
+		DeckGenerator.writeDeck(deckFile.getPath(), cardCount, DeckGenerator.DEFAULT_SEED);
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteDeck() {
+		deckFile.delete();
+	}
+
+	@Benchmark
+	public void cardCreateFromFile(Blackhole blackhole) throws IOException {
+		BufferedReader input = new BufferedReader(new InputStreamReader(new FileInputStream(deckFile), "ISO-8859-1"));
+		try {
+			Card card;
+			while((card = Card.createFromFile(input)) != null) blackhole.consume(card);
+		} finally {
+			input.close();
+		}
+	}
+
+	@Benchmark
+	public CardStack cardStackCreateFromFile() {
+		return CardStack.createFromFile(deckFile.getPath());
+	}
+
+	@Benchmark
+	public CardStack cardStackCreateFromFileInterned() {
+		return CardStack.createFromFile(deckFile.getPath(), Runtime.getRuntime().availableProcessors(), new SideInterner());
+	}
+}
@@ -0,0 +1,54 @@
+package flashcarder.benchmarks;
+
+import flashcarder.Card;
+import flashcarder.CardStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Atlee
+ *
+ * CardStack.sort with each of the Card comparators.
+ * Every sort starts from a fresh copy of the generated deck, so it never sees already sorted input.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SortBenchmark {
+	@Param({ "1000", "100000", "1000000", "10000000" })
+	public int cardCount;
+
+	@Param({ "easeBias", "lastSeenTime", "sideA", "sideB", "viewCount" })
+	public String comparator;
+
+	private CardStack deck;
+	private CardStack cardStack;
+	private Comparator<Card> cardComparator;
+
+	@Setup(Level.Trial)
+	public void createDeck() {
+		deck = DeckGenerator.createStack(cardCount, DeckGenerator.DEFAULT_SEED);
+		if(comparator.equals("easeBias")) cardComparator = Card.easeBiasComparator;
+		else if(comparator.equals("lastSeenTime")) cardComparator = Card.lastSeenTimeComparator;
+		else if(comparator.equals("sideA")) cardComparator = Card.sideAComparator;
+		else if(comparator.equals("sideB")) cardComparator = Card.sideBComparator;
+		else if(comparator.equals("viewCount")) cardComparator = Card.viewCountComparator;
+		else throw new IllegalArgumentException("no such comparator: " + comparator);
+	}
+
+	@Setup(Level.Invocation)
+	public void copyDeck() {
+		cardStack = new CardStack(deck);
+	}
+
+	@Benchmark
+	public CardStack sort() {
+		cardStack.sort(cardComparator);
+		return cardStack;
+	}
+}
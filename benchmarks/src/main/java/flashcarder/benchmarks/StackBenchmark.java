@@ -0,0 +1,59 @@
+package flashcarder.benchmarks;
+
+import flashcarder.Card;
+import flashcarder.CardStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Atlee
+ *
+ * The operations of a review: CardStack.removeNextCard and CardStack.addCardRandomly,
+ * plus the CardStack.shuffle done when a deck is opened.
+ *
+ * Each operation is paired with its opposite so the stack keeps its size however long the run:
+ * removeNextCard puts the card back on top with addCard, addCardRandomly takes it off the top first.
+ * addCard and removing from the top are the cheap end of the stack, so the pair costs about
+ * what the operation being measured does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StackBenchmark {
+	@Param({ "1000", "100000", "1000000", "10000000" })
+	public int cardCount;
+
+	private CardStack cardStack;
+
+	@Setup(Level.Trial)
+	public void createDeck() {
+		cardStack = DeckGenerator.createStack(cardCount, DeckGenerator.DEFAULT_SEED);
+		cardStack.shuffle();
+	}
+
+	@Benchmark
+	public Card removeNextCard() {
+		Card card = cardStack.removeNextCard();
+		cardStack.addCard(card);
+		return card;
+	}
+
+	@Benchmark
+	public Card addCardRandomly() {
+		Card card = cardStack.removeNextCard();
+		cardStack.addCardRandomly(card);
+		return card;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public CardStack shuffle() {
+		cardStack.shuffle();
+		return cardStack;
+	}
+}
@@ -0,0 +1,44 @@
+package flashcarder.benchmarks;
+
+import flashcarder.CardStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Atlee
+ *
+ * Saving a whole stack with CardStack.writeToFile, including the forced temporary file and rename.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WriteBenchmark {
+	@Param({ "1000", "100000", "1000000", "10000000" })
+	public int cardCount;
+
+	private CardStack cardStack;
+	private File deckFile;
+
+	@Setup(Level.Trial)
+	public void createDeck() throws IOException {
+		cardStack = DeckGenerator.createStack(cardCount, DeckGenerator.DEFAULT_SEED);
+		deckFile = File.createTempFile("deck", ".txt");
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteDeck() {
+		deckFile.delete();
+	}
+
+	@Benchmark
+	public boolean writeToFile() {
+		if(!cardStack.writeToFile(deckFile.getPath())) throw new IllegalStateException("can't write " + deckFile);
+		return true;
+	}
+}
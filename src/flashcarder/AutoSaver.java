@@ -0,0 +1,198 @@
+package flashcarder;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Atlee
+ *
+ * Saves a ReviewSession in the background a little while after it changes.
+ *
+ * A burst of answers makes one save, once no answer has come for the quiet period,
+ * or once the oldest unsaved answer is the maximum delay old, whichever is first.
+ * Saving happens on the AutoSaver's own thread; ReviewSession.save only holds the session
+ * while it takes what needs writing, so answering never waits on the disk.
+ *
+ * Example:
+ *		AutoSaver autoSaver = new AutoSaver(session, null);
+ *		.. after each answer:
+ *		autoSaver.changed();
+ *		.. and before quitting or opening another file:
+ *		autoSaver.flush();
+ *
+ * The quiet period and maximum delay come from the flashcarder.autosave.quiet and
+ * flashcarder.autosave.maxdelay system properties, in milliseconds, if they're set.
+ */
+public class AutoSaver {
+// defaults
+	private static final long QUIET_MILLIS = 2000; // no answers for this long, and it's a good time to save
+	private static final long MAX_DELAY_MILLIS = 30000; // never leave an answer unsaved longer than this
+	private static final long RETRY_MILLIS = 10000; // after a save fails
+
+	/**
+	 * Hears how saving in the background is going.
+	 */
+	public interface Listener {
+		/**
+		 * Called on the AutoSaver's thread. The changes stay unsaved and saving is tried again later.
+		 * @param problem Describing what went wrong.
+		 */
+		void saveFailed(IOException problem);
+
+		/**
+		 * Called on the AutoSaver's thread after a save that worked.
+		 */
+		void saved();
+	}
+
+// settings
+	private final ReviewSession session;
+	private final Listener listener;
+	private final long quietMillis, maxDelayMillis, retryMillis;
+
+// data
+	private final ScheduledExecutorService executor;
+	private long firstChange, lastChange; // System.nanoTime() of the unsaved changes, firstChange is 0 if there aren't any
+	private boolean wakeupScheduled;
+
+// public methods
+	/**
+	 * Uses the quiet period and maximum delay from the system properties, or the defaults.
+	 * @param session The session to save.
+	 * @param listener Told how saves go, or null.
+	 */
+	public AutoSaver(ReviewSession session, Listener listener) {
+		this(session, listener
+			,Long.getLong("flashcarder.autosave.quiet", QUIET_MILLIS)
+			,Long.getLong("flashcarder.autosave.maxdelay", MAX_DELAY_MILLIS)
+		);
+	}
+
+	/**
+	 * @param session The session to save.
+	 * @param listener Told how saves go, or null.
+	 * @param quietMillis How long after the last change to save.
+	 * @param maxDelayMillis How long after the first unsaved change to save, even if changes keep coming.
+	 */
+	public AutoSaver(ReviewSession session, Listener listener, long quietMillis, long maxDelayMillis) {
+		this(session, listener, quietMillis, maxDelayMillis, RETRY_MILLIS);
+	}
+
+	/**
+	 * @param retryMillis How long after a failed save to try again, so tests needn't wait the usual time.
+	 */
+	AutoSaver(ReviewSession session, Listener listener, long quietMillis, long maxDelayMillis, long retryMillis) {
+		this.session = session;
+		this.listener = listener;
+		this.quietMillis = Math.max(quietMillis, 0);
+		this.maxDelayMillis = Math.max(maxDelayMillis, this.quietMillis);
+		this.retryMillis = Math.max(retryMillis, 0);
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "AutoSaver");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Says the session has changed and needs saving soon. Cheap enough to call after every answer.
+	 */
+	public synchronized void changed() {
+		lastChange = System.nanoTime();
+		if(firstChange == 0) firstChange = lastChange;
+		if(!wakeupScheduled) schedule(quietMillis);
+	}
+
+	/**
+	 * Saves any changes now and waits for the save to finish.
+	 * @throws IOException If the save didn't work. The changes are still there to save again.
+	 */
+	public void flush() throws IOException {
+		Future<IOException> saving = executor.submit(new Callable<IOException>() {
+			public IOException call() {
+				return save();
+			}
+		});
+		IOException problem;
+		try { problem = saving.get(); }
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			problem = new IOException("interrupted while saving");
+		} catch(ExecutionException e) { problem = new IOException(e.getCause().toString()); }
+		if(problem != null) throw problem;
+	}
+
+	/**
+	 * Stops the AutoSaver's thread. Changes that weren't flushed first aren't saved.
+	 */
+	public void close() {
+		executor.shutdownNow();
+	}
+
+// private methods
+	/**
+	 * Wakes up after delayMillis to see whether it's time to save. Call while synchronized.
+	 */
+	private void schedule(long delayMillis) {
+		wakeupScheduled = true;
+		executor.schedule(new Runnable() {
+			public void run() { wakeUp(); }
+		}, delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Saves if things have been quiet long enough or the oldest change has waited long enough,
+	 * otherwise goes back to sleep until one of them will be true.
+	 */
+	private void wakeUp() {
+		synchronized(this) {
+			wakeupScheduled = false;
+			if(firstChange == 0) return; // flushed meanwhile
+			long now = System.nanoTime();
+			long untilQuiet = quietMillis - (now - lastChange) / 1000000L;
+			long untilOverdue = maxDelayMillis - (now - firstChange) / 1000000L;
+			long wait = Math.min(untilQuiet, untilOverdue);
+			if(wait > 0) {
+				schedule(wait);
+				return;
+			}
+		}
+		save();
+	}
+
+	/**
+	 * Saves on the AutoSaver's thread. Changes made while saving are saved next time.
+	 * @return The problem if it failed, or null.
+	 */
+	private IOException save() {
+		long savingFirst, savingLast;
+		synchronized(this) {
+			savingFirst = firstChange;
+			savingLast = lastChange;
+			firstChange = 0;
+		}
+		try {
+			session.save();
+		} catch(IOException e) {
+			synchronized(this) { // still unsaved, along with anything since
+				if(savingFirst != 0) {
+					if(firstChange == 0) lastChange = savingLast;
+					firstChange = savingFirst;
+				}
+				if(!wakeupScheduled) schedule(retryMillis);
+			}
+			if(listener != null) listener.saveFailed(e);
+			return e;
+		}
+		if(savingFirst != 0 && listener != null) listener.saved();
+		return null;
+	}
+}
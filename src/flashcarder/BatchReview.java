@@ -0,0 +1,167 @@
+package flashcarder;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Atlee
+ *
+ * Replays scripted answers against a deck as fast as it can, without a display,
+ * and reports how many cards per second the review engine got through.
+ *
+ * Usage:
+ *		java -cp flashcarder.jar flashcarder.BatchReview [options] somecards.txt answers.txt
+ *
+ * The answer script is a text file of e (easy, got it) and h (hard, put it back) answers,
+ * one per card in review order. Whitespace is ignored and # starts a comment to the end of the line.
+ *
+ * Options:
+ *		-scheduler leitner	review with spaced repetition instead of the shuffled deck
+ *		-repeat N			go through the script N times, default 1
+ *		-threads N			share the session between N threads taking answers from the script, default 1
+ *		-save				save to the deck afterwards, through its journal; otherwise the deck isn't touched
+ *		-intern				share one String between identical sides while loading, and report the memory saved
+ *		-search text		index the deck while loading, then time a search for text before the replay
+ *		-metrics			record Metrics, and print them at the end
+ *		-textcache MB		leave the side texts in the deck file, caching up to MB megabytes of them
+ *
+ * The replay stops early if the deck runs out of cards to review.
+ */
+public class BatchReview {
+	private static final int SEARCH_LIMIT = 100; // about what the Find window lists
+	private static final String USAGE =
+		"usage: BatchReview [-scheduler leitner] [-repeat N] [-threads N] [-save] [-intern] [-search text] [-metrics] [-textcache MB] <deck> <answers>";
+
+	public static void main(String args[]) throws InterruptedException {
+		String schedulerName = null;
+		int repeat = 1;
+		int threadCount = 1;
+		boolean save = false;
+		boolean intern = false;
+		boolean metrics = false;
+		int textCacheMegabytes = 0;
+		String query = null;
+		int a = 0;
+		for(; a < args.length && args[a].startsWith("-"); ++a) {
+			String option = args[a];
+			if(option.equals("-save")) save = true;
+			else if(option.equals("-intern")) intern = true;
+			else if(option.equals("-metrics")) metrics = true;
+			else if(a + 1 == args.length) usage();
+			else if(option.equals("-scheduler")) schedulerName = args[++a];
+			else if(option.equals("-repeat")) repeat = parseCount(args[++a]);
+			else if(option.equals("-threads")) threadCount = parseCount(args[++a]);
+			else if(option.equals("-search")) query = args[++a];
+			else if(option.equals("-textcache")) textCacheMegabytes = parseCount(args[++a]);
+			else usage();
+		}
+		if(args.length - a != 2) usage();
+		String deckFileName = args[a];
+		String answersFileName = args[a + 1];
+
+		final boolean[] answers = readAnswers(answersFileName);
+		if(answers.length == 0) fail(answersFileName + " has no answers in it");
+		if(metrics) Metrics.setEnabled(true);
+
+		long start = System.nanoTime();
+		final ReviewSession session = new ReviewSession(ReviewSession.createScheduler(schedulerName), save);
+		session.setInterning(intern);
+		session.setIndexing(query != null);
+		session.setTextCacheSize((long)textCacheMegabytes << 20);
+		if(!session.open(deckFileName)) fail("There was a problem opening " + deckFileName);
+		long loaded = System.nanoTime();
+		System.out.println(session.getTotalCount() + " cards loaded in " + seconds(loaded - start) + " s");
+		if(intern) System.out.println(String.format("about %.1f MB saved by sharing identical sides", session.getSavedBytes() / 1e6));
+		if(query != null) {
+			long searchStart = System.nanoTime();
+			int found = session.search(query, SEARCH_LIMIT).size();
+			System.out.println(String.format("%s%d cards found for \"%s\" in %.2f ms", found == SEARCH_LIMIT ? "the first " : "", found, query, (System.nanoTime() - searchStart) / 1e6));
+			loaded = System.nanoTime();
+		}
+
+		final long answerTotal = (long)answers.length * repeat;
+		final AtomicLong cursor = new AtomicLong();
+		Runnable replay = new Runnable() {
+			public void run() {
+				if(session.next() == null) return;
+				for(long i = cursor.getAndIncrement(); i < answerTotal; i = cursor.getAndIncrement()) {
+					if(session.answer(answers[(int)(i % answers.length)]) == null) return; // nothing left to review
+				}
+			}
+		};
+		Thread[] threads = new Thread[threadCount];
+		for(int t = 0; t < threadCount; ++t) {
+			threads[t] = new Thread(replay, "BatchReview-" + t);
+			threads[t].start();
+		}
+		for(Thread thread : threads) thread.join();
+		long replayed = System.nanoTime();
+
+		long answered = session.getAnswerCount();
+		double replaySeconds = (replayed - loaded) / 1e9;
+		System.out.println(answered + " answers replayed in " + seconds(replayed - loaded) + " s on " + threadCount + " thread(s)");
+		System.out.println(String.format("%.0f cards/second", answered / Math.max(replaySeconds, 1e-9)));
+		if(answered < answerTotal) System.out.println("stopped early, " + session.getToDoCount() + " cards left to review");
+
+		if(save) {
+			try { session.save(); }
+			catch(IOException e) { fail("There was a problem saving " + deckFileName + " (" + e.getMessage() + ")"); }
+			System.out.println("saved in " + seconds(System.nanoTime() - replayed) + " s");
+		}
+		String textCacheStatistics = session.getTextCacheStatistics();
+		if(textCacheStatistics != null) System.out.println("side text cache: " + textCacheStatistics);
+		session.close();
+		if(Metrics.isEnabled()) System.out.print(Metrics.getReport());
+	}
+
+// private static helpers
+	/**
+	 * Reads the whole script up front, so the replay itself doesn't wait on the disk.
+	 */
+	private static boolean[] readAnswers(String fileName) {
+		boolean[] answers = new boolean[1024];
+		int count = 0;
+		try {
+			BufferedReader input = new BufferedReader(new InputStreamReader(new FileInputStream(fileName), CardStack.CHARSET));
+			try {
+				String line;
+				for(int lineNumber = 1; (line = input.readLine()) != null; ++lineNumber) {
+					for(int i = 0; i < line.length(); ++i) {
+						char c = line.charAt(i);
+						if(c == '#') break;
+						if(Character.isWhitespace(c)) continue;
+						if(c != 'e' && c != 'E' && c != 'h' && c != 'H') fail(fileName + " line " + lineNumber + ": expected e or h, not " + c);
+						if(count == answers.length) answers = Arrays.copyOf(answers, count * 2);
+						answers[count++] = c == 'e' || c == 'E';
+					}
+				}
+			} finally {
+				input.close();
+			}
+		} catch(IOException e) { fail("There was a problem reading " + fileName + " (" + e.getMessage() + ")"); }
+		return Arrays.copyOf(answers, count);
+	}
+
+	private static int parseCount(String count) {
+		try {
+			int value = Integer.parseInt(count);
+			if(value > 0) return value;
+		} catch(NumberFormatException e) { /* same as any other bad count */ }
+		usage();
+		return 0;
+	}
+
+	private static String seconds(long nanoseconds) {
+		return String.format("%.3f", nanoseconds / 1e9);
+	}
+
+	private static void fail(String message) {
+		System.err.println(message);
+		System.exit(1);
+	}
+
+	private static void usage() {
+		fail(USAGE);
+	}
+}
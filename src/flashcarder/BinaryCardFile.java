@@ -0,0 +1,244 @@
+package flashcarder;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * @author Atlee
+ *
+ * Reads and writes the compact binary deck format.
+ *
+ * The text format is nice for authoring, but every load has to parse five lines per card.
+ * This format stores the same Cards so they can be read back with a handful of bulk reads:
+ *
+ *		magic			8 bytes, see MAGIC
+ *		version			int
+ *		cardCount		int
+ *		stringCount		int
+ *		stringLengths	int[stringCount]
+ *		strings			ISO-8859-1 bytes of every string, back to back
+ *		sideA			int[cardCount], index into the strings
+ *		sideB			int[cardCount], index into the strings
+ *		easeBias		int[cardCount]
+ *		lastSeenTime	long[cardCount]
+ *		viewCount		int[cardCount]
+ *
+ * All numbers are big-endian. Identical sides share one entry in the strings.
+ * CardStack.createFromFile tells the formats apart by the magic bytes.
+ */
+public class BinaryCardFile {
+// format constants
+	private static final byte[] MAGIC = { (byte)0x89, 'F', 'C', 'D', '\r', '\n', 0x1A, '\n' }; // not text, and catches newline mangling
+	private static final int VERSION = 1;
+	private static final int CARD_BYTES = 24; // sideA, sideB, easeBias, lastSeenTime and viewCount
+
+// defaults
+	private static final int BLOCK_SIZE = 1 << 20; // bytes read at a time
+	private static final String CHARSET = CardStack.CHARSET;
+
+// public static methods
+	/**
+	 * Checks whether a file starts with the binary deck magic bytes.
+	 * @param fileName The name of the file to check.
+	 * @return True if it looks like a binary deck, false if not or if it can't be read.
+	 */
+	public static boolean isBinaryFile(String fileName) {
+		byte[] head = new byte[MAGIC.length];
+		try {
+			DataInputStream input = new DataInputStream(new FileInputStream(fileName));
+			try { input.readFully(head); }
+			finally { input.close(); }
+		} catch(IOException e) { return false; }
+		for(int i = 0; i < MAGIC.length; ++i) {
+			if(head[i] != MAGIC[i]) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Reads just the number of cards from the start of a binary deck file.
+	 * @param fileName The name of the file to read from.
+	 * @return The number of cards, or -1 if it isn't a binary deck this version understands or can't be read.
+	 */
+	public static int readCardCount(String fileName) {
+		try {
+			DataInputStream input = new DataInputStream(new FileInputStream(fileName));
+			try {
+				byte[] head = new byte[MAGIC.length];
+				input.readFully(head);
+				for(int i = 0; i < MAGIC.length; ++i) {
+					if(head[i] != MAGIC[i]) return -1;
+				}
+				if(input.readInt() != VERSION) return -1;
+				return Math.max(input.readInt(), -1);
+			} finally {
+				input.close();
+			}
+		} catch(IOException e) { return -1; }
+	}
+
+	/**
+	 * Reads every Card in a binary deck file.
+	 * @param fileName The name of the file to open and read from.
+	 * @return The Cards in file order.
+	 * @throws IOException If the file can't be read or isn't a binary deck this version understands.
+	 */
+	public static ArrayList<Card> readAll(String fileName) throws IOException {
+		FileInputStream inStream = new FileInputStream(fileName);
+		try {
+			FileChannel channel = inStream.getChannel();
+
+			ByteBuffer header = read(channel, MAGIC.length + 12);
+			for(int i = 0; i < MAGIC.length; ++i) {
+				if(header.get() != MAGIC[i]) throw new IOException(fileName + " is not a binary deck");
+			}
+			int version = header.getInt();
+			if(version != VERSION) throw new IOException(fileName + " has unsupported binary deck version " + version);
+			int cardCount = header.getInt();
+			int stringCount = header.getInt();
+			long left = channel.size() - channel.position();
+			long needed = 4L * stringCount + (long)CARD_BYTES * cardCount; // check before allocating anything the header asks for
+			if(cardCount < 0 || stringCount < 0 || needed > left) throw new IOException(fileName + " has a corrupt header");
+
+			int[] stringLengths = readInts(channel, stringCount);
+			for(int length : stringLengths) {
+				if(length < 0) throw new IOException(fileName + " has a corrupt string table");
+				needed += length;
+			}
+			if(needed > left) throw new IOException(fileName + " has a corrupt string table");
+			String[] strings = new String[stringCount];
+			ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+			block.flip();
+			for(int i = 0; i < stringCount; ++i) {
+				int length = stringLengths[i];
+				if(block.remaining() < length) {
+					if(block.capacity() < length) block = ByteBuffer.allocate(length).put(block);
+					else block.compact();
+					fill(channel, block, length);
+				}
+				strings[i] = new String(block.array(), block.position(), length, CHARSET);
+				block.position(block.position() + length);
+			}
+			channel.position(channel.position() - block.remaining()); // give back what was read ahead
+
+			int[] sideA = readInts(channel, cardCount);
+			int[] sideB = readInts(channel, cardCount);
+			int[] easeBias = readInts(channel, cardCount);
+			long[] lastSeenTime = readLongs(channel, cardCount);
+			int[] viewCount = readInts(channel, cardCount);
+
+			ArrayList<Card> cards = new ArrayList<Card>(cardCount);
+			try {
+				for(int i = 0; i < cardCount; ++i) {
+					cards.add(new Card(strings[sideA[i]], strings[sideB[i]], easeBias[i], lastSeenTime[i], viewCount[i]));
+				}
+			} catch(ArrayIndexOutOfBoundsException e) { throw new IOException(fileName + " has a corrupt card column"); }
+			return cards;
+		} finally {
+			inStream.close();
+		}
+	}
+
+	/**
+	 * Writes Cards to a binary deck file, atomically replacing it through SafeFileWriter.
+	 * @param fileName The name of the file that will be created or replaced.
+	 * @param backupCount How many previous versions of the file to keep.
+	 * @param cards The Cards to write, in order.
+	 * @throws IOException If the file can't be written.
+	 */
+	public static void write(String fileName, int backupCount, final List<Card> cards) throws IOException {
+		int cardCount = cards.size();
+		final int[] sideA = new int[cardCount];
+		final int[] sideB = new int[cardCount];
+		final ArrayList<String> strings = new ArrayList<String>();
+		HashMap<String, Integer> stringIds = new HashMap<String, Integer>();
+		for(int i = 0; i < cardCount; ++i) {
+			Card card = cards.get(i);
+			sideA[i] = stringId(card.getSideA(), strings, stringIds);
+			sideB[i] = stringId(card.getSideB(), strings, stringIds);
+		}
+		stringIds = null;
+
+		SafeFileWriter.write(fileName, backupCount, new SafeFileWriter.Content() {
+			public void writeTo(OutputStream outStream) throws IOException {
+				DataOutputStream output = new DataOutputStream(outStream);
+				output.write(MAGIC);
+				output.writeInt(VERSION);
+				output.writeInt(sideA.length);
+				output.writeInt(strings.size());
+				byte[][] encoded = new byte[strings.size()][];
+				for(int i = 0; i < encoded.length; ++i) {
+					encoded[i] = strings.get(i).getBytes(CHARSET);
+					output.writeInt(encoded[i].length);
+				}
+				for(byte[] bytes : encoded) output.write(bytes);
+				encoded = null;
+				for(int id : sideA) output.writeInt(id);
+				for(int id : sideB) output.writeInt(id);
+				for(Card card : cards) output.writeInt(card.getEaseBias());
+				for(Card card : cards) output.writeLong(card.getLastSeenTime());
+				for(Card card : cards) output.writeInt(card.getViewCount());
+				output.flush();
+			}
+		});
+	}
+
+// private static helpers
+	private static int stringId(String string, ArrayList<String> strings, HashMap<String, Integer> stringIds) {
+		Integer id = stringIds.get(string);
+		if(id == null) {
+			id = strings.size();
+			strings.add(string);
+			stringIds.put(string, id);
+		}
+		return id;
+	}
+
+	private static ByteBuffer read(FileChannel channel, int byteCount) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(byteCount);
+		fill(channel, buffer, byteCount);
+		return buffer;
+	}
+
+	/**
+	 * Reads into a buffer until it holds at least minimum unread bytes, then flips it for reading.
+	 */
+	private static void fill(FileChannel channel, ByteBuffer buffer, int minimum) throws IOException {
+		while(buffer.position() < minimum) {
+			if(channel.read(buffer) < 0) throw new EOFException("binary deck is truncated");
+		}
+		buffer.flip();
+	}
+
+	private static int[] readInts(FileChannel channel, int count) throws IOException {
+		int[] values = new int[count];
+		ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+		for(int done = 0; done < count; ) {
+			int chunk = Math.min(count - done, BLOCK_SIZE / 4);
+			block.clear();
+			block.limit(chunk * 4);
+			fill(channel, block, chunk * 4);
+			block.asIntBuffer().get(values, done, chunk);
+			done += chunk;
+		}
+		return values;
+	}
+
+	private static long[] readLongs(FileChannel channel, int count) throws IOException {
+		long[] values = new long[count];
+		ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+		for(int done = 0; done < count; ) {
+			int chunk = Math.min(count - done, BLOCK_SIZE / 8);
+			block.clear();
+			block.limit(chunk * 8);
+			fill(channel, block, chunk * 8);
+			block.asLongBuffer().get(values, done, chunk);
+			done += chunk;
+		}
+		return values;
+	}
+}
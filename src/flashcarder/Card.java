@@ -9,10 +9,13 @@ import java.util.Comparator;
  * @author Atlee
  *
  * A two-sided card.
+ *
+ * Subclasses can keep the data somewhere else by overriding the getters and setSeen(boolean, long),
+ * everything else goes through those.
  */
 public class Card {
 // private data
-	private int easeBias; // increment when easy, decrement when difficult
+	private int easeBias; // increment when easy, back to 0 or below when difficult, see getEaseBiasAfter
 	private long lastSeenTime; // unix time in milliseconds
 	private final String sideA, sideB;
 	private int viewCount; // number of times viewed
@@ -106,14 +109,49 @@ public class Card {
 		return viewCount;
 	}
 
+	/**
+	 * A difficult answer undoes whatever the card had built up, rather than just a step of it,
+	 * so a card that's been forgotten starts again from the bottom box of a LeitnerScheduler.
+	 * @param easeBias A card's ease bias.
+	 * @param wasEasy Whether the card was easy or difficult.
+	 * @return Its ease bias after the answer: one more if it was easy, otherwise one less but no more than 0.
+	 */
+	static int getEaseBiasAfter(int easeBias, boolean wasEasy) {
+		return wasEasy ? easeBias + 1 : Math.min(easeBias - 1, 0);
+	}
+
 	/**
 	 * Update this card's view statistics and ease bias.
 	 * @param wasEasy Whether this card was easy or difficult.
 	 */
 	public void setSeen(boolean wasEasy) {
-		easeBias += wasEasy ? 1 : -1;
+		setSeen(wasEasy, System.currentTimeMillis());
+	}
+
+	/**
+	 * Update this card's view statistics and ease bias as of a particular time.
+	 * @param wasEasy Whether this card was easy or difficult.
+	 * @param seenTime When the card was seen, unix time in milliseconds.
+	 */
+	public void setSeen(boolean wasEasy, long seenTime) {
+		easeBias = getEaseBiasAfter(easeBias, wasEasy);
 		++viewCount;
-		lastSeenTime = System.currentTimeMillis();
+		lastSeenTime = seenTime;
+	}
+
+	/**
+	 * @return A copy of this card as it is now, which doesn't change when this one does.
+	 * Subclasses that keep the sides elsewhere can copy just the stats.
+	 */
+	Card snapshot() {
+		return snapshot(getEaseBias(), getLastSeenTime(), getViewCount());
+	}
+
+	/**
+	 * @return A copy of this card with stats it had earlier, see DeckStats.
+	 */
+	Card snapshot(int easeBias, long lastSeenTime, int viewCount) {
+		return new Card(getSideA(), getSideB(), easeBias, lastSeenTime, viewCount);
 	}
 
 	/**
@@ -122,47 +160,94 @@ public class Card {
 	 * @return True on success, false if there's an IO exception.
 	 */
 	public boolean writeToFile(BufferedWriter output) {
-		try {
-			output.write(sideA); output.newLine();
-			output.write(sideB); output.newLine();
-			output.write(Integer.toString(easeBias)); output.newLine();
-			output.write(Long.toString(lastSeenTime)); output.newLine();
-			output.write(Integer.toString(viewCount)); output.newLine();
-			output.newLine();
-		} catch(IOException e) { return false; }
+		try { write(output); }
+		catch(IOException e) { return false; }
 		return true;
 	}
 
+	/**
+	 * Write this card to a BufferedWriter, passing on any problem.
+	 * @param output An extant BufferedWriter.
+	 * @throws IOException If the output can't be written.
+	 */
+	public void write(BufferedWriter output) throws IOException {
+		output.write(getSideA()); output.newLine();
+		output.write(getSideB()); output.newLine();
+		output.write(Integer.toString(getEaseBias())); output.newLine();
+		output.write(Long.toString(getLastSeenTime())); output.newLine();
+		output.write(Integer.toString(getViewCount())); output.newLine();
+		output.newLine();
+	}
+
+// sort keys
+	/**
+	 * A Comparator that orders Cards by a number, which CardStack.sort pulls out of each card just once.
+	 */
+	interface KeyComparator extends Comparator<Card> {
+		long getKey(Card card);
+	}
+
+	/**
+	 * A Comparator that orders Cards by a text, which CardStack.sort pulls out of each card just once.
+	 */
+	interface TextComparator extends Comparator<Card> {
+		String getText(Card card);
+	}
+
 // private Comparator classes
-	private static class EaseBiasComparator implements Comparator<Card> {
+	private static int compareKeys(long key1, long key2) {
+		if(key1 < key2) return -1;
+		if(key1 == key2) return 0;
+		return 1;
+	}
+
+	private static class EaseBiasComparator implements KeyComparator {
 		public int compare(Card card1, Card card2) {
-			return card1.easeBias - card2.easeBias;
+			return compareKeys(card1.getEaseBias(), card2.getEaseBias()); // subtracting could overflow
+		}
+
+		public long getKey(Card card) {
+			return card.getEaseBias();
 		}
 	}
 
-	private static class LastSeenTimeComparator implements Comparator<Card> {
+	private static class LastSeenTimeComparator implements KeyComparator {
 		public int compare(Card card1, Card card2) {
-			if(card1.lastSeenTime < card2.lastSeenTime) return -1;
-			if(card1.lastSeenTime == card2.lastSeenTime) return 0;
-			return 1;
+			return compareKeys(card1.getLastSeenTime(), card2.getLastSeenTime());
+		}
+
+		public long getKey(Card card) {
+			return card.getLastSeenTime();
 		}
 	}
 
-	private static class SideAComparator implements Comparator<Card> {
+	private static class SideAComparator implements TextComparator {
 		public int compare(Card card1, Card card2) {
-			return card1.sideA.compareTo(card2.sideA);
+			return card1.getSideA().compareTo(card2.getSideA());
+		}
+
+		public String getText(Card card) {
+			return card.getSideA();
 		}
 	}
 
-	private static class SideBComparator implements Comparator<Card> {
+	private static class SideBComparator implements TextComparator {
 		public int compare(Card card1, Card card2) {
-			return card1.sideB.compareTo(card2.sideB);
+			return card1.getSideB().compareTo(card2.getSideB());
+		}
+
+		public String getText(Card card) {
+			return card.getSideB();
 		}
 	}
 
-	private static class ViewCountComparator implements Comparator<Card> {
+	private static class ViewCountComparator implements KeyComparator {
 		public int compare(Card card1, Card card2) {
-			return card1.viewCount - card2.viewCount;
+			return compareKeys(card1.getViewCount(), card2.getViewCount());
+		}
+
+		public long getKey(Card card) {
+			return card.getViewCount();
 		}
 	}
 }
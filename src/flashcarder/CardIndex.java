@@ -0,0 +1,473 @@
+package flashcarder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * @author Atlee
+ *
+ * An in-memory search index over the sides of a deck's cards.
+ *
+ * Each side is split into words, lower case, and every word keeps a posting list of the cards it's in.
+ * Cards are numbered in the order they're added, so posting lists stay sorted just by appending.
+ * Most words in a big deck are only on one card, so a word's first card is kept in a plain int
+ * and it only gets a list once it's on a second one.
+ * On top of the words there are two ways in:
+ *		sorted runs of the words, for prefix queries by binary search, and
+ *		a trigram index of the words, for substring queries without scanning every word.
+ * New words wait in a short unsorted buffer, which becomes a sorted run when it fills up. Runs are merged
+ * whenever the newest is as long as the one before, like a binary counter, so there are never more
+ * than about log n of them and adding a word costs O(log n) however the cards come in.
+ *
+ * A query of one word walks the posting lists of the words it matches together, in card order,
+ * and stops as soon as it has as many cards as were asked for, however common the word.
+ * For a query of several words the matching cards are gathered into a BitSet, which keeps them in deck order
+ * and makes it a matter of and-ing the sets; the cards are then checked for the words next to each other.
+ * The last such query's sets are kept until more cards are added, so typing a query a letter at a time
+ * only looks up the word being typed.
+ *
+ * Example:
+ *		CardIndex index = new CardIndex();
+ *		for(Card card : cards) index.add(card);
+ *		List<Card> found = index.find("la sil", 20); // cards with "la sil" somewhere in a side
+ *		List<Card> startingWith = index.findPrefix("sil", 20); // cards with a word starting "sil"
+ *
+ * Not safe to use from more than one thread at a time; ReviewSession guards its index with its own lock.
+ */
+public class CardIndex {
+// defaults
+	private static final int GRAM_LENGTH = 3; // shorter words are found by prefix instead
+	private static final int BUFFER_SIZE = 1024; // new words, looked through one by one until they're sorted
+
+// data
+	private final ArrayList<Card> cards = new ArrayList<Card>(); // by card number
+	private final WordTable words = new WordTable();
+	private int[] firstCards = new int[1024]; // by word number, the first card it's on
+	private IntList[] postings = new IntList[1024]; // by word number, the cards after the first in ascending order, null if none
+	private final GramTable grams = new GramTable(); // word numbers with each trigram in
+	private final ArrayList<int[]> runs = new ArrayList<int[]>(); // word numbers in alphabetical order, longest run first
+	private final IntList unsortedWords = new IntList(); // word numbers not in a run yet
+	private HashMap<String, BitSet> recentTerms = new HashMap<String, BitSet>(); // the cards matching each word of the last query of several
+
+// public methods
+	/**
+	 * Adds a card to the index, after every card added before it.
+	 * @param card The card, whose sides are read now; later changes to them aren't seen.
+	 */
+	public void add(Card card) {
+		int number = cards.size();
+		cards.add(card);
+		if(!recentTerms.isEmpty()) recentTerms.clear(); // out of date
+		addWords(card.getSideA(), number);
+		addWords(card.getSideB(), number);
+	}
+
+	/**
+	 * @return The number of cards indexed.
+	 */
+	public int getCardCount() {
+		return cards.size();
+	}
+
+	/**
+	 * @return The number of different words in the cards.
+	 */
+	public int getWordCount() {
+		return words.size();
+	}
+
+	/**
+	 * Finds the cards with a side that contains some text, ignoring case.
+	 * Each word of the text is looked up as part of a word in the cards, or for words of less than
+	 * three letters, as the start of one; a text of several words has to appear in that order, one word
+	 * after another, though what's between them is ignored, so "la  sil" or "la, sil" find "la silla".
+	 * @param text What to look for.
+	 * @param limit The most cards to return.
+	 * @return Up to limit matching cards in deck order, or an empty list if the text has no words in it.
+	 */
+	public List<Card> find(String text, int limit) {
+		String[] terms = split(text);
+		if(terms.length == 0) return new ArrayList<Card>();
+		if(terms.length == 1) {
+			String term = terms[0];
+			BitSet matching = recentTerms.get(term);
+			if(matching != null) return collect(matching, null, limit);
+			return collect(firstCardsWith(term.length() < GRAM_LENGTH ? wordsStartingWith(term) : wordsContaining(term), limit));
+		}
+		HashMap<String, BitSet> queryTerms = new HashMap<String, BitSet>();
+		BitSet found = null;
+		for(String term : terms) {
+			BitSet matching = recentTerms.get(term);
+			if(matching == null) matching = term.length() < GRAM_LENGTH ? cardsWith(wordsStartingWith(term)) : cardsWith(wordsContaining(term));
+			queryTerms.put(term, matching);
+			if(found == null) found = (BitSet)matching.clone();
+			else found.and(matching);
+		}
+		recentTerms = queryTerms;
+		return collect(found, terms, limit);
+	}
+
+	/**
+	 * Finds the cards with a word that starts with some text, ignoring case.
+	 * @param prefix What the word should start with, one word.
+	 * @param limit The most cards to return.
+	 * @return Up to limit matching cards in deck order.
+	 */
+	public List<Card> findPrefix(String prefix, int limit) {
+		String[] terms = split(prefix);
+		if(terms.length != 1) return new ArrayList<Card>();
+		return collect(firstCardsWith(wordsStartingWith(terms[0]), limit));
+	}
+
+// private methods
+	private void addWords(String side, int cardNumber) {
+		for(String word : split(side)) {
+			int number = words.find(word);
+			if(number < 0) {
+				number = addWord(word);
+				firstCards[number] = cardNumber;
+				continue;
+			}
+			IntList list = postings[number];
+			int lastCard = list == null ? firstCards[number] : list.values[list.count - 1];
+			if(lastCard == cardNumber) continue; // once per card
+			if(list == null) postings[number] = list = new IntList();
+			list.add(cardNumber);
+		}
+	}
+
+	private int addWord(String word) {
+		int number = words.add(word);
+		if(number == postings.length) {
+			firstCards = Arrays.copyOf(firstCards, number * 2);
+			postings = Arrays.copyOf(postings, number * 2);
+		}
+		for(int i = 0; i + GRAM_LENGTH <= word.length(); ++i) {
+			IntList list = grams.add(word, i);
+			if(list.count == 0 || list.values[list.count - 1] != number) list.add(number);
+		}
+		unsortedWords.add(number);
+		if(unsortedWords.count == BUFFER_SIZE) sortNewWords();
+		return number;
+	}
+
+	/**
+	 * @return The numbers of the words that start with prefix.
+	 */
+	private IntList wordsStartingWith(String prefix) {
+		IntList found = new IntList();
+		for(int[] run : runs) {
+			int low = 0, high = run.length; // find the first word >= prefix
+			while(low < high) {
+				int middle = (low + high) >>> 1;
+				if(words.get(run[middle]).compareTo(prefix) < 0) low = middle + 1;
+				else high = middle;
+			}
+			for(int i = low; i < run.length && words.get(run[i]).startsWith(prefix); ++i) found.add(run[i]);
+		}
+		for(int i = 0; i < unsortedWords.count; ++i) {
+			if(words.get(unsortedWords.values[i]).startsWith(prefix)) found.add(unsortedWords.values[i]);
+		}
+		return found;
+	}
+
+	/**
+	 * @return The numbers of the words that contain term, which is at least GRAM_LENGTH long.
+	 */
+	private IntList wordsContaining(String term) {
+		IntList rarest = null; // only the words with every trigram of term can contain it, so check the rarest trigram's words
+		for(int i = 0; i + GRAM_LENGTH <= term.length(); ++i) {
+			IntList list = grams.get(term, i);
+			if(list == null) return new IntList();
+			if(rarest == null || list.count < rarest.count) rarest = list;
+		}
+		IntList found = new IntList();
+		for(int i = 0; i < rarest.count; ++i) {
+			if(words.get(rarest.values[i]).contains(term)) found.add(rarest.values[i]);
+		}
+		return found;
+	}
+
+	private BitSet cardsWith(IntList wordNumbers) {
+		BitSet found = new BitSet(cards.size());
+		for(int w = 0; w < wordNumbers.count; ++w) {
+			int number = wordNumbers.values[w];
+			found.set(firstCards[number]);
+			IntList list = postings[number];
+			if(list == null) continue;
+			for(int i = 0; i < list.count; ++i) found.set(list.values[i]);
+		}
+		return found;
+	}
+
+	/**
+	 * Goes through the posting lists of words together, merging them with a heap, so only as much
+	 * of them is read as it takes to find limit cards.
+	 * @return The numbers of the first limit cards, or all of them if there are fewer, with any of the words, in ascending order.
+	 */
+	private IntList firstCardsWith(IntList wordNumbers, int limit) {
+		int size = wordNumbers.count;
+		int[] heapWords = Arrays.copyOf(wordNumbers.values, size); // the word with the lowest next card first
+		int[] heapPositions = new int[size]; // how far through its cards each of heapWords is, 0 for its first card
+		for(int i = size / 2 - 1; i >= 0; --i) siftDown(heapWords, heapPositions, size, i);
+		IntList found = new IntList();
+		while(size > 0 && found.count < limit) {
+			int number = heapWords[0];
+			int card = getPosting(number, heapPositions[0]);
+			if(found.count == 0 || found.values[found.count - 1] != card) found.add(card); // a card with several of the words comes up for each
+			IntList list = postings[number];
+			if(++heapPositions[0] > (list == null ? 0 : list.count)) { // no more cards with this word
+				heapWords[0] = heapWords[--size];
+				heapPositions[0] = heapPositions[size];
+			}
+			if(size > 0) siftDown(heapWords, heapPositions, size, 0);
+		}
+		return found;
+	}
+
+	/**
+	 * @param position 0 for the word's first card, then its place in the word's posting list plus one.
+	 */
+	private int getPosting(int wordNumber, int position) {
+		return position == 0 ? firstCards[wordNumber] : postings[wordNumber].values[position - 1];
+	}
+
+	/**
+	 * Moves the word at i down the heap until its next card is no higher than those below it.
+	 */
+	private void siftDown(int[] heapWords, int[] heapPositions, int size, int i) {
+		int number = heapWords[i], position = heapPositions[i];
+		int card = getPosting(number, position);
+		for(int child = 2 * i + 1; child < size; child = 2 * i + 1) {
+			int childCard = getPosting(heapWords[child], heapPositions[child]);
+			if(child + 1 < size) {
+				int rightCard = getPosting(heapWords[child + 1], heapPositions[child + 1]);
+				if(rightCard < childCard) {
+					++child;
+					childCard = rightCard;
+				}
+			}
+			if(card <= childCard) break;
+			heapWords[i] = heapWords[child];
+			heapPositions[i] = heapPositions[child];
+			i = child;
+		}
+		heapWords[i] = number;
+		heapPositions[i] = position;
+	}
+
+	private List<Card> collect(IntList found) {
+		List<Card> matches = new ArrayList<Card>(found.count);
+		for(int i = 0; i < found.count; ++i) matches.add(cards.get(found.values[i]));
+		return matches;
+	}
+
+	/**
+	 * @param terms If not null, only cards with a side that has them one after another, see hasTermsInOrder.
+	 */
+	private List<Card> collect(BitSet found, String[] terms, int limit) {
+		List<Card> matches = new ArrayList<Card>();
+		for(int number = found.nextSetBit(0); number >= 0 && matches.size() < limit; number = found.nextSetBit(number + 1)) {
+			Card card = cards.get(number);
+			if(terms == null || hasTermsInOrder(split(card.getSideA()), terms) || hasTermsInOrder(split(card.getSideB()), terms)) {
+				matches.add(card);
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * Turns the buffer of new words into a sorted run, merging runs until each is longer than the next.
+	 */
+	private void sortNewWords() {
+		int count = unsortedWords.count;
+		String[] texts = new String[count];
+		for(int i = 0; i < count; ++i) texts[i] = words.get(unsortedWords.values[i]);
+		int[] run = new int[count];
+		int[] order = KeySort.order(texts);
+		for(int i = 0; i < count; ++i) run[i] = unsortedWords.values[order[i]];
+		unsortedWords.count = 0;
+		while(!runs.isEmpty() && runs.get(runs.size() - 1).length <= run.length) {
+			run = merge(runs.remove(runs.size() - 1), run);
+		}
+		runs.add(run);
+	}
+
+	private int[] merge(int[] run1, int[] run2) {
+		int[] merged = new int[run1.length + run2.length];
+		int i = 0, j = 0;
+		for(int m = 0; m < merged.length; ++m) {
+			if(j == run2.length || (i < run1.length && words.get(run1[i]).compareTo(words.get(run2[j])) <= 0)) merged[m] = run1[i++];
+			else merged[m] = run2[j++];
+		}
+		return merged;
+	}
+
+	/**
+	 * Sees whether terms are in words one after another as they'd be in the text they were typed as:
+	 * the first at the end of a word, any in between whole words, and the last at the start of a word.
+	 */
+	private static boolean hasTermsInOrder(String[] words, String[] terms) {
+		int last = terms.length - 1;
+		for(int start = 0; start + last < words.length; ++start) {
+			if(!words[start].endsWith(terms[0]) || !words[start + last].startsWith(terms[last])) continue;
+			int i = 1;
+			while(i < last && words[start + i].equals(terms[i])) ++i;
+			if(i >= last) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Splits text into lower case words of letters and digits.
+	 */
+	private static String[] split(String text) {
+		ArrayList<String> found = new ArrayList<String>();
+		text = text.toLowerCase(); // the same String if it already is
+		int length = text.length();
+		for(int i = 0; i < length; ) {
+			while(i < length && !Character.isLetterOrDigit(text.charAt(i))) ++i;
+			int start = i;
+			while(i < length && Character.isLetterOrDigit(text.charAt(i))) ++i;
+			if(i > start) found.add(text.substring(start, i));
+		}
+		return found.toArray(new String[found.size()]);
+	}
+
+// private helper classes
+	/**
+	 * A growable list of ints.
+	 */
+	private static class IntList {
+		int[] values = new int[1];
+		int count;
+
+		void add(int value) {
+			if(count == values.length) values = Arrays.copyOf(values, count * 2);
+			values[count++] = value;
+		}
+	}
+
+	/**
+	 * Lists of word numbers by trigram, in an open addressing hash table keyed by the trigram's
+	 * characters packed into a long, so looking one up doesn't need a substring.
+	 */
+	private static class GramTable {
+		private long[] keys = new long[1024]; // the trigram + 1, or 0 for an empty slot
+		private IntList[] lists = new IntList[1024];
+		private int count;
+
+		/**
+		 * @return The list for the trigram at start in text, or null if there isn't one.
+		 */
+		IntList get(String text, int start) {
+			long key = key(text, start);
+			int mask = keys.length - 1;
+			for(int slot = spread(key) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+				if(keys[slot] == key) return lists[slot];
+			}
+			return null;
+		}
+
+		/**
+		 * @return The list for the trigram at start in text, a new empty one if there wasn't one.
+		 */
+		IntList add(String text, int start) {
+			long key = key(text, start);
+			int mask = keys.length - 1;
+			int slot = spread(key) & mask;
+			for(; keys[slot] != 0; slot = (slot + 1) & mask) {
+				if(keys[slot] == key) return lists[slot];
+			}
+			IntList list = new IntList();
+			keys[slot] = key;
+			lists[slot] = list;
+			if(++count * 2 > keys.length) grow();
+			return list;
+		}
+
+		private static long key(String text, int start) {
+			return ((long)text.charAt(start) << 32 | (long)text.charAt(start + 1) << 16 | text.charAt(start + 2)) + 1;
+		}
+
+		private static int spread(long key) {
+			return WordTable.spread((int)(key ^ (key >>> 29)));
+		}
+
+		private void grow() {
+			long[] oldKeys = keys;
+			IntList[] oldLists = lists;
+			keys = new long[oldKeys.length * 2];
+			lists = new IntList[oldKeys.length * 2];
+			int mask = keys.length - 1;
+			for(int i = 0; i < oldKeys.length; ++i) {
+				if(oldKeys[i] == 0) continue;
+				int slot = spread(oldKeys[i]) & mask;
+				while(keys[slot] != 0) slot = (slot + 1) & mask;
+				keys[slot] = oldKeys[i];
+				lists[slot] = oldLists[i];
+			}
+		}
+	}
+
+	/**
+	 * Numbers the words, and finds a word's number, in an open addressing hash table
+	 * that costs two ints a word rather than a HashMap entry.
+	 */
+	private static class WordTable {
+		private String[] words = new String[1024]; // by word number
+		private int count;
+		private int[] table = new int[2048]; // word number + 1, or 0 for an empty slot
+
+		int size() {
+			return count;
+		}
+
+		String get(int number) {
+			return words[number];
+		}
+
+		/**
+		 * @return The word's number, or -1 if it hasn't been added.
+		 */
+		int find(String word) {
+			int mask = table.length - 1;
+			for(int slot = spread(word.hashCode()) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+				if(words[table[slot] - 1].equals(word)) return table[slot] - 1;
+			}
+			return -1;
+		}
+
+		/**
+		 * @return The new word's number.
+		 */
+		int add(String word) {
+			if(count == words.length) words = Arrays.copyOf(words, count * 2);
+			words[count] = word;
+			if((count + 1) * 2 > table.length) rehash(table.length * 2);
+			insert(count);
+			return count++;
+		}
+
+		private void insert(int number) {
+			int mask = table.length - 1;
+			int slot = spread(words[number].hashCode()) & mask;
+			while(table[slot] != 0) slot = (slot + 1) & mask;
+			table[slot] = number + 1;
+		}
+
+		private void rehash(int capacity) {
+			table = new int[capacity];
+			for(int number = 0; number < count; ++number) insert(number);
+		}
+
+		static int spread(int hash) {
+			hash ^= hash >>> 16;
+			hash *= 0x85EBCA6B;
+			return hash ^ (hash >>> 13);
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package flashcarder;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * @author Atlee
+ *
+ * The CardSequence of an ordinary CardStack.
+ * The Cards sit in numbered slots, and the order of the slot numbers is kept in an IntRope,
+ * so adding a card at a random position is O(log n) instead of shifting half the stack.
+ */
+class CardRope extends CardSequence {
+// data
+	private Card[] slots;
+	private int[] freeSlots; // slot numbers available for reuse
+	private int freeCount;
+	private int slotsUsed; // slots ever handed out, free ones included
+	private IntRope order = new IntRope();
+
+// methods
+	CardRope() {
+		this(16);
+	}
+
+	CardRope(Collection<Card> cards) {
+		this(cards.size() + 16);
+		int[] values = new int[cards.size()];
+		for(Card card : cards) {
+			slots[slotsUsed] = card;
+			values[slotsUsed] = slotsUsed;
+			++slotsUsed;
+		}
+		order.setAll(values, values.length);
+	}
+
+	private CardRope(int capacity) {
+		slots = new Card[capacity];
+		freeSlots = new int[16];
+	}
+
+	@Override
+	CardSequence copy() {
+		return new CardRope(this);
+	}
+
+	@Override
+	public Card get(int position) {
+		return slots[order.get(position)];
+	}
+
+	@Override
+	public Card set(int position, Card card) {
+		int slot = order.get(position);
+		Card old = slots[slot];
+		slots[slot] = card;
+		return old;
+	}
+
+	@Override
+	public boolean add(Card card) {
+		order.add(takeSlot(card));
+		++modCount;
+		return true;
+	}
+
+	@Override
+	public void add(int position, Card card) {
+		if(position < 0 || position > order.size()) throw new IndexOutOfBoundsException("position " + position + " of " + order.size());
+		order.insert(position, takeSlot(card));
+		++modCount;
+	}
+
+	@Override
+	public Card remove(int position) {
+		++modCount;
+		return releaseSlot(order.remove(position));
+	}
+
+	@Override
+	Card removeLast() {
+		++modCount;
+		return releaseSlot(order.removeLast());
+	}
+
+	@Override
+	public void clear() {
+		slots = new Card[16];
+		freeCount = 0;
+		slotsUsed = 0;
+		order.clear();
+		++modCount;
+	}
+
+	@Override
+	public int size() {
+		return order.size();
+	}
+
+	@Override
+	void shuffleCards(Random random) {
+		int[] values = order.toArray();
+		shuffle(values, random);
+		order.setAll(values, values.length);
+	}
+
+	@Override
+	void sortCards(final Comparator<Card> comparator) {
+		int[] values = order.toArray();
+		if(!sortByKeys(values, comparator)) {
+			IntRope.sort(values, values.length, new IntRope.Comparator() {
+				public int compare(int slot1, int slot2) {
+					return comparator.compare(slots[slot1], slots[slot2]);
+				}
+			});
+		}
+		order.setAll(values, values.length);
+	}
+
+	@Override
+	Card cardFor(int slot) {
+		return slots[slot];
+	}
+
+// private methods
+	private int takeSlot(Card card) {
+		int slot;
+		if(freeCount > 0) {
+			slot = freeSlots[--freeCount];
+		} else {
+			if(slotsUsed == slots.length) slots = Arrays.copyOf(slots, slotsUsed + (slotsUsed >> 1) + 16);
+			slot = slotsUsed++;
+		}
+		slots[slot] = card;
+		return slot;
+	}
+
+	private Card releaseSlot(int slot) {
+		Card card = slots[slot];
+		slots[slot] = null;
+		if(freeCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+		freeSlots[freeCount++] = slot;
+		return card;
+	}
+}
@@ -0,0 +1,86 @@
+package flashcarder;
+
+import java.util.List;
+
+/**
+ * @author Atlee
+ *
+ * Decides which card to review next.
+ *
+ * A scheduler is handed a deck with setCards, then repeatedly asked for nextCard.
+ * Each card it hands out comes back through either putBack (not yet) or putDone (got it).
+ * Whoever drives the review marks the card seen before handing it back, see recordsDifficultAnswers.
+ */
+public interface CardScheduler {
+	/**
+	 * Starts scheduling a deck, replacing whatever was scheduled before.
+	 * @param cards The deck. The scheduler may keep and reorder this CardStack.
+	 */
+	void setCards(CardStack cards);
+
+	/**
+	 * Adds one more card to the deck, for decks that are still being read.
+	 * The deck should end up scheduled as if the card had been there for setCards.
+	 * @param card The card to add.
+	 */
+	void addCard(Card card);
+
+	/**
+	 * Removes the next card to review.
+	 * @return The card, or null if nothing needs reviewing right now.
+	 */
+	Card nextCard();
+
+	/**
+	 * Looks at the cards nextCard would hand out next, without removing them.
+	 * Answers given in the meantime can change the order, so this is only a hint.
+	 * @param count How many cards to look at.
+	 * @return Up to count cards, the next one first.
+	 */
+	List<Card> peekCards(int count);
+
+	/**
+	 * Takes back a card that wasn't known yet.
+	 * @param card A card from nextCard.
+	 */
+	void putBack(Card card);
+
+	/**
+	 * Takes back a card that was known.
+	 * @param card A card from nextCard, already marked as seen and easy.
+	 */
+	void putDone(Card card);
+
+	/**
+	 * @return Whether cards given to putBack should first be marked as seen and difficult.
+	 */
+	boolean recordsDifficultAnswers();
+
+	/**
+	 * @return The number of cards still to review.
+	 */
+	int getToDoCount();
+
+	/**
+	 * @return The number of cards done for now.
+	 */
+	int getDoneCount();
+
+	/**
+	 * @return A new CardStack of every card held by this scheduler, for saving.
+	 */
+	CardStack getAllCards();
+
+	/**
+	 * @return Copies of the cards to do, the next one last, and of the cards done, so the review can
+	 * carry on in the same order later through restoreOrder, or null if the order isn't worth keeping.
+	 */
+	CardStack[] getOrder();
+
+	/**
+	 * Starts scheduling a deck in an order from getOrder, instead of afresh like setCards.
+	 * @param toDo The cards to do, the next one last. The scheduler may keep this CardStack.
+	 * @param done The cards done. The scheduler may keep this CardStack too.
+	 */
+	void restoreOrder(CardStack toDo, CardStack done);
+}
@@ -0,0 +1,105 @@
+package flashcarder;
+
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.List;
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+/**
+ * @author Atlee
+ *
+ * A window for finding cards in the open deck by the text on their sides.
+ *
+ * Searches as the text is typed, at most once a frame, and lists the first matches in deck order.
+ * Stays open alongside the main window, so reviewing can carry on.
+ *
+ * Example:
+ *		CardSearchDialog searchDialog = new CardSearchDialog(frame, session);
+ *		searchDialog.showDialog();
+ */
+class CardSearchDialog extends JDialog {
+// defaults
+	private static final int MARGIN = 4;
+	private static final int RESULT_LIMIT = 100; // more than anyone reads, and cheap to list
+	private static final int COLUMNS = 30;
+	private static final int VISIBLE_ROWS = 16;
+	private static final String SEPARATOR = "   -   "; // between the sides of a listed card
+
+// data
+	private final ReviewSession session;
+	private final JTextField queryField = new JTextField(COLUMNS);
+	private final DefaultListModel<String> results = new DefaultListModel<String>();
+	private final JLabel statusLabel = new JLabel(" ");
+	private final FrameCoalescer searcher = new FrameCoalescer(new Runnable() {
+		public void run() { search(); }
+	});
+
+// methods
+	/**
+	 * @param owner The window it belongs to.
+	 * @param session Where the cards are, which should have indexing on.
+	 */
+	CardSearchDialog(Frame owner, ReviewSession session) {
+		super(owner, "Find Cards", false);
+		this.session = session;
+		setDefaultCloseOperation(HIDE_ON_CLOSE);
+
+		Container contentPane = getContentPane();
+		contentPane.setLayout(new BorderLayout(MARGIN, MARGIN));
+		((JComponent)contentPane).setBorder(BorderFactory.createEmptyBorder(MARGIN, MARGIN, MARGIN, MARGIN));
+
+		queryField.getDocument().addDocumentListener(new DocumentListener() {
+			public void insertUpdate(DocumentEvent e) { searcher.request(); }
+			public void removeUpdate(DocumentEvent e) { searcher.request(); }
+			public void changedUpdate(DocumentEvent e) { searcher.request(); }
+		});
+		contentPane.add(queryField, BorderLayout.NORTH);
+
+		JList<String> resultList = new JList<String>(results);
+		resultList.setVisibleRowCount(VISIBLE_ROWS);
+		resultList.setPrototypeCellValue("Something fairly long" + SEPARATOR + "something fairly long");
+		contentPane.add(new JScrollPane(resultList), BorderLayout.CENTER);
+
+		contentPane.add(statusLabel, BorderLayout.SOUTH);
+
+		getRootPane().registerKeyboardAction(new ActionListener() {
+			public void actionPerformed(ActionEvent e) { setVisible(false); }
+		}, KeyStroke.getKeyStroke("ESCAPE"), JComponent.WHEN_IN_FOCUSED_WINDOW);
+
+		pack();
+		setLocationRelativeTo(owner);
+	}
+
+	/**
+	 * Shows the window, or brings it to the front, with the last search redone for whatever deck is open now.
+	 */
+	void showDialog() {
+		search();
+		setVisible(true);
+		toFront();
+		queryField.selectAll();
+		queryField.requestFocusInWindow();
+	}
+
+// private methods
+	private void search() {
+		String query = queryField.getText();
+		results.clear();
+		if(query.trim().isEmpty()) {
+			statusLabel.setText(" ");
+			return;
+		}
+		long start = System.nanoTime();
+		List<Card> found = session.search(query, RESULT_LIMIT + 1); // one more, to know there are more
+		long millis = (System.nanoTime() - start) / 1000000L;
+		for(int i = 0; i < found.size() && i < RESULT_LIMIT; ++i) {
+			Card card = found.get(i);
+			results.addElement(card.getSideA() + SEPARATOR + card.getSideB());
+		}
+		String count = found.size() > RESULT_LIMIT ? "The first " + RESULT_LIMIT + " cards" : found.size() == 1 ? "1 card" : found.size() + " cards";
+		statusLabel.setText(count + " found in " + millis + " ms");
+	}
+}
@@ -0,0 +1,78 @@
+package flashcarder;
+
+import java.util.AbstractList;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * @author Atlee
+ *
+ * The List of Cards behind a CardStack.
+ * Both kinds are built on an IntRope, so inserting anywhere is cheap even in a huge stack.
+ */
+abstract class CardSequence extends AbstractList<Card> {
+	/**
+	 * @return A shallow copy of this sequence, of the same kind.
+	 */
+	abstract CardSequence copy();
+
+	/**
+	 * Removes the last card.
+	 * @return The card that was last.
+	 */
+	abstract Card removeLast();
+
+	/**
+	 * Puts the cards in a random order.
+	 */
+	abstract void shuffleCards(Random random);
+
+	/**
+	 * Sorts the cards, keeping equal cards in their current order.
+	 */
+	abstract void sortCards(Comparator<Card> comparator);
+
+	/**
+	 * @param value One of the values this sequence keeps in its IntRope.
+	 * @return The card it stands for, possibly a view that's reused by the next call.
+	 */
+	abstract Card cardFor(int value);
+
+	/**
+	 * Sorts values standing for cards by a key pulled out of each card once, see KeySort,
+	 * if the comparator is one of Card's that has keys.
+	 * @param values The values in their current order, sorted in place.
+	 * @param comparator How to order the cards.
+	 * @return False if the comparator has no keys, and the values are untouched.
+	 */
+	boolean sortByKeys(int[] values, Comparator<Card> comparator) {
+		int count = values.length;
+		int[] order;
+		if(comparator instanceof Card.KeyComparator) {
+			Card.KeyComparator keyed = (Card.KeyComparator)comparator;
+			long[] keys = new long[count];
+			for(int i = 0; i < count; ++i) keys[i] = keyed.getKey(cardFor(values[i]));
+			order = KeySort.order(keys);
+		} else if(comparator instanceof Card.TextComparator) {
+			Card.TextComparator texted = (Card.TextComparator)comparator;
+			String[] texts = new String[count];
+			for(int i = 0; i < count; ++i) texts[i] = texted.getText(cardFor(values[i]));
+			order = KeySort.order(texts);
+		} else return false;
+		int[] unsorted = values.clone();
+		for(int i = 0; i < count; ++i) values[i] = unsorted[order[i]];
+		return true;
+	}
+
+	/**
+	 * Fisher-Yates on an array.
+	 */
+	static void shuffle(int[] values, Random random) {
+		for(int i = values.length - 1; i > 0; --i) {
+			int j = random.nextInt(i + 1);
+			int swap = values[i];
+			values[i] = values[j];
+			values[j] = swap;
+		}
+	}
+}
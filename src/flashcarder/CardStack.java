@@ -2,8 +2,8 @@ package flashcarder;
 
 import java.io.*;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Random;
 
 /**
@@ -24,68 +24,107 @@ import java.util.Random;
  *		}
  *		seenCards.writeToFile("somecards.txt");
  *
+ * For huge decks, a CardStack can also run on top of a CardStore, see CardStore.createStack().
  */
 public class CardStack {
 // static helpers
 	private static Random random = new Random();
 
 // defaults
-	private static final String CHARSET = "ISO-8859-1"; // important for reading and writing non-US characters
+	static final String CHARSET = "ISO-8859-1"; // important for reading and writing non-US characters
+	private static final int LOAD_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+// metrics
+	private static final Metrics.Timer LOAD_TIMER = Metrics.timer("CardStack.load");
+	private static final Metrics.Counter LOAD_BYTES = Metrics.counter("CardStack.load.bytes");
+	private static final Metrics.Counter LOAD_CARDS = Metrics.counter("CardStack.load.cards");
+	private static final Metrics.Timer WRITE_TIMER = Metrics.timer("CardStack.write");
+	private static final Metrics.Timer SORT_TIMER = Metrics.timer("CardStack.sort");
+	private static final Metrics.Timer SHUFFLE_TIMER = Metrics.timer("CardStack.shuffle");
+	private static final Metrics.Timer ADD_RANDOMLY_TIMER = Metrics.timer("CardStack.addCardRandomly");
 
 // data
-	private ArrayList<Card> stack;
+	private CardSequence stack; // a CardRope, or a CardStore.IndexList when running on a CardStore
 
 // public static methods
 	/**
 	 * Creates a new CardStack by reading it from a file.
+	 * Both the text format and the binary format of BinaryCardFile are understood,
+	 * and text files compressed with gzip or zlib, see CompressedFile.
 	 * @param fileName The name of the file to open and read from.
 	 * @return A new CardStack or null if something goes wrong.
 	 */
 	public static CardStack createFromFile(String fileName) {
-		InputStreamReader inStream;
-		try { inStream = new InputStreamReader(new FileInputStream(fileName), CHARSET); }
-		catch(IOException e) { return null; }
-		BufferedReader bufferedReader = new BufferedReader(inStream);
-
-		ArrayList<Card> newStack = new ArrayList<Card>();
-		for(;;) {
-			Card card = Card.createFromFile(bufferedReader);
-			if(card == null) break;
-			newStack.add(card);
-		}
+		return createFromFile(fileName, LOAD_PARALLELISM);
+	}
 
-		try {
-			bufferedReader.close();
-			inStream.close(); // just in case
-		} catch(IOException e) { /* don't care */ }
+	/**
+	 * Creates a new CardStack by reading it from a file, parsing big text files on several threads.
+	 * The resulting stack is the same as when reading sequentially.
+	 * @param fileName The name of the file to open and read from.
+	 * @param parallelism The number of threads to use, 1 to read sequentially.
+	 * @return A new CardStack or null if something goes wrong.
+	 */
+	public static CardStack createFromFile(String fileName, int parallelism) {
+		return createFromFile(fileName, parallelism, null);
+	}
 
-		return new CardStack(newStack);
+	/**
+	 * Creates a new CardStack by reading it from a file, with identical sides sharing one String.
+	 * Binary files always share them, they only store each text once.
+	 * @param fileName The name of the file to open and read from.
+	 * @param parallelism The number of threads to use, 1 to read sequentially.
+	 * @param interner Shares the sides of text files and keeps count of what that saved, or null not to.
+	 * @return A new CardStack or null if something goes wrong.
+	 */
+	public static CardStack createFromFile(String fileName, int parallelism, SideInterner interner) {
+		long start = Metrics.start();
+		CardStack cardStack;
+		try {
+			if(BinaryCardFile.isBinaryFile(fileName)) cardStack = new CardStack(BinaryCardFile.readAll(fileName));
+			else cardStack = new CardStack(MappedCardReader.readAll(fileName, parallelism, interner));
+		} catch(IOException e) { return null; }
+		if(start != 0) {
+			LOAD_TIMER.stop(start);
+			LOAD_BYTES.add(new File(fileName).length());
+			LOAD_CARDS.add(cardStack.getCount());
+		}
+		return cardStack;
 	}
 
 // public methods
 	public CardStack() {
-		this(new ArrayList<Card>());
+		stack = new CardRope();
 	}
 
 	/**
-	 * Share constructor.
 	 * Starts with the given stack in the form of an ArrayList<Card>
-	 * @param extantStack The ArrayList to share.
+	 * The list isn't shared any more, the Cards are copied into this stack's own structure.
+	 * @param extantStack The ArrayList to start with, its last card being the next card.
 	 */
 	public CardStack(ArrayList<Card> extantStack) {
-		stack = extantStack;
+		stack = new CardRope(extantStack);
+	}
+
+	/**
+	 * Share constructor.
+	 * Starts with the given CardSequence.
+	 * @param sequence The sequence to share.
+	 */
+	CardStack(CardSequence sequence) {
+		stack = sequence;
 	}
 
 	/**
 	 * Copy constructor.
-	 * Starts with a shallow copy of the given stack.
+	 * Starts with a shallow copy of the given stack, on the same CardStore if it has one.
 	 * @param copyFromStack The CardStack to copy from.
 	 */
 	public CardStack(CardStack copyFromStack) {
 		if(copyFromStack != null && copyFromStack.stack != null) {
-			stack = new ArrayList<Card>(copyFromStack.stack);
+			stack = copyFromStack.stack.copy();
 		} else {
-			stack = new ArrayList<Card>();
+			stack = new CardRope();
 		}
 	}
 
@@ -101,6 +140,7 @@ public class CardStack {
 	 * Adds a Card to this stack in a random location within the beginning half.
 	 * The idea is to prevent this card from resurfacing soon, but without otherwise
 	 * leaving a pattern.
+	 * Cheap even for huge stacks: O(log n), nothing gets shifted along.
 	 * @param card The Card to add.
 	 */
 //	public void addCardRandomly(Card card) {
@@ -109,9 +149,20 @@ public class CardStack {
 //		stack.add(where, card);
 //	}
 	public void addCardRandomly(Card card) {
+		long start = Metrics.start();
 		int where = 0;
 		if(stack.size() > 2) where = random.nextInt(stack.size() / 2);
 		stack.add(where, card);
+		ADD_RANDOMLY_TIMER.stop(start);
+	}
+
+	/**
+	 * Inserts a Card anywhere in this stack. O(log n), like addCardRandomly.
+	 * @param index Position in this stack, 0 being the bottom and getCount() the top.
+	 * @param card The Card to insert.
+	 */
+	public void insertCard(int index, Card card) {
+		stack.add(index, card);
 	}
 
 	/**
@@ -129,6 +180,22 @@ public class CardStack {
 		stack.clear();
 	}
 
+	/**
+	 * Looks at a Card without removing it.
+	 * @param index Position in this stack, 0 being the bottom and getCount() - 1 the next card.
+	 * @return The Card at that position.
+	 */
+	public Card getCard(int index) {
+		return stack.get(index);
+	}
+
+	/**
+	 * @return The cards of this stack, bottom first. Not a copy, so only for looking at.
+	 */
+	List<Card> getCards() {
+		return stack;
+	}
+
 	/**
 	 * @return The number of Cards in this stack.
 	 */
@@ -150,41 +217,123 @@ public class CardStack {
 	 */
 	public Card removeNextCard() {
 		if(stack.isEmpty()) return null;
-		return stack.remove(stack.size() - 1);
+		return stack.removeLast();
 	}
 
 	public void shuffle() {
-		Collections.shuffle(stack);
+		long start = Metrics.start();
+		stack.shuffleCards(random);
+		SHUFFLE_TIMER.stop(start);
 	}
 
+	/**
+	 * A stable sort. With Card's own comparators, each card's key is pulled out once and sorted
+	 * without comparing cards, see KeySort; any other comparator compares cards n log n times.
+	 * @param cardComparator How to order the cards.
+	 */
 	public void sort(Comparator<Card> cardComparator) {
-		Collections.sort(stack, cardComparator);
+		long start = Metrics.start();
+		stack.sortCards(cardComparator);
+		SORT_TIMER.stop(start);
 	}
 
 	/**
 	 * Attempt to write this stack to a file.
+	 * The file is replaced atomically, see write(String, int).
 	 * @param fileName The name of the file that will be created or overwritten.
 	 * @return True on success, false if something goes wrong.
 	 */
 	public boolean writeToFile(String fileName) {
-		OutputStreamWriter outStream;
-		try { outStream = new OutputStreamWriter(new FileOutputStream(fileName), CHARSET); }
+		try { write(fileName, 0); }
 		catch(IOException e) { return false; }
-		BufferedWriter bufferedWriter = new BufferedWriter(outStream);
+		return true;
+	}
 
-		boolean error = false;
-		for(Card card : stack) {
-			if(!card.writeToFile(bufferedWriter)) {
-				error = true;
-				break;
+	/**
+	 * Write this stack to a text file, atomically replacing it.
+	 * If anything goes wrong the file keeps its old contents.
+	 * A compressed file stays compressed the same way, and a new one whose name ends in ".gz" is gzipped.
+	 * @param fileName The name of the file that will be created or replaced.
+	 * @param backupCount How many previous versions of the file to keep as fileName.bak.1 and so on.
+	 * @throws IOException Describing what went wrong.
+	 */
+	public void write(String fileName, int backupCount) throws IOException {
+		long start = Metrics.start();
+		final int format = CompressedFile.getFormatForWriting(fileName);
+		final CardStore.TextFileRewrite rewrite = format == CompressedFile.NONE ? CardStore.startRewrite(stack, fileName) : null; // texts left in the file move with it
+		SafeFileWriter.write(fileName, backupCount, new SafeFileWriter.Content() {
+			public void writeTo(OutputStream output) throws IOException {
+				OutputStream compressed = CompressedFile.compress(output, format); // on another thread, while this one encodes
+				try {
+					CountingWriter bufferedWriter = new CountingWriter(new OutputStreamWriter(compressed, CHARSET));
+					for(Card card : stack) {
+						if(rewrite != null) rewrite.cardWritten(card, bufferedWriter.getCount()); // one byte a character
+						card.write(bufferedWriter);
+					}
+					bufferedWriter.flush();
+				} finally {
+					if(compressed != output) compressed.close();
+				}
 			}
+		}, rewrite);
+		WRITE_TIMER.stop(start);
+	}
+
+	/**
+	 * Attempt to write this stack to a file in the binary format of BinaryCardFile.
+	 * The file is replaced atomically, see write(String, int).
+	 * @param fileName The name of the file that will be created or overwritten.
+	 * @return True on success, false if something goes wrong.
+	 */
+	public boolean writeToBinaryFile(String fileName) {
+		try { writeBinary(fileName, 0); }
+		catch(IOException e) { return false; }
+		return true;
+	}
+
+	/**
+	 * Write this stack to a binary file, atomically replacing it.
+	 * @param fileName The name of the file that will be created or replaced.
+	 * @param backupCount How many previous versions of the file to keep as fileName.bak.1 and so on.
+	 * @throws IOException Describing what went wrong.
+	 */
+	public void writeBinary(String fileName, int backupCount) throws IOException {
+		long start = Metrics.start();
+		BinaryCardFile.write(fileName, backupCount, stack);
+		WRITE_TIMER.stop(start);
+	}
+
+// private helper classes
+	/**
+	 * A BufferedWriter that counts the characters written to it.
+	 */
+	private static class CountingWriter extends BufferedWriter {
+		private long count;
+
+		CountingWriter(Writer output) {
+			super(output);
 		}
 
-		try {
-			bufferedWriter.close();
-			outStream.close();
-		} catch(IOException e) { return false; }
+		long getCount() {
+			return count;
+		}
+
+		@Override
+		public void write(int c) throws IOException {
+			super.write(c);
+			++count;
+		}
 
-		return !error;
+		@Override
+		public void write(char[] chars, int offset, int length) throws IOException {
+			super.write(chars, offset, length);
+			count += length;
+		}
+
+		@Override
+		public void write(String text, int offset, int length) throws IOException {
+			super.write(text, offset, length);
+			count += length;
+		}
 	}
 }
@@ -6,6 +6,9 @@ import java.awt.*;
 
 /**
  * @author Atlee
+ *
+ * A labelled StackProgressPanel with a count underneath.
+ * Count changes are shown at most once a frame, so a burst of them costs one relayout.
  */
 public class CardStackPanel extends JPanel {
 // Look & Feel constants
@@ -27,6 +30,12 @@ public class CardStackPanel extends JPanel {
 	private StackProgressPanel progressBar;
 	private JLabel titleLabel;
 
+// state
+	private int count;
+	private final FrameCoalescer countUpdater = new FrameCoalescer(new Runnable() {
+		public void run() { updateCount(); }
+	});
+
 // public methods
 	public CardStackPanel(String title, Color meterColor, boolean active) {
 		super(new BorderLayout(0, 0));
@@ -54,6 +63,12 @@ public class CardStackPanel extends JPanel {
 	}
 
 	public void setCurrentCount(int count) {
+		this.count = count;
+		countUpdater.request();
+	}
+
+// private GUI handler methods
+	private void updateCount() {
 		progressBar.setValue(count);
 		countLabel.setText(Integer.toString(count));
 	}
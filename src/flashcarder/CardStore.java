@@ -0,0 +1,619 @@
+package flashcarder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author Atlee
+ *
+ * Column storage for a great many Cards.
+ *
+ * Rather than one object per card, each with its own pair of Strings, the stats live in
+ * parallel primitive arrays and the side texts are ISO-8859-1 bytes packed into shared pages.
+ * A card is just an index, and getCard(int) hands out lightweight Card views on request.
+ * Views read and write straight through to the store, so Card.setSeen on one updates the store.
+ *
+ * A CardStack can run on top of a store, keeping only card indices:
+ *		CardStore store = CardStore.createFromFile("hugedeck.txt");
+ *		CardStack cardStack = store.createStack(); // every card, in file order
+ *		CardStack seenCards = store.createEmptyStack();
+ *		cardStack.shuffle(); // shuffles indices, no Card objects involved
+ *		.. then use them like any other CardStack ..
+ *
+ * Like the deck files, side text is stored as ISO-8859-1, so other characters don't survive.
+ *
+ * For decks too big to keep their text on the heap at all, createFromFile(String, long) leaves the
+ * side texts in the deck file, keeping just where each one is, and reads them as they're wanted
+ * through a SideTextFile with a bounded cache. readAhead(List) gets upcoming cards' texts into the
+ * cache in the background. Such a store should be closed when it's done with.
+ * When CardStack.write rewrites the file, the store is told where the texts went, see TextFileRewrite.
+ */
+public class CardStore {
+// defaults
+	private static final Charset CHARSET = Charset.forName(CardStack.CHARSET);
+	private static final int PAGE_SHIFT = 24; // 16MB pages of side text
+	private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+	private static final int INITIAL_CAPACITY = 1024;
+
+// card columns
+	private int count;
+	private int[] easeBias = new int[INITIAL_CAPACITY];
+	private long[] lastSeenTime = new long[INITIAL_CAPACITY];
+	private int[] viewCount = new int[INITIAL_CAPACITY];
+	private long[] textStart = new long[INITIAL_CAPACITY * 2]; // side A at 2 * index, side B at 2 * index + 1
+	private int[] textLength = new int[INITIAL_CAPACITY * 2];
+
+// side text pages
+	private byte[][] pages = new byte[4][];
+	private int pageCount;
+	private int pageUsed; // bytes used in the last page
+	private SideTextFile textFile; // where the texts left in the file are read from, null if there aren't any
+
+// public static methods
+	/**
+	 * Creates a new CardStore by reading it from a file, without creating any Card objects for text files.
+	 * @param fileName The name of the file to open and read from.
+	 * @return A new CardStore with the cards in file order.
+	 * @throws IOException If the file can't be read.
+	 */
+	public static CardStore createFromFile(String fileName) throws IOException {
+		CardStore store = new CardStore();
+		if(BinaryCardFile.isBinaryFile(fileName)) {
+			for(Card card : BinaryCardFile.readAll(fileName)) store.add(card);
+			return store;
+		}
+		MappedCardReader reader = new MappedCardReader(fileName);
+		try {
+			while(reader.readCard(store) >= 0) { /* keep reading */ }
+		} finally {
+			reader.close();
+		}
+		return store;
+	}
+
+	/**
+	 * Creates a new CardStore by reading it from a file, leaving the side texts in the file.
+	 * Binary and compressed files can't be read from a text at a time, so their texts are kept in the store as usual.
+	 * @param fileName The name of the file to open and read from.
+	 * @param textCacheBytes Roughly how much memory the texts read from the file can take.
+	 * @return A new CardStore with the cards in file order.
+	 * @throws IOException If the file can't be read.
+	 */
+	public static CardStore createFromFile(String fileName, long textCacheBytes) throws IOException {
+		if(!canLeaveTextInFile(fileName)) return createFromFile(fileName);
+		CardStore store = createLazy(fileName, textCacheBytes);
+		MappedCardReader reader = new MappedCardReader(fileName);
+		try {
+			while(reader.readCardLazily(store) >= 0) { /* keep reading */ }
+		} catch(IOException e) {
+			store.close();
+			throw e;
+		} finally {
+			reader.close();
+		}
+		return store;
+	}
+
+	/**
+	 * Creates an empty CardStore for cards whose side texts stay in a file, see MappedCardReader.readCardLazily.
+	 * @param fileName The deck file the texts are in, an uncompressed text one.
+	 * @param textCacheBytes Roughly how much memory the texts read from the file can take.
+	 * @return The new CardStore.
+	 * @throws IOException If the file can't be opened.
+	 */
+	public static CardStore createLazy(String fileName, long textCacheBytes) throws IOException {
+		final CardStore store = new CardStore();
+		store.textFile = new SideTextFile(fileName, textCacheBytes, new SideTextFile.Locator() { // texts by slot
+			public long getOffset(int slot) {
+				return ~store.textStart[slot];
+			}
+
+			public int getLength(int slot) {
+				return store.textLength[slot];
+			}
+		});
+		return store;
+	}
+
+	/**
+	 * @param fileName A deck file.
+	 * @return Whether it's an uncompressed text deck, which the side texts can be left in.
+	 */
+	public static boolean canLeaveTextInFile(String fileName) {
+		return !BinaryCardFile.isBinaryFile(fileName) && CompressedFile.getFormat(fileName) == CompressedFile.NONE;
+	}
+
+	/**
+	 * Sees whether writing cards to a file rewrites the file a store's texts are left in.
+	 * @param cards The cards to be written.
+	 * @param fileName The file they're written to.
+	 * @return A TextFileRewrite to tell about the writing, or null if none of the cards are from such a store.
+	 */
+	static TextFileRewrite startRewrite(List<Card> cards, String fileName) {
+		File file = new File(fileName).getAbsoluteFile();
+		for(Card card : cards) {
+			CardStore store = getStore(card);
+			if(store == null || store.textFile == null) continue;
+			if(!new File(store.textFile.getFileName()).getAbsoluteFile().equals(file)) return null; // from a store reading another file
+			return new TextFileRewrite(store);
+		}
+		return null;
+	}
+
+// public methods
+	/**
+	 * Adds a copy of a Card to this store.
+	 * @param card The Card to copy.
+	 * @return The new card's index.
+	 */
+	public int add(Card card) {
+		byte[] sideA = card.getSideA().getBytes(CHARSET);
+		byte[] sideB = card.getSideB().getBytes(CHARSET);
+		return add(sideA, sideA.length, sideB, sideB.length, card.getEaseBias(), card.getLastSeenTime(), card.getViewCount());
+	}
+
+	/**
+	 * Adds a card to this store from already encoded side text.
+	 * @return The new card's index.
+	 */
+	public int add(byte[] sideA, int sideALength, byte[] sideB, int sideBLength, int easeBias, long lastSeenTime, int viewCount) {
+		if(count == this.easeBias.length) grow();
+		int index = count++;
+		this.easeBias[index] = easeBias;
+		this.lastSeenTime[index] = lastSeenTime;
+		this.viewCount[index] = viewCount;
+		textStart[index * 2] = addText(sideA, sideALength);
+		textLength[index * 2] = sideALength;
+		textStart[index * 2 + 1] = addText(sideB, sideBLength);
+		textLength[index * 2 + 1] = sideBLength;
+		return index;
+	}
+
+	/**
+	 * Adds a card whose side texts stay in the file, for a store made by createLazy.
+	 * @return The new card's index.
+	 */
+	public int addLazily(long sideAOffset, int sideALength, long sideBOffset, int sideBLength, int easeBias, long lastSeenTime, int viewCount) {
+		if(textFile == null) throw new IllegalStateException("this store keeps its texts itself");
+		if(count == this.easeBias.length) grow();
+		int index = count++;
+		this.easeBias[index] = easeBias;
+		this.lastSeenTime[index] = lastSeenTime;
+		this.viewCount[index] = viewCount;
+		textStart[index * 2] = ~sideAOffset; // negative, so getText knows it's in the file
+		textLength[index * 2] = sideALength;
+		textStart[index * 2 + 1] = ~sideBOffset;
+		textLength[index * 2 + 1] = sideBLength;
+		return index;
+	}
+
+	/**
+	 * Gets the side texts of cards from this store into the cache on a background thread,
+	 * if they're left in the file. Cards from elsewhere are ignored.
+	 * @param cards Cards likely to be wanted soon.
+	 */
+	public void readAhead(List<Card> cards) {
+		if(textFile == null) return;
+		int[] slots = new int[cards.size() * 2];
+		int n = 0;
+		for(Card card : cards) {
+			if(!(card instanceof StoredCard) || ((StoredCard)card).store != this) continue;
+			int index = ((StoredCard)card).index;
+			for(int slot = index * 2; slot <= index * 2 + 1; ++slot) {
+				if(textStart[slot] < 0) slots[n++] = slot; // not in memory already
+			}
+		}
+		if(n > 0) textFile.readAhead(Arrays.copyOf(slots, n));
+	}
+
+	/**
+	 * Lets go of the deck file, if the side texts were left in it. Its texts read as empty after that.
+	 */
+	public void close() {
+		if(textFile != null) textFile.close();
+	}
+
+	/**
+	 * @return Like "1234 cached texts, 96% hits", or null if the texts aren't left in the file.
+	 */
+	public String getTextStatistics() {
+		return textFile != null ? textFile.getStatistics() : null;
+	}
+
+	/**
+	 * @return The number of cards in this store.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @param index A card index.
+	 * @return A Card view of that card, reading and writing through to this store.
+	 */
+	public Card getCard(int index) {
+		checkIndex(index);
+		return new StoredCard(this, index);
+	}
+
+	public int getEaseBias(int index) {
+		checkIndex(index);
+		return easeBias[index];
+	}
+
+	public long getLastSeenTime(int index) {
+		checkIndex(index);
+		return lastSeenTime[index];
+	}
+
+	public String getSideA(int index) {
+		checkIndex(index);
+		return getText(index * 2);
+	}
+
+	public String getSideB(int index) {
+		checkIndex(index);
+		return getText(index * 2 + 1);
+	}
+
+	public int getViewCount(int index) {
+		checkIndex(index);
+		return viewCount[index];
+	}
+
+	/**
+	 * Same as Card.setSeen(boolean, long) for the card at index.
+	 */
+	public void setSeen(int index, boolean wasEasy, long seenTime) {
+		checkIndex(index);
+		easeBias[index] = Card.getEaseBiasAfter(easeBias[index], wasEasy);
+		++viewCount[index];
+		lastSeenTime[index] = seenTime;
+	}
+
+	/**
+	 * @return A new CardStack of every card in this store, in store order.
+	 */
+	public CardStack createStack() {
+		int[] order = new int[count];
+		for(int i = 0; i < count; ++i) order[i] = i;
+		return new CardStack(new IndexList(this, order));
+	}
+
+	/**
+	 * @return A new empty CardStack that keeps its cards in this store.
+	 */
+	public CardStack createEmptyStack() {
+		return new CardStack(new IndexList(this, new int[0]));
+	}
+
+// private methods
+	private void checkIndex(int index) {
+		if(index < 0 || index >= count) throw new IndexOutOfBoundsException("card " + index + " of " + count);
+	}
+
+	private void grow() {
+		int capacity = easeBias.length + (easeBias.length >> 1);
+		easeBias = Arrays.copyOf(easeBias, capacity);
+		lastSeenTime = Arrays.copyOf(lastSeenTime, capacity);
+		viewCount = Arrays.copyOf(viewCount, capacity);
+		textStart = Arrays.copyOf(textStart, capacity * 2);
+		textLength = Arrays.copyOf(textLength, capacity * 2);
+	}
+
+	/**
+	 * Copies text into the pages.
+	 * @return Where it went: page number in the high bits, offset within the page in the low PAGE_SHIFT bits.
+	 */
+	private long addText(byte[] text, int length) {
+		if(pageCount == 0 || pageUsed + length > PAGE_SIZE) {
+			if(pageCount == pages.length) pages = Arrays.copyOf(pages, pageCount * 2);
+			pages[pageCount++] = new byte[Math.max(PAGE_SIZE, length)]; // an enormous text gets a page to itself
+			pageUsed = 0;
+		}
+		long start = ((long)(pageCount - 1) << PAGE_SHIFT) | pageUsed;
+		System.arraycopy(text, 0, pages[pageCount - 1], pageUsed, length);
+		pageUsed += length;
+		return start;
+	}
+
+	private String getText(int slot) {
+		long start = textStart[slot];
+		if(start < 0) return textFile.read(slot);
+		byte[] page = pages[(int)(start >>> PAGE_SHIFT)];
+		return new String(page, (int)(start & (PAGE_SIZE - 1)), textLength[slot], CHARSET);
+	}
+
+	/**
+	 * Like getText, but a text left in the file isn't cached, see SideTextFile.readUncached.
+	 */
+	private String getTextUncached(int slot) {
+		return textStart[slot] < 0 ? textFile.readUncached(slot) : getText(slot);
+	}
+
+	/**
+	 * @return The index of a card from this store, or -1 for one from elsewhere.
+	 */
+	private int indexOf(Card card) {
+		if(card instanceof StoredCard && ((StoredCard)card).store == this) return ((StoredCard)card).index;
+		if(card instanceof StatsCopy && ((StatsCopy)card).store == this) return ((StatsCopy)card).index;
+		return -1;
+	}
+
+// private static helpers
+	/**
+	 * @return The index of a card in its store, or -1 if it's not a store's card, see getStore.
+	 * Copies of a card's stats aren't the card, so they're -1 too.
+	 */
+	static int getIndex(Card card) {
+		return card instanceof StoredCard ? ((StoredCard)card).index : -1;
+	}
+
+	/**
+	 * @return The store a card is from, or null if it's not from one.
+	 */
+	static CardStore getStore(Card card) {
+		if(card instanceof StoredCard) return ((StoredCard)card).store;
+		if(card instanceof StatsCopy) return ((StatsCopy)card).store;
+		return null;
+	}
+
+// private helper classes
+	/**
+	 * A Card that is really an index into a CardStore.
+	 */
+	private static class StoredCard extends Card {
+		private final CardStore store;
+		private int index; // only changed by IndexList while sorting
+
+		StoredCard(CardStore store, int index) {
+			super(null, null);
+			this.store = store;
+			this.index = index;
+		}
+
+		@Override
+		public int getEaseBias() {
+			return store.easeBias[index];
+		}
+
+		@Override
+		public long getLastSeenTime() {
+			return store.lastSeenTime[index];
+		}
+
+		@Override
+		public String getSideA() {
+			return store.getText(index * 2);
+		}
+
+		@Override
+		public String getSideB() {
+			return store.getText(index * 2 + 1);
+		}
+
+		@Override
+		public int getViewCount() {
+			return store.viewCount[index];
+		}
+
+		@Override
+		public void setSeen(boolean wasEasy, long seenTime) {
+			store.setSeen(index, wasEasy, seenTime);
+		}
+
+		/**
+		 * Copies just the stats when the sides are in the file, so copying a whole deck doesn't read them all in.
+		 */
+		@Override
+		Card snapshot(int easeBias, long lastSeenTime, int viewCount) {
+			if(store.textFile == null) return super.snapshot(easeBias, lastSeenTime, viewCount);
+			return new StatsCopy(store, index, easeBias, lastSeenTime, viewCount);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if(!(other instanceof StoredCard)) return false;
+			StoredCard card = (StoredCard)other;
+			return card.store == store && card.index == index;
+		}
+
+		@Override
+		public int hashCode() {
+			return index;
+		}
+	}
+
+	/**
+	 * A copy of a card's stats, whose sides are still read through the store.
+	 */
+	private static class StatsCopy extends Card {
+		private final CardStore store;
+		private final int index;
+
+		StatsCopy(CardStore store, int index, int easeBias, long lastSeenTime, int viewCount) {
+			super(null, null, easeBias, lastSeenTime, viewCount);
+			this.store = store;
+			this.index = index;
+		}
+
+		@Override
+		public String getSideA() {
+			return store.getTextUncached(index * 2);
+		}
+
+		@Override
+		public String getSideB() {
+			return store.getTextUncached(index * 2 + 1);
+		}
+	}
+
+	/**
+	 * Keeps a store whose side texts are left in a file in step with CardStack.write rewriting that file.
+	 * Told where each card went as it's written, it lets go of the file while it's replaced
+	 * and then moves the store's texts to their places in the new one.
+	 */
+	static class TextFileRewrite implements SafeFileWriter.ReplaceListener {
+		private static final int LINE_SEPARATOR_LENGTH = System.getProperty("line.separator").length(); // what BufferedWriter.newLine writes
+
+		private final CardStore store;
+		private final long[] sideAStarts; // by card index, -1 for a card that isn't written
+
+		private TextFileRewrite(CardStore store) {
+			this.store = store;
+			sideAStarts = new long[store.count];
+			Arrays.fill(sideAStarts, -1);
+		}
+
+		/**
+		 * @param card A card about to be written, which is ignored if it's not from the store.
+		 * @param position Where its side A starts in the new file. Side B follows on the next line.
+		 */
+		void cardWritten(Card card, long position) {
+			int index = store.indexOf(card);
+			if(index >= 0 && index < sideAStarts.length) sideAStarts[index] = position;
+		}
+
+		public void replacing() {
+			store.textFile.replacing();
+		}
+
+		public void replaced(boolean done) {
+			store.textFile.replaced(done ? new Runnable() {
+				public void run() {
+					relocate();
+				}
+			} : null);
+		}
+
+		private void relocate() {
+			long[] textStart = store.textStart;
+			int[] textLength = store.textLength;
+			for(int index = 0; index < sideAStarts.length; ++index) {
+				int slot = index * 2;
+				if(textStart[slot] >= 0) continue; // kept in memory
+				long start = sideAStarts[index];
+				if(start < 0) { // not in the deck any more, there's nothing to read
+					textStart[slot] = textStart[slot + 1] = ~0L;
+					textLength[slot] = textLength[slot + 1] = 0;
+				} else {
+					textStart[slot] = ~start;
+					textStart[slot + 1] = ~(start + textLength[slot] + LINE_SEPARATOR_LENGTH);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The CardSequence behind a CardStack that runs on a CardStore: just an IntRope of card indices.
+	 * Cards from other places are copied into the store when added.
+	 */
+	static class IndexList extends CardSequence {
+		private final CardStore store;
+		private final IntRope order = new IntRope();
+		private final StoredCard view; // handed out by cardFor
+
+		IndexList(CardStore store, int[] indices) {
+			this.store = store;
+			view = new StoredCard(store, 0);
+			order.setAll(indices, indices.length);
+		}
+
+		@Override
+		CardSequence copy() {
+			return new IndexList(store, order.toArray());
+		}
+
+		@Override
+		public Card get(int position) {
+			return store.getCard(order.get(position));
+		}
+
+		@Override
+		public Card set(int position, Card card) {
+			return store.getCard(order.set(position, indexOf(card)));
+		}
+
+		@Override
+		public boolean add(Card card) {
+			order.add(indexOf(card));
+			++modCount;
+			return true;
+		}
+
+		@Override
+		public void add(int position, Card card) {
+			if(position < 0 || position > order.size()) throw new IndexOutOfBoundsException("position " + position + " of " + order.size());
+			order.insert(position, indexOf(card));
+			++modCount;
+		}
+
+		@Override
+		public Card remove(int position) {
+			++modCount;
+			return store.getCard(order.remove(position));
+		}
+
+		@Override
+		Card removeLast() {
+			++modCount;
+			return store.getCard(order.removeLast());
+		}
+
+		@Override
+		public void clear() {
+			order.clear();
+			++modCount;
+		}
+
+		@Override
+		public int size() {
+			return order.size();
+		}
+
+		@Override
+		void shuffleCards(Random random) {
+			int[] indices = order.toArray();
+			shuffle(indices, random);
+			order.setAll(indices, indices.length);
+		}
+
+		/**
+		 * A stable sort of the indices, comparing through two reusable views.
+		 */
+		@Override
+		void sortCards(final Comparator<Card> comparator) {
+			final StoredCard left = new StoredCard(store, 0), right = new StoredCard(store, 0);
+			int[] indices = order.toArray();
+			if(!sortByKeys(indices, comparator)) {
+				IntRope.sort(indices, indices.length, new IntRope.Comparator() {
+					public int compare(int index1, int index2) {
+						left.index = index1;
+						right.index = index2;
+						return comparator.compare(left, right);
+					}
+				});
+			}
+			order.setAll(indices, indices.length);
+		}
+
+		/**
+		 * The same view every time, pointed at the index.
+		 */
+		@Override
+		Card cardFor(int index) {
+			view.index = index;
+			return view;
+		}
+
+		private int indexOf(Card card) {
+			if(card instanceof StoredCard && ((StoredCard)card).store == store) return ((StoredCard)card).index;
+			return store.add(card);
+		}
+	}
+}
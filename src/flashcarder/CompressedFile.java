@@ -0,0 +1,268 @@
+package flashcarder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * @author Atlee
+ *
+ * Lets decks be kept gzip or zlib (deflate) compressed, which text decks shrink well under,
+ * so they take less disk and come off slow network shares quicker.
+ *
+ * A compressed file is recognized by its first bytes, whatever it's called: gzip by its magic number,
+ * zlib by a valid header whose start also inflates cleanly, since a text deck could start with "x^".
+ * Decompressing streams straight into the reader. Compressing happens on a thread of its own,
+ * while the caller carries on encoding cards: blocks of encoded bytes are handed over through a short
+ * queue, so the two overlap and neither gets far ahead of the other.
+ * A file that's rewritten keeps the compression it had, and a new file is gzipped if its name ends in ".gz".
+ *
+ * Example:
+ *		int format = CompressedFile.getFormat("somecards.txt");
+ *		InputStream input = CompressedFile.openInput(new FileInputStream("somecards.txt"), format);
+ *		..
+ *		OutputStream compressed = CompressedFile.compress(output, CompressedFile.getFormatForWriting("somecards.txt.gz"));
+ *		.. write to compressed ..
+ *		compressed.close(); // finishes compressing, output stays open
+ */
+public class CompressedFile {
+// defaults
+	public static final int NONE = 0;
+	public static final int GZIP = 1;
+	public static final int ZLIB = 2;
+	private static final int BUFFER_SIZE = 256 << 10; // compressed bytes read or written at a time
+	private static final int BLOCK_SIZE = 256 << 10; // encoded bytes handed to the compressing thread at a time
+	private static final int BLOCKS_IN_FLIGHT = 4; // how far encoding can get ahead of compressing
+	private static final int ZLIB_TRIAL_BYTES = 4096; // inflated to tell a zlib file from text that happens to look like one
+	private static final String GZIP_EXTENSION = ".gz";
+
+// public static methods
+	/**
+	 * @param fileName The name of a file.
+	 * @return GZIP, ZLIB, or NONE if it isn't compressed, doesn't exist or can't be read.
+	 */
+	public static int getFormat(String fileName) {
+		byte[] head = new byte[ZLIB_TRIAL_BYTES];
+		int length = 0;
+		try {
+			InputStream input = new FileInputStream(fileName);
+			try {
+				for(int count = 0; count >= 0 && length < head.length; count = input.read(head, length, head.length - length)) {
+					length += count;
+				}
+			} finally {
+				input.close();
+			}
+		} catch(IOException e) { return NONE; }
+		return getFormat(head, length);
+	}
+
+	/**
+	 * @param fileName The name of a file about to be written.
+	 * @return The format the file has now if it exists, otherwise GZIP if its name ends in ".gz", otherwise NONE.
+	 */
+	public static int getFormatForWriting(String fileName) {
+		int format = getFormat(fileName);
+		if(format == NONE && fileName.endsWith(GZIP_EXTENSION) && !new File(fileName).exists()) format = GZIP;
+		return format;
+	}
+
+	/**
+	 * @param input A compressed stream, or not.
+	 * @param format What getFormat said about it.
+	 * @return A stream of the decompressed bytes, or input itself if format is NONE. Closing it closes input.
+	 * @throws IOException If the gzip header can't be read.
+	 */
+	public static InputStream openInput(InputStream input, int format) throws IOException {
+		if(format == GZIP) return new GZIPInputStream(input, BUFFER_SIZE);
+		if(format == ZLIB) return new InflaterInputStream(input, new Inflater(), BUFFER_SIZE);
+		return input;
+	}
+
+	/**
+	 * @param output Where the compressed bytes go.
+	 * @param format How to compress them.
+	 * @return A stream to write the uncompressed bytes to, compressed on another thread,
+	 * or output itself if format is NONE. Closing it finishes compressing and flushes output, but leaves it open.
+	 * Use it from one thread.
+	 */
+	public static OutputStream compress(OutputStream output, int format) {
+		if(format == NONE) return output;
+		return new PipelinedOutput(output, format);
+	}
+
+// private static helpers
+	/**
+	 * @param head The start of a file, ZLIB_TRIAL_BYTES long unless the file is shorter.
+	 * @param length How much of head there is.
+	 */
+	private static int getFormat(byte[] head, int length) {
+		if(length >= 2 && (head[0] & 0xFF) == 0x1F && (head[1] & 0xFF) == 0x8B) return GZIP;
+		if(length >= 2 && (head[0] & 0x0F) == 8 && (head[0] & 0xFF) >> 4 <= 7 && (head[1] & 0x20) == 0
+			&& ((head[0] & 0xFF) << 8 | (head[1] & 0xFF)) % 31 == 0
+		) {
+			Inflater inflater = new Inflater();
+			try {
+				inflater.setInput(head, 0, length);
+				byte[] scratch = new byte[ZLIB_TRIAL_BYTES];
+				while(!inflater.finished() && !inflater.needsInput() && !inflater.needsDictionary()) inflater.inflate(scratch);
+				if(inflater.finished()) return ZLIB; // the whole file, checksum and all
+				return length == head.length && inflater.needsInput() ? ZLIB : NONE; // or the first few KB of a longer one
+			} catch(DataFormatException e) { return NONE; }
+			finally { inflater.end(); }
+		}
+		return NONE;
+	}
+
+// private helper classes
+	/**
+	 * Collects written bytes into blocks and compresses them on its own thread.
+	 * A block with a negative length says there's no more.
+	 */
+	private static class PipelinedOutput extends OutputStream {
+		private final OutputStream output;
+		private final BlockingQueue<byte[]> freeBlocks = new ArrayBlockingQueue<byte[]>(BLOCKS_IN_FLIGHT);
+		private final BlockingQueue<Block> fullBlocks = new ArrayBlockingQueue<Block>(BLOCKS_IN_FLIGHT);
+		private final Thread compressor;
+		private volatile IOException problem; // what went wrong compressing, if anything
+		private byte[] block;
+		private int length; // bytes in block
+		private boolean closed;
+
+		PipelinedOutput(OutputStream output, final int format) {
+			this.output = output;
+			for(int i = 1; i < BLOCKS_IN_FLIGHT; ++i) freeBlocks.add(new byte[BLOCK_SIZE]);
+			block = new byte[BLOCK_SIZE];
+			compressor = new Thread(new Runnable() {
+				public void run() { compress(format); }
+			}, "CompressedFile");
+			compressor.setDaemon(true);
+			compressor.start();
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if(length == block.length) handOver();
+			block[length++] = (byte)b;
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int count) throws IOException {
+			while(count > 0) {
+				if(length == block.length) handOver();
+				int n = Math.min(count, block.length - length);
+				System.arraycopy(bytes, offset, block, length, n);
+				length += n;
+				offset += n;
+				count -= n;
+			}
+		}
+
+		/**
+		 * Hands the last block over, waits for it all to be compressed and flushes output.
+		 * @throws IOException If compressing or writing went wrong.
+		 */
+		@Override
+		public void close() throws IOException {
+			if(closed) return;
+			closed = true;
+			try {
+				fullBlocks.put(new Block(block, length));
+				fullBlocks.put(new Block(null, -1));
+				compressor.join();
+			} catch(InterruptedException e) {
+				compressor.interrupt();
+				Thread.currentThread().interrupt();
+				throw new IOException("interrupted while compressing");
+			}
+			if(problem != null) throw problem;
+		}
+
+		/**
+		 * Passes the full block to the compressor, and takes an empty one, waiting if it's behind.
+		 */
+		private void handOver() throws IOException {
+			if(problem != null) throw problem;
+			try {
+				fullBlocks.put(new Block(block, length));
+				block = freeBlocks.take();
+			} catch(InterruptedException e) {
+				compressor.interrupt();
+				Thread.currentThread().interrupt();
+				throw new IOException("interrupted while compressing");
+			}
+			length = 0;
+		}
+
+		/**
+		 * The compressing thread. After a problem it carries on taking blocks, so the writer never waits forever.
+		 */
+		private void compress(int format) {
+			Deflater deflater = new Deflater();
+			try {
+				DeflaterOutputStream compressed = null;
+				try {
+					OutputStream kept = new KeptOpen(output);
+					compressed = format == GZIP ? new GZIPOutputStream(kept, BUFFER_SIZE) : new DeflaterOutputStream(kept, deflater, BUFFER_SIZE);
+				} catch(IOException e) { problem = e; }
+				for(;;) {
+					Block full = fullBlocks.take();
+					if(full.length < 0) break;
+					if(problem == null) {
+						try { compressed.write(full.bytes, 0, full.length); }
+						catch(IOException e) { problem = e; }
+					}
+					if(full.bytes.length == BLOCK_SIZE) freeBlocks.offer(full.bytes);
+				}
+				if(problem == null) compressed.close(); // finishes, and flushes output
+			} catch(IOException e) {
+				problem = e;
+			} catch(InterruptedException e) {
+				problem = new IOException("interrupted while compressing");
+			} finally {
+				deflater.end();
+			}
+		}
+	}
+
+	/**
+	 * Passes everything on, except that closing only flushes.
+	 */
+	private static class KeptOpen extends FilterOutputStream {
+		KeptOpen(OutputStream output) {
+			super(output);
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int count) throws IOException {
+			out.write(bytes, offset, count);
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.flush();
+		}
+	}
+
+	private static class Block {
+		final byte[] bytes;
+		final int length;
+
+		Block(byte[] bytes, int length) {
+			this.bytes = bytes;
+			this.length = length;
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package flashcarder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Atlee
+ *
+ * A deck's cards with their stats as they were at one moment, for writing the deck out
+ * while reviewing goes on.
+ *
+ * Taking one only copies three numbers a card into arrays and keeps hold of the cards for their sides,
+ * which never change, so it's quick enough to do while holding whatever lock guards the cards.
+ * toCardStack then makes the copies to write, without the lock, on the thread that writes them.
+ *
+ * Example:
+ *		DeckStats stats;
+ *		synchronized(lock) { stats = new DeckStats(cards); }
+ *		stats.toCardStack().write("somecards.txt", 1); // not locked
+ */
+public class DeckStats {
+// data
+	private final Card[] cards;
+	private final int[] easeBias;
+	private final long[] lastSeenTime;
+	private final int[] viewCount;
+
+	/**
+	 * @param cards The cards, in the order they'll be written. Not kept.
+	 */
+	DeckStats(List<Card> cards) {
+		this.cards = cards.toArray(new Card[cards.size()]);
+		easeBias = new int[this.cards.length];
+		lastSeenTime = new long[this.cards.length];
+		viewCount = new int[this.cards.length];
+		for(int i = 0; i < this.cards.length; ++i) {
+			Card card = this.cards[i];
+			easeBias[i] = card.getEaseBias();
+			lastSeenTime[i] = card.getLastSeenTime();
+			viewCount[i] = card.getViewCount();
+		}
+	}
+
+	public int getCount() {
+		return cards.length;
+	}
+
+	/**
+	 * @return Copies of the cards with the stats they had, in order, see Card.snapshot(int, long, int).
+	 */
+	public CardStack toCardStack() {
+		ArrayList<Card> copies = new ArrayList<Card>(cards.length);
+		for(int i = 0; i < cards.length; ++i) copies.add(cards[i].snapshot(easeBias[i], lastSeenTime[i], viewCount[i]));
+		return new CardStack(copies);
+	}
+}
@@ -0,0 +1,139 @@
+package flashcarder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * @author Atlee
+ *
+ * A few numbers about a deck, kept beside the deck file as deckfile.summary,
+ * so a list of decks can show them without reading every deck.
+ *
+ * ReviewSession writes the summary whenever it saves, and once a deck it didn't have one for is loaded.
+ * The summary notes how long the deck file and its journal were and when the deck file was changed,
+ * and a summary that doesn't match them any more is ignored. A binary deck's card count can be read
+ * from the start of the file anyway, so it's known even without a summary.
+ *
+ * Example:
+ *		DeckSummary summary = DeckSummary.read("somecards.txt");
+ *		if(summary != null) System.out.println(summary); // like "1200 cards, 35 to do"
+ */
+public class DeckSummary {
+// defaults
+	private static final String SUFFIX = ".summary";
+	public static final int UNKNOWN = -1;
+
+// data
+	private final int cardCount;
+	private final int toDoCount; // UNKNOWN if it isn't known
+	private final long savedTime; // unix time in milliseconds when the numbers were right, 0 if unknown
+
+// public static methods
+	/**
+	 * Reads a deck's summary, or failing that what can be found out cheaply.
+	 * @param deckFileName The name of the deck file.
+	 * @return The summary, or null if there isn't one that's up to date and the deck isn't a binary one.
+	 */
+	public static DeckSummary read(String deckFileName) {
+		Properties properties = new Properties();
+		try {
+			InputStream input = new FileInputStream(getSummaryFileName(deckFileName));
+			try { properties.load(input); }
+			finally { input.close(); }
+			long[] versions = getVersions(deckFileName);
+			if(Long.parseLong(properties.getProperty("deckLength")) == versions[0]
+				&& Long.parseLong(properties.getProperty("deckTime")) == versions[1]
+				&& Long.parseLong(properties.getProperty("journalLength")) == versions[2]
+			) {
+				return new DeckSummary(Integer.parseInt(properties.getProperty("cards"))
+					,Integer.parseInt(properties.getProperty("toDo"))
+					,Long.parseLong(properties.getProperty("saved"))
+				);
+			}
+		} catch(IOException e) { /* none, the next best thing will have to do */ }
+		catch(RuntimeException e) { /* damaged, same thing */ }
+		int cardCount = BinaryCardFile.readCardCount(deckFileName);
+		return cardCount >= 0 ? new DeckSummary(cardCount, UNKNOWN, 0) : null;
+	}
+
+	/**
+	 * @param deckFileName The name of a deck file.
+	 * @return The name of its summary file.
+	 */
+	public static String getSummaryFileName(String deckFileName) {
+		return deckFileName + SUFFIX;
+	}
+
+// public methods
+	/**
+	 * @param cardCount The number of cards in the deck.
+	 * @param toDoCount The number of them still to review, or UNKNOWN.
+	 * @param savedTime When those were the numbers, unix time in milliseconds, or 0 if unknown.
+	 */
+	public DeckSummary(int cardCount, int toDoCount, long savedTime) {
+		this.cardCount = cardCount;
+		this.toDoCount = toDoCount;
+		this.savedTime = savedTime;
+	}
+
+	public int getCardCount() {
+		return cardCount;
+	}
+
+	/**
+	 * @return The number of cards still to review as of getSavedTime, or UNKNOWN.
+	 */
+	public int getToDoCount() {
+		return toDoCount;
+	}
+
+	public long getSavedTime() {
+		return savedTime;
+	}
+
+	/**
+	 * Writes the summary beside a deck, matching the deck file and journal as they are now.
+	 * @param deckFileName The name of the deck file.
+	 * @throws IOException If it can't be written. It's only a summary, nothing is lost.
+	 */
+	public void write(String deckFileName) throws IOException {
+		long[] versions = getVersions(deckFileName);
+		final Properties properties = new Properties();
+		properties.setProperty("cards", Integer.toString(cardCount));
+		properties.setProperty("toDo", Integer.toString(toDoCount));
+		properties.setProperty("saved", Long.toString(savedTime));
+		properties.setProperty("deckLength", Long.toString(versions[0]));
+		properties.setProperty("deckTime", Long.toString(versions[1]));
+		properties.setProperty("journalLength", Long.toString(versions[2]));
+		SafeFileWriter.write(getSummaryFileName(deckFileName), 0, new SafeFileWriter.Content() {
+			public void writeTo(OutputStream output) throws IOException {
+				properties.store(output, "FlashCarder deck summary");
+			}
+		});
+	}
+
+	/**
+	 * @return Like "1200 cards, 35 to do", or "1200 cards" if the number to do isn't known.
+	 */
+	@Override
+	public String toString() {
+		String text = cardCount + (cardCount == 1 ? " card" : " cards");
+		if(toDoCount != UNKNOWN) text += ", " + toDoCount + " to do";
+		return text;
+	}
+
+// private static helpers
+	/**
+	 * What a sidecar file notes to tell whether it still matches its deck, see SessionSnapshot too.
+	 * @return The deck file's length and time, and its journal's length, 0 for a file that isn't there.
+	 */
+	static long[] getVersions(String deckFileName) {
+		File deck = new File(deckFileName);
+		File journal = new File(ReviewJournal.getJournalFileName(deckFileName));
+		return new long[] { deck.length(), deck.lastModified(), journal.length() };
+	}
+}
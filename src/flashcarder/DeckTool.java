@@ -0,0 +1,76 @@
+package flashcarder;
+
+/**
+ * @author Atlee
+ *
+ * Command line deck utilities, for use without the GUI.
+ *
+ * Usage:
+ *		java -cp flashcarder.jar flashcarder.DeckTool import somecards.txt somecards.fcd
+ *		java -cp flashcarder.jar flashcarder.DeckTool export somecards.fcd somecards.txt
+ *		java -cp flashcarder.jar flashcarder.DeckTool dedup somecards.txt merged.txt [similarity]
+ *
+ * import converts a text deck into the binary format, export converts any deck back to text.
+ * dedup merges duplicate and near duplicate cards into one, see DuplicateFinder; a similarity of 1
+ * only merges exact duplicates, the default is 0.8. The merged deck is written as text.
+ * Text decks can be gzip or zlib compressed, see CompressedFile; export to a name ending in .gz to compress one.
+ */
+public class DeckTool {
+	private static final String USAGE =
+		"usage: DeckTool import <text deck> <binary deck>\n"
+		+ "       DeckTool export <deck> <text deck>\n"
+		+ "       DeckTool dedup <deck> <text deck> [similarity]";
+	private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+	public static void main(String args[]) {
+		if(args.length < 3) usage();
+		String command = args[0];
+		if(args.length > (command.equals("dedup") ? 4 : 3)) usage(); // only dedup takes a fourth
+		if(command.equals("import")) {
+			CardStack cardStack = open(args[1]);
+			if(!cardStack.writeToBinaryFile(args[2])) fail("There was a problem writing " + args[2]);
+			System.out.println(cardStack.getCount() + " cards written to " + args[2]);
+		} else if(command.equals("export")) {
+			CardStack cardStack = open(args[1]);
+			if(!cardStack.writeToFile(args[2])) fail("There was a problem writing " + args[2]);
+			System.out.println(cardStack.getCount() + " cards written to " + args[2]);
+		} else if(command.equals("dedup")) {
+			DuplicateFinder finder = new DuplicateFinder(PARALLELISM);
+			if(args.length == 4) finder.setSimilarity(parseSimilarity(args[3]));
+			CardStack cardStack = open(args[1]);
+			long start = System.nanoTime();
+			CardStack merged;
+			try { merged = finder.removeDuplicates(cardStack); }
+			catch(InterruptedException e) { fail("Interrupted"); return; }
+			System.out.println(String.format("%d exact and %d near duplicates merged in %.3f s"
+				, finder.getExactCount(), finder.getNearCount(), (System.nanoTime() - start) / 1e9));
+			if(!merged.writeToFile(args[2])) fail("There was a problem writing " + args[2]);
+			System.out.println(merged.getCount() + " cards written to " + args[2]);
+		} else usage();
+	}
+
+// private static helpers
+	private static CardStack open(String fileName) {
+		CardStack cardStack = CardStack.createFromFile(fileName);
+		if(cardStack == null) fail("There was a problem opening " + fileName);
+		return cardStack;
+	}
+
+	private static double parseSimilarity(String similarity) {
+		try {
+			double value = Double.parseDouble(similarity);
+			if(value >= 0 && value <= 1) return value;
+		} catch(NumberFormatException e) { /* same as any other bad similarity */ }
+		usage();
+		return 0;
+	}
+
+	private static void fail(String message) {
+		System.err.println(message);
+		System.exit(1);
+	}
+
+	private static void usage() {
+		fail(USAGE);
+	}
+}
@@ -0,0 +1,156 @@
+package flashcarder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Atlee
+ *
+ * A priority queue of Cards by due time, earliest first.
+ * Cards due at the same time come out in the order they went in.
+ * Adding and removing are O(log n); it's a binary heap on parallel arrays.
+ */
+class DueQueue {
+// data
+	private Card[] cards = new Card[16];
+	private long[] dueTimes = new long[16];
+	private long[] sequence = new long[16]; // tie-breaker, order of arrival
+	private long nextSequence;
+	private int size;
+
+// methods
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return The earliest due time, or Long.MAX_VALUE if empty.
+	 */
+	long peekDueTime() {
+		return size == 0 ? Long.MAX_VALUE : dueTimes[0];
+	}
+
+	/**
+	 * @return The earliest due card without removing it, or null if empty.
+	 */
+	Card peekCard() {
+		return size == 0 ? null : cards[0];
+	}
+
+	/**
+	 * Looks at the earliest due cards without removing them.
+	 * Only the top of the heap is visited, so the cost depends on count, not on the size of the queue.
+	 * @param count How many cards to look at.
+	 * @return Up to count cards, earliest due first.
+	 */
+	List<Card> peek(int count) {
+		List<Card> earliest = new ArrayList<Card>(Math.min(count, size));
+		int[] frontier = new int[count * 2 + 1]; // heap positions that could come next
+		int frontierSize = 0;
+		if(size > 0) frontier[frontierSize++] = 0;
+		while(earliest.size() < count && frontierSize > 0) {
+			int best = 0; // the frontier is tiny, just scan it
+			for(int i = 1; i < frontierSize; ++i) {
+				int at = frontier[i], bestAt = frontier[best];
+				if(before(dueTimes[at], sequence[at], dueTimes[bestAt], sequence[bestAt])) best = i;
+			}
+			int at = frontier[best];
+			frontier[best] = frontier[--frontierSize];
+			earliest.add(cards[at]);
+			for(int child = at * 2 + 1; child <= at * 2 + 2 && child < size; ++child) frontier[frontierSize++] = child;
+		}
+		return earliest;
+	}
+
+	/**
+	 * @param index Position in heap order, not due order.
+	 * @return The card at that position.
+	 */
+	Card get(int index) {
+		return cards[index];
+	}
+
+	void add(Card card, long dueTime) {
+		if(size == cards.length) {
+			int capacity = size + (size >> 1);
+			cards = Arrays.copyOf(cards, capacity);
+			dueTimes = Arrays.copyOf(dueTimes, capacity);
+			sequence = Arrays.copyOf(sequence, capacity);
+		}
+		int at = size++;
+		long order = nextSequence++;
+		while(at > 0) { // sift up
+			int parent = (at - 1) >>> 1;
+			if(!before(dueTime, order, dueTimes[parent], sequence[parent])) break;
+			move(parent, at);
+			at = parent;
+		}
+		cards[at] = card;
+		dueTimes[at] = dueTime;
+		sequence[at] = order;
+	}
+
+	/**
+	 * Removes the earliest due card.
+	 * @return The card, or null if empty.
+	 */
+	Card remove() {
+		if(size == 0) return null;
+		Card first = cards[0];
+		--size;
+		Card card = cards[size];
+		long dueTime = dueTimes[size];
+		long order = sequence[size];
+		cards[size] = null;
+		int at = 0;
+		for(;;) { // sift down
+			int child = at * 2 + 1;
+			if(child >= size) break;
+			if(child + 1 < size && before(dueTimes[child + 1], sequence[child + 1], dueTimes[child], sequence[child])) ++child;
+			if(!before(dueTimes[child], sequence[child], dueTime, order)) break;
+			move(child, at);
+			at = child;
+		}
+		if(size > 0) {
+			cards[at] = card;
+			dueTimes[at] = dueTime;
+			sequence[at] = order;
+		}
+		return first;
+	}
+
+	/**
+	 * @return Every card in the order remove would hand them out, earliest due first. O(n log n).
+	 */
+	ArrayList<Card> getInDueOrder() {
+		DueQueue copy = new DueQueue();
+		copy.cards = Arrays.copyOf(cards, Math.max(size, 1));
+		copy.dueTimes = Arrays.copyOf(dueTimes, Math.max(size, 1));
+		copy.sequence = Arrays.copyOf(sequence, Math.max(size, 1));
+		copy.size = size;
+		ArrayList<Card> inOrder = new ArrayList<Card>(size);
+		while(!copy.isEmpty()) inOrder.add(copy.remove());
+		return inOrder;
+	}
+
+	void clear() {
+		Arrays.fill(cards, 0, size, null);
+		size = 0;
+	}
+
+// private methods
+	private static boolean before(long dueTime1, long order1, long dueTime2, long order2) {
+		return dueTime1 < dueTime2 || (dueTime1 == dueTime2 && order1 < order2);
+	}
+
+	private void move(int from, int to) {
+		cards[to] = cards[from];
+		dueTimes[to] = dueTimes[from];
+		sequence[to] = sequence[from];
+	}
+}
@@ -0,0 +1,565 @@
+package flashcarder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * @author Atlee
+ *
+ * Finds cards that say the same thing, and merges them.
+ *
+ * Both sides of every card are normalized first: lower case, letters and digits only,
+ * one space between words. Cards whose normalized sides are the same are exact duplicates.
+ * Cards whose sides share most of their three letter pieces are near duplicates, "the house" and "the houses"
+ * say; how much they need to share is set by setSimilarity, as the Jaccard similarity of the pieces.
+ * Near duplicates have to have the same numbers in them, though, and a group of near duplicates is
+ * a card and the cards that are near duplicates of it, not of each other, so groups don't drift.
+ *
+ * Comparing every card with every other would take forever on a big deck, so instead:
+ *		exact duplicates are found by a hash of the normalized sides, and
+ *		near duplicates by MinHash with locality sensitive hashing: a 16 value MinHash signature of each
+ *		card's pieces, in 4 bands of 4 values. Cards with a band in common are candidates, and only
+ *		candidates are compared, so the whole thing is close to linear in the number of cards.
+ * Each card's signature is worked out once, and kept as a hash of each band.
+ * Each pass then sorts one kind of hash in buckets, all on several threads.
+ * Pieces that are on a lot of cards, like the ones in a word that's on every card, are left out of the signatures;
+ * otherwise cards with little more than those in common would land in the same bands by the thousand.
+ * They still count when candidates are compared.
+ * With a similarity of 0.8, a pair that really is 0.8 similar has a given band in common with a chance of
+ * 0.8^4, about 0.41, so it's a candidate in at least one of the four bands about 9 times out of 10.
+ * More alike pairs are all but certain to be found; pairs right at the threshold are sometimes missed.
+ *
+ * A group of duplicates is merged into one card in the place of the group's first card,
+ * with the text of the most viewed one and the best of their stats, see mergeCards.
+ *
+ * Example:
+ *		DuplicateFinder finder = new DuplicateFinder(Runtime.getRuntime().availableProcessors());
+ *		CardStack merged = finder.removeDuplicates(cardStack);
+ *		System.out.println(finder.getExactCount() + " exact and " + finder.getNearCount() + " near duplicates");
+ */
+public class DuplicateFinder {
+// defaults
+	public static final double DEFAULT_SIMILARITY = 0.8;
+	private static final int GRAM_LENGTH = 3;
+	private static final int BAND_COUNT = 4;
+	private static final int BAND_ROWS = 4; // MinHash values per band
+	private static final int BIN_BITS = 4; // 1 << BIN_BITS = BAND_COUNT * BAND_ROWS signature values
+	private static final int BUCKET_BITS = 8; // each pass sorts its hashes in this many bits' worth of buckets
+	private static final int TASKS_PER_THREAD = 4;
+	private static final int SAMPLE_SIZE = 4096; // cards looked at to find the common pieces
+	private static final int COMMON_RATIO = 20; // pieces on more than 1 in this many cards are common
+
+// data
+	private final int parallelism;
+	private double similarity = DEFAULT_SIMILARITY;
+	private int exactCount; // cards merged into an exact duplicate by the last run
+	private int nearCount; // cards merged into a near duplicate by the last run
+
+// public static methods
+	/**
+	 * Merges a group of duplicates into one card, with the text of the most viewed of them
+	 * (the first, if that's a tie), the most views of any of them, the latest time any of them was seen,
+	 * and their ease biases averaged, weighted by their views, so it stays in step with the view count.
+	 * @param cards The duplicates, in deck order.
+	 * @return A new card.
+	 */
+	public static Card mergeCards(List<Card> cards) {
+		Card text = cards.get(0);
+		int viewCount = 0;
+		long lastSeenTime = 0;
+		long weightedBias = 0, views = 0, bias = 0;
+		for(Card card : cards) {
+			if(card.getViewCount() > text.getViewCount()) text = card;
+			viewCount = Math.max(viewCount, card.getViewCount());
+			lastSeenTime = Math.max(lastSeenTime, card.getLastSeenTime());
+			weightedBias += (long)card.getEaseBias() * card.getViewCount();
+			views += card.getViewCount();
+			bias += card.getEaseBias();
+		}
+		int easeBias = (int)Math.round(views > 0 ? (double)weightedBias / views : (double)bias / cards.size());
+		return new Card(text.getSideA(), text.getSideB(), easeBias, lastSeenTime, viewCount);
+	}
+
+// public methods
+	/**
+	 * @param parallelism The number of threads to use.
+	 */
+	public DuplicateFinder(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * @param similarity How alike two cards have to be to be near duplicates, from 0 to 1; 1 finds only exact duplicates.
+	 */
+	public void setSimilarity(double similarity) {
+		this.similarity = similarity;
+	}
+
+	/**
+	 * @return The number of cards merged into an exact duplicate by the last run.
+	 */
+	public int getExactCount() {
+		return exactCount;
+	}
+
+	/**
+	 * @return The number of cards merged into a near duplicate, but not an exact one, by the last run.
+	 */
+	public int getNearCount() {
+		return nearCount;
+	}
+
+	/**
+	 * Groups the duplicates among some cards.
+	 * @param cards The cards.
+	 * @return The position of the first card of each card's group, by position; a card with no duplicates is its own group.
+	 * @throws InterruptedException If the thread is interrupted while the passes run.
+	 */
+	public int[] findGroups(List<Card> cards) throws InterruptedException {
+		int count = cards.size();
+		int[] parent = new int[count]; // union-find, each root is the card its group was checked against
+		int[] sizes = new int[count]; // by root
+		int[] members = new int[count];
+		for(int i = 0; i < count; ++i) {
+			parent[i] = members[i] = i;
+			sizes[i] = 1;
+		}
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			runPass(pool, cards, members, hashCards(pool, cards, members, null)[0], true, parent, sizes);
+			members = roots(parent); // the rest are already spoken for
+			exactCount = count - members.length;
+			nearCount = 0;
+			if(similarity < 1) {
+				long[][] bandKeys = hashCards(pool, cards, members, commonGrams(cards, members));
+				for(int band = 0; band < BAND_COUNT; ++band) {
+					runPass(pool, cards, members, bandKeys[band], false, parent, sizes);
+					bandKeys[band] = null;
+				}
+				nearCount = count - exactCount - roots(parent).length;
+			}
+		} finally {
+			pool.shutdown();
+		}
+		int[] firsts = new int[count]; // by root
+		Arrays.fill(firsts, -1);
+		int[] groups = new int[count];
+		for(int i = 0; i < count; ++i) {
+			int root = find(parent, i);
+			if(firsts[root] < 0) firsts[root] = i;
+			groups[i] = firsts[root];
+		}
+		return groups;
+	}
+
+	/**
+	 * Merges the duplicates in a stack.
+	 * @param cardStack The cards, which aren't changed.
+	 * @return A new stack with each group of duplicates merged into one card, in place of the first of them.
+	 * @throws InterruptedException If the thread is interrupted while the passes run.
+	 */
+	public CardStack removeDuplicates(CardStack cardStack) throws InterruptedException {
+		int count = cardStack.getCount();
+		ArrayList<Card> cards = new ArrayList<Card>(count);
+		for(int i = 0; i < count; ++i) cards.add(cardStack.getCard(i));
+		int[] groups = findGroups(cards);
+
+		int[] groupNumbers = new int[count]; // by first card, into duplicates, or -1 for a card on its own
+		Arrays.fill(groupNumbers, -1);
+		ArrayList<List<Card>> duplicates = new ArrayList<List<Card>>();
+		for(int i = 0; i < count; ++i) {
+			int first = groups[i];
+			if(first == i) continue;
+			if(groupNumbers[first] < 0) {
+				groupNumbers[first] = duplicates.size();
+				List<Card> group = new ArrayList<Card>();
+				group.add(cards.get(first));
+				duplicates.add(group);
+			}
+			duplicates.get(groupNumbers[first]).add(cards.get(i));
+		}
+		ArrayList<Card> merged = new ArrayList<Card>(count - exactCount - nearCount);
+		for(int i = 0; i < count; ++i) {
+			if(groups[i] != i) continue;
+			merged.add(groupNumbers[i] < 0 ? cards.get(i) : mergeCards(duplicates.get(groupNumbers[i])));
+		}
+		return new CardStack(merged);
+	}
+
+// private methods
+	/**
+	 * Hashes the member cards on several threads.
+	 * @param members Positions of the cards to hash.
+	 * @param commonGrams Null to hash their normalized sides, otherwise hash each band of their MinHash signature,
+	 * leaving out these pieces, in ascending order.
+	 * @return The hashes by position in members, one array of them, or one for each band.
+	 */
+	private long[][] hashCards(ForkJoinPool pool, final List<Card> cards, final int[] members, final long[] commonGrams) throws InterruptedException {
+		final boolean exact = commonGrams == null;
+		final long[][] keys = new long[exact ? 1 : BAND_COUNT][members.length];
+		int taskCount = parallelism * TASKS_PER_THREAD;
+		List<Callable<Void>> hashers = new ArrayList<Callable<Void>>();
+		for(int t = 0; t < taskCount; ++t) {
+			final int from = (int)((long)members.length * t / taskCount), to = (int)((long)members.length * (t + 1) / taskCount);
+			hashers.add(new Callable<Void>() {
+				public Void call() {
+					long[] signature = new long[1 << BIN_BITS];
+					long[] bands = new long[BAND_COUNT];
+					for(int m = from; m < to; ++m) {
+						Card card = cards.get(members[m]);
+						if(exact) {
+							keys[0][m] = exactKey(card);
+							continue;
+						}
+						bandKeys(card, commonGrams, signature, members[m], bands);
+						for(int band = 0; band < BAND_COUNT; ++band) keys[band][m] = bands[band];
+					}
+					return null;
+				}
+			});
+		}
+		invokeAll(pool, hashers);
+		return keys;
+	}
+
+	/**
+	 * Groups the member cards by hash, checks the cards in each group against each other
+	 * and joins up the ones that turn out to be duplicates.
+	 * @param members Positions of the cards to look at, in ascending order.
+	 * @param keys Their hashes.
+	 * @param exact Whether the hashes are of the normalized sides, or a band of the signature.
+	 * @param parent The groups so far, see join.
+	 * @param sizes The sizes of the groups, by root.
+	 */
+	private void runPass(ForkJoinPool pool, final List<Card> cards, final int[] members, final long[] keys, final boolean exact, final int[] parent, final int[] sizes) throws InterruptedException {
+		int taskCount = parallelism * TASKS_PER_THREAD;
+
+		final int[] starts = new int[(1 << BUCKET_BITS) + 1]; // counting sort of the members by the top bits of their key
+		for(long key : keys) ++starts[bucket(key) + 1];
+		for(int b = 1; b < starts.length; ++b) starts[b] += starts[b - 1];
+		final int[] bucketed = new int[members.length]; // positions in members, in ascending order within each bucket
+		int[] next = Arrays.copyOf(starts, starts.length);
+		for(int m = 0; m < members.length; ++m) bucketed[next[bucket(keys[m])]++] = m;
+
+		List<Callable<long[]>> checkers = new ArrayList<Callable<long[]>>();
+		for(int t = 0; t < taskCount; ++t) {
+			final int fromBucket = (1 << BUCKET_BITS) * t / taskCount, toBucket = (1 << BUCKET_BITS) * (t + 1) / taskCount;
+			checkers.add(new Callable<long[]>() {
+				public long[] call() {
+					PairList pairs = new PairList();
+					for(int b = fromBucket; b < toBucket; ++b) {
+						checkBucket(cards, members, keys, bucketed, starts[b], starts[b + 1], exact, parent, sizes, pairs);
+					}
+					return pairs.toArray();
+				}
+			});
+		}
+		for(long[] pairs : invokeAll(pool, checkers)) {
+			for(long pair : pairs) join(cards, (int)(pair >>> 32), (int)pair, exact, parent, sizes);
+		}
+	}
+
+	/**
+	 * Sorts one bucket by key, then checks each card in a run of equal keys against the run's first card,
+	 * or failing that the card before it, which is linear however long the run. It's really their groups'
+	 * roots that are checked, see join.
+	 * Only reads parent and sizes, which don't change until every bucket's been checked.
+	 * @param pairs Where the roots of the groups that can be joined go.
+	 */
+	private void checkBucket(List<Card> cards, int[] members, long[] keys, int[] bucketed, int start, int end, boolean exact, int[] parent, int[] sizes, PairList pairs) {
+		int count = end - start;
+		if(count < 2) return;
+		long[] bucketKeys = new long[count];
+		for(int i = 0; i < count; ++i) bucketKeys[i] = keys[bucketed[start + i]];
+		int[] order = KeySort.order(bucketKeys); // stable, so each run stays in deck order
+		for(int run = 0; run < count; ) {
+			int runEnd = run + 1;
+			while(runEnd < count && bucketKeys[order[runEnd]] == bucketKeys[order[run]]) ++runEnd;
+			int first = members[bucketed[start + order[run]]];
+			for(int i = run + 1; i < runEnd; ++i) {
+				int card = members[bucketed[start + order[i]]];
+				int previous = members[bucketed[start + order[i - 1]]];
+				if(!checkRoots(cards, first, card, exact, parent, sizes, pairs) && previous != first) {
+					checkRoots(cards, previous, card, exact, parent, sizes, pairs);
+				}
+			}
+			run = runEnd;
+		}
+	}
+
+	/**
+	 * Checks whether two cards' groups can be joined, and if so adds their roots to pairs.
+	 * @return True if they can.
+	 */
+	private boolean checkRoots(List<Card> cards, int position1, int position2, boolean exact, int[] parent, int[] sizes, PairList pairs) {
+		int root1 = root(parent, position1), root2 = root(parent, position2);
+		if(root1 == root2 || !exact && sizes[root1] > 1 && sizes[root2] > 1) return false; // nothing to do, or not allowed
+		if(!isDuplicate(cards.get(root1), cards.get(root2), exact)) return false;
+		pairs.add(root1, root2);
+		return true;
+	}
+
+	/**
+	 * Joins two groups checked by checkRoots. Exact duplicates are the same as each other, so any two of their groups
+	 * can be joined. Near duplicates aren't, and joining every near duplicate of a near duplicate would chain
+	 * "card 1" to "card 2" to "card 3" and so on into one big group, so a card only joins a group of near duplicates
+	 * if it's a near duplicate of the group's root, and two groups of more than one never join.
+	 * Roots that changed since they were checked are checked again.
+	 */
+	private void join(List<Card> cards, int checked1, int checked2, boolean exact, int[] parent, int[] sizes) {
+		int root1 = find(parent, checked1), root2 = find(parent, checked2);
+		if(root1 == root2) return;
+		if(!exact) {
+			if(sizes[root1] > 1 && sizes[root2] > 1) return;
+			if((root1 != checked1 || root2 != checked2) && !isDuplicate(cards.get(root1), cards.get(root2), false)) return;
+		}
+		if(sizes[root2] > 1 || (sizes[root1] == 1 && root2 < root1)) { // the bigger group's root stays, or the first card's
+			int swap = root1; root1 = root2; root2 = swap;
+		}
+		parent[root2] = root1;
+		sizes[root1] += sizes[root2];
+	}
+
+	/**
+	 * Cards with different numbers in them are never near duplicates, since the number is usually the point of the card.
+	 */
+	private boolean isDuplicate(Card card1, Card card2, boolean exact) {
+		if(exact) {
+			return normalize(card1.getSideA()).equals(normalize(card2.getSideA()))
+				&& normalize(card1.getSideB()).equals(normalize(card2.getSideB()));
+		}
+		if(!numbers(card1.getSideA()).equals(numbers(card2.getSideA())) || !numbers(card1.getSideB()).equals(numbers(card2.getSideB()))) return false;
+		long[] grams1 = grams(card1, true), grams2 = grams(card2, true);
+		if(grams1.length == 0 || grams2.length == 0) return false;
+		int shared = 0;
+		for(int i = 0, j = 0; i < grams1.length && j < grams2.length; ) {
+			if(grams1[i] < grams2[j]) ++i;
+			else if(grams1[i] > grams2[j]) ++j;
+			else { ++shared; ++i; ++j; }
+		}
+		return shared >= similarity * (grams1.length + grams2.length - shared);
+	}
+
+	private static long exactKey(Card card) {
+		return mix(hash(normalize(card.getSideA())) * 31 + hash(normalize(card.getSideB())));
+	}
+
+	/**
+	 * Each band of the card's MinHash signature, hashed into a key. Cards with the same key for a band are candidates.
+	 * The signature is made with one hash per piece: the top bits choose one of its values, the rest compete
+	 * for the lowest, and values no piece landed in borrow the next one round.
+	 * @param commonGrams Pieces to leave out, unless they're all there is.
+	 * @param signature Scratch space.
+	 * @param position Makes unique keys for a card with no pieces, so it isn't a candidate for anything.
+	 * @param bands Where the keys go.
+	 */
+	private static void bandKeys(Card card, long[] commonGrams, long[] signature, int position, long[] bands) {
+		long[] grams = grams(card, false); // repeats make no difference to a minimum
+		if(grams.length == 0) {
+			for(int band = 0; band < BAND_COUNT; ++band) bands[band] = mix(position ^ 0x5DEECE66DL);
+			return;
+		}
+		Arrays.fill(signature, Long.MAX_VALUE);
+		int signed = 0;
+		for(int pass = 0; pass < 2 && signed == 0; ++pass) {
+			for(long gram : grams) {
+				if(pass == 0 && Arrays.binarySearch(commonGrams, gram) >= 0) continue;
+				int bin = (int)(gram >>> (64 - BIN_BITS));
+				long value = gram & (-1L >>> BIN_BITS);
+				if(value < signature[bin]) signature[bin] = value;
+				++signed;
+			}
+		}
+		int bins = signature.length;
+		for(int band = 0; band < BAND_COUNT; ++band) {
+			long key = band;
+			for(int row = band * BAND_ROWS; row < (band + 1) * BAND_ROWS; ++row) {
+				int filled = row;
+				while(signature[filled] == Long.MAX_VALUE) filled = (filled + 1) % bins; // there's at least one
+				long value = filled == row ? signature[row] : mix(signature[filled] + row); // borrowed differently by each
+				key = mix(key * 31 + value);
+			}
+			bands[band] = key;
+		}
+	}
+
+	/**
+	 * @return The pieces on more than 1 in COMMON_RATIO of a sample of the member cards, in ascending order.
+	 */
+	private static long[] commonGrams(List<Card> cards, int[] members) {
+		int sampleSize = Math.min(SAMPLE_SIZE, members.length);
+		HashMap<Long, Integer> counts = new HashMap<Long, Integer>();
+		for(int i = 0; i < sampleSize; ++i) {
+			Card card = cards.get(members[(int)((long)members.length * i / sampleSize)]); // spread over the deck
+			for(long gram : grams(card, true)) {
+				Integer count = counts.get(gram);
+				counts.put(gram, count == null ? 1 : count + 1);
+			}
+		}
+		long[] common = new long[counts.size()];
+		int count = 0;
+		for(Map.Entry<Long, Integer> entry : counts.entrySet()) {
+			if(entry.getValue() * COMMON_RATIO > sampleSize) common[count++] = entry.getKey();
+		}
+		common = Arrays.copyOf(common, count);
+		Arrays.sort(common);
+		return common;
+	}
+
+	/**
+	 * @param set Whether to sort them and drop repeats.
+	 * @return The hashes of the card's three letter pieces, with a space before and after each side;
+	 * side A's differ from side B's.
+	 */
+	private static long[] grams(Card card, boolean set) {
+		String sideA = normalize(card.getSideA()), sideB = normalize(card.getSideB());
+		long[] grams = new long[gramCount(sideA) + gramCount(sideB)];
+		int count = 0;
+		for(int side = 0; side < 2; ++side) {
+			String text = side == 0 ? sideA : sideB;
+			int end = text.length() + 2;
+			for(int i = 0; i + GRAM_LENGTH <= end; ++i) {
+				long gram = (long)side << 48 | (long)paddedChar(text, i) << 32 | (long)paddedChar(text, i + 1) << 16 | paddedChar(text, i + 2);
+				grams[count++] = mix(gram);
+			}
+		}
+		if(!set) return grams;
+		Arrays.sort(grams, 0, count);
+		int unique = 0;
+		for(int i = 0; i < count; ++i) {
+			if(unique == 0 || grams[i] != grams[unique - 1]) grams[unique++] = grams[i];
+		}
+		return unique == grams.length ? grams : Arrays.copyOf(grams, unique);
+	}
+
+	private static int gramCount(String normal) {
+		return Math.max(0, normal.length() + 2 - GRAM_LENGTH + 1);
+	}
+
+	/**
+	 * @return The character at position in the text with a space added before and after.
+	 */
+	private static char paddedChar(String text, int position) {
+		return position == 0 || position > text.length() ? ' ' : text.charAt(position - 1);
+	}
+
+	/**
+	 * @return The runs of digits in the text, with a space between each.
+	 */
+	private static String numbers(String text) {
+		StringBuilder numbers = new StringBuilder();
+		for(int i = 0; i < text.length(); ++i) {
+			char c = text.charAt(i);
+			if(!Character.isDigit(c)) continue;
+			if(numbers.length() > 0 && !Character.isDigit(text.charAt(i - 1))) numbers.append(' ');
+			numbers.append(c);
+		}
+		return numbers.toString();
+	}
+
+	/**
+	 * @return The text in lower case, letters and digits only, with one space between words.
+	 */
+	static String normalize(String text) {
+		StringBuilder normal = new StringBuilder(text.length());
+		boolean space = false;
+		for(int i = 0; i < text.length(); ++i) {
+			char c = text.charAt(i);
+			if(Character.isLetterOrDigit(c)) {
+				if(space && normal.length() > 0) normal.append(' ');
+				normal.append(Character.toLowerCase(c));
+				space = false;
+			} else space = true;
+		}
+		return normal.toString();
+	}
+
+	private static long hash(String text) {
+		long hash = 0xCBF29CE484222325L; // 64 bit FNV-1a
+		for(int i = 0; i < text.length(); ++i) hash = (hash ^ text.charAt(i)) * 0x100000001B3L;
+		return hash;
+	}
+
+	/**
+	 * Scrambles all the bits of a long into all the others, MurmurHash3's finalizer.
+	 */
+	private static long mix(long value) {
+		value ^= value >>> 33;
+		value *= 0xFF51AFD7ED558CCDL;
+		value ^= value >>> 33;
+		value *= 0xC4CEB9FE1A85EC53L;
+		return value ^ (value >>> 33);
+	}
+
+	private static int bucket(long key) {
+		return (int)(key >>> (64 - BUCKET_BITS));
+	}
+
+	private static int root(int[] parent, int position) {
+		while(parent[position] != position) position = parent[position];
+		return position;
+	}
+
+	/**
+	 * root with path halving, for when nothing else is reading parent.
+	 */
+	private static int find(int[] parent, int position) {
+		while(parent[position] != position) {
+			parent[position] = parent[parent[position]];
+			position = parent[position];
+		}
+		return position;
+	}
+
+	/**
+	 * @return The positions of the cards that are the first of their group, in ascending order.
+	 */
+	private static int[] roots(int[] parent) {
+		int count = 0;
+		for(int i = 0; i < parent.length; ++i) {
+			if(parent[i] == i) ++count;
+		}
+		int[] roots = new int[count];
+		count = 0;
+		for(int i = 0; i < parent.length; ++i) {
+			if(parent[i] == i) roots[count++] = i;
+		}
+		return roots;
+	}
+
+	private static <T> List<T> invokeAll(ForkJoinPool pool, List<Callable<T>> tasks) throws InterruptedException {
+		List<T> results = new ArrayList<T>();
+		try {
+			for(Future<T> future : pool.invokeAll(tasks)) results.add(future.get());
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+		return results;
+	}
+
+// private helper classes
+	/**
+	 * A growable list of pairs of card positions, each packed into a long.
+	 */
+	private static class PairList {
+		private long[] pairs = new long[16];
+		private int count;
+
+		void add(int position1, int position2) {
+			if(count == pairs.length) pairs = Arrays.copyOf(pairs, count * 2);
+			pairs[count++] = (long)position1 << 32 | position2;
+		}
+
+		long[] toArray() {
+			return Arrays.copyOf(pairs, count);
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package flashcarder;
+
+import java.awt.Color;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import javax.swing.BorderFactory;
+import javax.swing.JLabel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * @author Atlee
+ *
+ * Notices when the event dispatch thread is too busy to answer, and notes down what it was doing.
+ *
+ * A watcher thread posts a small heartbeat to the EDT every HEARTBEAT_MILLIS and waits for it to run.
+ * If it hasn't run after the threshold, the EDT's stack is taken there and then, and once the heartbeat
+ * does run, the stall is logged with how long it took, stack and all. The log is rolled over to
+ * logfile.1 once it's MAX_LOG_BYTES long, so it never takes more than twice that.
+ * Every heartbeat's wait also goes to the "EdtWatchdog.latency" Metrics timer.
+ *
+ * The threshold, in milliseconds, and the log file come from the flashcarder.watchdog.threshold
+ * and flashcarder.watchdog.log system properties, if they're set.
+ *
+ * The heartbeats keep AWT from shutting down by itself once the windows are gone; stop the watchdog,
+ * or exit with System.exit.
+ *
+ * Example:
+ *		EdtWatchdog watchdog = new EdtWatchdog();
+ *		watchdog.start();
+ *		.. and to see how the EDT is doing:
+ *		frame.setGlassPane(..a panel holding watchdog.createOverlay()..);
+ */
+class EdtWatchdog {
+// defaults
+	private static final long HEARTBEAT_MILLIS = 100; // how often the EDT is checked on
+	private static final long THRESHOLD_MILLIS = 500; // busier than this is a stall
+	private static final long WINDOW_NANOS = 1000000000L; // the overlay's "worst lately" is over about this long
+	private static final long MAX_LOG_BYTES = 1 << 20;
+	private static final int OVERLAY_MILLIS = 500; // how often the overlay is brought up to date
+	private static final String LOG_NAME = ".flashcarder-stalls.log"; // in the user's home folder
+
+// metrics
+	private static final Metrics.Timer LATENCY_TIMER = Metrics.timer("EdtWatchdog.latency");
+	private static final Metrics.Counter STALLS = Metrics.counter("EdtWatchdog.stalls");
+
+// settings
+	private final long thresholdNanos;
+	private final File logFile;
+
+// data
+	private final Thread watcher;
+	private volatile boolean running;
+	private volatile Thread edt; // found by the first heartbeat
+	private long lastLatency, windowMax, recentMax, windowStart; // nanoseconds
+	private long stallCount, longestStall;
+
+	/**
+	 * Uses the threshold and log file from the system properties, or the defaults.
+	 */
+	EdtWatchdog() {
+		this(Long.getLong("flashcarder.watchdog.threshold", THRESHOLD_MILLIS)
+			,new File(System.getProperty("flashcarder.watchdog.log", new File(System.getProperty("user.home"), LOG_NAME).getPath()))
+		);
+	}
+
+	/**
+	 * @param thresholdMillis How long the EDT can take to get to a heartbeat before it counts as stalled.
+	 * @param logFile Where stalls are logged.
+	 */
+	EdtWatchdog(long thresholdMillis, File logFile) {
+		thresholdNanos = Math.max(thresholdMillis, 1) * 1000000L;
+		this.logFile = logFile;
+		watcher = new Thread(new Runnable() {
+			public void run() { watch(); }
+		}, "EdtWatchdog");
+		watcher.setDaemon(true);
+	}
+
+	void start() {
+		running = true;
+		watcher.start();
+	}
+
+	void stop() {
+		running = false;
+		watcher.interrupt();
+	}
+
+	/**
+	 * @return A label showing how long the EDT has been taking to answer, and the stalls so far,
+	 * brought up to date twice a second while it's showing. Make one and keep it. Use from the EDT.
+	 */
+	JLabel createOverlay() {
+		final JLabel label = new JLabel();
+		label.setOpaque(true);
+		label.setBackground(new Color(1.0f, 1.0f, 0.85f));
+		label.setBorder(BorderFactory.createCompoundBorder(BorderFactory.createLineBorder(Color.GRAY), BorderFactory.createEmptyBorder(2, 4, 2, 4)));
+		ActionListener updater = new ActionListener() {
+			public void actionPerformed(ActionEvent e) { if(label.isShowing()) label.setText(getStatistics()); }
+		};
+		label.setText(getStatistics());
+		new Timer(OVERLAY_MILLIS, updater).start();
+		return label;
+	}
+
+	/**
+	 * @return Like "UI 2 ms, worst lately 35 ms; 1 stall, longest 1240 ms".
+	 */
+	synchronized String getStatistics() {
+		return "UI " + lastLatency / 1000000L + " ms, worst lately " + Math.max(recentMax, windowMax) / 1000000L + " ms; "
+			+ stallCount + (stallCount == 1 ? " stall" : " stalls")
+			+ (stallCount > 0 ? ", longest " + longestStall / 1000000L + " ms" : "");
+	}
+
+// private methods
+	/**
+	 * The watcher thread: a heartbeat at a time, then a rest.
+	 */
+	private void watch() {
+		while(running) {
+			Heartbeat heartbeat = new Heartbeat();
+			long posted = System.nanoTime();
+			SwingUtilities.invokeLater(heartbeat);
+			StackTraceElement[] stack = null; // taken once the heartbeat is overdue
+			try {
+				synchronized(heartbeat) {
+					while(!heartbeat.ran) {
+						long waited = System.nanoTime() - posted;
+						if(stack == null && waited >= thresholdNanos) {
+							stack = getEdtStack();
+							heartbeat.wait();
+						} else {
+							heartbeat.wait(Math.max((thresholdNanos - waited) / 1000000L, 1));
+						}
+					}
+				}
+				long latency = heartbeat.ranAt - posted;
+				LATENCY_TIMER.record(latency);
+				record(latency, stack != null);
+				if(stack != null) log(latency, stack);
+				Thread.sleep(HEARTBEAT_MILLIS);
+			} catch(InterruptedException e) { return; }
+		}
+	}
+
+	private synchronized void record(long latency, boolean stalled) {
+		long now = System.nanoTime();
+		lastLatency = latency;
+		if(now - windowStart > WINDOW_NANOS) {
+			recentMax = windowMax;
+			windowMax = 0;
+			windowStart = now;
+		}
+		windowMax = Math.max(windowMax, latency);
+		if(stalled) {
+			++stallCount;
+			longestStall = Math.max(longestStall, latency);
+			STALLS.add(1);
+		}
+	}
+
+	/**
+	 * @return What the EDT is doing now, or null if it can't be found.
+	 */
+	private StackTraceElement[] getEdtStack() {
+		Thread thread = edt;
+		if(thread == null) { // it hasn't run a heartbeat yet, so go by its name
+			for(Thread candidate : Thread.getAllStackTraces().keySet()) {
+				if(candidate.getName().startsWith("AWT-EventQueue")) thread = candidate;
+			}
+		}
+		return thread != null ? thread.getStackTrace() : null;
+	}
+
+	/**
+	 * Adds a stall to the log, rolling it over first if it's full. Problems writing it are ignored,
+	 * it's only a log.
+	 */
+	private void log(long latency, StackTraceElement[] stack) {
+		StringBuilder entry = new StringBuilder();
+		entry.append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()))
+			.append(" EDT stalled for ").append(latency / 1000000L).append(" ms, after ")
+			.append(thresholdNanos / 1000000L).append(" ms it was at:\n");
+		if(stack == null || stack.length == 0) entry.append("\t(unknown)\n");
+		else for(StackTraceElement element : stack) entry.append("\tat ").append(element).append('\n');
+		entry.append('\n');
+		try {
+			if(logFile.length() > MAX_LOG_BYTES) {
+				File previous = new File(logFile.getPath() + ".1");
+				previous.delete();
+				logFile.renameTo(previous);
+			}
+			Writer writer = new OutputStreamWriter(new FileOutputStream(logFile, true), "UTF-8");
+			try { writer.write(entry.toString()); }
+			finally { writer.close(); }
+		} catch(IOException e) { /* only a log */ }
+	}
+
+// private helper classes
+	/**
+	 * Posted to the EDT, and notes when it got there.
+	 */
+	private class Heartbeat implements Runnable {
+		private boolean ran;
+		private long ranAt;
+
+		public void run() {
+			edt = Thread.currentThread();
+			synchronized(this) {
+				ranAt = System.nanoTime();
+				ran = true;
+				notifyAll();
+			}
+		}
+	}
+}
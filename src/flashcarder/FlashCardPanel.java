@@ -2,7 +2,12 @@ package flashcarder;
 
 import java.awt.*;
 import java.awt.event.MouseEvent;
-import java.awt.geom.Rectangle2D;
+import java.awt.font.FontRenderContext;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.swing.*;
 import javax.swing.border.Border;
 
@@ -24,6 +29,8 @@ import javax.swing.border.Border;
  *		card.set("el mar", "the sea", false);
  *		.. and when you want to change it, just call the set method again:
  *		card.set("la silla", "the chair", false);
+ *		.. and to have the fonts ready for whatever comes next:
+ *		card.prefetch(nextCards, false);
  *
  * Features:
  * 		Click-to-flip ease of use.
@@ -45,23 +52,36 @@ public class FlashCardPanel extends JPanel {
 	private static final Color COLOR_B = new Color(0.2f, 0.3f, 0.95f);
 	private static final String FONT_NAME = Font.SERIF;//"Arial Bold";
 	private static final int FONT_STYLE = Font.BOLD;
-	private static final int FONT_SIZE_MIN = 8; // these take effect in isFontSmallEnough(...)
+	private static final int FONT_SIZE_MIN = 8; // these take effect in findBestFont(...)
 	private static final int FONT_SIZE_MAX = 120;
-	private static final Font FONT = new Font(FONT_NAME, FONT_STYLE, FONT_SIZE_MAX);
 	private static final float TEXT_MARGIN_RATIO = 1.0f / 50.0f; // minimum space on left/right of text
 
+// prefetching
+	private static final ExecutorService PREFETCHER = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "FlashCardPanel prefetch");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		}
+	});
+
 // UI elements
 	private JPanel colorBar;
 	private JLabel contentLabel;
 	private Color colorA, colorB;
+	private final FontFitter fontFitter = new FontFitter(FONT_NAME, FONT_STYLE, FONT_SIZE_MIN, FONT_SIZE_MAX, TEXT_MARGIN_RATIO);
+	private final AtomicInteger prefetchGeneration = new AtomicInteger(); // bumped by each prefetch, so older ones give up
 
 // card content
 	private String sideA, sideB;
 
 // state
 	private boolean showingSideB;
-	private Rectangle2D totalSize;
-	private Dimension interiorSize;
+	private boolean contentDirty; // the label doesn't show the current side yet
+	private final FrameCoalescer contentUpdater = new FrameCoalescer(new Runnable() {
+		public void run() { updateContent(); }
+	});
 
 // public methods
 	/**
@@ -137,17 +157,40 @@ public class FlashCardPanel extends JPanel {
 		showSide(showSideB);
 	}
 
+	/**
+	 * Works out the fonts for cards likely to be shown soon, on a background thread,
+	 * so that showing them later only looks them up. Whatever an earlier call hasn't got to yet is dropped.
+	 * The sides are read on that thread too, since a card whose texts are left in the deck file reads them from disk.
+	 * Call from the event dispatch thread, like set.
+	 * @param cards The cards, most likely to be shown first.
+	 * @param showSideB Whether side B is shown first, so it's fitted first.
+	 */
+	public void prefetch(List<Card> cards, final boolean showSideB) {
+		final int generation = prefetchGeneration.incrementAndGet();
+		final Card[] pending = cards.toArray(new Card[cards.size()]);
+		final int width = contentLabel.getWidth(), height = contentLabel.getHeight(); // the size the fits are for
+		final FontRenderContext renderContext = getRenderContext();
+		if(width <= 0 || height <= 0 || pending.length == 0) return; // not laid out yet, nothing to fit to
+		PREFETCHER.execute(new Runnable() {
+			public void run() {
+				for(Card card : pending) {
+					if(prefetchGeneration.get() != generation) return; // superseded
+					fontFitter.fit(showSideB ? card.getSideB() : card.getSideA(), width, height, renderContext);
+					if(prefetchGeneration.get() != generation) return;
+					fontFitter.fit(showSideB ? card.getSideA() : card.getSideB(), width, height, renderContext);
+				}
+			}
+		});
+	}
+
 	/**
 	 * Show a specific side of this card.
 	 * @param showSideB Whether to show side B or side A.
 	 */
 	public void showSide(boolean showSideB) {
 		showingSideB = showSideB;
-		colorBar.setBackground(showingSideB ? colorB : colorA);
-
-		String text = showingSideB ? sideB : sideA;
-		contentLabel.setText(text);
-		contentLabel.setFont(findBestFontSize(FONT, text));
+		contentDirty = true;
+		contentUpdater.request(); // a burst of flips and new cards only shows the last
 	}
 
 // private GUI handler methods
@@ -155,59 +198,45 @@ public class FlashCardPanel extends JPanel {
 		flip();
 	}
 
-	private void updateDimension() {
-		Rectangle2D newSize = getBounds();
-		if(totalSize == null
-			|| newSize.getWidth() != totalSize.getWidth()
-			|| newSize.getHeight() != totalSize.getHeight()
-		) {
-			totalSize = newSize;
-			Insets insets = getInsets();
-			interiorSize = new Dimension(
-				(int)totalSize.getWidth() - insets.left - insets.right
-				,(int)totalSize.getHeight() - insets.top - insets.bottom
-			);
-			Dimension barSize = new Dimension(interiorSize.width, (int)((float)interiorSize.height * BAR_RATIO));
-			colorBar.setSize(barSize);
-			colorBar.setLocation(insets.left, insets.top);
-			Dimension contentSize = new Dimension(interiorSize.width, interiorSize.height - barSize.height);
-			contentLabel.setSize(contentSize);
-			contentLabel.setLocation(insets.left, insets.top + barSize.height);
-			contentLabel.setFont(findBestFontSize(FONT, contentLabel.getText()));
-		}
-	}
-
-	private boolean isFontSmallEnough(Font font, String text) {
-		FontMetrics metrics = new FontMetrics(font) {};
-		Rectangle2D textBounds = metrics.getStringBounds(text, null);
-		Dimension panelBounds = contentLabel.getSize();
-		return textBounds.getWidth() <= panelBounds.getWidth() * (1.0f - TEXT_MARGIN_RATIO)
-			&& textBounds.getHeight() <= panelBounds.getHeight()
-			&& textBounds.getHeight() * 8.0 <= panelBounds.getWidth();
+	/**
+	 * Puts the current side's color and text on show, if they aren't already.
+	 */
+	private void updateContent() {
+		if(!contentDirty) return;
+		contentDirty = false;
+		colorBar.setBackground(showingSideB ? colorB : colorA);
+		String text = showingSideB ? sideB : sideA;
+		contentLabel.setText(text);
+		contentLabel.setFont(findBestFont(text));
 	}
 
-	private Font findBestFontSize(Font font, String text) {
-		return recursiveFindBestFontSize(font, text, FONT_SIZE_MIN, FONT_SIZE_MAX, FONT_SIZE_MAX);
+	/**
+	 * The biggest font that fits the text in the content area, cached by FontFitter.
+	 * Measured the way the label will draw it.
+	 */
+	private Font findBestFont(String text) {
+		return fontFitter.fit(text, contentLabel.getWidth(), contentLabel.getHeight(), getRenderContext());
 	}
 
-	private Font recursiveFindBestFontSize(Font font, String text, int minFontSize, int fontSize, int maxFontSize) {
-		if(isFontSmallEnough(font, text)) { // the best size is between fontSize and maxFontSize
-			if(fontSize >= maxFontSize - 1) return font; // fontSize is the best
-			minFontSize = fontSize;
-			fontSize = (fontSize + maxFontSize) / 2;
-		} else if(fontSize > minFontSize) { // the best size is between minFontSize and maxFontSize
-			maxFontSize = fontSize;
-			fontSize = (minFontSize + fontSize) / 2;
-		} else return font; // can't get any smaller
-
-		font = new Font(FONT_NAME, FONT_STYLE, fontSize);
-		return recursiveFindBestFontSize(font, text, minFontSize, fontSize, maxFontSize);
+	private FontRenderContext getRenderContext() {
+		return contentLabel.getFontMetrics(contentLabel.getFont()).getFontRenderContext();
 	}
 
 // Component overrides
+	/**
+	 * Sizes the color bar and the content to fit this card, refitting the font if the content changed size.
+	 * Called by Swing whenever this card is resized, never while painting.
+	 */
 	@Override
-	public void paint(Graphics g) {
-		updateDimension();
-		super.paint(g);
+	public void doLayout() {
+		Insets insets = getInsets();
+		Dimension interiorSize = new Dimension(getWidth() - insets.left - insets.right, getHeight() - insets.top - insets.bottom);
+		Dimension barSize = new Dimension(interiorSize.width, (int)((float)interiorSize.height * BAR_RATIO));
+		colorBar.setBounds(insets.left, insets.top, barSize.width, barSize.height);
+		Dimension contentSize = new Dimension(interiorSize.width, interiorSize.height - barSize.height);
+		if(!contentSize.equals(contentLabel.getSize())) {
+			contentLabel.setBounds(insets.left, insets.top + barSize.height, contentSize.width, contentSize.height);
+			contentLabel.setFont(findBestFont(contentLabel.getText()));
+		}
 	}
 }
@@ -2,8 +2,20 @@ package flashcarder;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 import javax.swing.*;
+import javax.swing.event.MenuEvent;
+import javax.swing.event.MenuListener;
 
 /**
  * @author Atlee
@@ -26,57 +38,109 @@ public class FlashCarder {
 	private CardStackPanel cardStackFromPanel;
 //	private CardStackPanel cardStackHardPanel;
 	private CardStackPanel cardStackToPanel;
+	private CardSearchDialog searchDialog; // made the first time it's wanted
+	private JPanel latencyPane; // the frame's glass pane, showing how the EDT is doing
+
+// data constants
+	private static final int PREFETCH_COUNT = 3; // upcoming cards whose fonts are worked out in the background
+
+// metrics
+	private static final Metrics.Timer ANSWER_TIMER = Metrics.timer("FlashCarder.answer"); // from the click or key to the next card shown
+	private final EdtWatchdog watchdog = new EdtWatchdog(); // logs what the EDT was doing whenever it stalls
 
 // file fields
 	private static JFileChooser fileChooser = new JFileChooser(System.getProperty("user.dir"));
+	private static final String WORKSPACE_LIST = new File(System.getProperty("user.home"), ".flashcarder-workspace").getPath(); // the decks in the Decks menu
+	private static final String DECK_FILE_NAME = "flashcarder.deck"; // client property of the Decks menu's items
+	private static final String LAST_DECK = new File(System.getProperty("user.home"), ".flashcarder-last-deck").getPath(); // the deck shown at quitting, to carry on with
 	private String fileName;
+	private SwingWorker<IOException, Void> saver; // saving, null when done
 
 // data fields
-	private Card card;
-	private CardStack cardStackFrom; // pull cards from here
+	private final Workspace workspace = new Workspace(new Workspace.DeckFactory() { // the decks, the recently used ones kept open
+		public ReviewSession createSession(String deckFileName) {
+			return FlashCarder.createSession();
+		}
+
+		public AutoSaver.Listener createSaveListener(final String deckFileName) {
+			return new AutoSaver.Listener() {
+				public void saveFailed(final IOException problem) {
+					SwingUtilities.invokeLater(new Runnable() {
+						public void run() { if(deckFileName.equals(fileName)) showAutoSaveProblem(problem); }
+					});
+				}
+
+				public void saved() {
+					SwingUtilities.invokeLater(new Runnable() {
+						public void run() { if(deckFileName.equals(fileName)) showAutoSaveProblem(null); }
+					});
+				}
+			};
+		}
+	}, Runtime.getRuntime().maxMemory() / 2);
+	private ReviewSession session = createSession(); // the shown deck's cards, their order and their journal; empty until a deck is picked
+	private AutoSaver autoSaver; // saves answers soon after they're given, the shown deck's own; null while there's no deck to save
+	private boolean autoSaveFailed; // the file name says so
 //	private CardStack cardStackHard; // put difficult cards here when done
-	private CardStack cardStackTo; // put easy cards here when done
-	private boolean modified; // whether the file ought to be saved or not
 	private boolean showSideBFirst;
+	private Card shownCard; // the card on the panel, or null
 
 // public methods
 	public FlashCarder() {
+		try { workspace.readList(WORKSPACE_LIST); }
+		catch(IOException e) { /* the first time, no decks yet */ }
+		if(!"false".equals(System.getProperty("flashcarder.watchdog"))) watchdog.start();
 		setLookAndFeel();
 		frame = makeFrame();
 		clearCards();
 		frame.setVisible(true);
-		handleFileOpen();
+		String lastDeck = readLastDeck();
+		if(lastDeck != null && SessionSnapshot.exists(lastDeck)) switchToDeck(lastDeck); // carry on where it was left
+		else handleFileOpen();
 	}
 
 // private methods
 	private void clearCards() {
 		showSideBFirst = false;
 		setCard(null);
-		cardStackFrom = null;
 //		cardStackHard = null;
-		cardStackTo = null;
-		modified = false;
+	}
+
+	/**
+	 * Picks the scheduler, once at startup.
+	 * Spaced repetition is used when the flashcarder.scheduler system property is "leitner".
+	 */
+	private static CardScheduler createScheduler() {
+		return ReviewSession.createScheduler(System.getProperty("flashcarder.scheduler"));
+	}
+
+	/**
+	 * Makes a session for a deck, journaled and set up for big decks and Edit / Find.
+	 * If the flashcarder.textcache system property is set, to a number of megabytes, text decks' sides
+	 * are left in the file and only that much of them is kept in memory; such decks can't be searched.
+	 */
+	private static ReviewSession createSession() {
+		ReviewSession session = new ReviewSession(createScheduler(), true);
+		session.setInterning(true); // big generated decks repeat a lot of sides
+		session.setIndexing(true); // for Edit / Find
+		session.setTextCacheSize(Long.getLong("flashcarder.textcache", 0) << 20); // megabytes, for decks too big to hold
+		session.setResuming(true); // reopened decks carry on where they were
+		return session;
 	}
 
 	private boolean getNextCard() {
-		if(cardStackFrom != null) {
-			setCard(cardStackFrom.removeNextCard());
-			cardStackFromPanel.setCurrentCount(cardStackFrom.getCount());
-			return card != null;
-		}
-		return false;
+		showCard(session.next());
+		return session.getCard() != null;
 	}
 
 	/**
-	 * Puts the current Card back into the From set.
-	 * Does not mark the card as seen.
+	 * Puts the current Card back into the From set and shows the next one.
+	 * Only marks the card as seen if the scheduler wants to know about difficult cards.
 	 */
 	private void putCardInFromStack() {
-		if(cardStackFrom != null && card != null) {
-			cardStackFrom.addCardRandomly(card);
-			cardStackFromPanel.setCurrentCount(cardStackFrom.getCount());
-			card = null;
-		}
+		if(session.isRestoring()) return; // the card shown is only the snapshot's copy for now
+		showCard(session.answer(false));
+		if(session.isModified() && autoSaver != null) autoSaver.changed();
 	}
 
 //	/**
@@ -95,22 +159,35 @@ public class FlashCarder {
 //	}
 
 	/**
-	 * Puts the current Card into the To set.
+	 * Puts the current Card into the To set and shows the next one.
 	 * Marks the card as seen and easy.
 	 * Doesn't call Card.randomize().
 	 */
 	private void putCardInToStack() {
-		if(cardStackTo != null && card != null) {
-			//card.setSeen(true);
-			cardStackTo.addCard(card);
-			cardStackToPanel.setCurrentCount(cardStackTo.getCount());
-			card = null;
-			modified = true;
-		}
+		if(session.isRestoring()) return;
+		showCard(session.answer(true));
+		if(autoSaver != null) autoSaver.changed();
+	}
+
+	/**
+	 * Shows a card, and gets the fonts ready for flipping it and for the next few cards.
+	 */
+	private void showCard(Card card) {
+		setCard(card);
+		updateStackPanels();
+		List<Card> cards = new ArrayList<Card>(PREFETCH_COUNT + 1);
+		if(card != null) cards.add(card); // for its flip side, the side on show is fitted already
+		cards.addAll(session.peekNextCards(PREFETCH_COUNT));
+		flashCardPanel.prefetch(cards, showSideBFirst);
+	}
+
+	private void updateStackPanels() {
+		cardStackFromPanel.setCurrentCount(session.getToDoCount());
+		cardStackToPanel.setCurrentCount(session.getDoneCount());
 	}
 
 	private void setCard(Card card) {
-		this.card = card;
+		shownCard = card;
 		if(card != null) {
 			flashCardPanel.set(card.getSideA(), card.getSideB(), showSideBFirst);
 		} else {
@@ -124,7 +201,7 @@ public class FlashCarder {
 	 * and then save it.
 	 */
 	private void saveProgress() {
-		if(modified && fileName != null) {
+		if(session.isModified() && fileName != null) {
 			if(JOptionPane.YES_OPTION == JOptionPane.showConfirmDialog(frame
 				,new JLabel("Save progress with " + fileName + " ?")
 				,"Unsaved Progress"
@@ -135,27 +212,89 @@ public class FlashCarder {
 		}
 	}
 
-	private boolean saveToFile(String fileName) {
-		if(cardStackFrom == null) return true; // nothing saved
+	/**
+	 * Saves on a background thread, so big decks don't freeze the window.
+	 * If the file is still loading, the save happens once it's done.
+	 */
+	private void saveToFile(final String fileName) {
+		if(session.getFileName() == null) return; // nothing saved
+
+		final ReviewSession session = this.session;
+		setFileStatus("saving");
+		saver = new SwingWorker<IOException, Void>() {
+			protected IOException doInBackground() {
+				try {
+					if(fileName.equals(session.getFileName())) session.save(); // only the changes need writing
+					else session.saveAs(fileName);
+				} catch(IOException e) { return e; }
+				return null;
+			}
 
-		CardStack setToWrite = new CardStack(cardStackFrom);
-//		setToWrite.addCardStack(cardStackHard);
-		setToWrite.addCardStack(cardStackTo);
-		if(card != null) setToWrite.addCard(card);
+			protected void done() {
+				if(saver == this) saver = null;
+				IOException problem = getProblem(this);
+				if(problem != null) {
+					showSaveProblem(fileName, problem);
+					setFileStatus(null);
+				} else if(fileName.equals(session.getFileName())) {
+					setFileName(fileName);
+				}
+			}
+		};
+		saver.execute();
+	}
 
-		if(!setToWrite.writeToFile(fileName)) {
-			JOptionPane.showMessageDialog(frame
-				,new JLabel("There was a problem saving " + fileName + ", sorry.")
-				,"File / Save As problem"
-				,JOptionPane.ERROR_MESSAGE
+	/**
+	 * Waits for a save in progress to finish.
+	 */
+	private void waitForSave() {
+		if(saver != null) getProblem(saver);
+	}
+
+	/**
+	 * Saves whatever the open decks' AutoSavers haven't got to yet, and waits for them.
+	 * @return True if it's all saved, or the user doesn't mind losing it.
+	 */
+	private boolean flushAutoSave() {
+		try {
+			workspace.flushAll();
+			return true;
+		} catch(IOException problem) {
+			return JOptionPane.YES_OPTION == JOptionPane.showConfirmDialog(frame
+				,new JLabel("There was a problem saving (" + problem.getMessage() + "). Carry on without saving?")
+				,"Unsaved Progress"
+				,JOptionPane.YES_NO_OPTION
+				,JOptionPane.WARNING_MESSAGE
 			);
-			return false;
 		}
+	}
+
+	/**
+	 * Shows next to the file name that saving in the background isn't working, or clears that when it is again.
+	 * @param problem What went wrong, or null if the last save worked.
+	 */
+	private void showAutoSaveProblem(IOException problem) {
+		if(problem != null) {
+			autoSaveFailed = true;
+			setFileStatus("not saved: " + problem.getMessage());
+		} else if(autoSaveFailed) {
+			autoSaveFailed = false;
+			setFileStatus(null);
+		}
+	}
 
-		modified = false;
-		setFileName(fileName);
+	private static IOException getProblem(SwingWorker<IOException, Void> saver) {
+		try { return saver.get(); }
+		catch(InterruptedException e) { return new IOException("interrupted"); }
+		catch(ExecutionException e) { return new IOException(e.getCause().toString()); }
+	}
 
-		return true;
+	private void showSaveProblem(String fileName, IOException problem) {
+		JOptionPane.showMessageDialog(frame
+			,new JLabel("There was a problem saving " + fileName + ", sorry. (" + problem.getMessage() + ")")
+			,"File / Save As problem"
+			,JOptionPane.ERROR_MESSAGE
+		);
 	}
 
 // private GUI methods
@@ -194,6 +333,12 @@ public class FlashCarder {
 
 		frame.setJMenuBar(makeMenuBar());
 
+		latencyPane = new JPanel(new FlowLayout(FlowLayout.RIGHT, MARGIN, MARGIN)); // over the top right, letting clicks through
+		latencyPane.setOpaque(false);
+		latencyPane.add(watchdog.createOverlay());
+		frame.setGlassPane(latencyPane);
+		latencyPane.setVisible(Boolean.getBoolean("flashcarder.watchdog.overlay"));
+
 		Container contentPane = frame.getContentPane();
 		contentPane.setLayout(new BorderLayout(MARGIN, MARGIN));
 
@@ -247,6 +392,24 @@ public class FlashCarder {
 		item.addActionListener(new ActionListener() { public void actionPerformed(ActionEvent e) { handleQuitRequest(); }});
 		menu.add(item);
 
+		// Edit
+		menu = new JMenu("Edit");
+		menuBar.add(menu);
+		// Edit / Find
+		item = new JMenuItem("Find...");
+		item.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F, SHORTCUT_MASK));
+		item.addActionListener(new ActionListener() { public void actionPerformed(ActionEvent e) { handleEditFind(); }});
+		menu.add(item);
+
+		// Decks, listing the workspace's decks as they are when it's opened
+		final JMenu decksMenu = new JMenu("Decks");
+		decksMenu.addMenuListener(new MenuListener() {
+			public void menuSelected(MenuEvent e) { fillDecksMenu(decksMenu); }
+			public void menuDeselected(MenuEvent e) {}
+			public void menuCanceled(MenuEvent e) {}
+		});
+		menuBar.add(decksMenu);
+
 		// Help
 		menu = new JMenu("Help");
 		menuBar.add(menu);
@@ -254,10 +417,62 @@ public class FlashCarder {
 		item = new JMenuItem("About");
 		item.addActionListener(new ActionListener() { public void actionPerformed(ActionEvent e) { handleHelpAbout(); }});
 		menu.add(item);
+		// Help / Show UI Latency
+		final JCheckBoxMenuItem latencyItem = new JCheckBoxMenuItem("Show UI Latency", Boolean.getBoolean("flashcarder.watchdog.overlay"));
+		latencyItem.addActionListener(new ActionListener() { public void actionPerformed(ActionEvent e) { handleHelpShowLatency(latencyItem.isSelected()); }});
+		menu.add(latencyItem);
 
 		return menuBar;
 	}
 
+	/**
+	 * Lists the workspace's decks with how many cards they have to do, ticking the one shown.
+	 * The numbers of decks that aren't open are as last read; they're read again in the background,
+	 * and brought up to date in the menu if it's still showing.
+	 */
+	private void fillDecksMenu(final JMenu decksMenu) {
+		listDecks(decksMenu);
+		new SwingWorker<Void, Void>() {
+			protected Void doInBackground() {
+				workspace.readSummaries();
+				return null;
+			}
+
+			protected void done() {
+				if(!decksMenu.isPopupMenuVisible()) return;
+				for(Component component : decksMenu.getMenuComponents()) {
+					Object deckFileName = ((JComponent)component).getClientProperty(DECK_FILE_NAME);
+					if(deckFileName != null) ((JMenuItem)component).setText(getDeckItemText((String)deckFileName));
+				}
+				decksMenu.getPopupMenu().pack(); // in case the numbers made it wider
+			}
+		}.execute();
+	}
+
+	private void listDecks(JMenu decksMenu) {
+		decksMenu.removeAll();
+		List<String> deckFileNames = workspace.getDeckFileNames();
+		if(deckFileNames.isEmpty()) {
+			JMenuItem item = new JMenuItem("(no decks opened yet)");
+			item.setEnabled(false);
+			decksMenu.add(item);
+		}
+		for(final String deckFileName : deckFileNames) {
+			JMenuItem item = new JCheckBoxMenuItem(getDeckItemText(deckFileName), deckFileName.equals(fileName));
+			item.putClientProperty(DECK_FILE_NAME, deckFileName);
+			item.addActionListener(new ActionListener() { public void actionPerformed(ActionEvent e) { switchToDeck(deckFileName); }});
+			decksMenu.add(item);
+		}
+	}
+
+	/**
+	 * @return Like "spanish.txt  (1200 cards, 35 to do)".
+	 */
+	private String getDeckItemText(String deckFileName) {
+		DeckSummary summary = workspace.getSummary(deckFileName);
+		return getDeckName(deckFileName) + (summary != null ? "  (" + summary + ")" : "");
+	}
+
 	private void setLookAndFeel() {
 		try { UIManager.setLookAndFeel(LOOK_AND_FEEL); }
 		catch(Exception e) { /* no big deal, just a look and feel thing */ }
@@ -268,21 +483,58 @@ public class FlashCarder {
 // private GUI helper methods
 	private void setFileName(String newFileName) {
 		fileName = newFileName;
-		if(fileName == null) {
-			fileNameLabel.setText("(no file opened)");
-		} else {
-			File file = new File(fileName);
-			String shortName = file.getName().replaceFirst("[.][^.]+$", "");
-			fileNameLabel.setText(shortName);
-		}
+		setFileStatus(null);
 		//String prefix = modified ? "*" : "";
 		//String suffix = fileName == null ? "(no file opened)" : fileName;
 		//fileNameLabel.setText(prefix + suffix);
 	}
 
+	/**
+	 * Shows what's happening to the file next to its name.
+	 * @param status Like "saving", or null for nothing.
+	 */
+	private void setFileStatus(String status) {
+		String text;
+		if(fileName == null) {
+			text = "(no file opened)";
+		} else {
+			text = getDeckName(fileName);
+		}
+		if(status != null) text += "  (" + status + ")";
+		fileNameLabel.setText(text);
+	}
+
+	/**
+	 * @return The deck's file name without its folder or extension.
+	 */
+	private static String getDeckName(String deckFileName) {
+		return new File(deckFileName).getName().replaceFirst("[.][^.]+$", "");
+	}
+
+	/**
+	 * Keeps the window up to date as more of the file is read.
+	 * The first card is shown as soon as there is one.
+	 * @param percent How much of the file has been read.
+	 */
+	private void showLoadProgress(int percent) {
+		int totalCards = session.getTotalCount();
+		cardStackFromPanel.setCapacity(totalCards);
+		cardStackToPanel.setCapacity(totalCards);
+//		cardStackHardPanel.setCapacity(totalCards);
+		if(session.getCard() == null || session.getCard() != shownCard) getNextCard(); // or a resumed deck's card, or its copy
+		else updateStackPanels();
+		setFileStatus(percent < 100 ? "loading " + percent + "%" : null);
+	}
+
 // private GUI handler methods
 	private void handleQuitRequest() {
 		//saveProgress();
+		waitForSave();
+		if(!flushAutoSave()) return;
+		workspace.writeSnapshots();
+		try { workspace.writeList(WORKSPACE_LIST); }
+		catch(IOException e) { /* the decks are saved, only the Decks menu is forgotten */ }
+		writeLastDeck(fileName);
 
 		System.exit(0);
 	}
@@ -299,29 +551,121 @@ public class FlashCarder {
 			chosenFileName = file.getAbsolutePath();
 		} else return;
 
+		switchToDeck(chosenFileName);
+	}
+
+	/**
+	 * Shows a deck, reading it first if it isn't open already.
+	 * The deck that was shown stays open, saving in the background, unless the workspace needs the memory.
+	 */
+	private void switchToDeck(String chosenFileName) {
 		clearCards();
-		cardStackFrom = CardStack.createFromFile(chosenFileName);
-		if(cardStackFrom == null) {
-			JOptionPane.showMessageDialog(frame
-				,new JLabel("There was a problem opening " + chosenFileName + ", sorry.")
-				,"File / Open problem"
-				,JOptionPane.ERROR_MESSAGE
-			);
+		if(searchDialog != null) {
+			searchDialog.dispose(); // it searches the deck that was shown
+			searchDialog = null;
+		}
+		Workspace.Deck deck = workspace.open(chosenFileName);
+		session = deck.getSession();
+		autoSaver = deck.getAutoSaver();
+		autoSaveFailed = false;
+		setFileName(deck.getFileName());
+		if(!deck.isLoaded()) {
+			setFileStatus("loading");
+			openInBackground(deck.getFileName());
 		} else {
-			cardStackFrom.shuffle();
-			int totalCards = cardStackFrom.getCount();
-			cardStackFromPanel.setCapacity(totalCards);
-			cardStackFromPanel.setCurrentCount(cardStackFrom.getCount());
-			cardStackToPanel.setCapacity(totalCards);
-			cardStackToPanel.setCurrentCount(0);
-//			cardStackHardPanel.setCapacity(totalCards);
-//			cardStackHardPanel.setCurrentCount(0);
-//			cardStackHard = new CardStack();
-			cardStackTo = new CardStack();
-			modified = false;
-			setFileName(chosenFileName);
-			getNextCard();
+			showCard(session.getCard()); // where it was left
+			showLoadProgress(100);
+			if(session.isLoading()) setFileStatus("loading"); // its loader carries on showing how far it's got
+		}
+	}
+
+	/**
+	 * Reads a file on a background thread, showing cards as soon as they're read, while it's the deck shown.
+	 */
+	private void openInBackground(final String chosenFileName) {
+		final ReviewSession session = this.session;
+		SwingWorker<Boolean, Integer> loader = new SwingWorker<Boolean, Integer>() {
+			protected Boolean doInBackground() {
+				return session.open(chosenFileName, new ReviewSession.LoadListener() {
+					public void cardsLoaded(int cardCount, long bytesRead, long byteCount) {
+						publish(byteCount > 0 ? (int)(bytesRead * 100 / byteCount) : 100);
+					}
+				});
+			}
+
+			protected void process(List<Integer> percentages) {
+				if(session != FlashCarder.this.session) return; // another deck is shown now
+				showLoadProgress(percentages.get(percentages.size() - 1));
+			}
+
+			protected void done() {
+				boolean opened;
+				try { opened = get(); }
+				catch(InterruptedException e) { opened = false; }
+				catch(ExecutionException e) { opened = false; }
+				if(session != FlashCarder.this.session) {
+					if(!opened) removeDeck(chosenFileName);
+				} else if(opened) {
+					showLoadProgress(100);
+//					cardStackHardPanel.setCurrentCount(0);
+//					cardStackHard = new CardStack();
+				} else {
+					clearCards();
+					removeDeck(chosenFileName);
+					FlashCarder.this.session = createSession();
+					autoSaver = null; // closed along with the deck
+					setFileName(null);
+					JOptionPane.showMessageDialog(frame
+						,new JLabel("There was a problem opening " + chosenFileName + ", sorry.")
+						,"File / Open problem"
+						,JOptionPane.ERROR_MESSAGE
+					);
+				}
+			}
+		};
+		loader.execute();
+	}
+
+	/**
+	 * @return The deck that was shown when FlashCarder last quit, or null.
+	 */
+	private static String readLastDeck() {
+		try {
+			BufferedReader input = new BufferedReader(new InputStreamReader(new FileInputStream(LAST_DECK), "UTF-8"));
+			try {
+				String line = input.readLine();
+				return line != null && !line.trim().isEmpty() ? line.trim() : null;
+			} finally {
+				input.close();
+			}
+		} catch(IOException e) { return null; } // the first time
+	}
+
+	/**
+	 * Notes the deck shown, to carry on with next time, or forgets it if there isn't one.
+	 */
+	private static void writeLastDeck(final String deckFileName) {
+		if(deckFileName == null) {
+			new File(LAST_DECK).delete();
+			return;
 		}
+		try {
+			SafeFileWriter.write(LAST_DECK, 0, new SafeFileWriter.Content() {
+				public void writeTo(OutputStream output) throws IOException {
+					Writer writer = new OutputStreamWriter(output, "UTF-8");
+					writer.write(deckFileName + "\n");
+					writer.flush();
+				}
+			});
+		} catch(IOException e) { /* the file chooser comes up instead next time */ }
+	}
+
+	/**
+	 * Takes a deck that couldn't be read out of the workspace.
+	 */
+	private void removeDeck(String deckFileName) {
+		try { workspace.removeDeck(deckFileName); }
+		catch(IOException e) { /* nothing was read, so nothing needed saving */ }
 	}
 
 	private void handleFileSave() {
@@ -353,18 +697,29 @@ public class FlashCarder {
 		saveToFile(chosenFileName);
 	}
 
+	private void handleEditFind() {
+		if(searchDialog == null) searchDialog = new CardSearchDialog(frame, session);
+		searchDialog.showDialog();
+	}
+
 	private void handleHelpAbout() {
 		JOptionPane.showMessageDialog(frame, TITLE + "\n" + VERSION, "About", JOptionPane.INFORMATION_MESSAGE);
 	}
 
+	private void handleHelpShowLatency(boolean show) {
+		latencyPane.setVisible(show);
+	}
+
 	private void handleToStackAction() {
+		long start = Metrics.start();
 		putCardInToStack();
-		getNextCard();
+		ANSWER_TIMER.stop(start);
 	}
 
 	private void handleFromStackAction() {
+		long start = Metrics.start();
 		putCardInFromStack();
-		getNextCard();
+		ANSWER_TIMER.stop(start);
 	}
 
 //	private void handleHardStackAction() {
@@ -0,0 +1,136 @@
+package flashcarder;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.Rectangle2D;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @author Atlee
+ *
+ * Finds the biggest font size that fits a text into a box, and remembers the answer.
+ *
+ * Fonts come from a pool with one Font per size, so fitting never makes new Fonts,
+ * and the sizes are searched with a plain binary search measured in a real FontRenderContext.
+ * The fits of the most recently used texts and box sizes are cached, so flipping a card
+ * back and forth, or coming back to a card seen before, is a single lookup.
+ *
+ * Safe to use from more than one thread, so fits can be worked out ahead of time off the EDT.
+ */
+class FontFitter {
+// defaults
+	private static final int CACHE_SIZE = 512; // fits remembered
+
+// metrics
+	private static final Metrics.Timer SEARCH_TIMER = Metrics.timer("FontFitter.search");
+	private static final Metrics.Counter SEARCH_ITERATIONS = Metrics.counter("FontFitter.search.iterations");
+	private static final Metrics.Counter CACHE_HITS = Metrics.counter("FontFitter.cacheHits");
+
+// settings
+	private final int minSize, maxSize;
+	private final float marginRatio; // minimum space on left/right of text
+
+// data
+	private final Font[] fonts; // the pool, fonts[size - minSize]
+	private final LinkedHashMap<FitKey, Font> cache;
+	private final FitKey probe = new FitKey(); // reused for lookups so hits don't allocate
+	private FontRenderContext renderContext; // what the cached fits were measured in
+
+	/**
+	 * @param fontName The name of the font to fit.
+	 * @param style Its style, like Font.BOLD.
+	 * @param minSize The smallest size to use, even if the text doesn't fit.
+	 * @param maxSize The biggest size to use.
+	 * @param marginRatio How much of the width to leave blank, split between left and right.
+	 */
+	FontFitter(String fontName, int style, int minSize, int maxSize, float marginRatio) {
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.marginRatio = marginRatio;
+		fonts = new Font[maxSize - minSize + 1];
+		Font base = new Font(fontName, style, maxSize);
+		fonts[maxSize - minSize] = base;
+		for(int size = minSize; size < maxSize; ++size) fonts[size - minSize] = base.deriveFont((float)size);
+		cache = new LinkedHashMap<FitKey, Font>(CACHE_SIZE * 2, 0.75f, true) { // access order, least recently used first
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<FitKey, Font> eldest) {
+				return size() > CACHE_SIZE;
+			}
+		};
+	}
+
+	/**
+	 * @param text The text to fit, on one line.
+	 * @param width The width of the box.
+	 * @param height The height of the box.
+	 * @param renderContext How the text will be drawn.
+	 * @return The biggest pooled Font that fits, or the smallest one if none do.
+	 */
+	synchronized Font fit(String text, int width, int height, FontRenderContext renderContext) {
+		if(!renderContext.equals(this.renderContext)) { // measured differently now, so start over
+			cache.clear();
+			this.renderContext = renderContext;
+		}
+		probe.set(text, width, height);
+		Font font = cache.get(probe);
+		if(font == null) {
+			font = search(text, width, height);
+			cache.put(new FitKey().set(text, width, height), font);
+		} else {
+			CACHE_HITS.add(1);
+		}
+		return font;
+	}
+
+// private methods
+	/**
+	 * Binary search for the biggest size that fits. Bigger sizes never fit where smaller ones don't.
+	 */
+	private Font search(String text, int width, int height) {
+		long start = Metrics.start();
+		int iterations = 0;
+		int low = minSize, high = maxSize; // the best size is somewhere in low..high
+		while(low < high) {
+			int size = (low + high + 1) >>> 1;
+			if(fits(fonts[size - minSize], text, width, height)) low = size;
+			else high = size - 1;
+			++iterations;
+		}
+		SEARCH_ITERATIONS.add(iterations);
+		SEARCH_TIMER.stop(start);
+		return fonts[low - minSize];
+	}
+
+	private boolean fits(Font font, String text, int width, int height) {
+		Rectangle2D textBounds = font.getStringBounds(text, renderContext);
+		return textBounds.getWidth() <= width * (1.0f - marginRatio)
+			&& textBounds.getHeight() <= height
+			&& textBounds.getHeight() * 8.0 <= width;
+	}
+
+// private helper classes
+	private static class FitKey {
+		private String text;
+		private int width, height;
+
+		FitKey set(String text, int width, int height) {
+			this.text = text;
+			this.width = width;
+			this.height = height;
+			return this;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if(!(other instanceof FitKey)) return false;
+			FitKey key = (FitKey)other;
+			return key.width == width && key.height == height && key.text.equals(text);
+		}
+
+		@Override
+		public int hashCode() {
+			return (text.hashCode() * 31 + width) * 31 + height;
+		}
+	}
+}
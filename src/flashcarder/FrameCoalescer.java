@@ -0,0 +1,64 @@
+package flashcarder;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import javax.swing.Timer;
+
+/**
+ * @author Atlee
+ *
+ * Runs a GUI update at most once per frame, however often it's asked for.
+ *
+ * The first request after a quiet spell runs straight away, so a single key press isn't delayed.
+ * Requests within the same frame after that are folded into one run at the start of the next frame.
+ * Use from the event dispatch thread only.
+ *
+ * Example:
+ *		private final FrameCoalescer updater = new FrameCoalescer(new Runnable() {
+ *			public void run() { .. apply whatever changed since last time .. }
+ *		});
+ *		.. then whenever something changes:
+ *		updater.request();
+ */
+class FrameCoalescer implements ActionListener {
+// defaults
+	private static final int FRAME_MILLIS = 16; // about 60 frames a second
+
+// data
+	private final Runnable update;
+	private final Timer timer;
+	private long lastRun; // System.nanoTime() of the last update, 0 if never
+
+	/**
+	 * @param update What to run, on the event dispatch thread.
+	 */
+	FrameCoalescer(Runnable update) {
+		this.update = update;
+		timer = new Timer(FRAME_MILLIS, this);
+		timer.setRepeats(false);
+	}
+
+	/**
+	 * Asks for the update to run, now if the last run was at least a frame ago, otherwise at the next frame.
+	 */
+	void request() {
+		if(timer.isRunning()) return; // already coming
+		long sinceLastRun = (System.nanoTime() - lastRun) / 1000000L;
+		if(lastRun == 0 || sinceLastRun >= FRAME_MILLIS) {
+			run();
+		} else {
+			timer.setInitialDelay((int)(FRAME_MILLIS - sinceLastRun));
+			timer.start();
+		}
+	}
+
+	public void actionPerformed(ActionEvent e) {
+		run();
+	}
+
+// private methods
+	private void run() {
+		lastRun = System.nanoTime();
+		update.run();
+	}
+}
@@ -0,0 +1,257 @@
+package flashcarder;
+
+import java.util.Arrays;
+
+/**
+ * @author Atlee
+ *
+ * A sequence of ints kept in chunks, so inserting in the middle doesn't shift everything after it.
+ *
+ * A Fenwick tree over the chunk sizes finds the chunk holding any position in O(log n),
+ * and only that one chunk has to be shifted. Full chunks split in two, which is rare enough
+ * that re-indexing the chunks then costs next to nothing on average.
+ * Adding and removing at the end are O(1) apart from the Fenwick update.
+ */
+final class IntRope {
+// defaults
+	private static final int CHUNK_SIZE = 1024; // a chunk splits in two when it's this full
+
+	/**
+	 * Compares two ints by whatever they stand for.
+	 */
+	interface Comparator {
+		int compare(int value1, int value2);
+	}
+
+// data
+	private int[][] chunks = new int[8][];
+	private int[] chunkSizes = new int[8];
+	private int[] fenwick = new int[8 + 1]; // 1-based prefix sums of chunkSizes
+	private int chunkCount;
+	private int size;
+
+// located by locate(int)
+	private int foundChunk;
+	private int foundOffset;
+
+// methods
+	int size() {
+		return size;
+	}
+
+	int get(int position) {
+		locate(position);
+		return chunks[foundChunk][foundOffset];
+	}
+
+	int set(int position, int value) {
+		locate(position);
+		int[] chunk = chunks[foundChunk];
+		int old = chunk[foundOffset];
+		chunk[foundOffset] = value;
+		return old;
+	}
+
+	void add(int value) {
+		if(chunkCount == 0 || chunkSizes[chunkCount - 1] == CHUNK_SIZE) appendChunk();
+		int last = chunkCount - 1;
+		chunks[last][chunkSizes[last]++] = value;
+		fenwickAdd(last, 1);
+		++size;
+	}
+
+	void insert(int position, int value) {
+		if(position == size) {
+			add(value);
+			return;
+		}
+		locate(position);
+		if(chunkSizes[foundChunk] == CHUNK_SIZE) {
+			splitChunk(foundChunk);
+			locate(position);
+		}
+		int[] chunk = chunks[foundChunk];
+		System.arraycopy(chunk, foundOffset, chunk, foundOffset + 1, chunkSizes[foundChunk] - foundOffset);
+		chunk[foundOffset] = value;
+		++chunkSizes[foundChunk];
+		fenwickAdd(foundChunk, 1);
+		++size;
+	}
+
+	int remove(int position) {
+		if(position == size - 1) return removeLast();
+		locate(position);
+		int[] chunk = chunks[foundChunk];
+		int old = chunk[foundOffset];
+		System.arraycopy(chunk, foundOffset + 1, chunk, foundOffset, chunkSizes[foundChunk] - foundOffset - 1);
+		--chunkSizes[foundChunk];
+		--size;
+		if(chunkSizes[foundChunk] == 0) removeChunk(foundChunk);
+		else fenwickAdd(foundChunk, -1);
+		return old;
+	}
+
+	int removeLast() {
+		if(size == 0) throw new IndexOutOfBoundsException("empty");
+		int last = chunkCount - 1;
+		int old = chunks[last][--chunkSizes[last]];
+		fenwickAdd(last, -1);
+		--size;
+		if(chunkSizes[last] == 0) --chunkCount; // its Fenwick entries are back to 0 already
+		return old;
+	}
+
+	void clear() {
+		setAll(new int[0], 0);
+	}
+
+	/**
+	 * @return A new array of every value in order.
+	 */
+	int[] toArray() {
+		int[] values = new int[size];
+		int at = 0;
+		for(int c = 0; c < chunkCount; ++c) {
+			System.arraycopy(chunks[c], 0, values, at, chunkSizes[c]);
+			at += chunkSizes[c];
+		}
+		return values;
+	}
+
+	/**
+	 * Replaces every value, leaving chunks half full so there's room to insert.
+	 * @param values The new values.
+	 * @param count How many of them to use.
+	 */
+	void setAll(int[] values, int count) {
+		int perChunk = CHUNK_SIZE / 2;
+		int capacity = Math.max(8, (count + perChunk - 1) / perChunk);
+		chunks = new int[capacity][];
+		chunkSizes = new int[capacity];
+		chunkCount = 0;
+		for(int at = 0; at < count; at += perChunk) {
+			int chunkSize = Math.min(perChunk, count - at);
+			chunks[chunkCount] = new int[CHUNK_SIZE];
+			System.arraycopy(values, at, chunks[chunkCount], 0, chunkSize);
+			chunkSizes[chunkCount++] = chunkSize;
+		}
+		size = count;
+		rebuildFenwick();
+	}
+
+	/**
+	 * A stable merge sort of part of an array.
+	 * @param values The array to sort.
+	 * @param count How many values at the start of it to sort.
+	 * @param comparator How to compare them.
+	 */
+	static void sort(int[] values, int count, Comparator comparator) {
+		mergeSort(values, new int[count], 0, count, comparator);
+	}
+
+	/**
+	 * A stable merge sort of a range of an array, for sorting many little ranges without allocating each time.
+	 * @param values The array to sort.
+	 * @param from The first position to sort.
+	 * @param to Just past the last position to sort.
+	 * @param scratch Working space, at least to long.
+	 * @param comparator How to compare them.
+	 */
+	static void sort(int[] values, int from, int to, int[] scratch, Comparator comparator) {
+		mergeSort(values, scratch, from, to, comparator);
+	}
+
+// private methods
+	/**
+	 * Finds the chunk and offset of a position, leaving them in foundChunk and foundOffset.
+	 */
+	private void locate(int position) {
+		if(position < 0 || position >= size) throw new IndexOutOfBoundsException("position " + position + " of " + size);
+		// walk down the Fenwick tree to the last chunk whose prefix sum is <= position
+		int chunk = 0;
+		int remaining = position;
+		for(int step = Integer.highestOneBit(fenwick.length - 1); step > 0; step >>= 1) {
+			int next = chunk + step;
+			if(next < fenwick.length && fenwick[next] <= remaining) {
+				chunk = next;
+				remaining -= fenwick[next];
+			}
+		}
+		foundChunk = chunk; // the Fenwick walk is 1-based, so this is the 0-based index of the next chunk
+		foundOffset = remaining;
+	}
+
+	private void appendChunk() {
+		ensureChunkCapacity(chunkCount + 1);
+		chunks[chunkCount] = new int[CHUNK_SIZE];
+		chunkSizes[chunkCount] = 0;
+		++chunkCount;
+	}
+
+	private void splitChunk(int index) {
+		ensureChunkCapacity(chunkCount + 1);
+		System.arraycopy(chunks, index + 1, chunks, index + 2, chunkCount - index - 1);
+		System.arraycopy(chunkSizes, index + 1, chunkSizes, index + 2, chunkCount - index - 1);
+		int half = chunkSizes[index] / 2;
+		int[] upper = new int[CHUNK_SIZE];
+		System.arraycopy(chunks[index], half, upper, 0, chunkSizes[index] - half);
+		chunks[index + 1] = upper;
+		chunkSizes[index + 1] = chunkSizes[index] - half;
+		chunkSizes[index] = half;
+		++chunkCount;
+		rebuildFenwick();
+	}
+
+	private void removeChunk(int index) {
+		System.arraycopy(chunks, index + 1, chunks, index, chunkCount - index - 1);
+		System.arraycopy(chunkSizes, index + 1, chunkSizes, index, chunkCount - index - 1);
+		--chunkCount;
+		chunks[chunkCount] = null;
+		chunkSizes[chunkCount] = 0;
+		rebuildFenwick();
+	}
+
+	private void ensureChunkCapacity(int capacity) {
+		if(capacity <= chunks.length) return;
+		int newCapacity = Math.max(capacity, chunks.length * 2);
+		chunks = Arrays.copyOf(chunks, newCapacity);
+		chunkSizes = Arrays.copyOf(chunkSizes, newCapacity);
+		rebuildFenwick();
+	}
+
+	private void fenwickAdd(int chunk, int delta) {
+		for(int i = chunk + 1; i < fenwick.length; i += i & -i) fenwick[i] += delta;
+	}
+
+	private void rebuildFenwick() {
+		if(fenwick.length != chunks.length + 1) fenwick = new int[chunks.length + 1];
+		else Arrays.fill(fenwick, 0);
+		for(int i = 1; i < fenwick.length; ++i) {
+			fenwick[i] += chunkSizes[i - 1];
+			int parent = i + (i & -i);
+			if(parent < fenwick.length) fenwick[parent] += fenwick[i];
+		}
+	}
+
+	private static void mergeSort(int[] a, int[] scratch, int from, int to, Comparator comparator) {
+		if(to - from <= 16) { // insertion sort the little bits
+			for(int i = from + 1; i < to; ++i) {
+				int value = a[i];
+				int j = i - 1;
+				for(; j >= from && comparator.compare(a[j], value) > 0; --j) a[j + 1] = a[j];
+				a[j + 1] = value;
+			}
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		mergeSort(a, scratch, from, middle, comparator);
+		mergeSort(a, scratch, middle, to, comparator);
+		if(comparator.compare(a[middle - 1], a[middle]) <= 0) return; // already in order
+		System.arraycopy(a, from, scratch, from, to - from);
+		int i = from, j = middle;
+		for(int k = from; k < to; ++k) {
+			if(j >= to || (i < middle && comparator.compare(scratch[i], scratch[j]) <= 0)) a[k] = scratch[i++];
+			else a[k] = scratch[j++];
+		}
+	}
+}
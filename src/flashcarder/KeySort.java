@@ -0,0 +1,204 @@
+package flashcarder;
+
+import java.util.Arrays;
+
+/**
+ * @author Atlee
+ *
+ * Stable sorts by keys pulled out of the things being sorted ahead of time,
+ * so sorting doesn't chase a pointer to every Card n log n times.
+ *
+ * Number keys are sorted with an LSD radix sort, which is stable and only looks at the bits that
+ * differ between keys: a few passes over the array however big it is, rather than a comparison sort's log n.
+ * Keys that fit alongside their position in a long are packed together, so only one array moves.
+ *
+ * Texts are sorted by their first few characters after whatever prefix all of them share, taken as a number,
+ * then texts that tie on those by the next few, most significant first, until the ties are small enough
+ * to be worth comparing in full.
+ *
+ * Example:
+ *		long[] keys = .. one per card, in stack order ..
+ *		int[] order = KeySort.order(keys); // order[0] is the position of the card that goes first
+ */
+class KeySort {
+// defaults
+	private static final int RADIX_BITS = 11; // 2048 buckets fit in the cache
+	private static final int TEXT_KEY_CHARS = 4; // 8 bits each, or 16 if any of them need it
+	private static final int MIN_REFINE_COUNT = 64; // ties fewer than this are merge sorted
+	private static final int MAX_REFINE_DEPTH = 32; // key lengths, before ties are merge sorted anyway
+
+// methods
+	/**
+	 * @param keys The keys, compared as signed numbers.
+	 * @return The positions of the keys in sorted order, equal keys in the order they were.
+	 */
+	static int[] order(long[] keys) {
+		int count = keys.length;
+		if(count == 0) return new int[0];
+		long min = keys[0], max = keys[0];
+		for(long key : keys) {
+			if(key < min) min = key;
+			else if(key > max) max = key;
+		}
+		int keyBits = 64 - Long.numberOfLeadingZeros(max - min); // max - min is right taken as unsigned, even if it overflows
+		int indexBits = 32 - Integer.numberOfLeadingZeros(count - 1);
+		if(keyBits + indexBits <= 64) return packedOrder(keys, min, keyBits, indexBits);
+		return radixOrder(keys, min, keyBits);
+	}
+
+	/**
+	 * @param texts The texts, compared like String.compareTo.
+	 * @return The positions of the texts in sorted order, equal texts in the order they were.
+	 */
+	static int[] order(String[] texts) {
+		int[] order = new int[texts.length];
+		for(int i = 0; i < order.length; ++i) order[i] = i;
+		if(order.length > 1) sortTexts(texts, order, 0, order.length, 0, new int[order.length], 0);
+		return order;
+	}
+
+// private methods
+	/**
+	 * Sorts some of the positions by the characters of their texts from offset on, a few characters at a time:
+	 * by a key made of the next few characters after the prefix they all share, then each run that ties on
+	 * the key by the characters after that, and so on. Little runs are just merge sorted.
+	 * @param order The positions, order[start] to order[end - 1] still in their original order.
+	 * @param offset How many characters of these texts are known to be the same.
+	 */
+	private static void sortTexts(final String[] texts, int[] order, int start, int end, int offset, int[] scratch, int depth) {
+		int count = end - start;
+		String first = texts[order[start]];
+		int shared = first.length(); // the prefix they all have doesn't tell them apart
+		for(int i = start + 1; i < end && shared > offset; ++i) {
+			String text = texts[order[i]];
+			int length = Math.min(shared, text.length());
+			int c = offset;
+			while(c < length && text.charAt(c) == first.charAt(c)) ++c;
+			shared = c;
+		}
+		long[] keys = new long[count];
+		int[] lengths = new int[count];
+		if(!makeTextKeys(texts, order, start, shared, 8, keys, lengths)) { // ISO-8859-1 text only needs a byte a character, which keeps the keys short enough to pack
+			makeTextKeys(texts, order, start, shared, 16, keys, lengths);
+		}
+		int[] local = order(keys);
+		int[] sortedKeys = scratch; // borrowed, to put order in the new order
+		System.arraycopy(order, start, sortedKeys, start, count);
+		for(int i = 0; i < count; ++i) order[start + i] = sortedKeys[start + local[i]];
+
+		IntRope.Comparator inFull = new IntRope.Comparator() {
+			public int compare(int position1, int position2) {
+				return texts[position1].compareTo(texts[position2]);
+			}
+		};
+		int keyEnd = shared + TEXT_KEY_CHARS;
+		for(int run = 0; run < count; ) { // only texts that tie on the key need a closer look
+			int runEnd = run + 1;
+			while(runEnd < count && keys[local[runEnd]] == keys[local[run]]) ++runEnd;
+			if(runEnd - run > 1 && !allSame(lengths, local, run, runEnd, keyEnd)) {
+				if(runEnd - run >= MIN_REFINE_COUNT && depth < MAX_REFINE_DEPTH) {
+					sortTexts(texts, order, start + run, start + runEnd, keyEnd, scratch, depth + 1);
+				} else {
+					IntRope.sort(order, start + run, start + runEnd, scratch, inFull);
+				}
+			}
+			run = runEnd;
+		}
+	}
+
+	/**
+	 * Makes a key of the TEXT_KEY_CHARS characters after the shared prefix of each text, and notes their lengths.
+	 * @param charBits 8 or 16.
+	 * @return False if a character needed more bits than that.
+	 */
+	private static boolean makeTextKeys(String[] texts, int[] order, int start, int shared, int charBits, long[] keys, int[] lengths) {
+		int charMax = (1 << charBits) - 1;
+		for(int i = 0; i < keys.length; ++i) {
+			String text = texts[order[start + i]];
+			int length = text.length();
+			long key = 0;
+			for(int c = shared; c < shared + TEXT_KEY_CHARS; ++c) {
+				char character = c < length ? text.charAt(c) : 0;
+				if(character > charMax) return false;
+				key = key << charBits | character;
+			}
+			keys[i] = charBits == 16 ? key ^ Long.MIN_VALUE : key; // chars are unsigned, order() is signed
+			lengths[i] = length;
+		}
+		return true;
+	}
+
+	/**
+	 * Whether texts with the same key are the same text, which they are if the key covers all of them
+	 * and they're the same length. Lots of decks repeat short sides.
+	 * @param local The texts' positions in keys and lengths, in sorted order.
+	 */
+	private static boolean allSame(int[] lengths, int[] local, int start, int end, int keyEnd) {
+		int length = lengths[local[start]];
+		if(length > keyEnd) return false;
+		for(int i = start + 1; i < end; ++i) {
+			if(lengths[local[i]] != length) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Each key less min, shifted up past its position, and only the key bits sorted.
+	 */
+	private static int[] packedOrder(long[] keys, long min, int keyBits, int indexBits) {
+		int count = keys.length;
+		long[] packed = new long[count], swapPacked = new long[count];
+		for(int i = 0; i < count; ++i) packed[i] = (keys[i] - min) << indexBits | i;
+		int[] starts = new int[(1 << RADIX_BITS) + 1];
+		for(int shift = indexBits; shift < indexBits + keyBits; shift += RADIX_BITS) {
+			if(!countDigits(packed, shift, starts)) continue;
+			for(long value : packed) swapPacked[starts[digit(value, shift)]++] = value;
+			long[] swap = packed; packed = swapPacked; swapPacked = swap;
+		}
+		long indexMask = (1L << indexBits) - 1;
+		int[] order = new int[count];
+		for(int i = 0; i < count; ++i) order[i] = (int)(packed[i] & indexMask);
+		return order;
+	}
+
+	/**
+	 * Keys too wide to pack, so the positions move alongside them.
+	 */
+	private static int[] radixOrder(long[] keys, long min, int keyBits) {
+		int count = keys.length;
+		long[] from = new long[count], to = new long[count];
+		int[] order = new int[count], swapOrder = new int[count];
+		for(int i = 0; i < count; ++i) {
+			from[i] = keys[i] - min;
+			order[i] = i;
+		}
+		int[] starts = new int[(1 << RADIX_BITS) + 1];
+		for(int shift = 0; shift < keyBits; shift += RADIX_BITS) {
+			if(!countDigits(from, shift, starts)) continue;
+			for(int i = 0; i < count; ++i) {
+				int at = starts[digit(from[i], shift)]++;
+				to[at] = from[i];
+				swapOrder[at] = order[i];
+			}
+			long[] swapKeys = from; from = to; to = swapKeys;
+			int[] swap = order; order = swapOrder; swapOrder = swap;
+		}
+		return order;
+	}
+
+	/**
+	 * Works out where each digit's values start for one stable pass of a least significant digit first radix sort.
+	 * @return False if every value has the same digit there, so the pass can be skipped.
+	 */
+	private static boolean countDigits(long[] values, int shift, int[] starts) {
+		Arrays.fill(starts, 0);
+		for(long value : values) ++starts[digit(value, shift) + 1];
+		if(starts[digit(values[0], shift) + 1] == values.length) return false;
+		for(int d = 1; d < starts.length; ++d) starts[d] += starts[d - 1];
+		return true;
+	}
+
+	private static int digit(long value, int shift) {
+		return (int)(value >>> shift) & ((1 << RADIX_BITS) - 1);
+	}
+}
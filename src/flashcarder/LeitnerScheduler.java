@@ -0,0 +1,137 @@
+package flashcarder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Atlee
+ *
+ * Spaced repetition using the stats every Card already carries.
+ *
+ * A card's ease bias picks its Leitner box, and each box has a longer review interval than the last,
+ * so the card is due that long after it was last seen. Cards never seen are due straight away.
+ * Getting a card wrong marks it difficult, which drops it back to the first box, so it comes back
+ * in ten minutes and has to work its way up again; see Card.getEaseBiasAfter.
+ *
+ * Due cards wait in one priority queue, the rest in another ordered by when they fall due,
+ * so picking the next card and rescheduling an answered one are both O(log n).
+ * When nothing is due, nextCard returns null until something is.
+ */
+public class LeitnerScheduler implements CardScheduler {
+// defaults
+	private static final long MINUTE = 60L * 1000L;
+	private static final long DAY = 24L * 60L * MINUTE;
+	private static final long[] INTERVALS = { // indexed by box
+		10 * MINUTE, DAY, 3 * DAY, 7 * DAY, 14 * DAY, 30 * DAY, 60 * DAY, 120 * DAY, 240 * DAY
+	};
+
+// data
+	private final DueQueue due = new DueQueue(); // due now, most overdue first
+	private final DueQueue later = new DueQueue(); // not due yet, soonest first
+
+// public static methods
+	/**
+	 * @param card A card.
+	 * @return When the card is next due for review, unix time in milliseconds.
+	 */
+	public static long getDueTime(Card card) {
+		if(card.getViewCount() == 0) return 0; // never seen
+		int box = Math.max(0, Math.min(card.getEaseBias(), INTERVALS.length - 1));
+		return card.getLastSeenTime() + INTERVALS[box];
+	}
+
+// public methods
+	public void setCards(CardStack cards) {
+		due.clear();
+		later.clear();
+		cards.shuffle(); // so new cards don't come up in file order
+		long now = now();
+		while(!cards.isEmpty()) schedule(cards.removeNextCard(), now);
+	}
+
+	public void addCard(Card card) {
+		schedule(card, now());
+	}
+
+	public Card nextCard() {
+		long now = now();
+		while(later.peekDueTime() <= now) { // these have fallen due since
+			due.add(later.peekCard(), later.peekDueTime());
+			later.remove();
+		}
+		return due.remove();
+	}
+
+	/**
+	 * Only looks at cards already due; ones falling due in the meantime aren't foreseen.
+	 */
+	public List<Card> peekCards(int count) {
+		return due.peek(count);
+	}
+
+	/**
+	 * Brings the card back after the first box's interval, whatever box it was in.
+	 */
+	public void putBack(Card card) {
+		later.add(card, now() + INTERVALS[0]);
+	}
+
+	public void putDone(Card card) {
+		schedule(card, now());
+	}
+
+	public boolean recordsDifficultAnswers() {
+		return true;
+	}
+
+	public int getToDoCount() {
+		return due.size();
+	}
+
+	public int getDoneCount() {
+		return later.size();
+	}
+
+	public CardStack getAllCards() {
+		CardStack all = new CardStack();
+		for(int i = 0; i < due.size(); ++i) all.addCard(due.get(i));
+		for(int i = 0; i < later.size(); ++i) all.addCard(later.get(i));
+		return all;
+	}
+
+	/**
+	 * The stats decide when each card comes up, so this only keeps the order of cards due at the same time,
+	 * like never seen ones: the due cards earliest last, and the rest earliest first.
+	 */
+	public CardStack[] getOrder() {
+		ArrayList<Card> dueOrder = due.getInDueOrder();
+		Collections.reverse(dueOrder); // the next one last, as in a CardStack
+		return new CardStack[] { new CardStack(dueOrder), new CardStack(later.getInDueOrder()) };
+	}
+
+	/**
+	 * Schedules the cards by their stats, as always, but in the order given instead of shuffling them first.
+	 */
+	public void restoreOrder(CardStack toDo, CardStack done) {
+		due.clear();
+		later.clear();
+		long now = now();
+		for(int i = toDo.getCount() - 1; i >= 0; --i) schedule(toDo.getCard(i), now);
+		for(int i = 0; i < done.getCount(); ++i) schedule(done.getCard(i), now);
+	}
+
+	/**
+	 * @return The time now, unix time in milliseconds; tests put the clock where they want it.
+	 */
+	long now() {
+		return System.currentTimeMillis();
+	}
+
+// private methods
+	private void schedule(Card card, long now) {
+		long dueTime = getDueTime(card);
+		if(dueTime <= now) due.add(card, dueTime);
+		else later.add(card, dueTime);
+	}
+}
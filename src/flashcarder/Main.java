@@ -5,6 +5,7 @@ package flashcarder;
  */
 public class Main {
 	public static void main(String args[]) throws Exception {
+		Metrics.register(); // so recording can be turned on from jconsole
 		new FlashCarder();
 	}
 }
@@ -0,0 +1,653 @@
+package flashcarder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * @author Atlee
+ *
+ * Reads Cards straight out of a memory-mapped deck file.
+ *
+ * Understands exactly the same text format as Card.createFromFile(BufferedReader),
+ * including the optional trailing stat lines, but works on the raw bytes:
+ * only sideA and sideB are decoded into Strings, the stat lines are parsed in place.
+ * The file is mapped a window at a time so decks larger than 2GB work too.
+ *
+ * Big files can also be split into chunks at card boundaries and parsed in parallel,
+ * see readAll(String, int), or streamed in while the rest of the chunks are parsed, see readInBatches.
+ *
+ * Identical sides can share one String, see setInterner(SideInterner).
+ *
+ * Gzip or zlib compressed files are read too, see CompressedFile. They can't be mapped, so they're
+ * decompressed straight into the scanning buffer instead, and always read from start to finish.
+ *
+ * Example:
+ *		MappedCardReader reader = new MappedCardReader("somecards.txt");
+ *		try {
+ *			for(Card card = reader.readCard(); card != null; card = reader.readCard()) {
+ *				// .. do something with card ..
+ *			}
+ *		} finally { reader.close(); }
+ */
+public class MappedCardReader {
+// defaults
+	private static final long WINDOW_SIZE = 64L << 20; // bytes mapped at a time
+	private static final int BUFFER_SIZE = 256 << 10; // bytes scanned at a time
+	private static final long MIN_CHUNK_SIZE = 4L << 20; // smaller files aren't worth splitting
+	private static final int CHUNKS_PER_THREAD = 4; // a few extra chunks even out the workload
+	static final Charset CHARSET = Charset.forName(CardStack.CHARSET);
+	private static final byte LF = '\n';
+	private static final byte CR = '\r';
+
+	/**
+	 * Takes cards as readInBatches reads them.
+	 */
+	public interface BatchListener {
+		/**
+		 * @param cards The next cards, in file order. Only theirs for the call, the list is reused.
+		 * @param position The file position read up to.
+		 * @param end The file position reading ends at.
+		 * @return False to stop reading.
+		 */
+		boolean cardsRead(List<Card> cards, long position, long end);
+	}
+
+// data
+	private final RandomAccessFile file; // null when reading a region of someone else's channel
+	private final FileChannel channel;
+	private final long regionEnd; // file position just past the last byte to be read
+	private final InputStream stream; // the decompressed file, null unless it's compressed
+	private long mapPosition; // file position of the next window to map
+	private MappedByteBuffer window;
+	private byte[] buffer = new byte[BUFFER_SIZE]; // bytes copied out of window, scanning is much faster here
+	private int limit; // valid bytes in buffer
+	private int position; // next unread byte in buffer
+	private int lineStart, lineEnd; // the most recently read line within buffer, terminator excluded
+	private boolean exhausted; // whether readCard returned null because the region ran out of cards
+	private SideInterner interner; // null to give every side its own String
+
+// the most recently parsed card
+	private byte[] sideA = new byte[256], sideB = new byte[256];
+	private int sideALength, sideBLength;
+	private long sideAOffset, sideBOffset; // file positions of the sides, for readCardLazily
+	private int easeBias;
+	private long lastSeenTime;
+	private int viewCount;
+
+// public static methods
+	/**
+	 * Reads every Card in a file.
+	 * @param fileName The name of the file to open and read from.
+	 * @return The Cards in file order.
+	 * @throws IOException If the file can't be opened or mapped.
+	 */
+	public static ArrayList<Card> readAll(String fileName) throws IOException {
+		return readAll(fileName, null);
+	}
+
+	/**
+	 * Reads every Card in a file, sharing identical sides.
+	 * @param fileName The name of the file to open and read from.
+	 * @param interner Shares the sides, or null not to.
+	 * @return The Cards in file order.
+	 * @throws IOException If the file can't be opened or mapped.
+	 */
+	public static ArrayList<Card> readAll(String fileName, SideInterner interner) throws IOException {
+		MappedCardReader reader = new MappedCardReader(fileName);
+		reader.setInterner(interner);
+		try {
+			ArrayList<Card> cards = new ArrayList<Card>();
+			for(Card card = reader.readCard(); card != null; card = reader.readCard()) {
+				cards.add(card);
+			}
+			return cards;
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Reads every Card in a file, parsing chunks of it in parallel.
+	 * The result is exactly what readAll(String) would return.
+	 * @param fileName The name of the file to open and read from.
+	 * @param parallelism The number of threads to parse with.
+	 * @return The Cards in file order.
+	 * @throws IOException If the file can't be opened or mapped.
+	 */
+	public static ArrayList<Card> readAll(String fileName, int parallelism) throws IOException {
+		return readAll(fileName, parallelism, null);
+	}
+
+	/**
+	 * Reads every Card in a file, parsing chunks of it in parallel and sharing identical sides between all of them.
+	 * @param fileName The name of the file to open and read from.
+	 * @param parallelism The number of threads to parse with.
+	 * @param interner Shares the sides, or null not to.
+	 * @return The Cards in file order.
+	 * @throws IOException If the file can't be opened or mapped.
+	 */
+	public static ArrayList<Card> readAll(String fileName, int parallelism, SideInterner interner) throws IOException {
+		if(CompressedFile.getFormat(fileName) != CompressedFile.NONE) return readAll(fileName, interner); // can't be split
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			long[] bounds = split(channel, parallelism);
+			if(bounds == null) return readAll(fileName, interner);
+
+			List<Callable<ChunkResult>> chunks = new ArrayList<Callable<ChunkResult>>();
+			for(int i = 1; i < bounds.length; ++i) chunks.add(new ChunkParser(channel, bounds[i - 1], bounds[i], interner));
+
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				List<ChunkResult> results = new ArrayList<ChunkResult>();
+				int total = 0;
+				for(Future<ChunkResult> future : pool.invokeAll(chunks)) {
+					ChunkResult result = future.get();
+					results.add(result);
+					total += result.cards.size();
+					if(!result.exhausted) break; // a malformed card stops reading, same as the sequential way
+				}
+				ArrayList<Card> cards = new ArrayList<Card>(total);
+				for(ChunkResult result : results) cards.addAll(result.cards);
+				return cards;
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("interrupted while reading " + fileName);
+			} catch(ExecutionException e) {
+				if(e.getCause() instanceof IOException) throw (IOException)e.getCause();
+				throw new IOException(e.getCause());
+			} finally {
+				pool.shutdown();
+			}
+		} finally {
+			try { file.close(); }
+			catch(IOException e) { /* don't care */ }
+		}
+	}
+
+	/**
+	 * Reads every Card in a file, handing them over in file order a batch at a time, the very first card on its own
+	 * to get things going. A big file is split as readAll(String, int, SideInterner) splits it: the first chunk is read
+	 * on the calling thread and handed over as it goes, while the rest are parsed in parallel and handed over whole,
+	 * in order, as each is done.
+	 * @param fileName The name of the file to open and read from.
+	 * @param parallelism The number of threads to parse with, the calling one included.
+	 * @param batchSize The most cards handed over at a time from the first chunk, or from a file that isn't split.
+	 * @param interner Shares the sides, or null not to.
+	 * @param listener Takes the cards, on the calling thread. Not called for a file without cards.
+	 * @return True if the file was read as far as it goes, false if the listener stopped reading.
+	 * @throws IOException If the file can't be opened or mapped.
+	 */
+	public static boolean readInBatches(String fileName, int parallelism, int batchSize, SideInterner interner, BatchListener listener) throws IOException {
+		if(CompressedFile.getFormat(fileName) == CompressedFile.NONE) {
+			RandomAccessFile file = new RandomAccessFile(fileName, "r");
+			try {
+				FileChannel channel = file.getChannel();
+				long[] bounds = split(channel, parallelism);
+				if(bounds != null) return readInBatches(fileName, channel, bounds, parallelism, batchSize, interner, listener);
+			} finally {
+				try { file.close(); }
+				catch(IOException e) { /* don't care */ }
+			}
+		}
+		MappedCardReader reader = new MappedCardReader(fileName);
+		reader.setInterner(interner);
+		try {
+			return reader.readInBatches(batchSize, listener);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Finds a file position where reading can safely begin in the middle of a file:
+	 * the start of a non-empty line that follows an empty line.
+	 * Whatever was being read before such a line, it is always the side A of the next card.
+	 * @param channel An open FileChannel.
+	 * @param from File position to start looking at.
+	 * @param end File position to stop looking at.
+	 * @return The position of the next card boundary, or end if there isn't one.
+	 * @throws IOException If the channel can't be read.
+	 */
+	public static long findCardStart(FileChannel channel, long from, long end) throws IOException {
+		ByteBuffer block = ByteBuffer.allocate(64 << 10);
+		boolean seenText = false; // only count terminators after some text, in case from was mid-run
+		boolean afterCR = false;
+		int terminators = 0;
+		for(long position = from; position < end; ) {
+			block.clear();
+			if(block.capacity() > end - position) block.limit((int)(end - position));
+			int count = channel.read(block, position);
+			if(count <= 0) break;
+			for(int i = 0; i < count; ++i) {
+				byte b = block.get(i);
+				if(b == CR) {
+					++terminators;
+					afterCR = true;
+				} else if(b == LF) {
+					if(!afterCR) ++terminators; // a "\r\n" only counts once
+					afterCR = false;
+				} else {
+					if(seenText && terminators >= 2) return position + i;
+					seenText = true;
+					afterCR = false;
+					terminators = 0;
+				}
+			}
+			position += count;
+		}
+		return end;
+	}
+
+// public methods
+	/**
+	 * Opens a whole file for reading, compressed or not.
+	 * @param fileName The name of the file to open and read from.
+	 * @throws IOException If the file can't be opened.
+	 */
+	public MappedCardReader(String fileName) throws IOException {
+		int format = CompressedFile.getFormat(fileName);
+		file = new RandomAccessFile(fileName, "r");
+		channel = file.getChannel();
+		regionEnd = channel.size();
+		mapPosition = 0;
+		try { stream = format == CompressedFile.NONE ? null : CompressedFile.openInput(Channels.newInputStream(channel), format); }
+		catch(IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads part of an already open file.
+	 * The region should start at the beginning of a line. The channel is not closed by close().
+	 * @param channel An open FileChannel.
+	 * @param start File position of the first byte to read.
+	 * @param end File position just past the last byte to read.
+	 */
+	public MappedCardReader(FileChannel channel, long start, long end) {
+		file = null;
+		this.channel = channel;
+		regionEnd = end;
+		mapPosition = start;
+		stream = null;
+	}
+
+	/**
+	 * Releases the file, if this reader opened it.
+	 */
+	public void close() {
+		window = null;
+		buffer = null;
+		if(stream != null) {
+			try { stream.close(); }
+			catch(IOException e) { /* don't care */ }
+		}
+		if(file != null) {
+			try { file.close(); }
+			catch(IOException e) { /* don't care */ }
+		}
+	}
+
+	/**
+	 * Makes identical sides read from now on share one String.
+	 * @param interner Shares the sides, usually for one load, or null to give every side its own String.
+	 */
+	public void setInterner(SideInterner interner) {
+		this.interner = interner;
+	}
+
+	/**
+	 * Tells apart the two reasons readCard can return null.
+	 * @return True if the region simply had no more cards,
+	 * false if reading stopped at a malformed card (an empty or missing side B).
+	 */
+	public boolean isExhausted() {
+		return exhausted;
+	}
+
+	/**
+	 * @return The file position of the next byte to be read, for showing progress.
+	 * For a compressed file it's roughly how much of the compressed file has been read.
+	 */
+	public long getPosition() {
+		if(stream != null) {
+			try { return channel.position(); }
+			catch(IOException e) { return 0; }
+		}
+		long unread = limit - position;
+		if(window != null) unread += window.remaining();
+		return mapPosition - unread;
+	}
+
+	/**
+	 * @return The file position just past the last byte to be read.
+	 */
+	public long getEnd() {
+		return regionEnd;
+	}
+
+	/**
+	 * Attempt to read one Card, following the rules of Card.createFromFile(BufferedReader).
+	 * @return Either a new Card or null if there isn't an entire card left to be read.
+	 * @throws IOException If part of the file can't be mapped.
+	 */
+	public Card readCard() throws IOException {
+		if(!parseCard()) return null;
+		if(interner != null) return new Card(
+			interner.intern(sideA, sideALength, SideInterner.SIDE_A)
+			,interner.intern(sideB, sideBLength, SideInterner.SIDE_B)
+			,easeBias, lastSeenTime, viewCount
+		);
+		return new Card(
+			new String(sideA, 0, sideALength, CHARSET)
+			,new String(sideB, 0, sideBLength, CHARSET)
+			,easeBias, lastSeenTime, viewCount
+		);
+	}
+
+	/**
+	 * Attempt to read one Card straight into a CardStore, without making a Card or any Strings.
+	 * @param store Where to add the card.
+	 * @return The index of the card in the store, or -1 if there isn't an entire card left to be read.
+	 * @throws IOException If part of the file can't be mapped.
+	 */
+	public int readCard(CardStore store) throws IOException {
+		if(!parseCard()) return -1;
+		return store.add(sideA, sideALength, sideB, sideBLength, easeBias, lastSeenTime, viewCount);
+	}
+
+	/**
+	 * Attempt to read one Card into a CardStore that leaves side texts in the file, see CardStore.createFromFile(String, long).
+	 * Only for files that aren't compressed.
+	 * @param store Where to add the card's stats and where its sides are.
+	 * @return The index of the card in the store, or -1 if there isn't an entire card left to be read.
+	 * @throws IOException If part of the file can't be mapped, or it's compressed.
+	 */
+	public int readCardLazily(CardStore store) throws IOException {
+		if(stream != null) throw new IOException("a compressed file's sides can't be read from it later");
+		if(!parseCard()) return -1;
+		return store.addLazily(sideAOffset, sideALength, sideBOffset, sideBLength, easeBias, lastSeenTime, viewCount);
+	}
+
+// private methods
+	/**
+	 * Reads the rest of the file or region, handing the cards over a batch at a time, the first one on its own.
+	 * @return False if the listener stopped reading.
+	 */
+	private boolean readInBatches(int batchSize, BatchListener listener) throws IOException {
+		ArrayList<Card> batch = new ArrayList<Card>(batchSize);
+		int size = 1;
+		for(;;) {
+			Card card = readCard();
+			if(card != null) batch.add(card);
+			if(batch.size() == size || (card == null && !batch.isEmpty())) {
+				if(!listener.cardsRead(batch, getPosition(), regionEnd)) return false;
+				batch.clear();
+				size = batchSize;
+			}
+			if(card == null) return true;
+		}
+	}
+
+	/**
+	 * @return The file position of buffer[index], meaningless for a compressed file.
+	 */
+	private long getFileOffset(int index) {
+		long unread = limit - index;
+		if(window != null) unread += window.remaining();
+		return mapPosition - unread;
+	}
+
+	/**
+	 * Parses the next card into the fields above.
+	 * @return False if there isn't an entire card left to be read.
+	 */
+	private boolean parseCard() throws IOException {
+		do {
+			if(!nextLine()) {
+				exhausted = true;
+				return false;
+			}
+		} while(lineStart == lineEnd); // eat leading empty lines
+		sideA = copyLine(sideA);
+		sideALength = lineEnd - lineStart;
+		sideAOffset = getFileOffset(lineStart);
+		if(!nextLine() || lineStart == lineEnd) return false; // need a non-empty side B too
+		sideB = copyLine(sideB);
+		sideBLength = lineEnd - lineStart;
+		sideBOffset = getFileOffset(lineStart);
+
+		easeBias = 0;
+		lastSeenTime = 0;
+		viewCount = 0;
+		if(nextLine() && lineStart != lineEnd) { // these won't necessarily be present in the file
+			easeBias = (int)parseLine(Integer.MIN_VALUE, Integer.MAX_VALUE);
+			if(nextLine() && lineStart != lineEnd) {
+				lastSeenTime = parseLine(Long.MIN_VALUE, Long.MAX_VALUE);
+				if(nextLine() && lineStart != lineEnd) {
+					viewCount = (int)parseLine(Integer.MIN_VALUE, Integer.MAX_VALUE);
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Copies the current line out of the buffer, which may be refilled by the next line.
+	 * @param into Where to copy to.
+	 * @return into, or a bigger array if it was too small.
+	 */
+	private byte[] copyLine(byte[] into) {
+		int length = lineEnd - lineStart;
+		if(into.length < length) into = new byte[Math.max(length, into.length * 2)];
+		System.arraycopy(buffer, lineStart, into, 0, length);
+		return into;
+	}
+
+	/**
+	 * Finds the next line the way BufferedReader.readLine() would,
+	 * accepting "\n", "\r" or "\r\n" as terminators.
+	 * @return False if there is nothing left to read.
+	 */
+	private boolean nextLine() throws IOException {
+		int i = position;
+		for(;;) {
+			while(i < limit && buffer[i] != LF && buffer[i] != CR) ++i;
+			if(i == limit || (buffer[i] == CR && i + 1 == limit)) { // need more bytes to finish this line, or to see past a '\r'
+				int shift = position;
+				boolean filled = fill();
+				i -= shift - position; // fill moves the unread bytes to the front
+				if(filled) continue;
+				if(i == limit) break;
+			}
+			lineStart = position;
+			lineEnd = i;
+			position = (buffer[i] == CR && i + 1 < limit && buffer[i + 1] == LF) ? i + 2 : i + 1;
+			return true;
+		}
+		if(position == limit) return false;
+		lineStart = position; // the last line has no terminator
+		lineEnd = limit;
+		position = limit;
+		return true;
+	}
+
+	/**
+	 * Moves the unread bytes to the front of the buffer and tops it up from the mapped file,
+	 * or from the decompressed stream.
+	 * @return False if the region has no more bytes.
+	 */
+	private boolean fill() throws IOException {
+		if(stream != null) return fillFromStream();
+		if(window == null || !window.hasRemaining()) {
+			if(mapPosition >= regionEnd) return false;
+			long size = Math.min(WINDOW_SIZE, regionEnd - mapPosition);
+			window = channel.map(FileChannel.MapMode.READ_ONLY, mapPosition, size);
+			mapPosition += size;
+		}
+		int unread = limit - position;
+		if(unread == buffer.length) { // one very long line
+			byte[] bigger = new byte[buffer.length * 2];
+			System.arraycopy(buffer, position, bigger, 0, unread);
+			buffer = bigger;
+		} else {
+			System.arraycopy(buffer, position, buffer, 0, unread);
+		}
+		position = 0;
+		limit = unread;
+		int count = Math.min(buffer.length - limit, window.remaining());
+		window.get(buffer, limit, count);
+		limit += count;
+		return true;
+	}
+
+	/**
+	 * fill() for a compressed file. Unlike a mapped file, running out is only found out by trying,
+	 * so the unread bytes may have been moved even when it returns false.
+	 */
+	private boolean fillFromStream() throws IOException {
+		int unread = limit - position;
+		if(unread == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2); // one very long line
+		System.arraycopy(buffer, position, buffer, 0, unread);
+		position = 0;
+		limit = unread;
+		int count = 0;
+		for(int n = 0; n >= 0 && limit + count < buffer.length; n = stream.read(buffer, limit + count, buffer.length - limit - count)) {
+			count += n;
+		}
+		limit += count;
+		return count > 0;
+	}
+
+	/**
+	 * Parses the current line as a decimal number the way Long.parseLong or Integer.parseInt would.
+	 * @param min The smallest acceptable value.
+	 * @param max The largest acceptable value.
+	 * @return The value, or 0 if the line isn't an acceptable number.
+	 */
+	private long parseLine(long min, long max) {
+		int i = lineStart;
+		boolean negative = false;
+		byte first = buffer[i];
+		if(first == '-' || first == '+') {
+			negative = first == '-';
+			if(++i == lineEnd) return 0; // a lone sign
+		}
+		// accumulate negatively so that min's magnitude fits
+		long limit = negative ? min : -max;
+		long multiplyMin = limit / 10;
+		long result = 0;
+		for(; i < lineEnd; ++i) {
+			int digit = buffer[i] - '0';
+			if(digit < 0 || digit > 9) return 0;
+			if(result < multiplyMin) return 0;
+			result *= 10;
+			if(result < limit + digit) return 0;
+			result -= digit;
+		}
+		return negative ? result : -result;
+	}
+
+// private static helpers
+	/**
+	 * Splits a file at card boundaries into chunks to parse in parallel.
+	 * @return The chunks' bounds, from 0 to the file's size, or null if the file isn't worth splitting.
+	 */
+	private static long[] split(FileChannel channel, int parallelism) throws IOException {
+		long size = channel.size();
+		int chunkCount = (int)Math.min((long)parallelism * CHUNKS_PER_THREAD, size / MIN_CHUNK_SIZE);
+		if(parallelism <= 1 || chunkCount <= 1) return null;
+		long[] bounds = new long[chunkCount + 1];
+		int boundCount = 1; // bounds[0] is the start of the file
+		long chunkStart = 0;
+		for(int i = 1; i <= chunkCount && chunkStart < size; ++i) {
+			long chunkEnd = i == chunkCount ? size : findCardStart(channel, Math.max(chunkStart, size / chunkCount * i), size);
+			if(chunkEnd > chunkStart) bounds[boundCount++] = chunkEnd;
+			chunkStart = chunkEnd;
+		}
+		return Arrays.copyOf(bounds, boundCount);
+	}
+
+	/**
+	 * readInBatches for a file that's been split: the first chunk is read here while the rest are parsed by a pool.
+	 */
+	private static boolean readInBatches(String fileName, FileChannel channel, long[] bounds, int parallelism, int batchSize, SideInterner interner, BatchListener listener) throws IOException {
+		long end = bounds[bounds.length - 1];
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism - 1)); // this thread reads the first chunk
+		MappedCardReader reader = new MappedCardReader(channel, bounds[0], bounds[1]);
+		reader.setInterner(interner);
+		try {
+			List<Future<ChunkResult>> chunks = new ArrayList<Future<ChunkResult>>();
+			for(int i = 2; i < bounds.length; ++i) chunks.add(pool.submit(new ChunkParser(channel, bounds[i - 1], bounds[i], interner)));
+			if(!reader.readInBatches(batchSize, listener)) return false;
+			if(!reader.isExhausted()) return true; // a malformed card stops reading, same as the sequential way
+			for(int i = 0; i < chunks.size(); ++i) {
+				ChunkResult result = chunks.get(i).get();
+				if(!result.cards.isEmpty() && !listener.cardsRead(result.cards, bounds[i + 2], end)) return false;
+				if(!result.exhausted) return true;
+			}
+			return true;
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while reading " + fileName);
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof IOException) throw (IOException)e.getCause();
+			throw new IOException(e.getCause());
+		} finally {
+			pool.shutdownNow(); // nothing more's wanted from it
+			reader.close();
+		}
+	}
+
+// private helper classes
+	private static class ChunkResult {
+		final ArrayList<Card> cards;
+		final boolean exhausted;
+
+		ChunkResult(ArrayList<Card> cards, boolean exhausted) {
+			this.cards = cards;
+			this.exhausted = exhausted;
+		}
+	}
+
+	private static class ChunkParser implements Callable<ChunkResult> {
+		private final FileChannel channel;
+		private final long start, end;
+		private final SideInterner interner;
+
+		ChunkParser(FileChannel channel, long start, long end, SideInterner interner) {
+			this.channel = channel;
+			this.start = start;
+			this.end = end;
+			this.interner = interner;
+		}
+
+		public ChunkResult call() throws IOException {
+			MappedCardReader reader = new MappedCardReader(channel, start, end);
+			reader.setInterner(interner);
+			try {
+				ArrayList<Card> cards = new ArrayList<Card>();
+				for(Card card = reader.readCard(); card != null; card = reader.readCard()) {
+					cards.add(card);
+				}
+				return new ChunkResult(cards, reader.isExhausted());
+			} finally {
+				reader.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,271 @@
+package flashcarder;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * @author Atlee
+ *
+ * Counts and times what FlashCarder spends its time on, loading, reviewing and saving,
+ * to have something to look at when it feels slow.
+ *
+ * Recording is off unless the flashcarder.metrics system property is "true", or it's turned on
+ * through the flashcarder:type=Metrics MBean, with jconsole say. While it's off, timing something
+ * costs one volatile read. Timers keep a histogram of powers of two of nanoseconds,
+ * so their percentiles are rough, within a factor of two, but recording never allocates or locks.
+ *
+ * Example:
+ *		private static final Metrics.Timer SORT_TIMER = Metrics.timer("CardStack.sort");
+ *		..
+ *		long start = Metrics.start();
+ *		.. sort ..
+ *		SORT_TIMER.stop(start);
+ *		..
+ *		System.out.println(Metrics.getReport());
+ */
+public class Metrics {
+// defaults
+	private static final String OBJECT_NAME = "flashcarder:type=Metrics";
+	private static final int BUCKETS = 64; // bucket b holds times below 2^b nanoseconds
+
+// data
+	private static volatile boolean enabled = Boolean.getBoolean("flashcarder.metrics");
+	private static final Map<String, Counter> counters = new TreeMap<String, Counter>();
+	private static final Map<String, Timer> timers = new TreeMap<String, Timer>();
+	private static boolean registered;
+
+// public static methods
+	/**
+	 * @param name Like "CardStack.load.bytes".
+	 * @return The counter with that name, made the first time it's asked for.
+	 */
+	public static synchronized Counter counter(String name) {
+		Counter counter = counters.get(name);
+		if(counter == null) counters.put(name, counter = new Counter());
+		return counter;
+	}
+
+	/**
+	 * @param name Like "CardStack.load".
+	 * @return The timer with that name, made the first time it's asked for.
+	 */
+	public static synchronized Timer timer(String name) {
+		Timer timer = timers.get(name);
+		if(timer == null) timers.put(name, timer = new Timer(name));
+		return timer;
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Turns recording on or off. What's been recorded so far is kept.
+	 */
+	public static void setEnabled(boolean enabled) {
+		Metrics.enabled = enabled;
+	}
+
+	/**
+	 * @return The time to hand to Timer.stop, or 0 while recording is off.
+	 */
+	public static long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Forgets everything recorded so far.
+	 */
+	public static synchronized void reset() {
+		for(Counter counter : counters.values()) counter.value.set(0);
+		for(Timer timer : timers.values()) timer.reset();
+	}
+
+	/**
+	 * @return The counters' values, by name.
+	 */
+	public static synchronized Map<String, Long> getCounters() {
+		Map<String, Long> values = new TreeMap<String, Long>();
+		for(Map.Entry<String, Counter> entry : counters.entrySet()) values.put(entry.getKey(), entry.getValue().get());
+		return values;
+	}
+
+	/**
+	 * @return What each timer has recorded, by name.
+	 */
+	public static synchronized List<TimerStats> getTimers() {
+		List<TimerStats> stats = new ArrayList<TimerStats>(timers.size());
+		for(Timer timer : timers.values()) stats.add(timer.getStats());
+		return stats;
+	}
+
+	/**
+	 * @return Every counter, and every timer that's timed something, one a line, like "CardStack.sort: 3 times, mean 41000 us, max 52000 us, 50% < 33555 us, 90% < 67109 us, 99% < 67109 us".
+	 */
+	public static String getReport() {
+		StringBuilder report = new StringBuilder();
+		for(Map.Entry<String, Long> entry : getCounters().entrySet()) {
+			report.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+		}
+		for(TimerStats stats : getTimers()) {
+			if(stats.getCount() > 0) report.append(stats).append('\n');
+		}
+		return report.toString();
+	}
+
+	/**
+	 * Makes the metrics visible through JMX as flashcarder:type=Metrics. Only registers them the first time.
+	 * @return False if they couldn't be registered.
+	 */
+	public static synchronized boolean register() {
+		if(registered) return true;
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+			registered = true;
+		} catch(JMException e) { /* not fatal, just not visible */ }
+		return registered;
+	}
+
+// public helper classes
+	/**
+	 * A count of something, like bytes read.
+	 */
+	public static class Counter {
+		private final AtomicLong value = new AtomicLong();
+
+		private Counter() {}
+
+		/**
+		 * Adds to the count, if recording is on.
+		 */
+		public void add(long amount) {
+			if(enabled) value.addAndGet(amount);
+		}
+
+		public long get() {
+			return value.get();
+		}
+	}
+
+	/**
+	 * How often something happened and how long it took.
+	 */
+	public static class Timer {
+		private final String name;
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong totalNanos = new AtomicLong();
+		private final AtomicLong maxNanos = new AtomicLong();
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+		private Timer(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Records the time since start, unless recording was off when it started.
+		 * @param start What Metrics.start returned.
+		 */
+		public void stop(long start) {
+			if(start != 0) record(System.nanoTime() - start);
+		}
+
+		/**
+		 * Records a time measured some other way, if recording is on.
+		 * @param nanos How long it took.
+		 */
+		public void record(long nanos) {
+			if(!enabled) return;
+			nanos = Math.max(nanos, 0);
+			count.incrementAndGet();
+			totalNanos.addAndGet(nanos);
+			buckets.incrementAndGet(Math.min(64 - Long.numberOfLeadingZeros(nanos), BUCKETS - 1));
+			for(long max = maxNanos.get(); nanos > max && !maxNanos.compareAndSet(max, nanos); max = maxNanos.get()) {}
+		}
+
+		public long getCount() {
+			return count.get();
+		}
+
+		TimerStats getStats() {
+			long n = count.get();
+			return new TimerStats(name, n, totalNanos.get() / 1000, maxNanos.get() / 1000
+				,getPercentileMicros(n, 0.5), getPercentileMicros(n, 0.9), getPercentileMicros(n, 0.99)
+			);
+		}
+
+		private void reset() {
+			count.set(0);
+			totalNanos.set(0);
+			maxNanos.set(0);
+			for(int b = 0; b < BUCKETS; ++b) buckets.set(b, 0);
+		}
+
+		/**
+		 * @return The top of the bucket the fraction-th time falls in, in microseconds rounded up.
+		 */
+		private long getPercentileMicros(long n, double fraction) {
+			long rank = (long)Math.ceil(n * fraction);
+			long seen = 0;
+			for(int b = 0; b < BUCKETS; ++b) {
+				seen += buckets.get(b);
+				if(seen >= rank && seen > 0) return ((1L << Math.min(b, 62)) + 999) / 1000;
+			}
+			return 0;
+		}
+	}
+
+	/**
+	 * A timer's numbers at one moment, as JMX shows them.
+	 */
+	public static class TimerStats {
+		private final String name;
+		private final long count, totalMicros, maxMicros, p50Micros, p90Micros, p99Micros;
+
+		TimerStats(String name, long count, long totalMicros, long maxMicros, long p50Micros, long p90Micros, long p99Micros) {
+			this.name = name;
+			this.count = count;
+			this.totalMicros = totalMicros;
+			this.maxMicros = maxMicros;
+			this.p50Micros = p50Micros;
+			this.p90Micros = p90Micros;
+			this.p99Micros = p99Micros;
+		}
+
+		public String getName() { return name; }
+		public long getCount() { return count; }
+		public long getTotalMicros() { return totalMicros; }
+		public long getMeanMicros() { return count > 0 ? totalMicros / count : 0; }
+		public long getMaxMicros() { return maxMicros; }
+		/** @return Below what half the times were, within a factor of two. */
+		public long getP50Micros() { return p50Micros; }
+		public long getP90Micros() { return p90Micros; }
+		public long getP99Micros() { return p99Micros; }
+
+		/**
+		 * @return Like "CardStack.sort: 3 times, mean 41000 us, max 52000 us, 50% < 33555 us, 90% < 67109 us, 99% < 67109 us".
+		 */
+		@Override
+		public String toString() {
+			return name + ": " + count + (count == 1 ? " time" : " times")
+				+ ", mean " + getMeanMicros() + " us, max " + maxMicros + " us"
+				+ ", 50% < " + p50Micros + " us, 90% < " + p90Micros + " us, 99% < " + p99Micros + " us";
+		}
+	}
+
+// private helper classes
+	private static class Bean implements MetricsMXBean {
+		public boolean isEnabled() { return Metrics.isEnabled(); }
+		public void setEnabled(boolean enabled) { Metrics.setEnabled(enabled); }
+		public Map<String, Long> getCounters() { return Metrics.getCounters(); }
+		public List<TimerStats> getTimers() { return Metrics.getTimers(); }
+		public String getReport() { return Metrics.getReport(); }
+		public void reset() { Metrics.reset(); }
+	}
+}
@@ -0,0 +1,32 @@
+package flashcarder;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Atlee
+ *
+ * The Metrics as JMX shows them, as flashcarder:type=Metrics, see Metrics.register.
+ */
+public interface MetricsMXBean {
+	boolean isEnabled();
+
+	/**
+	 * Turns recording on or off.
+	 */
+	void setEnabled(boolean enabled);
+
+	Map<String, Long> getCounters();
+
+	List<Metrics.TimerStats> getTimers();
+
+	/**
+	 * @return Every counter and timer, one a line.
+	 */
+	String getReport();
+
+	/**
+	 * Forgets everything recorded so far.
+	 */
+	void reset();
+}
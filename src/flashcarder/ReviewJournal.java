@@ -0,0 +1,444 @@
+package flashcarder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+/**
+ * @author Atlee
+ *
+ * An append-only journal of reviews, kept beside a deck file as deckfile.journal.
+ *
+ * Instead of rewriting the whole deck every time a card's stats change,
+ * each Card.setSeen is recorded as a small fixed-size record and only those are written on flush().
+ * Opening the journal replays it over the freshly loaded deck, and once it grows
+ * as big as the deck is worth, flush() compacts it into the deck file and starts over.
+ *
+ * Cards are identified by their position in the deck file, with a hash of their sides
+ * to catch a deck that was changed behind the journal's back. For a deck read into a CardStore in file order,
+ * a card's index in the store is its position, so the journal keeps nothing per card.
+ *
+ * Example:
+ *		CardStack cardStack = CardStack.createFromFile("somecards.txt"); // in file order
+ *		ReviewJournal journal = ReviewJournal.open("somecards.txt", cardStack); // stats are now up to date
+ *		.. shuffle and review ..
+ *		journal.recordSeen(card, true); // instead of card.setSeen(true)
+ *		..
+ *		journal.flush(); // instead of cardStack.writeToFile("somecards.txt")
+ *		journal.close();
+ *
+ * A deck can also be replayed card by card while it's being read:
+ *		ReviewJournal journal = ReviewJournal.open("somecards.txt");
+ *		.. for each card as it's read, in file order ..
+ *		journal.addCard(card); // the card's stats are now up to date
+ *
+ * flush() and compact() do everything in one go. To save from another thread while reviews go on,
+ * take what's needed while holding whatever lock guards the cards, then write without it:
+ *		boolean compacting = journal.isCompactionDue(); // locked
+ *		ByteBuffer records = journal.takePending(); // locked
+ *		DeckStats stats = compacting ? journal.copyStats() : null; // locked, quick, already has the records in it
+ *		if(compacting) journal.compact(stats); // not locked
+ *		else journal.write(records); // not locked
+ *		.. and if either fails, journal.returnPending(records) while locked ..
+ * Only one thread at a time should be writing.
+ */
+public class ReviewJournal {
+// format constants
+	private static final int MAGIC = 0x46434A31; // "FCJ1"
+	private static final int HEADER_SIZE = 4 + 8 + 8; // magic, deck file length, deck file time
+	private static final int RECORD_SIZE = 4 + 4 + 8 + 1; // card position, side hash, seen time, was easy
+
+// defaults
+	private static final String SUFFIX = ".journal";
+	private static final int COMPACT_MIN_RECORDS = 4096; // don't bother compacting tiny journals
+	private static final int BACKUP_COUNT = 1; // versions of the deck file kept when compacting
+
+// data
+	private final String deckFileName;
+	private int cardCount; // cards added so far
+	private CardStore store; // while every card is the one of this store whose index is its position, null if not
+	private ArrayList<Card> cards; // in deck file order, only for cards that aren't all from store
+	private PositionTable positions; // of cards, null while they're all from store
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private ByteBuffer pending; // records not yet written
+	private long recordCount; // records in the journal file
+
+// records still to be replayed over cards that haven't been added yet
+	private int[] replayPositions; // card position of each record
+	private int[] replayHashes;
+	private long[] replayTimes;
+	private boolean[] replayEasy;
+	private int[] replayOrder; // record indices, by card position then journal order
+	private int replayNext; // next in replayOrder
+
+// public static methods
+	/**
+	 * Opens the journal of a deck, creating it if need be, and replays it over the deck.
+	 * A journal left over from a different version of the deck file is discarded.
+	 * @param deckFileName The name of the deck file.
+	 * @param deck The Cards of that file, in file order, as just loaded.
+	 * @return The open journal.
+	 * @throws IOException If the journal file can't be read or created.
+	 */
+	public static ReviewJournal open(String deckFileName, CardStack deck) throws IOException {
+		ReviewJournal journal = new ReviewJournal(deckFileName);
+		for(int i = 0; i < deck.getCount(); ++i) journal.addCard(deck.getCard(i));
+		return journal;
+	}
+
+	/**
+	 * Opens the journal of a deck that's about to be read, creating it if need be.
+	 * Each card must then be handed to addCard as it's read, and is replayed there.
+	 * A journal left over from a different version of the deck file is discarded.
+	 * @param deckFileName The name of the deck file.
+	 * @return The open journal, with no cards yet.
+	 * @throws IOException If the journal file can't be read or created.
+	 */
+	public static ReviewJournal open(String deckFileName) throws IOException {
+		return new ReviewJournal(deckFileName);
+	}
+
+	/**
+	 * @param deckFileName The name of a deck file.
+	 * @return The name of its journal file.
+	 */
+	public static String getJournalFileName(String deckFileName) {
+		return deckFileName + SUFFIX;
+	}
+
+// public methods
+	/**
+	 * Adds the next card of the deck file, bringing its stats up to date from the journal.
+	 * @param card The card, cards being added in file order.
+	 */
+	public void addCard(Card card) {
+		int position = cardCount++;
+		if(position == 0 && CardStore.getIndex(card) == 0) store = CardStore.getStore(card);
+		else if(store != null && (CardStore.getStore(card) != store || CardStore.getIndex(card) != position)) {
+			cards = getCards(position); // not in store order after all, keep them the usual way
+			positions = new PositionTable(cards);
+			store = null;
+		}
+		if(store == null) {
+			if(cards == null) {
+				cards = new ArrayList<Card>();
+				positions = new PositionTable(cards);
+			}
+			cards.add(card);
+			positions.add(position);
+		}
+		if(replayOrder == null) return;
+		int hash = 0;
+		for(; replayNext < replayOrder.length; ++replayNext) {
+			int record = replayOrder[replayNext];
+			if(replayPositions[record] > position) return; // for a card still to come
+			if(replayPositions[record] < position) continue; // damaged, there's no such card
+			if(hash == 0) hash = sideHash(card);
+			if(replayHashes[record] == hash) card.setSeen(replayEasy[record], replayTimes[record]);
+		}
+		replayPositions = replayHashes = replayOrder = null; // all replayed
+		replayTimes = null;
+		replayEasy = null;
+	}
+
+	/**
+	 * Marks a card as seen and records that in the journal.
+	 * Cards that aren't part of the journaled deck are only marked.
+	 * @param card The Card that was seen.
+	 * @param wasEasy Whether this card was easy or difficult.
+	 */
+	public void recordSeen(Card card, boolean wasEasy) {
+		card.setSeen(wasEasy);
+		int position = getPosition(card);
+		if(position < 0) return;
+		if(pending.remaining() < RECORD_SIZE) {
+			ByteBuffer bigger = ByteBuffer.allocate(pending.capacity() * 2);
+			pending.flip();
+			pending = bigger.put(pending);
+		}
+		pending.putInt(position);
+		pending.putInt(sideHash(card));
+		pending.putLong(card.getLastSeenTime());
+		pending.put((byte)(wasEasy ? 1 : 0));
+	}
+
+	/**
+	 * @param card A card.
+	 * @return Its position in the deck file, or -1 if it isn't part of the journaled deck.
+	 */
+	public int getPosition(Card card) {
+		if(store == null) return positions != null ? positions.get(card) : -1;
+		int index = CardStore.getStore(card) == store ? CardStore.getIndex(card) : -1;
+		return index < cardCount ? index : -1; // cards added to the store since aren't in the file
+	}
+
+	/**
+	 * @return The number of reviews recorded since the last flush.
+	 */
+	public int getPendingCount() {
+		return pending.position() / RECORD_SIZE;
+	}
+
+	/**
+	 * Writes the recorded reviews to disk, compacting the journal into the deck file if it has grown big enough.
+	 * @throws IOException If the journal or the deck file can't be written.
+	 */
+	public void flush() throws IOException {
+		boolean compacting = isCompactionDue();
+		ByteBuffer records = takePending();
+		try {
+			if(compacting) compact(copyStats()); // the records go into the deck file instead
+			else write(records);
+		} catch(IOException e) {
+			returnPending(records);
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes the whole deck, stats and all, to the deck file and empties the journal.
+	 * @throws IOException If the journal or the deck file can't be written.
+	 */
+	public void compact() throws IOException {
+		ByteBuffer records = takePending();
+		try { compact(copyStats()); }
+		catch(IOException e) {
+			returnPending(records);
+			throw e;
+		}
+	}
+
+	/**
+	 * Takes the reviews recorded since the last flush, to be written with write.
+	 * @return The records, ready for reading.
+	 */
+	public ByteBuffer takePending() {
+		ByteBuffer records = pending;
+		records.flip();
+		pending = ByteBuffer.allocate(RECORD_SIZE * 64);
+		return records;
+	}
+
+	/**
+	 * Puts records from takePending back in front of any recorded since, after write failed.
+	 * @param records The records that weren't written.
+	 */
+	public void returnPending(ByteBuffer records) {
+		records.rewind();
+		ByteBuffer merged = ByteBuffer.allocate(records.remaining() + pending.capacity());
+		merged.put(records);
+		pending.flip();
+		merged.put(pending);
+		pending = merged;
+	}
+
+	/**
+	 * Appends records from takePending to the journal file and forces them to disk.
+	 * @param records The records.
+	 * @throws IOException If the journal can't be written.
+	 */
+	public void write(ByteBuffer records) throws IOException {
+		if(!records.hasRemaining()) return;
+		int count = records.remaining() / RECORD_SIZE;
+		long end = HEADER_SIZE + recordCount * RECORD_SIZE;
+		while(records.hasRemaining()) end += channel.write(records, end);
+		channel.force(false);
+		recordCount += count;
+	}
+
+	/**
+	 * @return Whether the journal, counting the pending records, has grown as big as the deck is worth
+	 * and the next flush should compact it instead.
+	 */
+	public boolean isCompactionDue() {
+		return recordCount + getPendingCount() >= Math.max(COMPACT_MIN_RECORDS, cardCount);
+	}
+
+	/**
+	 * Takes the stats of the whole deck as they stand, for compact(DeckStats).
+	 * Only copies numbers, so it's quick enough to do while the cards are locked.
+	 * @return The stats, in file order.
+	 */
+	public DeckStats copyStats() {
+		return new DeckStats(getCards(cardCount));
+	}
+
+	/**
+	 * Writes the deck, with the stats it had, to the deck file and empties the journal.
+	 * Pending records taken before the stats are part of them and mustn't be written as well.
+	 * @param stats What copyStats returned.
+	 * @throws IOException If the journal or the deck file can't be written.
+	 */
+	public void compact(DeckStats stats) throws IOException {
+		CardStack snapshot = stats.toCardStack();
+		if(BinaryCardFile.isBinaryFile(deckFileName)) snapshot.writeBinary(deckFileName, BACKUP_COUNT);
+		else snapshot.write(deckFileName, BACKUP_COUNT);
+		reset();
+		channel.force(true);
+	}
+
+	/**
+	 * Closes the journal file. Reviews recorded since the last flush are lost.
+	 */
+	public void close() {
+		try { file.close(); }
+		catch(IOException e) { /* don't care */ }
+	}
+
+// private methods
+	private ReviewJournal(String deckFileName) throws IOException {
+		this.deckFileName = deckFileName;
+		pending = ByteBuffer.allocate(RECORD_SIZE * 64);
+
+		file = new RandomAccessFile(getJournalFileName(deckFileName), "rw");
+		channel = file.getChannel();
+		try { readRecords(); }
+		catch(IOException e) { close(); throw e; }
+	}
+
+	/**
+	 * Reads the journal's records, sorted by card position, ready for addCard to replay.
+	 */
+	private void readRecords() throws IOException {
+		File deckFile = new File(deckFileName);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		while(header.hasRemaining() && channel.read(header, header.position()) > 0) { /* keep reading */ }
+		header.flip();
+		if(header.remaining() < HEADER_SIZE
+			|| header.getInt() != MAGIC
+			|| header.getLong() != deckFile.length()
+			|| header.getLong() != deckFile.lastModified()
+		) {
+			reset(); // stale or damaged, the deck file is all there is
+			return;
+		}
+
+		recordCount = (channel.size() - HEADER_SIZE) / RECORD_SIZE; // a torn last record is ignored
+		if(recordCount > Integer.MAX_VALUE) throw new IOException("journal is too big");
+		int count = (int)recordCount;
+		replayPositions = new int[count];
+		replayHashes = new int[count];
+		replayTimes = new long[count];
+		replayEasy = new boolean[count];
+		ByteBuffer records = ByteBuffer.allocate(RECORD_SIZE * 4096);
+		long position = HEADER_SIZE;
+		long end = HEADER_SIZE + recordCount * RECORD_SIZE;
+		int record = 0;
+		while(position < end) {
+			records.clear();
+			if(records.capacity() > end - position) records.limit((int)(end - position));
+			while(records.hasRemaining()) {
+				if(channel.read(records, position + records.position()) < 0) throw new IOException("journal is truncated");
+			}
+			records.flip();
+			position += records.limit();
+			for(; records.hasRemaining(); ++record) {
+				replayPositions[record] = records.getInt();
+				replayHashes[record] = records.getInt();
+				replayTimes[record] = records.getLong();
+				replayEasy[record] = records.get() != 0;
+			}
+		}
+		channel.truncate(end);
+
+		replayOrder = new int[count];
+		for(int i = 0; i < count; ++i) replayOrder[i] = i;
+		IntRope.sort(replayOrder, count, new IntRope.Comparator() { // stable, so each card's reviews stay in order
+			public int compare(int record1, int record2) {
+				int position1 = replayPositions[record1], position2 = replayPositions[record2];
+				return position1 < position2 ? -1 : position1 == position2 ? 0 : 1;
+			}
+		});
+	}
+
+	/**
+	 * Empties the journal and ties it to the current version of the deck file.
+	 */
+	private void reset() throws IOException {
+		File deckFile = new File(deckFileName);
+		channel.truncate(0);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC);
+		header.putLong(deckFile.length());
+		header.putLong(deckFile.lastModified());
+		header.flip();
+		while(header.hasRemaining()) channel.write(header, header.position());
+		recordCount = 0;
+	}
+
+	/**
+	 * @return The first count cards, in file order.
+	 */
+	private ArrayList<Card> getCards(int count) {
+		if(store == null) return cards != null ? cards : new ArrayList<Card>();
+		ArrayList<Card> storeCards = new ArrayList<Card>(count);
+		for(int i = 0; i < count; ++i) storeCards.add(store.getCard(i));
+		return storeCards;
+	}
+
+	private static int sideHash(Card card) {
+		return card.getSideA().hashCode() * 31 + card.getSideB().hashCode();
+	}
+
+// private helper classes
+	/**
+	 * The positions of cards in a list of them: an open addressing hash table of positions in the list,
+	 * so there's no map entry or boxed Integer for each card.
+	 */
+	private static class PositionTable {
+		private final ArrayList<Card> cards;
+		private int[] slots = new int[1024]; // position + 1 of the card that hashed there, 0 if none did
+		private int used;
+
+		/**
+		 * @param cards The cards, which the table looks its keys up in.
+		 */
+		PositionTable(ArrayList<Card> cards) {
+			this.cards = cards;
+			for(int position = 0; position < cards.size(); ++position) add(position);
+		}
+
+		/**
+		 * @param position The position of a card that's been added to the list.
+		 */
+		void add(int position) {
+			if((used + 1) * 2 > slots.length) grow();
+			insert(slots, position);
+			++used;
+		}
+
+		/**
+		 * @return The card's position, or -1 if it isn't in the list.
+		 */
+		int get(Card card) {
+			int mask = slots.length - 1;
+			for(int slot = hash(card) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+				int position = slots[slot] - 1;
+				if(cards.get(position).equals(card)) return position;
+			}
+			return -1;
+		}
+
+		private void grow() {
+			int[] bigger = new int[slots.length * 2];
+			for(int entry : slots) if(entry != 0) insert(bigger, entry - 1);
+			slots = bigger;
+		}
+
+		private void insert(int[] table, int position) {
+			int mask = table.length - 1;
+			int slot = hash(cards.get(position)) & mask;
+			while(table[slot] != 0) slot = (slot + 1) & mask;
+			table[slot] = position + 1;
+		}
+
+		private static int hash(Card card) {
+			int hash = card.hashCode();
+			return hash ^ (hash >>> 16); // like HashMap, the low bits of store indices alone cluster
+		}
+	}
+}
@@ -0,0 +1,752 @@
+package flashcarder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Atlee
+ *
+ * A review of one deck, without any GUI attached.
+ *
+ * Holds the deck's scheduler, its journal and the card currently being reviewed.
+ * The GUI drives one of these, and so can anything else that wants to review cards:
+ *		ReviewSession session = new ReviewSession(new ShuffleScheduler(), true);
+ *		if(!session.open("somecards.txt")) .. couldn't read it ..
+ *		for(Card card = session.next(); card != null; card = session.answer(true)) {
+ *			.. show card, decide whether it was easy ..
+ *		}
+ *		session.save();
+ *		session.close();
+ *
+ * Every public method is synchronized, so a session can be shared between threads.
+ * answer(boolean) marks the current card and draws the next in one step, so concurrent
+ * answers never see the same card twice.
+ *
+ * open(String, LoadListener) streams the deck in: the first card can be reviewed as soon as
+ * it's read, while the thread that called open carries on reading the rest. Saving waits
+ * until the whole deck is in.
+ *
+ * With indexing on, search(String, int) finds cards by the text on their sides, see CardIndex.
+ * Cards are indexed as they're read, so searching works while the deck is still loading.
+ *
+ * Loading and saving keep the deck's DeckSummary up to date, once the whole deck is in.
+ *
+ * With a text cache size set, an uncompressed text deck's side texts are left in the file and read
+ * as cards come up, see CardStore.createLazy, so the heap holds the stats and the cache rather than
+ * the whole deck. The next few cards' texts are read ahead as each card is drawn. Such decks aren't
+ * indexed or interned, since both need every text.
+ *
+ * With resuming on, writeSnapshot() notes the order of the cards and the card being reviewed in a
+ * SessionSnapshot, and opening the file again carries on from there instead of reshuffling. The snapshot's
+ * card is the current card straight away, while the deck is read; the rest are scheduled once it's all in
+ * and the snapshot has been checked against it. Answering waits until then. A snapshot that doesn't fit
+ * the deck is ignored, and the deck is scheduled afresh.
+ *
+ * save() only holds the session's lock while it takes what needs writing, copying no more than the cards'
+ * stats (see DeckStats), and makes the copies and writes them without it, so reviewing carries on while
+ * an AutoSaver saves on another thread, even when the whole deck is being written.
+ */
+public class ReviewSession {
+// defaults
+	private static final int BACKUP_COUNT = 1; // previous versions kept when a file is rewritten
+	private static final int LOAD_BATCH_SIZE = 4096; // cards read between handing them over to the session
+	private static final int LOAD_PARALLELISM = Runtime.getRuntime().availableProcessors();
+	private static final int READ_AHEAD_CARDS = 8; // upcoming cards whose texts are read ahead, with a text cache
+
+// metrics
+	private static final Metrics.Timer LOAD_TIMER = Metrics.timer("ReviewSession.load");
+	private static final Metrics.Counter LOAD_BYTES = Metrics.counter("ReviewSession.load.bytes");
+	private static final Metrics.Counter LOAD_CARDS = Metrics.counter("ReviewSession.load.cards");
+	private static final Metrics.Timer ANSWER_TIMER = Metrics.timer("ReviewSession.answer");
+	private static final Metrics.Timer SAVE_TIMER = Metrics.timer("ReviewSession.save");
+
+	/**
+	 * Hears how reading a deck is going.
+	 */
+	public interface LoadListener {
+		/**
+		 * Called on the reading thread each time another batch of cards is ready for review.
+		 * @param cardCount The number of cards read so far.
+		 * @param bytesRead How far into the file that is.
+		 * @param byteCount The size of the file.
+		 */
+		void cardsLoaded(int cardCount, long bytesRead, long byteCount);
+	}
+
+// data
+	private final CardScheduler scheduler;
+	private final boolean journaled;
+	private String fileName; // null when no file is open
+	private ReviewJournal journal; // records reviews of the open file, null if it couldn't be opened
+	private Card card; // the card being reviewed, not held by the scheduler
+	private int totalCount;
+	private long answerCount; // answers given since the file was opened
+	private int unsavedCount; // answers that changed a card since the last save
+	private boolean loading; // whether open is still reading the file
+	private int openCount; // changed by every open and close, so a superseded open knows to stop reading
+	private boolean interning; // whether loading shares identical sides
+	private long savedBytes; // roughly what sharing sides saved loading the open file
+	private boolean indexing; // whether opening a file indexes its cards for searching
+	private CardIndex index; // the open file's cards, null if it isn't being indexed
+	private long textCacheBytes; // how much side text to keep for files opened from now on, 0 to keep it all
+	private CardStore store; // holds the open file's cards when their texts are left in it, otherwise null
+	private boolean resuming; // whether opening a file carries on from its SessionSnapshot
+	private SessionSnapshot restoring; // what the open file's being read into, null once its cards are scheduled
+	private ArrayList<Card> restoredCards; // the open file's cards in file order, while restoring
+	private final Object saveLock = new Object(); // one save at a time, always taken before the session's lock
+
+// public static methods
+	/**
+	 * Makes a scheduler by name.
+	 * @param name "leitner" for spaced repetition, anything else including null for the shuffled deck.
+	 * @return A new CardScheduler.
+	 */
+	public static CardScheduler createScheduler(String name) {
+		if("leitner".equals(name)) return new LeitnerScheduler();
+		return new ShuffleScheduler();
+	}
+
+// public methods
+	/**
+	 * @param scheduler Decides the order of the cards. The session keeps it.
+	 * @param journaled Whether to keep a ReviewJournal of the open file, so saving only writes the changes.
+	 */
+	public ReviewSession(CardScheduler scheduler, boolean journaled) {
+		this.scheduler = scheduler;
+		this.journaled = journaled;
+	}
+
+	/**
+	 * Opens a deck file for review, closing whatever was open before.
+	 * @param fileName The name of the file to open and read from.
+	 * @return True on success, false if the file can't be read.
+	 */
+	public boolean open(String fileName) {
+		return open(fileName, null);
+	}
+
+	/**
+	 * Opens a deck file for review, closing whatever was open before.
+	 * Cards can be reviewed as soon as the first one is read; this returns once the last one is.
+	 * @param fileName The name of the file to open and read from.
+	 * @param listener Told about each batch of cards read, or null.
+	 * @return True on success, false if the file can't be read or the session was closed or reopened meanwhile.
+	 */
+	public boolean open(String fileName, LoadListener listener) {
+		int opened;
+		synchronized(this) {
+			close();
+			opened = ++openCount;
+			this.fileName = fileName;
+			loading = true;
+			scheduler.setCards(new CardStack());
+			if(resuming) restoring = SessionSnapshot.read(fileName); // before the journal, which it has to match
+			if(restoring != null) {
+				restoredCards = new ArrayList<Card>();
+				card = restoring.getCurrentCard(); // a copy to show until the deck's in
+			}
+			if(indexing && !isLeavingTextInFile(fileName)) index = new CardIndex();
+			if(journaled) {
+				try { journal = ReviewJournal.open(fileName); } // replays each card as it's read
+				catch(IOException e) { journal = null; } // saves will rewrite the whole file instead
+			}
+		}
+		boolean loaded = false;
+		DeckSummary summary = null;
+		long start = Metrics.start();
+		try {
+			loaded = load(fileName, opened, listener);
+			if(loaded && start != 0) {
+				LOAD_TIMER.stop(start);
+				LOAD_BYTES.add(new File(fileName).length());
+				LOAD_CARDS.add(getTotalCount());
+			}
+		} finally {
+			synchronized(this) {
+				if(opened == openCount) {
+					if(loaded && restoring != null) finishRestoring();
+					loading = false;
+					notifyAll();
+					if(!loaded) close();
+					else summary = getSummary();
+				}
+			}
+		}
+		writeSummary(fileName, summary);
+		return loaded;
+	}
+
+	/**
+	 * Closes the open file, if any. Reviews since the last save are lost.
+	 */
+	public synchronized void close() {
+		++openCount; // stops a load in progress
+		loading = false;
+		notifyAll();
+		if(journal != null) {
+			journal.close();
+			journal = null;
+		}
+		fileName = null;
+		card = null;
+		totalCount = 0;
+		answerCount = 0;
+		unsavedCount = 0;
+		savedBytes = 0;
+		index = null;
+		restoring = null;
+		restoredCards = null;
+		if(store != null) {
+			store.close();
+			store = null;
+		}
+	}
+
+	/**
+	 * Makes identical sides share one String from the next open on, see SideInterner.
+	 * Binary files share them anyway.
+	 * @param interning Whether to share them.
+	 */
+	public synchronized void setInterning(boolean interning) {
+		this.interning = interning;
+	}
+
+	/**
+	 * Indexes the cards of files opened from now on, so they can be searched.
+	 * The index takes memory, mostly for the words that are on only one or two cards.
+	 * @param indexing Whether to index them.
+	 */
+	public synchronized void setIndexing(boolean indexing) {
+		this.indexing = indexing;
+	}
+
+	/**
+	 * Carries on from where the review was left, see writeSnapshot, when files are opened from now on.
+	 * @param resuming Whether to carry on from SessionSnapshots.
+	 */
+	public synchronized void setResuming(boolean resuming) {
+		this.resuming = resuming;
+	}
+
+	/**
+	 * Leaves the side texts of uncompressed text files opened from now on in the file,
+	 * reading them as they're wanted and caching up to about so many bytes of them.
+	 * Files opened that way aren't indexed for searching.
+	 * @param textCacheBytes How much memory the cached texts can take, or 0 to read the texts in with the cards.
+	 */
+	public synchronized void setTextCacheSize(long textCacheBytes) {
+		this.textCacheBytes = Math.max(textCacheBytes, 0);
+	}
+
+	/**
+	 * @return Like "1234 cached texts, 96% hits", or null if the open file's texts aren't being read as they're wanted.
+	 */
+	public synchronized String getTextCacheStatistics() {
+		return store != null ? store.getTextStatistics() : null;
+	}
+
+	/**
+	 * Finds the open file's cards with a side that contains some text, ignoring case, see CardIndex.find.
+	 * @param text What to look for.
+	 * @param limit The most cards to return.
+	 * @return Up to limit matching cards in file order, or an empty list if nothing's open or indexing is off.
+	 */
+	public synchronized List<Card> search(String text, int limit) {
+		if(index == null) return Collections.emptyList();
+		return index.find(text, limit);
+	}
+
+	/**
+	 * @return The card being reviewed, drawing the next one if there isn't one yet, or null if nothing needs reviewing.
+	 */
+	public synchronized Card next() {
+		if(card == null && fileName != null) {
+			card = scheduler.nextCard();
+			if(store != null && card != null) store.readAhead(scheduler.peekCards(READ_AHEAD_CARDS));
+		}
+		return card;
+	}
+
+	/**
+	 * Answers the card being reviewed and draws the next one.
+	 * @param wasEasy True if the card was known, false to put it back for later.
+	 * @return The next card, or null if nothing needs reviewing.
+	 */
+	public synchronized Card answer(boolean wasEasy) {
+		long start = Metrics.start();
+		if(restoring != null) {
+			waitUntilRestored(); // the current card is only a copy until then
+			if(restoring != null) return card; // interrupted
+		}
+		if(card != null) {
+			if(wasEasy) {
+				setCardSeen(card, true);
+				scheduler.putDone(card);
+				++unsavedCount;
+			} else {
+				if(scheduler.recordsDifficultAnswers()) {
+					setCardSeen(card, false);
+					++unsavedCount;
+				}
+				scheduler.putBack(card);
+			}
+			card = null;
+			++answerCount;
+		}
+		Card next = next();
+		ANSWER_TIMER.stop(start);
+		return next;
+	}
+
+	/**
+	 * Looks at the cards likely to come up after the current one, see CardScheduler.peekCards.
+	 * @param count How many cards to look at.
+	 * @return Up to count cards, the next one first.
+	 */
+	public synchronized List<Card> peekNextCards(int count) {
+		if(fileName == null) return Collections.emptyList();
+		return scheduler.peekCards(count);
+	}
+
+	/**
+	 * @return The card being reviewed, or null.
+	 */
+	public synchronized Card getCard() {
+		return card;
+	}
+
+	public synchronized String getFileName() {
+		return fileName;
+	}
+
+	/**
+	 * @return The number of cards still to review, not counting the current one.
+	 */
+	public synchronized int getToDoCount() {
+		return fileName != null ? scheduler.getToDoCount() : 0;
+	}
+
+	/**
+	 * @return The number of cards done for now.
+	 */
+	public synchronized int getDoneCount() {
+		return fileName != null ? scheduler.getDoneCount() : 0;
+	}
+
+	/**
+	 * @return The number of cards in the open file.
+	 */
+	public synchronized int getTotalCount() {
+		return totalCount;
+	}
+
+	/**
+	 * @return The number of cards answered since the file was opened.
+	 */
+	public synchronized long getAnswerCount() {
+		return answerCount;
+	}
+
+	/**
+	 * @return Whether there are changes since the last save.
+	 */
+	public synchronized boolean isModified() {
+		return unsavedCount > 0;
+	}
+
+	/**
+	 * @return The number of answers that changed a card since the last save.
+	 */
+	public synchronized int getUnsavedCount() {
+		return unsavedCount;
+	}
+
+	/**
+	 * @return Roughly how many bytes identical sides sharing one String saved loading the open file.
+	 */
+	public synchronized long getSavedBytes() {
+		return savedBytes;
+	}
+
+	/**
+	 * @return The numbers for the open file as they are now, or null if nothing's open.
+	 */
+	public synchronized DeckSummary getSummary() {
+		if(fileName == null) return null;
+		int toDoCount = scheduler.getToDoCount() + (card != null ? 1 : 0); // the card being reviewed isn't done yet
+		return new DeckSummary(totalCount, toDoCount, System.currentTimeMillis());
+	}
+
+	/**
+	 * @return Whether the open file is being read into the order of its SessionSnapshot, which answering waits for.
+	 */
+	public synchronized boolean isRestoring() {
+		return restoring != null;
+	}
+
+	/**
+	 * @return Whether the open file is still being read.
+	 */
+	public synchronized boolean isLoading() {
+		return loading;
+	}
+
+	/**
+	 * Saves progress to the open file, writing only the journal when there is one.
+	 * Without a journal, waits for the file to finish loading first; the journal is only compacted once it has.
+	 * The journal, a compacted deck or the whole file is written without holding the session's lock, which is only held
+	 * to copy the cards' stats, so answers can go on meanwhile; they're saved next time. If the session is closed meanwhile, there's nothing left to save.
+	 * @throws IOException Describing what went wrong. Nothing is lost, saving can be tried again.
+	 */
+	public void save() throws IOException {
+		long start = Metrics.start();
+		synchronized(saveLock) {
+			ReviewJournal saving;
+			boolean compacting;
+			ByteBuffer records;
+			DeckStats stats = null;
+			int saved;
+			String savedFileName;
+			DeckSummary summary;
+			boolean whole;
+			synchronized(this) {
+				if(journal == null) waitUntilLoaded();
+				if(fileName == null) return; // nothing saved
+				savedFileName = fileName;
+				whole = journal == null;
+			}
+			if(whole) { // the whole file has to be written
+				if(writeWhole(savedFileName)) SAVE_TIMER.stop(start);
+				return;
+			}
+			synchronized(this) {
+				if(journal == null || !savedFileName.equals(fileName)) return; // closed meanwhile, nothing to save
+				summary = loading ? null : getSummary(); // part of a deck would make a wrong one
+				saving = journal;
+				compacting = !loading && journal.isCompactionDue(); // a snapshot needs all of the deck
+				records = journal.takePending();
+				if(compacting) stats = journal.copyStats(); // has the records in it, and is quick to take
+				saved = unsavedCount;
+				unsavedCount = 0;
+			}
+			try {
+				if(compacting) saving.compact(stats); // copies the cards and writes them without the lock
+				else saving.write(records); // only the changes need writing
+			} catch(IOException e) {
+				synchronized(this) {
+					if(journal != saving) return; // closed meanwhile, the reviews went with it
+					journal.returnPending(records);
+					unsavedCount += saved;
+				}
+				throw e;
+			}
+			if(summary != null) writeSummary(savedFileName, summary);
+		}
+		SAVE_TIMER.stop(start);
+	}
+
+	/**
+	 * Saves, then notes where the review of the open file is up to in its SessionSnapshot, for the next open to carry on from.
+	 * Only with resuming on and a journal, which is what knows each card's position in the file.
+	 * @return Whether the snapshot was written; it isn't while the file's loading, or if answers came in while saving.
+	 * @throws IOException If saving or writing the snapshot went wrong.
+	 */
+	public boolean writeSnapshot() throws IOException {
+		synchronized(saveLock) {
+			save();
+			SessionSnapshot snapshot;
+			String snapshotFileName;
+			synchronized(this) {
+				if(!resuming || journal == null || loading || unsavedCount > 0) return false;
+				CardStack[] order = scheduler.getOrder();
+				int[] toDo = order != null ? getPositions(order[0]) : null;
+				int[] done = order != null ? getPositions(order[1]) : null;
+				if(toDo == null || done == null) toDo = done = null;
+				int position = card != null ? journal.getPosition(card) : -1;
+				snapshot = new SessionSnapshot(totalCount, position, position >= 0 ? card : null, toDo, done);
+				snapshotFileName = fileName;
+			}
+			snapshot.write(snapshotFileName); // still matches the journal, nothing's saved meanwhile
+		}
+		return true;
+	}
+
+	/**
+	 * Writes every card to a file, which becomes the open file.
+	 * Waits for the open file to finish loading first, then writes without holding the session's lock, see save().
+	 * @param fileName The name of the file that will be created or replaced.
+	 * @throws IOException Describing what went wrong. The open file stays the same.
+	 */
+	public void saveAs(String fileName) throws IOException {
+		synchronized(saveLock) {
+			writeWhole(fileName);
+		}
+	}
+
+// private methods
+	/**
+	 * Writes every card to a file, which becomes the open file, and starts journaling it.
+	 * Only the cards' stats are copied while the session is locked; the copies are made and written without the lock,
+	 * so reviewing carries on meanwhile. Answers given meanwhile aren't in the file, so then there's no journal
+	 * and the next save writes the whole file again. Call holding saveLock but not the session's lock.
+	 * @param targetFileName The name of the file that will be created or replaced.
+	 * @return True if it was written, false if nothing's open or it was closed or reopened meanwhile.
+	 * @throws IOException Describing what went wrong. The open file stays the same.
+	 */
+	private boolean writeWhole(String targetFileName) throws IOException {
+		CardStack written; // the live cards, in file order
+		DeckStats stats;
+		int saved, opened;
+		synchronized(this) {
+			waitUntilLoaded();
+			if(fileName == null) return false;
+			written = scheduler.getAllCards();
+			if(card != null) written.addCard(card); // last
+			stats = new DeckStats(written.getCards());
+			saved = unsavedCount;
+			opened = openCount;
+		}
+		stats.toCardStack().write(targetFileName, BACKUP_COUNT);
+		DeckSummary summary;
+		synchronized(this) {
+			if(opened != openCount) return false;
+			unsavedCount -= saved;
+			fileName = targetFileName;
+			if(unsavedCount == 0) openJournal(written);
+			else if(journal != null) { // it's of the old file
+				journal.close();
+				journal = null;
+			}
+			summary = getSummary();
+		}
+		writeSummary(targetFileName, summary);
+		return true;
+	}
+
+	/**
+	 * Reads the file in batches, handing each over as soon as it's read.
+	 * The very first card goes on its own, to get the review going; a big text file's later chunks are parsed in parallel meanwhile.
+	 * @return True if the whole file was read, false if it can't be or this open was superseded.
+	 */
+	private boolean load(String fileName, final int opened, final LoadListener listener) {
+		try {
+			if(BinaryCardFile.isBinaryFile(fileName)) { // read in one go, it's quick
+				ArrayList<Card> cards = BinaryCardFile.readAll(fileName);
+				if(!addLoadedCards(cards, opened)) return false;
+				long length = new File(fileName).length();
+				if(listener != null) listener.cardsLoaded(cards.size(), length, length);
+				return true;
+			}
+			if(isLeavingTextInFile(fileName)) return loadLeavingTextInFile(fileName, opened, listener);
+			SideInterner interner = null; // dropped, table and all, once the file's read
+			synchronized(this) {
+				if(interning) interner = new SideInterner();
+			}
+			final int[] cardCount = new int[1];
+			boolean read = MappedCardReader.readInBatches(fileName, LOAD_PARALLELISM, LOAD_BATCH_SIZE, interner, new MappedCardReader.BatchListener() {
+				public boolean cardsRead(List<Card> cards, long position, long end) {
+					if(!addLoadedCards(cards, opened)) return false;
+					cardCount[0] += cards.size();
+					if(listener != null) listener.cardsLoaded(cardCount[0], position, end);
+					return true;
+				}
+			});
+			if(!read) return false;
+			if(interner != null) setSavedBytes(interner.getSavedBytes(), opened);
+			if(cardCount[0] == 0 && listener != null) {
+				long length = new File(fileName).length();
+				listener.cardsLoaded(0, length, length);
+			}
+			return true;
+		} catch(IOException e) { return false; }
+	}
+
+	/**
+	 * Like load, but only the cards' stats and where their texts are go in a CardStore.
+	 * The store is added to under the session's lock, since reviewing reads it meanwhile.
+	 */
+	private boolean loadLeavingTextInFile(String fileName, int opened, LoadListener listener) throws IOException {
+		CardStore cards;
+		synchronized(this) {
+			cards = CardStore.createLazy(fileName, textCacheBytes);
+			if(opened != openCount) {
+				cards.close();
+				return false;
+			}
+			store = cards; // closed along with the session from now on
+		}
+		MappedCardReader reader = new MappedCardReader(fileName);
+		try {
+			ArrayList<Card> batch = new ArrayList<Card>(LOAD_BATCH_SIZE);
+			int batchSize = 1;
+			int cardCount = 0;
+			boolean ended = false;
+			while(!ended) {
+				synchronized(this) {
+					if(opened != openCount) return false;
+					for(int i; batch.size() < batchSize; ) {
+						if((i = reader.readCardLazily(cards)) < 0) {
+							ended = true;
+							break;
+						}
+						batch.add(cards.getCard(i));
+					}
+				}
+				if(!batch.isEmpty()) {
+					if(!addLoadedCards(batch, opened)) return false;
+					cardCount += batch.size();
+					if(listener != null) listener.cardsLoaded(cardCount, reader.getPosition(), reader.getEnd());
+					batch.clear();
+				}
+				batchSize = LOAD_BATCH_SIZE;
+			}
+			if(cardCount == 0 && listener != null) listener.cardsLoaded(0, reader.getEnd(), reader.getEnd());
+		} finally {
+			reader.close();
+		}
+		return true;
+	}
+
+	/**
+	 * @return Whether a file's side texts would be left in it when it's opened.
+	 */
+	private synchronized boolean isLeavingTextInFile(String fileName) {
+		return textCacheBytes > 0 && CardStore.canLeaveTextInFile(fileName);
+	}
+
+	/**
+	 * Hands freshly read cards, in file order, to the journal and the scheduler.
+	 * @return False if this open was superseded.
+	 */
+	private synchronized boolean addLoadedCards(List<Card> cards, int opened) {
+		if(opened != openCount) return false;
+		for(Card card : cards) {
+			if(journal != null) journal.addCard(card); // brings its stats up to date before it's scheduled
+			if(restoring != null) restoredCards.add(card); // scheduled once they're all in
+			else scheduler.addCard(card);
+			if(index != null) index.add(card);
+		}
+		totalCount += cards.size();
+		return true;
+	}
+
+	/**
+	 * Writes a deck's summary, if it can; it's only there to save reading the deck.
+	 */
+	private static void writeSummary(String fileName, DeckSummary summary) {
+		if(summary == null) return; // closed meanwhile
+		try { summary.write(fileName); }
+		catch(IOException e) { /* the deck will just be shown without its numbers */ }
+	}
+
+	private synchronized void setSavedBytes(long savedBytes, int opened) {
+		if(opened == openCount) this.savedBytes = savedBytes;
+	}
+
+	/**
+	 * Schedules the cards just read in the snapshot's order, with its card as the current one,
+	 * once they've been checked against it. If it doesn't fit them, they're scheduled afresh.
+	 */
+	private void finishRestoring() {
+		SessionSnapshot snapshot = restoring;
+		ArrayList<Card> cards = restoredCards;
+		restoring = null;
+		restoredCards = null;
+		Card current = null;
+		boolean fits = snapshot.getCardCount() == cards.size();
+		int position = snapshot.getCurrentPosition();
+		if(fits && position >= 0) {
+			Card copy = snapshot.getCurrentCard();
+			current = position < cards.size() ? cards.get(position) : null;
+			if(current == null || !copy.getSideA().equals(current.getSideA()) || !copy.getSideB().equals(current.getSideB())) fits = false;
+		}
+		if(!fits) current = null;
+		CardStack[] order = fits && snapshot.getToDo() != null ? getOrder(snapshot, cards) : null;
+		if(order != null) {
+			scheduler.restoreOrder(order[0], order[1]);
+		} else {
+			CardStack rest = new CardStack();
+			for(Card loaded : cards) if(loaded != current) rest.addCard(loaded);
+			scheduler.setCards(rest);
+		}
+		card = current;
+	}
+
+	/**
+	 * @return The snapshot's cards to do and done, or null unless they're all the cards but the current one, once each.
+	 */
+	private static CardStack[] getOrder(SessionSnapshot snapshot, ArrayList<Card> cards) {
+		boolean[] placed = new boolean[cards.size()];
+		if(snapshot.getCurrentPosition() >= 0) placed[snapshot.getCurrentPosition()] = true;
+		int placedCount = snapshot.getCurrentPosition() >= 0 ? 1 : 0;
+		CardStack[] order = new CardStack[2];
+		int[][] positions = { snapshot.getToDo(), snapshot.getDone() };
+		for(int s = 0; s < 2; ++s) {
+			ArrayList<Card> stack = new ArrayList<Card>(positions[s].length);
+			for(int position : positions[s]) {
+				if(position < 0 || position >= placed.length || placed[position]) return null;
+				placed[position] = true;
+				stack.add(cards.get(position));
+			}
+			placedCount += stack.size();
+			order[s] = new CardStack(stack);
+		}
+		return placedCount == placed.length ? order : null;
+	}
+
+	/**
+	 * @return The positions in the file of a stack's cards, or null if any of them isn't from the file.
+	 */
+	private int[] getPositions(CardStack stack) {
+		int[] positions = new int[stack.getCount()];
+		for(int i = 0; i < positions.length; ++i) {
+			if((positions[i] = journal.getPosition(stack.getCard(i))) < 0) return null;
+		}
+		return positions;
+	}
+
+	private void waitUntilRestored() {
+		while(restoring != null) {
+			try { wait(); }
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	private void waitUntilLoaded() throws IOException {
+		while(loading) {
+			try { wait(); }
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("interrupted while waiting for " + fileName + " to load");
+			}
+		}
+	}
+
+	/**
+	 * Marks a card as seen, through the journal when there is one.
+	 */
+	private void setCardSeen(Card card, boolean wasEasy) {
+		if(journal != null) journal.recordSeen(card, wasEasy);
+		else card.setSeen(wasEasy);
+	}
+
+	/**
+	 * Starts journaling reviews of the open file.
+	 * @param deck The Cards of the file in file order.
+	 */
+	private void openJournal(CardStack deck) {
+		if(journal != null) journal.close();
+		journal = null;
+		if(!journaled) return;
+		try { journal = ReviewJournal.open(fileName, deck); }
+		catch(IOException e) { journal = null; } // saves will rewrite the whole file instead
+	}
+}
@@ -0,0 +1,176 @@
+package flashcarder;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+
+/**
+ * @author Atlee
+ *
+ * Replaces files without ever leaving a half-written one behind.
+ *
+ * The new contents go to a temporary file in the same directory, are forced to disk,
+ * and only then is the temporary file renamed over the original in one atomic step.
+ * A crash or a full disk partway through leaves the original untouched.
+ * The replacement keeps the original's permissions, owner and group, where the file system has them.
+ * Optionally the previous versions are kept as name.bak.1, name.bak.2 and so on, newest first.
+ *
+ * Example:
+ *		SafeFileWriter.write("somecards.txt", 1, new SafeFileWriter.Content() {
+ *			public void writeTo(OutputStream output) throws IOException {
+ *				output.write(...);
+ *			}
+ *		});
+ */
+public class SafeFileWriter {
+// defaults
+	private static final int BUFFER_SIZE = 1 << 20;
+	private static final String BACKUP_SUFFIX = ".bak.";
+
+	/**
+	 * Produces the contents of a file.
+	 */
+	public interface Content {
+		/**
+		 * @param output Where to write the contents, already buffered. Don't close it.
+		 * @throws IOException Passed on to the caller of write, the target file is left alone.
+		 */
+		void writeTo(OutputStream output) throws IOException;
+	}
+
+	/**
+	 * Hears when the file is about to be replaced and when it has been,
+	 * for whoever has it open and has to let go of it meanwhile.
+	 */
+	public interface ReplaceListener {
+		/**
+		 * Called once the contents are written, just before the file is replaced.
+		 */
+		void replacing();
+
+		/**
+		 * Called after replacing(), whether or not it worked.
+		 * @param done Whether the file was replaced.
+		 */
+		void replaced(boolean done);
+	}
+
+// public static methods
+	/**
+	 * Atomically replaces a file with new contents.
+	 * @param fileName The name of the file that will be created or replaced.
+	 * @param backupCount How many previous versions to keep, 0 for none.
+	 * @param content Writes the new contents.
+	 * @throws IOException Saying which step went wrong. The original file is unchanged.
+	 */
+	public static void write(String fileName, int backupCount, Content content) throws IOException {
+		write(fileName, backupCount, content, null);
+	}
+
+	/**
+	 * Atomically replaces a file with new contents, telling a listener around the replacing.
+	 * @param fileName The name of the file that will be created or replaced.
+	 * @param backupCount How many previous versions to keep, 0 for none.
+	 * @param content Writes the new contents.
+	 * @param listener Hears when the file is replaced, or null.
+	 * @throws IOException Saying which step went wrong. The original file is unchanged.
+	 */
+	public static void write(String fileName, int backupCount, Content content, ReplaceListener listener) throws IOException {
+		File target = new File(fileName).getAbsoluteFile();
+		File directory = target.getParentFile();
+		File temporary;
+		try { temporary = File.createTempFile("." + target.getName() + ".", ".tmp", directory); }
+		catch(IOException e) { throw new IOException("can't create a temporary file in " + directory + ": " + e.getMessage(), e); }
+
+		boolean done = false;
+		try {
+			if(target.exists()) copyAttributes(target.toPath(), temporary.toPath()); // before anything's written to it
+			FileOutputStream outStream = new FileOutputStream(temporary);
+			try {
+				BufferedOutputStream output = new BufferedOutputStream(outStream, BUFFER_SIZE);
+				content.writeTo(output);
+				output.flush();
+				outStream.getChannel().force(true);
+			} catch(IOException e) {
+				throw new IOException("can't write " + temporary + ": " + e.getMessage(), e);
+			} finally {
+				outStream.close();
+			}
+
+			if(backupCount > 0 && target.exists()) keepBackup(target, backupCount);
+
+			if(listener != null) listener.replacing();
+			try {
+				try { Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE); }
+				catch(AtomicMoveNotSupportedException e) { Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING); }
+				done = true;
+			} catch(IOException e) {
+				throw new IOException("can't replace " + target + ": " + e.getMessage(), e);
+			} finally {
+				if(listener != null) listener.replaced(done);
+			}
+			forceDirectory(directory);
+		} finally {
+			if(!done) temporary.delete();
+		}
+	}
+
+// private static helpers
+	/**
+	 * Gives the temporary file the permissions, owner and group of the file it replaces, where files have them.
+	 * Otherwise it would get the defaults for a new file, and the rename would loosen a file kept private.
+	 * Only the owner can't always be changed, that's left as it is if it can't.
+	 */
+	private static void copyAttributes(Path target, Path temporary) throws IOException {
+		PosixFileAttributeView targetView = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+		PosixFileAttributeView temporaryView = Files.getFileAttributeView(temporary, PosixFileAttributeView.class);
+		if(targetView == null || temporaryView == null) return; // not POSIX, the permissions are inherited
+		PosixFileAttributes attributes;
+		try {
+			attributes = targetView.readAttributes();
+			temporaryView.setPermissions(attributes.permissions());
+		} catch(IOException e) {
+			throw new IOException("can't copy the permissions of " + target + ": " + e.getMessage(), e);
+		}
+		try { temporaryView.setGroup(attributes.group()); }
+		catch(IOException e) { /* not one of this user's groups, it keeps the default group */ }
+		if(!attributes.owner().equals(temporaryView.getOwner())) {
+			try { temporaryView.setOwner(attributes.owner()); }
+			catch(IOException e) { /* only a privileged user can give files away */ }
+		}
+	}
+
+	/**
+	 * Shifts the existing backups along and makes the current file the newest one.
+	 * The current file stays where it is, it gets replaced afterwards.
+	 */
+	private static void keepBackup(File target, int backupCount) throws IOException {
+		String base = target.getPath() + BACKUP_SUFFIX;
+		try {
+			Files.deleteIfExists(Paths.get(base + backupCount));
+			for(int i = backupCount - 1; i >= 1; --i) {
+				Path older = Paths.get(base + i);
+				if(Files.exists(older)) Files.move(older, Paths.get(base + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+			}
+			Path newest = Paths.get(base + 1);
+			try { Files.createLink(newest, target.toPath()); } // cheap, no matter how big the file is
+			catch(UnsupportedOperationException e) { Files.copy(target.toPath(), newest); }
+			catch(IOException e) { Files.copy(target.toPath(), newest); }
+		} catch(IOException e) {
+			throw new IOException("can't keep a backup of " + target + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Makes the rename itself durable, where the platform allows opening a directory.
+	 */
+	private static void forceDirectory(File directory) {
+		try {
+			FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+			try { channel.force(true); }
+			finally { channel.close(); }
+		} catch(IOException e) { /* not supported here, the rename is still atomic */ }
+	}
+}
@@ -0,0 +1,249 @@
+package flashcarder;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * @author Atlee
+ *
+ * Where a review of a deck was left, kept beside the deck file as deckfile.snapshot,
+ * so reopening the deck carries on from there instead of reshuffling it.
+ *
+ * Cards are identified by their position in the deck file. The snapshot holds the order of the cards
+ * still to do and of the cards done, as positions, and the card that was being reviewed, sides and all,
+ * so it can be shown before the deck has been read. Like a DeckSummary, it notes how long the deck file
+ * and its journal were and when the deck file was changed, and one that doesn't match them any more is ignored.
+ *
+ *		magic			int, see MAGIC
+ *		deckLength		long
+ *		deckTime		long
+ *		journalLength	long
+ *		cardCount		int
+ *		current			int, the position of the card being reviewed, or -1
+ *		sideA, sideB	int length, then ISO-8859-1 bytes, of the card being reviewed
+ *		easeBias		int
+ *		lastSeenTime	long
+ *		viewCount		int
+ *		toDoCount		int, or -1 if the scheduler's order isn't kept
+ *		toDo			int[toDoCount], positions in CardStack order, the next card last
+ *		doneCount		int
+ *		done			int[doneCount]
+ *
+ * Example:
+ *		if(SessionSnapshot.exists("somecards.txt")) .. open it, which reads the snapshot ..
+ *		SessionSnapshot snapshot = SessionSnapshot.read("somecards.txt");
+ *		if(snapshot != null) .. show snapshot.getCurrentCard() while the deck loads ..
+ */
+public class SessionSnapshot {
+// format constants
+	private static final int MAGIC = 0x46435331; // "FCS1"
+	private static final int HEADER_SIZE = 4 + 3 * 8; // magic and versions
+
+// defaults
+	private static final String SUFFIX = ".snapshot";
+	private static final String CHARSET = CardStack.CHARSET;
+
+// data
+	private final int cardCount;
+	private final int currentPosition; // -1 if no card was being reviewed
+	private final Card currentCard; // a copy, null if no card was being reviewed
+	private final int[] toDo; // null if the order isn't kept
+	private final int[] done;
+
+// public static methods
+	/**
+	 * Reads a deck's snapshot, if it still matches the deck.
+	 * @param deckFileName The name of the deck file.
+	 * @return The snapshot, or null if there isn't one, it's out of date or it's damaged.
+	 */
+	public static SessionSnapshot read(String deckFileName) {
+		try {
+			FileInputStream input = new FileInputStream(getSnapshotFileName(deckFileName));
+			try {
+				FileChannel channel = input.getChannel();
+				long length = channel.size();
+				if(length > Integer.MAX_VALUE) return null;
+				ByteBuffer bytes = ByteBuffer.allocate((int)length);
+				while(bytes.hasRemaining() && channel.read(bytes) >= 0) { /* keep reading */ }
+				bytes.flip();
+				return read(bytes, DeckSummary.getVersions(deckFileName));
+			} finally {
+				input.close();
+			}
+		} catch(IOException e) { return null; }
+		catch(RuntimeException e) { return null; } // damaged
+	}
+
+	/**
+	 * Sees whether a deck has a snapshot that still matches it, reading no more than the snapshot's header.
+	 * @param deckFileName The name of the deck file.
+	 * @return True if read would most likely find a snapshot; false if there isn't one or it's out of date.
+	 */
+	public static boolean exists(String deckFileName) {
+		try {
+			FileInputStream input = new FileInputStream(getSnapshotFileName(deckFileName));
+			try {
+				FileChannel channel = input.getChannel();
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				while(header.hasRemaining() && channel.read(header) >= 0) { /* keep reading */ }
+				header.flip();
+				return header.remaining() == HEADER_SIZE && matches(header, DeckSummary.getVersions(deckFileName));
+			} finally {
+				input.close();
+			}
+		} catch(IOException e) { return false; }
+	}
+
+	/**
+	 * @param deckFileName The name of a deck file.
+	 * @return The name of its snapshot file.
+	 */
+	public static String getSnapshotFileName(String deckFileName) {
+		return deckFileName + SUFFIX;
+	}
+
+// public methods
+	/**
+	 * @param cardCount The number of cards in the deck.
+	 * @param currentPosition The position in the deck file of the card being reviewed, or -1.
+	 * @param currentCard The card being reviewed, or null.
+	 * @param toDo The positions of the cards to do, in CardStack order, or null if the order isn't worth keeping.
+	 * @param done The positions of the cards done, or null along with toDo.
+	 */
+	public SessionSnapshot(int cardCount, int currentPosition, Card currentCard, int[] toDo, int[] done) {
+		this.cardCount = cardCount;
+		this.currentPosition = currentCard != null ? currentPosition : -1;
+		this.currentCard = currentCard != null ? currentCard.snapshot() : null;
+		this.toDo = toDo;
+		this.done = toDo != null ? done : null;
+	}
+
+	public int getCardCount() {
+		return cardCount;
+	}
+
+	/**
+	 * @return The position in the deck file of the card being reviewed, or -1.
+	 */
+	public int getCurrentPosition() {
+		return currentPosition;
+	}
+
+	/**
+	 * @return A copy of the card being reviewed, or null.
+	 */
+	public Card getCurrentCard() {
+		return currentCard;
+	}
+
+	/**
+	 * @return The positions of the cards to do, in CardStack order so the next card is last, or null if the order wasn't kept.
+	 */
+	public int[] getToDo() {
+		return toDo;
+	}
+
+	/**
+	 * @return The positions of the cards done, or null if the order wasn't kept.
+	 */
+	public int[] getDone() {
+		return done;
+	}
+
+	/**
+	 * Writes the snapshot beside a deck, matching the deck file and journal as they are now.
+	 * @param deckFileName The name of the deck file.
+	 * @throws IOException If it can't be written. It's only a snapshot, the deck is just reshuffled next time.
+	 */
+	public void write(String deckFileName) throws IOException {
+		long[] versions = DeckSummary.getVersions(deckFileName);
+		byte[] sideA = currentCard != null ? currentCard.getSideA().getBytes(CHARSET) : new byte[0];
+		byte[] sideB = currentCard != null ? currentCard.getSideB().getBytes(CHARSET) : new byte[0];
+		int positionCount = toDo != null ? toDo.length + done.length : 0;
+		final ByteBuffer bytes = ByteBuffer.allocate(4 + 3 * 8 + 4 + 4 + 4 + sideA.length + 4 + sideB.length + 4 + 8 + 4 + 4 + 4 + positionCount * 4);
+		bytes.putInt(MAGIC);
+		bytes.putLong(versions[0]).putLong(versions[1]).putLong(versions[2]);
+		bytes.putInt(cardCount);
+		bytes.putInt(currentPosition);
+		bytes.putInt(sideA.length).put(sideA);
+		bytes.putInt(sideB.length).put(sideB);
+		bytes.putInt(currentCard != null ? currentCard.getEaseBias() : 0);
+		bytes.putLong(currentCard != null ? currentCard.getLastSeenTime() : 0);
+		bytes.putInt(currentCard != null ? currentCard.getViewCount() : 0);
+		if(toDo != null) {
+			bytes.putInt(toDo.length);
+			bytes.asIntBuffer().put(toDo);
+			bytes.position(bytes.position() + toDo.length * 4);
+			bytes.putInt(done.length);
+			bytes.asIntBuffer().put(done);
+			bytes.position(bytes.position() + done.length * 4);
+		} else {
+			bytes.putInt(-1);
+			bytes.putInt(0);
+		}
+		SafeFileWriter.write(getSnapshotFileName(deckFileName), 0, new SafeFileWriter.Content() {
+			public void writeTo(OutputStream output) throws IOException {
+				output.write(bytes.array(), 0, bytes.position());
+			}
+		});
+	}
+
+// private static helpers
+	/**
+	 * @return The snapshot in bytes, or null if it doesn't match versions.
+	 * @throws IOException If a count or length in it is more than the bytes left.
+	 * @throws RuntimeException If it's damaged some other way.
+	 */
+	private static SessionSnapshot read(ByteBuffer bytes, long[] versions) throws IOException {
+		if(!matches(bytes, versions)) return null;
+		int cardCount = bytes.getInt();
+		int currentPosition = bytes.getInt();
+		String sideA = readString(bytes);
+		String sideB = readString(bytes);
+		int easeBias = bytes.getInt();
+		long lastSeenTime = bytes.getLong();
+		int viewCount = bytes.getInt();
+		int[] toDo = readInts(bytes);
+		int[] done = readInts(bytes);
+		if(done == null) throw new IOException("damaged snapshot"); // only the cards to do can go without
+		Card currentCard = currentPosition >= 0 ? new Card(sideA, sideB, easeBias, lastSeenTime, viewCount) : null;
+		return new SessionSnapshot(cardCount, currentPosition, currentCard, toDo, done);
+	}
+
+	/**
+	 * Reads the header, magic and versions.
+	 * @return Whether it's a snapshot's, matching versions.
+	 */
+	private static boolean matches(ByteBuffer bytes, long[] versions) {
+		if(bytes.getInt() != MAGIC) return false;
+		return bytes.getLong() == versions[0] && bytes.getLong() == versions[1] && bytes.getLong() == versions[2];
+	}
+
+	/**
+	 * @throws IOException If the length is more than there is left, before allocating it.
+	 */
+	private static String readString(ByteBuffer bytes) throws IOException {
+		int length = bytes.getInt();
+		if(length < 0 || length > bytes.remaining()) throw new IOException("damaged snapshot");
+		String text = new String(bytes.array(), bytes.position(), length, CHARSET);
+		bytes.position(bytes.position() + length);
+		return text;
+	}
+
+	/**
+	 * @return The ints, or null if their count is negative.
+	 * @throws IOException If the count is more than there is left, before allocating it.
+	 */
+	private static int[] readInts(ByteBuffer bytes) throws IOException {
+		int count = bytes.getInt();
+		if(count < 0) return null;
+		if(count > bytes.remaining() / 4) throw new IOException("damaged snapshot");
+		int[] ints = new int[count];
+		bytes.asIntBuffer().get(ints);
+		bytes.position(bytes.position() + count * 4);
+		return ints;
+	}
+}
@@ -0,0 +1,78 @@
+package flashcarder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author Atlee
+ *
+ * The classic FlashCarder review: go through a shuffled deck once.
+ * Cards that aren't known yet go back somewhere in the bottom half of the to do stack,
+ * known cards go on the done stack. The card stats don't affect the order.
+ */
+public class ShuffleScheduler implements CardScheduler {
+// data
+	private final Random random = new Random();
+	private CardStack toDo = new CardStack(); // pull cards from here
+	private CardStack done = new CardStack(); // put easy cards here when done
+
+// public methods
+	public void setCards(CardStack cards) {
+		toDo = cards;
+		toDo.shuffle();
+		done = new CardStack();
+	}
+
+	/**
+	 * Inserts the card at a uniformly random position, so cards added one at a time end up as well shuffled as setCards would.
+	 */
+	public void addCard(Card card) {
+		toDo.insertCard(random.nextInt(toDo.getCount() + 1), card);
+	}
+
+	public Card nextCard() {
+		return toDo.removeNextCard();
+	}
+
+	public List<Card> peekCards(int count) {
+		List<Card> next = new ArrayList<Card>(count);
+		for(int i = toDo.getCount() - 1; i >= 0 && next.size() < count; --i) next.add(toDo.getCard(i));
+		return next;
+	}
+
+	public void putBack(Card card) {
+		toDo.addCardRandomly(card);
+	}
+
+	public void putDone(Card card) {
+		done.addCard(card);
+	}
+
+	public boolean recordsDifficultAnswers() {
+		return false;
+	}
+
+	public int getToDoCount() {
+		return toDo.getCount();
+	}
+
+	public int getDoneCount() {
+		return done.getCount();
+	}
+
+	public CardStack getAllCards() {
+		CardStack all = new CardStack(toDo);
+		all.addCardStack(done);
+		return all;
+	}
+
+	public CardStack[] getOrder() {
+		return new CardStack[] { new CardStack(toDo), new CardStack(done) };
+	}
+
+	public void restoreOrder(CardStack toDo, CardStack done) {
+		this.toDo = toDo;
+		this.done = done;
+	}
+}
@@ -0,0 +1,194 @@
+package flashcarder;
+
+/**
+ * @author Atlee
+ *
+ * Makes identical card sides share one String while a deck is loaded.
+ *
+ * Decks often repeat the same short sides over and over, part of speech tags, short translations and
+ * the like, and without this every card would hold its own copy. Sides are looked up by their raw
+ * ISO-8859-1 bytes, before they're decoded, so a repeat costs a hash and a compare but no new String.
+ * Long sides hardly ever repeat and aren't worth remembering, so they're always decoded afresh.
+ * Likewise, if the first few thousand of a deck's side A's (or side B's) hardly ever repeat,
+ * that side stops being looked up for the rest of the load, so a column of unique sides
+ * doesn't fill the table for nothing.
+ *
+ * An interner is meant to last for one load and then be dropped, along with its table.
+ * It can be shared by the threads of a parallel load.
+ *
+ * Example:
+ *		SideInterner interner = new SideInterner();
+ *		CardStack cardStack = CardStack.createFromFile("somecards.txt", 1, interner);
+ *		System.out.println(interner); // how much it saved
+ */
+public class SideInterner {
+// defaults
+	private static final int MAX_LENGTH = 64; // longer sides aren't interned
+	private static final int SEGMENT_SHIFT = 4;
+	private static final int SEGMENT_COUNT = 1 << SEGMENT_SHIFT; // separately locked parts of the table
+	private static final int INITIAL_CAPACITY = 256; // per segment, a power of 2
+	private static final int SAMPLE_SIZE = 4096; // sides of each kind looked up before deciding whether it's worth it
+	private static final int MIN_SHARED_RATIO = 8; // at least 1 in this many has to have been shared
+	public static final int SIDE_A = 0, SIDE_B = 1;
+
+// data
+	private final Segment[] segments = new Segment[SEGMENT_COUNT];
+	private final int[] sampled = new int[2], sampledShared = new int[2]; // by side
+	private volatile boolean[] sampling = { true, true }; // by side, these two are replaced rather than changed
+	private volatile boolean[] skipping = { false, false };
+
+// public static methods
+	/**
+	 * Roughly how much memory one String of a given length takes, assuming a 64 bit JVM
+	 * with compressed pointers and one byte per character, which ISO-8859-1 text gets.
+	 * @param length The length of the String.
+	 * @return The bytes taken by the String and its array.
+	 */
+	public static long estimateStringSize(int length) {
+		return 24 + ((16 + length + 7) & ~7);
+	}
+
+// public methods
+	public SideInterner() {
+		for(int i = 0; i < SEGMENT_COUNT; ++i) segments[i] = new Segment();
+	}
+
+	/**
+	 * @param bytes The ISO-8859-1 bytes of a side.
+	 * @param length How many of them there are.
+	 * @param side SIDE_A or SIDE_B.
+	 * @return A String of the side, the same one as for any identical side before, unless it's not worth sharing.
+	 */
+	public String intern(byte[] bytes, int length, int side) {
+		if(length > MAX_LENGTH || skipping[side]) return new String(bytes, 0, length, MappedCardReader.CHARSET);
+		int hash = 0;
+		for(int i = 0; i < length; ++i) hash = hash * 31 + (bytes[i] & 0xff); // the same as String.hashCode
+		Segment segment = segments[(hash * 0x9E3779B9) >>> (32 - SEGMENT_SHIFT)]; // the top bits, well mixed
+		boolean counting = sampling[side];
+		boolean shared;
+		String string;
+		synchronized(segment) {
+			long sharedBefore = segment.sharedCount;
+			string = segment.intern(bytes, length, hash);
+			shared = segment.sharedCount != sharedBefore;
+		}
+		if(counting) sampleSide(side, shared);
+		return string;
+	}
+
+	/**
+	 * @return The number of sides that shared a String rather than getting their own.
+	 */
+	public long getSharedCount() {
+		long sharedCount = 0;
+		for(Segment segment : segments) {
+			synchronized(segment) { sharedCount += segment.sharedCount; }
+		}
+		return sharedCount;
+	}
+
+	/**
+	 * @return Roughly how many bytes sharing saved, see estimateStringSize.
+	 */
+	public long getSavedBytes() {
+		long savedBytes = 0;
+		for(Segment segment : segments) {
+			synchronized(segment) { savedBytes += segment.savedBytes; }
+		}
+		return savedBytes;
+	}
+
+	/**
+	 * @return Like "120000 sides shared, about 5.1 MB saved".
+	 */
+	@Override
+	public String toString() {
+		return String.format("%d sides shared, about %.1f MB saved", getSharedCount(), getSavedBytes() / 1e6);
+	}
+
+// private methods
+	/**
+	 * Counts whether a side was shared, and once enough of that kind of side have been,
+	 * gives up on it if too few were.
+	 */
+	private synchronized void sampleSide(int side, boolean shared) {
+		if(sampled[side] == SAMPLE_SIZE) return; // another thread got there first
+		if(shared) ++sampledShared[side];
+		if(++sampled[side] < SAMPLE_SIZE) return;
+		if(sampledShared[side] * MIN_SHARED_RATIO < SAMPLE_SIZE) {
+			boolean[] skip = skipping.clone();
+			skip[side] = true;
+			skipping = skip;
+		}
+		boolean[] sample = sampling.clone();
+		sample[side] = false;
+		sampling = sample;
+	}
+
+// private helper classes
+	/**
+	 * An open addressing hash table of Strings, looked up by bytes.
+	 */
+	private static class Segment {
+		private String[] strings = new String[INITIAL_CAPACITY];
+		private int[] hashes = new int[INITIAL_CAPACITY];
+		private int size;
+		long sharedCount; // sides that were handed an existing String
+		long savedBytes;
+
+		/**
+		 * @return The String already in the table, or a new one that's now in it.
+		 */
+		String intern(byte[] bytes, int length, int hash) {
+			int mask = strings.length - 1;
+			for(int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+				String string = strings[slot];
+				if(string == null) {
+					string = new String(bytes, 0, length, MappedCardReader.CHARSET);
+					strings[slot] = string;
+					hashes[slot] = hash;
+					if(++size * 2 > strings.length) grow();
+					return string;
+				}
+				if(hashes[slot] == hash && matches(string, bytes, length)) {
+					++sharedCount;
+					savedBytes += estimateStringSize(length);
+					return string;
+				}
+			}
+		}
+
+		private static boolean matches(String string, byte[] bytes, int length) {
+			if(string.length() != length) return false;
+			for(int i = 0; i < length; ++i) {
+				if(string.charAt(i) != (char)(bytes[i] & 0xff)) return false; // how ISO-8859-1 decodes
+			}
+			return true;
+		}
+
+		/**
+		 * Scrambles a hash so that similar sides, like ones numbered in order, don't land in neighbouring slots.
+		 */
+		private static int spread(int hash) {
+			hash ^= hash >>> 16;
+			hash *= 0x85EBCA6B;
+			hash ^= hash >>> 13;
+			return hash;
+		}
+
+		private void grow() {
+			String[] oldStrings = strings;
+			int[] oldHashes = hashes;
+			strings = new String[oldStrings.length * 2];
+			hashes = new int[oldStrings.length * 2];
+			int mask = strings.length - 1;
+			for(int i = 0; i < oldStrings.length; ++i) {
+				if(oldStrings[i] == null) continue;
+				int slot = spread(oldHashes[i]) & mask;
+				while(strings[slot] != null) slot = (slot + 1) & mask;
+				strings[slot] = oldStrings[i];
+				hashes[slot] = oldHashes[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,267 @@
+package flashcarder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * @author Atlee
+ *
+ * Reads side texts out of a deck file as they're wanted, for a CardStore that leaves them on disk.
+ *
+ * Texts are asked for by a key, and a Locator says where each one is in the file, so the file can be
+ * rewritten with the texts in new places without losing what's cached.
+ *
+ * Recently read texts are kept in a least recently used cache of a bounded size, so the heap holds
+ * about as much text as the cache is allowed, however big the deck. A miss reads a whole block around
+ * the text, and the last block is kept. Texts can also be read ahead on a background thread,
+ * so the next few cards are in the cache by the time they're shown. Copying a deck out goes through
+ * readUncached instead, which reads sequentially through a block of its own and leaves the cache alone.
+ *
+ * The file is held open, except while it's being replaced by a save: replacing() lets go of it,
+ * so it can be renamed over even where open files can't be, and replaced(Runnable) moves the texts
+ * to where they are in the new file. Reading waits in between.
+ * Safe to use from more than one thread.
+ *
+ * Example:
+ *		SideTextFile texts = new SideTextFile("hugedeck.txt", 4 << 20, locator);
+ *		String side = texts.read(key);
+ *		..
+ *		texts.close();
+ */
+class SideTextFile {
+// defaults
+	private static final int BLOCK_SIZE = 16 << 10; // bytes read around a text that isn't cached
+	private static final int ENTRY_BYTES = 96; // roughly what a cached text costs besides its characters
+
+	/**
+	 * Where the texts are in the file.
+	 */
+	interface Locator {
+		long getOffset(int key);
+
+		/**
+		 * @return The text's length in bytes, which is its length in characters.
+		 */
+		int getLength(int key);
+	}
+
+// data
+	private final String fileName;
+	private final Locator locator;
+	private FileChannel channel; // null until it's wanted, and while the file is being replaced
+	private final long cacheBytes;
+	private long usedBytes;
+	private final LinkedHashMap<Integer, String> cache = new LinkedHashMap<Integer, String>(1024, 0.75f, true); // by key, least recently used first
+	private final Block block = new Block(); // for cache misses
+	private final Block copyBlock = new Block(); // for readUncached, guarded by itself
+	private ExecutorService readAhead; // made the first time it's wanted
+	private long hits, misses;
+	private boolean replacing; // whether the file is being replaced
+	private boolean closed;
+
+	/**
+	 * @param fileName The deck file.
+	 * @param cacheBytes Roughly how much memory the cached texts can take.
+	 * @param locator Where the texts are in the file.
+	 * @throws IOException If the file can't be opened.
+	 */
+	SideTextFile(String fileName, long cacheBytes, Locator locator) throws IOException {
+		this.fileName = fileName;
+		this.locator = locator;
+		this.cacheBytes = cacheBytes;
+		channel = open();
+	}
+
+	/**
+	 * @return The name of the file the texts are read from.
+	 */
+	String getFileName() {
+		return fileName;
+	}
+
+	/**
+	 * @param key Which text.
+	 * @return The text, or an empty String if it can't be read any more.
+	 */
+	synchronized String read(int key) {
+		String text = cache.get(key);
+		if(text != null) {
+			++hits;
+			return text;
+		}
+		++misses;
+		int length = locator.getLength(key);
+		try { text = block.read(getChannel(), locator.getOffset(key), length); }
+		catch(IOException e) { return ""; }
+		cache.put(key, text);
+		usedBytes += ENTRY_BYTES + 2L * length; // compact Strings take half that, but not on every JVM
+		for(Iterator<Map.Entry<Integer, String>> entries = cache.entrySet().iterator(); usedBytes > cacheBytes && entries.hasNext(); ) {
+			usedBytes -= ENTRY_BYTES + 2L * entries.next().getValue().length();
+			entries.remove();
+		}
+		return text;
+	}
+
+	/**
+	 * Reads a text without caching it, for copying the deck out: going through the texts in file order
+	 * reads the file sequentially, and the texts being reviewed stay cached.
+	 * Not while the file's being replaced, that's for whoever's writing it to see to.
+	 * @param key Which text.
+	 * @return The text, or an empty String if it can't be read any more.
+	 */
+	String readUncached(int key) {
+		try {
+			FileChannel reading = getOpenChannel();
+			synchronized(copyBlock) {
+				return copyBlock.read(reading, locator.getOffset(key), locator.getLength(key));
+			}
+		} catch(IOException e) { return ""; }
+	}
+
+	/**
+	 * Reads texts into the cache on a background thread, unless they're there already.
+	 * @param keys Which texts.
+	 */
+	synchronized void readAhead(final int[] keys) {
+		if(closed) return;
+		if(readAhead == null) {
+			readAhead = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "SideTextFile");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		readAhead.execute(new Runnable() {
+			public void run() {
+				for(int key : keys) read(key);
+			}
+		});
+	}
+
+	/**
+	 * Lets go of the file so it can be replaced. Reading waits until replaced is called.
+	 */
+	synchronized void replacing() {
+		replacing = true;
+		closeChannel();
+	}
+
+	/**
+	 * Lets reading go on after replacing().
+	 * @param relocating Tells the Locator where the texts are in the new file, run before anything more is read,
+	 * or null if the file wasn't replaced after all.
+	 */
+	synchronized void replaced(Runnable relocating) {
+		if(relocating != null) relocating.run();
+		block.clear();
+		synchronized(copyBlock) { copyBlock.clear(); }
+		replacing = false;
+		notifyAll();
+	}
+
+	/**
+	 * @return Like "1234 cached texts, 96% hits".
+	 */
+	synchronized String getStatistics() {
+		long reads = hits + misses;
+		return cache.size() + " cached texts, " + (reads > 0 ? hits * 100 / reads : 0) + "% hits";
+	}
+
+	/**
+	 * Lets go of the file and the cache. Texts read after that are empty.
+	 */
+	synchronized void close() {
+		closed = true;
+		if(readAhead != null) readAhead.shutdownNow();
+		cache.clear();
+		usedBytes = 0;
+		closeChannel();
+		notifyAll();
+	}
+
+// private methods
+	private FileChannel open() throws IOException {
+		return FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+	}
+
+	private synchronized FileChannel getOpenChannel() throws IOException {
+		return getChannel();
+	}
+
+	/**
+	 * @return The file, opened again by name if it's been replaced.
+	 * @throws IOException If it's closed or can't be opened.
+	 */
+	private FileChannel getChannel() throws IOException {
+		while(replacing && !closed) {
+			try { wait(); }
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("interrupted while " + fileName + " was being replaced");
+			}
+		}
+		if(closed) throw new IOException(fileName + " is closed");
+		if(channel == null) channel = open();
+		return channel;
+	}
+
+	private void closeChannel() {
+		if(channel == null) return;
+		try { channel.close(); }
+		catch(IOException e) { /* don't care */ }
+		channel = null;
+	}
+
+// private helper classes
+	/**
+	 * The last block read from the file, so texts next to each other are read in one go.
+	 */
+	private static class Block {
+		private final ByteBuffer bytes = ByteBuffer.allocate(BLOCK_SIZE);
+		private long start = -1; // file position of bytes, -1 if it's empty
+
+		String read(FileChannel channel, long offset, int length) throws IOException {
+			if(length > BLOCK_SIZE) { // too big for the block, read it on its own
+				ByteBuffer text = ByteBuffer.allocate(length);
+				fill(channel, text, offset);
+				if(text.hasRemaining()) throw new IOException("the file is shorter than it was");
+				return new String(text.array(), 0, length, MappedCardReader.CHARSET);
+			}
+			if(start < 0 || offset < start || offset + length > start + bytes.limit()) {
+				clear();
+				fill(channel, bytes, offset);
+				bytes.flip();
+				start = offset;
+				if(bytes.limit() < length) throw new IOException("the file is shorter than it was");
+			}
+			return new String(bytes.array(), (int)(offset - start), length, MappedCardReader.CHARSET);
+		}
+
+		void clear() {
+			bytes.clear();
+			start = -1;
+		}
+
+		/**
+		 * Reads from offset until buffer is full or the file ends.
+		 */
+		private static void fill(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+			while(buffer.hasRemaining()) {
+				int count = channel.read(buffer, offset);
+				if(count < 0) break;
+				offset += count;
+			}
+		}
+	}
+}
@@ -3,13 +3,15 @@ package flashcarder;
 import javax.swing.*;
 import javax.swing.border.Border;
 import java.awt.*;
-import java.awt.geom.Rectangle2D;
 
 /**
  * @author Atlee
  * A customized JPanel to act similar to a vertical progress bar.
  * While a JProgressBar almost works, there is no way to customize the
  * bar rendering, so I've made this instead.
+ *
+ * The bar is laid out when this panel is resized or, at most once a frame, when its value changes.
+ * Painting only paints.
  */
 public class StackProgressPanel extends JPanel {
 // Look & Feel constants
@@ -24,9 +26,10 @@ public class StackProgressPanel extends JPanel {
 	private int current;
 
 // state
-	private Rectangle2D size;
-	private Insets insets;
-	private Dimension interior;
+	private boolean barDirty; // the bar doesn't show the current value yet
+	private final FrameCoalescer barUpdater = new FrameCoalescer(new Runnable() {
+		public void run() { updateBar(); }
+	});
 
 // public methods
 	public StackProgressPanel(Color barColor) {
@@ -49,7 +52,8 @@ public class StackProgressPanel extends JPanel {
 		int newMax = max >= 0 ? max : 0;
 		if(newMax != this.max) {
 			this.max = newMax;
-			updateBarSize();
+			barDirty = true;
+			barUpdater.request();
 		}
 	}
 
@@ -57,41 +61,29 @@ public class StackProgressPanel extends JPanel {
 		int newCurrent = current < 0 ? 0 : current > max ? max : current;
 		if(newCurrent != this.current) {
 			this.current = newCurrent;
-			updateBarSize();
+			barDirty = true;
+			barUpdater.request();
 		}
 	}
 
 // private GUI handler methods
-	private void updateBarSize() {
-		float topPortion = 1.0f - (max == 0 ? 0.0f : (float)current / (float)max);
-		Dimension topSize = new Dimension(interior.width, (int)((float)interior.height * topPortion));
-		top.setSize(topSize);
-		top.setLocation(insets.left, insets.top);
-		Dimension bottomSize = new Dimension(interior.width, interior.height - topSize.height);
-		bottom.setSize(bottomSize);
-		bottom.setLocation(insets.left, insets.top + topSize.height);
-	}
-
-	private void updateDimension() {
-		Rectangle2D newSize = getBounds();
-		if(size == null
-			|| newSize.getWidth() != size.getWidth()
-			|| newSize.getHeight() != size.getHeight()
-		) {
-			size = newSize;
-			insets = getInsets();
-			interior = new Dimension(
-				(int)size.getWidth() - insets.left - insets.right
-				,(int)size.getHeight() - insets.top - insets.bottom
-			);
-			updateBarSize();
-		}
+	private void updateBar() {
+		if(barDirty) doLayout();
 	}
 
 // Component overrides
+	/**
+	 * Splits the interior between the empty top and the filled bottom.
+	 * Moving them repaints just the parts that changed.
+	 */
 	@Override
-	public void paint(Graphics g) {
-		updateDimension();
-		super.paint(g);
+	public void doLayout() {
+		barDirty = false;
+		Insets insets = getInsets();
+		Dimension interior = new Dimension(getWidth() - insets.left - insets.right, getHeight() - insets.top - insets.bottom);
+		float topPortion = 1.0f - (max == 0 ? 0.0f : (float)current / (float)max);
+		int topHeight = (int)((float)interior.height * topPortion);
+		top.setBounds(insets.left, insets.top, interior.width, topHeight);
+		bottom.setBounds(insets.left, insets.top + topHeight, interior.width, interior.height - topHeight);
 	}
 }
@@ -0,0 +1,385 @@
+package flashcarder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * @author Atlee
+ *
+ * A list of decks to rotate between, a few of which are open at once.
+ *
+ * Listing the decks only reads their DeckSummary files, so a workspace of dozens of big decks lists quickly,
+ * and getSummary doesn't even do that: it answers from what readSummaries last read, which can be done
+ * off the event thread. A deck is only read when it's opened, and then stays open, saved in the background
+ * by its own AutoSaver, so going back to it is instant. The open decks are kept in least recently used order,
+ * and once together they take more memory than the workspace is allowed, the least recently used ones are
+ * saved and closed on a thread of the workspace's own, so opening a deck never waits for that.
+ * A deck opened again while it's still closing is taken back as it is.
+ *
+ * Example:
+ *		Workspace workspace = new Workspace(new Workspace.DeckFactory() { .. }, 512 << 20);
+ *		workspace.readList("decks.txt");
+ *		workspace.readSummaries(); // reads files, so not on the event thread
+ *		for(String fileName : workspace.getDeckFileNames()) System.out.println(fileName + ": " + workspace.getSummary(fileName));
+ *		Workspace.Deck deck = workspace.open("somecards.txt");
+ *		if(!deck.isLoaded()) deck.getSession().open(deck.getFileName()); // the first time
+ *		.. review deck.getSession(), calling deck.getAutoSaver().changed() after each answer ..
+ *		workspace.flushAll(); // before quitting
+ *
+ * Safe to use from more than one thread.
+ */
+public class Workspace {
+// defaults
+	private static final long BYTES_PER_CARD = 160; // roughly what a loaded card costs, sides and all
+	private static final long MIN_DECK_BYTES = 1 << 20; // even an empty deck has its scheduler, journal and saver
+
+	/**
+	 * Makes what an open deck needs, so the workspace's owner can set it up its own way.
+	 */
+	public interface DeckFactory {
+		/**
+		 * @param fileName The deck file, not read yet.
+		 * @return A new session for it, without the file opened.
+		 */
+		ReviewSession createSession(String fileName);
+
+		/**
+		 * @param fileName The deck file.
+		 * @return What hears how the deck's background saves go, or null.
+		 */
+		AutoSaver.Listener createSaveListener(String fileName);
+	}
+
+	/**
+	 * An open deck: its session, and what saves it in the background.
+	 */
+	public static class Deck {
+		private final String fileName;
+		private final ReviewSession session;
+		private final AutoSaver autoSaver;
+
+		private Deck(String fileName, ReviewSession session, AutoSaver autoSaver) {
+			this.fileName = fileName;
+			this.session = session;
+			this.autoSaver = autoSaver;
+		}
+
+		public String getFileName() {
+			return fileName;
+		}
+
+		public ReviewSession getSession() {
+			return session;
+		}
+
+		public AutoSaver getAutoSaver() {
+			return autoSaver;
+		}
+
+		/**
+		 * @return Whether the session has been given the file to read yet.
+		 */
+		public boolean isLoaded() {
+			return session.getFileName() != null;
+		}
+
+		/**
+		 * @return Roughly how much memory the deck takes.
+		 */
+		long estimateMemory() {
+			return Math.max(MIN_DECK_BYTES, session.getTotalCount() * BYTES_PER_CARD);
+		}
+
+		/**
+		 * Saves the deck, and notes where its review is up to so it carries on from there when it's opened again.
+		 * @throws IOException If saving didn't work.
+		 */
+		void save() throws IOException {
+			try { autoSaver.flush(); }
+			catch(RejectedExecutionException e) { throw new IOException(fileName + " was closed meanwhile"); }
+			try { session.writeSnapshot(); }
+			catch(IOException e) { /* it'll just be reshuffled */ }
+		}
+
+		/**
+		 * Closes the deck, without saving it.
+		 * @return Its numbers as they were, for the workspace to show, or null if they weren't known.
+		 */
+		DeckSummary closeSaved() {
+			DeckSummary summary = isLoaded() && !session.isLoading() ? session.getSummary() : null;
+			session.close();
+			autoSaver.close();
+			return summary;
+		}
+	}
+
+// data
+	private final DeckFactory factory;
+	private final long memoryBudget;
+	private final ArrayList<String> fileNames = new ArrayList<String>(); // every deck, in the order added
+	private final LinkedHashMap<String, Deck> openDecks = new LinkedHashMap<String, Deck>(); // least recently used first, only open() moves a deck to the end
+	private final HashMap<String, Deck> closingDecks = new HashMap<String, Deck>(); // taken out of openDecks, waiting for closer
+	private final HashMap<String, DeckSummary> summaries = new HashMap<String, DeckSummary>(); // of decks that aren't open, as last read
+	private final ExecutorService closer = Executors.newSingleThreadExecutor(new ThreadFactory() { // saves and closes decks, in turn
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "Workspace");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+// public methods
+	/**
+	 * @param factory Makes the sessions and save listeners of decks as they're opened.
+	 * @param memoryBudget Roughly how many bytes the open decks can take before some are closed.
+	 * The most recently opened deck stays open however big it is.
+	 */
+	public Workspace(DeckFactory factory, long memoryBudget) {
+		this.factory = factory;
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Adds the decks listed in a file, one file name a line, to the workspace.
+	 * @param listFileName The name of the list file.
+	 * @throws IOException If the file can't be read.
+	 */
+	public void readList(String listFileName) throws IOException {
+		BufferedReader input = new BufferedReader(new InputStreamReader(new FileInputStream(listFileName), "UTF-8"));
+		try {
+			String line;
+			while((line = input.readLine()) != null) {
+				if(!line.trim().isEmpty()) addDeck(line.trim());
+			}
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Writes the workspace's decks to a file, one file name a line.
+	 * @param listFileName The name of the file that will be created or replaced.
+	 * @throws IOException Describing what went wrong.
+	 */
+	public void writeList(String listFileName) throws IOException {
+		final List<String> names = getDeckFileNames();
+		SafeFileWriter.write(listFileName, 0, new SafeFileWriter.Content() {
+			public void writeTo(OutputStream output) throws IOException {
+				Writer writer = new OutputStreamWriter(output, "UTF-8");
+				for(String name : names) writer.write(name + "\n");
+				writer.flush();
+			}
+		});
+	}
+
+	/**
+	 * @param fileName A deck file, which doesn't have to exist yet.
+	 * @return False if it was already in the workspace.
+	 */
+	public synchronized boolean addDeck(String fileName) {
+		fileName = new File(fileName).getAbsolutePath();
+		if(fileNames.contains(fileName)) return false;
+		fileNames.add(fileName);
+		return true;
+	}
+
+	/**
+	 * Takes a deck out of the workspace, saving and closing it if it's open.
+	 * @param fileName The deck file.
+	 * @throws IOException If it couldn't be saved. It's out of the workspace, but still open.
+	 */
+	public void removeDeck(String fileName) throws IOException {
+		fileName = new File(fileName).getAbsolutePath();
+		Deck deck;
+		synchronized(this) {
+			fileNames.remove(fileName);
+			summaries.remove(fileName);
+			deck = openDecks.remove(fileName);
+			if(deck == null) deck = closingDecks.remove(fileName); // its closer will leave it alone
+		}
+		if(deck != null) {
+			deck.save();
+			deck.closeSaved();
+		}
+	}
+
+	/**
+	 * @return The workspace's deck files, in the order they were added.
+	 */
+	public synchronized List<String> getDeckFileNames() {
+		return new ArrayList<String>(fileNames);
+	}
+
+	/**
+	 * Doesn't read anything, so it's quick enough for the event thread.
+	 * @param fileName A deck file.
+	 * @return The deck's numbers as they are now if it's open, otherwise as readSummaries or closing it last found them,
+	 * or null if they aren't known.
+	 */
+	public DeckSummary getSummary(String fileName) {
+		fileName = new File(fileName).getAbsolutePath();
+		Deck deck;
+		synchronized(this) { deck = openDecks.get(fileName); }
+		if(deck != null && deck.isLoaded() && !deck.getSession().isLoading()) return deck.getSession().getSummary();
+		synchronized(this) { return summaries.get(fileName); }
+	}
+
+	/**
+	 * Reads the DeckSummary files of the decks that aren't open, for getSummary to answer from.
+	 * One small file a deck, but still better done off the event thread.
+	 */
+	public void readSummaries() {
+		for(String fileName : getDeckFileNames()) {
+			DeckSummary summary = DeckSummary.read(fileName);
+			synchronized(this) {
+				if(fileNames.contains(fileName)) summaries.put(fileName, summary);
+			}
+		}
+	}
+
+	/**
+	 * Gets an open deck, opening it if need be, and adding it to the workspace if it isn't in it.
+	 * A newly opened deck's session hasn't read the file yet; that's left to the caller, who may want to
+	 * read it in the background. The least recently used decks are then closed if there are too many.
+	 * @param fileName The deck file.
+	 * @return The open deck.
+	 */
+	public Deck open(String fileName) {
+		fileName = new File(fileName).getAbsolutePath();
+		Deck deck;
+		synchronized(this) {
+			if(!fileNames.contains(fileName)) fileNames.add(fileName);
+			deck = openDecks.remove(fileName);
+			if(deck == null) deck = closingDecks.remove(fileName); // not closed yet, so it can just carry on
+			if(deck == null) {
+				ReviewSession session = factory.createSession(fileName);
+				deck = new Deck(fileName, session, new AutoSaver(session, factory.createSaveListener(fileName)));
+			}
+			openDecks.put(fileName, deck); // at the end, as the most recently used
+		}
+		closeLeastRecentlyUsed();
+		return deck;
+	}
+
+	/**
+	 * @param fileName A deck file.
+	 * @return Whether it's open.
+	 */
+	public synchronized boolean isOpen(String fileName) {
+		return openDecks.containsKey(new File(fileName).getAbsolutePath());
+	}
+
+	/**
+	 * @return Roughly how much memory the open decks take.
+	 */
+	public synchronized long estimateMemory() {
+		long bytes = 0;
+		for(Deck deck : openDecks.values()) bytes += deck.estimateMemory();
+		return bytes;
+	}
+
+	/**
+	 * Saves every open deck, and waits for them, and for the decks still closing.
+	 * @throws IOException The first problem, if any deck couldn't be saved, its message starting with the deck's file name.
+	 * The others are saved anyway.
+	 */
+	public void flushAll() throws IOException {
+		waitForClosing(); // a deck that couldn't be saved closing is open again, and tried again here
+		List<Deck> decks;
+		synchronized(this) { decks = new ArrayList<Deck>(openDecks.values()); }
+		IOException problem = null;
+		for(Deck deck : decks) {
+			try { deck.getAutoSaver().flush(); }
+			catch(IOException e) { if(problem == null) problem = new IOException(deck.getFileName() + ": " + e.getMessage(), e); }
+		}
+		if(problem != null) throw problem;
+	}
+
+	/**
+	 * Notes where each open deck's review is up to, so opening it again carries on from there,
+	 * see ReviewSession.writeSnapshot. Saves them first. For quitting, after flushAll.
+	 * A deck whose snapshot can't be written is just reshuffled next time.
+	 */
+	public void writeSnapshots() {
+		List<Deck> decks;
+		synchronized(this) { decks = new ArrayList<Deck>(openDecks.values()); }
+		for(Deck deck : decks) {
+			try { deck.getSession().writeSnapshot(); }
+			catch(IOException e) { /* only a snapshot */ }
+		}
+	}
+
+// private methods
+	/**
+	 * Hands the least recently used decks to the closer, until the rest fit in the memory budget.
+	 * The most recently used deck always stays. Only takes them out of openDecks, so it's quick.
+	 */
+	private void closeLeastRecentlyUsed() {
+		synchronized(this) {
+			long bytes = estimateMemory();
+			Iterator<Map.Entry<String, Deck>> decks = openDecks.entrySet().iterator();
+			for(int left = openDecks.size(); bytes > memoryBudget && left > 1; --left) {
+				final Deck deck = decks.next().getValue();
+				bytes -= deck.estimateMemory();
+				decks.remove();
+				closingDecks.put(deck.getFileName(), deck);
+				closer.execute(new Runnable() {
+					public void run() { close(deck); }
+				});
+			}
+		}
+	}
+
+	/**
+	 * The closer: saves a deck and closes it, unless it's been opened again meanwhile. A deck that can't be
+	 * saved goes back in with the open ones, its AutoSaver's listener has heard why, and it'll be tried again next time.
+	 */
+	private void close(Deck deck) {
+		String fileName = deck.getFileName();
+		boolean saved;
+		try {
+			deck.save();
+			saved = true;
+		} catch(IOException e) { saved = false; }
+		synchronized(this) {
+			if(closingDecks.get(fileName) != deck) return; // opened again, or taken out of the workspace
+			closingDecks.remove(fileName);
+			if(!saved) {
+				openDecks.put(fileName, deck); // back in, as the most recently used, which is a shame
+				return;
+			}
+			DeckSummary summary = deck.closeSaved(); // quick, and nobody can open it again halfway through
+			if(summary != null) summaries.put(fileName, summary);
+		}
+	}
+
+	/**
+	 * Waits for the decks handed to the closer so far.
+	 */
+	private void waitForClosing() {
+		try {
+			closer.submit(new Runnable() {
+				public void run() { /* the ones before it are done */ }
+			}).get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch(ExecutionException e) { /* can't happen */ }
+	}
+}
@@ -0,0 +1,150 @@
+package flashcarder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * @author Atlee
+ *
+ * Drives an AutoSaver with short quiet periods and delays against a session that only counts its saves,
+ * and can be told to fail some of them.
+ */
+public class AutoSaverTest {
+// defaults
+	private static final long TIMEOUT_MILLIS = 5000;
+
+// tests
+	@Test
+	public void savesABurstOfChangesOnce() throws InterruptedException {
+		CountingSession session = new CountingSession(0);
+		AutoSaver autoSaver = new AutoSaver(session, null, 200, 10000);
+		try {
+			for(int i = 0; i < 10; ++i) {
+				autoSaver.changed();
+				Thread.sleep(10);
+			}
+			awaitSaves(session, 1);
+			Thread.sleep(400); // nothing more to save
+			assertEquals(1, session.saves.get());
+		} finally {
+			autoSaver.close();
+		}
+	}
+
+	@Test
+	public void doesntSaveWithoutChanges() throws InterruptedException {
+		CountingSession session = new CountingSession(0);
+		AutoSaver autoSaver = new AutoSaver(session, null, 50, 100);
+		try {
+			Thread.sleep(300);
+			assertEquals(0, session.saves.get());
+		} finally {
+			autoSaver.close();
+		}
+	}
+
+	@Test
+	public void savesChangesThatKeepComingAfterTheMaximumDelay() throws InterruptedException {
+		CountingSession session = new CountingSession(0);
+		AutoSaver autoSaver = new AutoSaver(session, null, 200, 500);
+		try {
+			long end = System.currentTimeMillis() + 1600;
+			while(System.currentTimeMillis() < end) { // never quiet for long enough
+				autoSaver.changed();
+				Thread.sleep(20);
+			}
+			assertTrue(session.saves.get() + " saves", session.saves.get() >= 2);
+		} finally {
+			autoSaver.close();
+		}
+	}
+
+	@Test
+	public void retriesAFailedSave() throws InterruptedException {
+		CountingSession session = new CountingSession(2);
+		CountingListener listener = new CountingListener();
+		AutoSaver autoSaver = new AutoSaver(session, listener, 50, 100, 100);
+		try {
+			autoSaver.changed();
+			awaitSaves(session, 3);
+			Thread.sleep(300); // and then leaves it be
+			assertEquals(3, session.saves.get());
+			assertEquals(2, listener.failures.get());
+			assertEquals(1, listener.successes.get());
+		} finally {
+			autoSaver.close();
+		}
+	}
+
+	@Test
+	public void flushSavesNowAndKeepsChangesItCouldntSave() throws InterruptedException {
+		CountingSession session = new CountingSession(1);
+		CountingListener listener = new CountingListener();
+		AutoSaver autoSaver = new AutoSaver(session, listener, 10000, 10000, 10000);
+		try {
+			autoSaver.changed();
+			try {
+				autoSaver.flush();
+				fail("the first save fails");
+			} catch(IOException e) { /* expected */ }
+			assertEquals(1, listener.failures.get());
+			autoSaver.flush();
+			assertEquals(2, session.saves.get());
+			assertEquals(1, listener.successes.get()); // the changes were still there to save
+		} catch(IOException e) {
+			fail(e.toString());
+		} finally {
+			autoSaver.close();
+		}
+	}
+
+// private static helpers
+	private static void awaitSaves(CountingSession session, int count) throws InterruptedException {
+		long end = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while(session.saves.get() < count) {
+			if(System.currentTimeMillis() > end) fail("only " + session.saves.get() + " of " + count + " saves");
+			Thread.sleep(5);
+		}
+	}
+
+// private helper classes
+	/**
+	 * A session with no deck, which counts the times it's saved.
+	 */
+	private static class CountingSession extends ReviewSession {
+		final AtomicInteger saves = new AtomicInteger();
+		private final AtomicInteger failuresLeft;
+
+		/**
+		 * @param failures How many saves fail before they start working.
+		 */
+		CountingSession(int failures) {
+			super(new ShuffleScheduler(), false);
+			failuresLeft = new AtomicInteger(failures);
+		}
+
+		@Override
+		public void save() throws IOException {
+			saves.incrementAndGet();
+			if(failuresLeft.getAndDecrement() > 0) throw new IOException("disk full");
+		}
+	}
+
+	private static class CountingListener implements AutoSaver.Listener {
+		final AtomicInteger failures = new AtomicInteger(), successes = new AtomicInteger();
+
+		public void saveFailed(IOException problem) {
+			failures.incrementAndGet();
+		}
+
+		public void saved() {
+			successes.incrementAndGet();
+		}
+	}
+}
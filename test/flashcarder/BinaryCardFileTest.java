@@ -0,0 +1,96 @@
+package flashcarder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Atlee
+ *
+ * Round trips decks through the binary format, and between it and the text format.
+ */
+public class BinaryCardFileTest {
+// data
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+// tests
+	@Test
+	public void readsBackWhatItWrote() throws IOException {
+		Random random = new Random(67);
+		for(int round = 0; round < 20; ++round) {
+			ArrayList<Card> cards = TestCards.make(random, random.nextInt(5000));
+			String fileName = new File(folder.getRoot(), "deck" + round + ".fcd").getPath();
+			BinaryCardFile.write(fileName, 0, cards);
+			assertTrue(BinaryCardFile.isBinaryFile(fileName));
+			assertEquals(cards.size(), BinaryCardFile.readCardCount(fileName));
+			TestCards.assertSame(cards, BinaryCardFile.readAll(fileName));
+		}
+	}
+
+	@Test
+	public void convertsToAndFromText() throws IOException {
+		ArrayList<Card> cards = TestCards.make(new Random(71), 3000);
+		String binaryFileName = new File(folder.getRoot(), "deck.fcd").getPath();
+		String textFileName = new File(folder.getRoot(), "deck.txt").getPath();
+		new CardStack(cards).writeBinary(binaryFileName, 0);
+		CardStack.createFromFile(binaryFileName).write(textFileName, 0); // sees it's binary
+		assertFalse(BinaryCardFile.isBinaryFile(textFileName));
+		TestCards.assertSame(cards, MappedCardReader.readAll(textFileName));
+		CardStack.createFromFile(textFileName).writeBinary(binaryFileName, 0);
+		TestCards.assertSame(cards, BinaryCardFile.readAll(binaryFileName));
+	}
+
+	@Test
+	public void keepsBackups() throws IOException {
+		String fileName = new File(folder.getRoot(), "deck.fcd").getPath();
+		ArrayList<Card> first = TestCards.make(new Random(73), 10), second = TestCards.make(new Random(79), 20);
+		BinaryCardFile.write(fileName, 1, first);
+		BinaryCardFile.write(fileName, 1, second);
+		TestCards.assertSame(second, BinaryCardFile.readAll(fileName));
+		TestCards.assertSame(first, BinaryCardFile.readAll(fileName + ".bak.1"));
+	}
+
+	@Test
+	public void leavesTextFilesAlone() throws IOException {
+		String fileName = new File(folder.getRoot(), "deck.txt").getPath();
+		new CardStack(TestCards.make(new Random(83), 10)).write(fileName, 0);
+		assertFalse(BinaryCardFile.isBinaryFile(fileName));
+		assertFalse(BinaryCardFile.isBinaryFile(new File(folder.getRoot(), "missing").getPath()));
+	}
+
+	@Test
+	public void rejectsCountsTheFileIsTooShortFor() throws IOException {
+		String fileName = new File(folder.getRoot(), "deck.fcd").getPath();
+		int[] badValues = { Integer.MAX_VALUE, -1, 1 << 26 };
+		for(int field = 0; field < 3; ++field) { // cardCount, stringCount, the first string length
+			for(int value : badValues) {
+				BinaryCardFile.write(fileName, 0, TestCards.make(new Random(89), 10));
+				RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+				try {
+					file.seek(12 + 4 * field);
+					file.writeInt(value);
+				} finally {
+					file.close();
+				}
+				try {
+					BinaryCardFile.readAll(fileName);
+					fail("field " + field + " set to " + value);
+				} catch(IOException e) { /* expected, not an OutOfMemoryError */ }
+				assertNull(CardStack.createFromFile(fileName));
+			}
+		}
+	}
+}
@@ -0,0 +1,185 @@
+package flashcarder;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author Atlee
+ *
+ * Checks CardIndex's queries against looking through every card. The decks have thousands of different words,
+ * so new words go through several sorted runs and merges, and the queries are asked between batches of cards
+ * as well as at the end, with limits that cut them off early.
+ */
+public class CardIndexTest {
+// defaults
+	private static final String LETTERS = "abcdeé";
+	private static final int[] LIMITS = { 1, 5, 50, Integer.MAX_VALUE };
+
+// tests
+	@Test
+	public void findsWhatAScanFinds() {
+		Random random = new Random(109);
+		ArrayList<Card> cards = new ArrayList<Card>();
+		CardIndex index = new CardIndex();
+		for(int batch = 0; batch < 8; ++batch) {
+			for(int i = 0; i < 700; ++i) {
+				Card card = new Card(makeText(random), makeText(random));
+				cards.add(card);
+				index.add(card);
+			}
+			for(int query = 0; query < 40; ++query) {
+				String text = query % 3 == 0 ? takeWords(cards.get(random.nextInt(cards.size())), random) : makeText(random);
+				for(int limit : LIMITS) assertEquals("\"" + text + "\" up to " + limit, scan(cards, text, limit), index.find(text, limit));
+			}
+		}
+		assertEquals(cards.size(), index.getCardCount());
+	}
+
+	@Test
+	public void findsPrefixesLikeAScan() {
+		Random random = new Random(113);
+		ArrayList<Card> cards = new ArrayList<Card>();
+		CardIndex index = new CardIndex();
+		for(int batch = 0; batch < 8; ++batch) {
+			for(int i = 0; i < 700; ++i) {
+				Card card = new Card(makeText(random), makeText(random));
+				cards.add(card);
+				index.add(card);
+			}
+			for(int query = 0; query < 40; ++query) {
+				String prefix = makeWord(random, 1 + random.nextInt(4));
+				for(int limit : LIMITS) assertEquals("\"" + prefix + "\" up to " + limit, scanPrefix(cards, prefix, limit), index.findPrefix(prefix, limit));
+			}
+		}
+	}
+
+	@Test
+	public void ignoresCaseAndWhatsBetweenWords() {
+		CardIndex index = new CardIndex();
+		Card silla = new Card("La silla", "the chair"), mesa = new Card("la mesa", "the table");
+		index.add(silla);
+		index.add(mesa);
+		for(String text : new String[] { "la sil", "LA  SIL", "la, sil", "la silla" }) assertEquals(text, listOf(silla), index.find(text, 10));
+		assertEquals(listOf(silla, mesa), index.find("the", 10));
+		assertEquals(listOf(silla, mesa), index.find("la", 10));
+		assertEquals(listOf(silla), index.find("la", 1));
+		assertEquals(0, index.find(" ,.", 10).size());
+		assertEquals(0, index.findPrefix("la sil", 10).size());
+	}
+
+// private static helpers
+	/**
+	 * @return A few words with lots of different ones among them, but short enough to share their letters.
+	 */
+	private static String makeText(Random random) {
+		StringBuilder text = new StringBuilder();
+		String[] separators = { " ", " ", "  ", ", ", "-" };
+		for(int words = 1 + random.nextInt(4); words > 0; --words) {
+			if(text.length() > 0) text.append(separators[random.nextInt(separators.length)]);
+			String word = makeWord(random, 1 + random.nextInt(6));
+			text.append(random.nextInt(5) == 0 ? word.toUpperCase() : word);
+		}
+		return text.toString();
+	}
+
+	private static String makeWord(Random random, int length) {
+		StringBuilder word = new StringBuilder(length);
+		for(int i = 0; i < length; ++i) word.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+		return word.toString();
+	}
+
+	/**
+	 * @return Part of one of a card's sides, a word or a few next to each other, maybe cut short at either end.
+	 */
+	private static String takeWords(Card card, Random random) {
+		String[] words = split(random.nextBoolean() ? card.getSideA() : card.getSideB());
+		int start = random.nextInt(words.length);
+		int end = start + 1 + random.nextInt(words.length - start);
+		StringBuilder text = new StringBuilder();
+		for(int i = start; i < end; ++i) {
+			String word = words[i];
+			if(i == start && end - start > 1 && word.length() > 1) word = word.substring(random.nextInt(word.length())); // the end of the first word
+			if(i == end - 1 && end - start > 1 && word.length() > 1) word = word.substring(0, 1 + random.nextInt(word.length())); // the start of the last
+			text.append(i > start ? " " : "").append(word);
+		}
+		return text.toString();
+	}
+
+	/**
+	 * What CardIndex.find is documented to do, card by card.
+	 */
+	private static List<Card> scan(List<Card> cards, String text, int limit) {
+		String[] terms = split(text);
+		List<Card> found = new ArrayList<Card>();
+		if(terms.length == 0) return found;
+		for(Card card : cards) {
+			if(found.size() >= limit) break;
+			String[] sideA = split(card.getSideA()), sideB = split(card.getSideB());
+			boolean matches = true;
+			for(String term : terms) matches &= hasTerm(sideA, term) || hasTerm(sideB, term);
+			if(matches && terms.length > 1) matches = hasTermsInOrder(sideA, terms) || hasTermsInOrder(sideB, terms);
+			if(matches) found.add(card);
+		}
+		return found;
+	}
+
+	private static List<Card> scanPrefix(List<Card> cards, String prefix, int limit) {
+		List<Card> found = new ArrayList<Card>();
+		for(Card card : cards) {
+			if(found.size() >= limit) break;
+			boolean matches = false;
+			for(String word : split(card.getSideA() + " " + card.getSideB())) matches |= word.startsWith(prefix);
+			if(matches) found.add(card);
+		}
+		return found;
+	}
+
+	/**
+	 * @return Whether a word contains the term, or for terms of less than three letters, starts with it.
+	 */
+	private static boolean hasTerm(String[] words, String term) {
+		for(String word : words) {
+			if(term.length() < 3 ? word.startsWith(term) : word.contains(term)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return Whether the terms are on words one after another: the first on the end of a word,
+	 * the last on the start of one and any others whole words.
+	 */
+	private static boolean hasTermsInOrder(String[] words, String[] terms) {
+		int last = terms.length - 1;
+		for(int start = 0; start + last < words.length; ++start) {
+			boolean matches = words[start].endsWith(terms[0]) && words[start + last].startsWith(terms[last]);
+			for(int i = 1; matches && i < last; ++i) matches = words[start + i].equals(terms[i]);
+			if(matches) return true;
+		}
+		return false;
+	}
+
+	private static String[] split(String text) {
+		ArrayList<String> words = new ArrayList<String>();
+		StringBuilder word = new StringBuilder();
+		for(char c : (text.toLowerCase() + " ").toCharArray()) {
+			if(Character.isLetterOrDigit(c)) {
+				word.append(c);
+			} else if(word.length() > 0) {
+				words.add(word.toString());
+				word.setLength(0);
+			}
+		}
+		return words.toArray(new String[words.size()]);
+	}
+
+	private static List<Card> listOf(Card... cards) {
+		List<Card> list = new ArrayList<Card>();
+		for(Card card : cards) list.add(card);
+		return list;
+	}
+}
@@ -0,0 +1,112 @@
+package flashcarder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author Atlee
+ *
+ * Fuzzes CardRope against an ArrayList, sorting included: with Card's own comparators it sorts by keys,
+ * with any other it merge sorts, and either way it has to match the stable Collections.sort.
+ */
+public class CardRopeTest {
+// defaults
+	private static final int OPERATIONS = 100000;
+
+// tests
+	@Test
+	public void behavesLikeAnArrayList() {
+		Random random = new Random(43);
+		CardRope rope = new CardRope();
+		ArrayList<Card> list = new ArrayList<Card>();
+		for(int step = 0; step < OPERATIONS; ++step) {
+			int size = list.size();
+			int operation = random.nextInt(100);
+			if(operation < 30 || size == 0) {
+				Card card = makeCard(random);
+				rope.add(card);
+				list.add(card);
+			} else if(operation < 55) {
+				int position = random.nextInt(size + 1);
+				Card card = makeCard(random);
+				rope.add(position, card);
+				list.add(position, card);
+			} else if(operation < 70) {
+				int position = random.nextInt(size);
+				assertSame("step " + step, list.remove(position), rope.remove(position));
+			} else if(operation < 78) {
+				assertSame("step " + step, list.remove(size - 1), rope.removeLast());
+			} else if(operation < 88) {
+				int position = random.nextInt(size);
+				Card card = makeCard(random);
+				assertSame("step " + step, list.set(position, card), rope.set(position, card));
+			} else if(operation < 99) {
+				int position = random.nextInt(size);
+				assertSame("step " + step, list.get(position), rope.get(position));
+			} else if(random.nextInt(20) == 0) {
+				rope.clear();
+				list.clear();
+			}
+			assertEquals("step " + step, list.size(), rope.size());
+		}
+		assertSameCards(list, rope);
+	}
+
+	@Test
+	public void sortsLikeCollectionsSort() {
+		Random random = new Random(47);
+		ArrayList<Comparator<Card>> comparators = new ArrayList<Comparator<Card>>();
+		comparators.add(Card.easeBiasComparator);
+		comparators.add(Card.lastSeenTimeComparator);
+		comparators.add(Card.sideAComparator);
+		comparators.add(Card.sideBComparator);
+		comparators.add(Card.viewCountComparator);
+		comparators.add(new Comparator<Card>() { // not one of Card's, so it's merge sorted
+			public int compare(Card card1, Card card2) {
+				return card1.getSideA().length() - card2.getSideA().length();
+			}
+		});
+		for(int round = 0; round < 60; ++round) {
+			ArrayList<Card> list = new ArrayList<Card>();
+			for(int i = random.nextInt(4000); i > 0; --i) list.add(makeCard(random));
+			CardRope rope = new CardRope(list);
+			Comparator<Card> comparator = comparators.get(round % comparators.size());
+			Collections.sort(list, comparator);
+			rope.sortCards(comparator);
+			assertSameCards(list, rope);
+		}
+	}
+
+	@Test
+	public void shuffleKeepsEveryCard() {
+		Random random = new Random(53);
+		ArrayList<Card> list = new ArrayList<Card>();
+		for(int i = 0; i < 5000; ++i) list.add(makeCard(random));
+		CardRope rope = new CardRope(list);
+		rope.shuffleCards(random);
+		assertEquals(list.size(), rope.size());
+		assertEquals(new java.util.HashSet<Card>(list), new java.util.HashSet<Card>(rope));
+	}
+
+// private static helpers
+	/**
+	 * @return A card with few enough different stats and sides that sorting meets plenty of ties.
+	 */
+	private static Card makeCard(Random random) {
+		return new Card("a" + random.nextInt(100), "b" + random.nextInt(1000)
+			,random.nextInt(7) - 3, 1380000000000L + random.nextInt(50), random.nextInt(20)
+		);
+	}
+
+	private static void assertSameCards(ArrayList<Card> expected, CardRope rope) {
+		assertEquals(expected.size(), rope.size());
+		for(int i = 0; i < expected.size(); ++i) assertSame("position " + i, expected.get(i), rope.get(i));
+	}
+}
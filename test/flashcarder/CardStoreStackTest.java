@@ -0,0 +1,135 @@
+package flashcarder;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Atlee
+ *
+ * Sorts and shuffles CardStacks that run on a CardStore, against Collections.sort on copies of their cards.
+ * The store sorts its indices by keys for Card's own comparators and merge sorts them for any other,
+ * through views, and either way has to give the same stable order.
+ */
+public class CardStoreStackTest {
+// defaults
+	private static final int ROUNDS = 60;
+
+// data
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+// tests
+	@Test
+	public void sortsLikeCollectionsSort() {
+		Random random = new Random(59);
+		for(int round = 0; round < ROUNDS; ++round) {
+			CardStore store = new CardStore();
+			for(int i = random.nextInt(4000); i > 0; --i) store.add(makeCard(random));
+			sortAndCompare(store.createStack(), random, round);
+		}
+	}
+
+	@Test
+	public void sortsLikeCollectionsSortWithTextsInTheFile() throws Exception {
+		Random random = new Random(61);
+		ArrayList<Card> cards = new ArrayList<Card>();
+		for(int i = 0; i < 5000; ++i) cards.add(makeCard(random));
+		File file = folder.newFile("deck.txt");
+		new CardStack(cards).write(file.getPath(), 0);
+		CardStore store = CardStore.createFromFile(file.getPath(), 64 << 10);
+		try {
+			for(int round = 0; round < comparators().size(); ++round) sortAndCompare(store.createStack(), random, round);
+		} finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void shuffleKeepsEveryCard() {
+		Random random = new Random(67);
+		CardStore store = new CardStore();
+		for(int i = 0; i < 5000; ++i) store.add(new Card("a" + i, "b" + i));
+		CardStack stack = store.createStack();
+		stack.shuffle();
+		assertEquals(5000, stack.getCount());
+		HashMap<String, Integer> seen = new HashMap<String, Integer>();
+		for(int i = 0; i < stack.getCount(); ++i) seen.put(stack.getCard(i).getSideA(), i);
+		assertEquals(5000, seen.size());
+		for(int i = 0; i < 5000; ++i) assertEquals("a" + i, "b" + i, stack.getCard(seen.get("a" + i)).getSideB());
+	}
+
+// private static helpers
+	/**
+	 * Shuffles the stack, so it's not in store order any more, then sorts it by the round's comparator.
+	 */
+	private static void sortAndCompare(CardStack stack, Random random, int round) {
+		stack.shuffle();
+		ArrayList<Card> expected = copyCards(stack);
+		Comparator<Card> comparator = comparators().get(round % comparators().size());
+		Collections.sort(expected, comparator);
+		stack.sort(comparator);
+		assertSameCards("round " + round, expected, stack);
+	}
+
+	private static ArrayList<Comparator<Card>> comparators() {
+		ArrayList<Comparator<Card>> comparators = new ArrayList<Comparator<Card>>();
+		comparators.add(Card.easeBiasComparator);
+		comparators.add(Card.lastSeenTimeComparator);
+		comparators.add(Card.sideAComparator);
+		comparators.add(Card.sideBComparator);
+		comparators.add(Card.viewCountComparator);
+		comparators.add(new Comparator<Card>() { // not one of Card's, so it's merge sorted
+			public int compare(Card card1, Card card2) {
+				return card1.getSideA().length() - card2.getSideA().length();
+			}
+		});
+		return comparators;
+	}
+
+	/**
+	 * @return A card with few enough different stats and sides that sorting meets plenty of ties.
+	 */
+	private static Card makeCard(Random random) {
+		return new Card("a" + random.nextInt(100), "b" + random.nextInt(1000)
+			,random.nextInt(7) - 3, 1380000000000L + random.nextInt(50), random.nextInt(20)
+		);
+	}
+
+	/**
+	 * @return Cards of their own, since a store's views can't be held on to.
+	 */
+	private static ArrayList<Card> copyCards(CardStack stack) {
+		ArrayList<Card> cards = new ArrayList<Card>(stack.getCount());
+		for(int i = 0; i < stack.getCount(); ++i) {
+			Card card = stack.getCard(i);
+			cards.add(new Card(card.getSideA(), card.getSideB(), card.getEaseBias(), card.getLastSeenTime(), card.getViewCount()));
+		}
+		return cards;
+	}
+
+	/**
+	 * Cards with the same sides and stats can't be told apart, so comparing those is as good as comparing which card is where.
+	 */
+	private static void assertSameCards(String message, ArrayList<Card> expected, CardStack stack) {
+		assertEquals(message, expected.size(), stack.getCount());
+		for(int i = 0; i < expected.size(); ++i) {
+			Card expectedCard = expected.get(i), card = stack.getCard(i);
+			String where = message + ", position " + i;
+			assertEquals(where, expectedCard.getSideA(), card.getSideA());
+			assertEquals(where, expectedCard.getSideB(), card.getSideB());
+			assertEquals(where, expectedCard.getEaseBias(), card.getEaseBias());
+			assertEquals(where, expectedCard.getLastSeenTime(), card.getLastSeenTime());
+			assertEquals(where, expectedCard.getViewCount(), card.getViewCount());
+		}
+	}
+}
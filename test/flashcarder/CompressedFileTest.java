@@ -0,0 +1,91 @@
+package flashcarder;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Atlee
+ *
+ * Round trips decks through gzip and zlib compression, big enough to go through the compressing
+ * thread in several blocks, and checks that rewriting a deck keeps its compression.
+ */
+public class CompressedFileTest {
+// defaults
+	private static final int CARD_COUNT = 40000; // a couple of MB of text
+
+// data
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+// tests
+	@Test
+	public void gzipsANewFileNamedGz() throws IOException {
+		ArrayList<Card> cards = TestCards.make(new Random(89), CARD_COUNT);
+		String fileName = new File(folder.getRoot(), "deck.txt.gz").getPath();
+		new CardStack(cards).write(fileName, 0);
+		assertEquals(CompressedFile.GZIP, CompressedFile.getFormat(fileName));
+		TestCards.assertSame(cards, MappedCardReader.readAll(fileName));
+		TestCards.assertSame(cards, CardStack.createFromFile(fileName).getCards());
+	}
+
+	@Test
+	public void readsAndKeepsZlib() throws IOException {
+		ArrayList<Card> cards = TestCards.make(new Random(97), CARD_COUNT);
+		String fileName = new File(folder.getRoot(), "deck.txt").getPath();
+		writeCompressed(fileName, cards, CompressedFile.ZLIB);
+		assertEquals(CompressedFile.ZLIB, CompressedFile.getFormat(fileName));
+		TestCards.assertSame(cards, MappedCardReader.readAll(fileName));
+
+		ArrayList<Card> rewritten = TestCards.make(new Random(101), CARD_COUNT / 2);
+		new CardStack(rewritten).write(fileName, 0);
+		assertEquals(CompressedFile.ZLIB, CompressedFile.getFormat(fileName));
+		TestCards.assertSame(rewritten, MappedCardReader.readAll(fileName, 4)); // compressed files can't be split, it reads them whole
+	}
+
+	@Test
+	public void keepsGzipWhateverTheName() throws IOException {
+		ArrayList<Card> cards = TestCards.make(new Random(103), 100);
+		String fileName = new File(folder.getRoot(), "deck.txt").getPath();
+		writeCompressed(fileName, cards, CompressedFile.GZIP);
+		new CardStack(cards).write(fileName, 0);
+		assertEquals(CompressedFile.GZIP, CompressedFile.getFormat(fileName));
+		TestCards.assertSame(cards, MappedCardReader.readAll(fileName));
+	}
+
+	@Test
+	public void leavesTextThatLooksLikeZlibAlone() throws IOException {
+		ArrayList<Card> cards = new ArrayList<Card>();
+		cards.add(new Card("x^ starts like a zlib header", "but isn't"));
+		cards.addAll(TestCards.make(new Random(107), 100));
+		String fileName = new File(folder.getRoot(), "deck.txt").getPath();
+		new CardStack(cards).write(fileName, 0);
+		assertEquals(CompressedFile.NONE, CompressedFile.getFormat(fileName));
+		TestCards.assertSame(cards, MappedCardReader.readAll(fileName));
+	}
+
+// private static helpers
+	private static void writeCompressed(String fileName, ArrayList<Card> cards, int format) throws IOException {
+		OutputStream output = new FileOutputStream(fileName);
+		try {
+			OutputStream compressed = CompressedFile.compress(output, format);
+			BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(compressed, CardStack.CHARSET));
+			for(Card card : cards) card.write(writer);
+			writer.flush();
+			compressed.close();
+		} finally {
+			output.close();
+		}
+	}
+}
@@ -0,0 +1,183 @@
+package flashcarder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author Atlee
+ *
+ * Finds duplicates among a few planted ones in a deck of unrelated cards, which the planted ones need,
+ * since pieces on a lot of the cards are left out of the signatures. Near duplicates are checked against
+ * working out the Jaccard similarity of every pair in a group.
+ */
+public class DuplicateFinderTest {
+// defaults
+	private static final int FILLER_COUNT = 400;
+	private static final double SIMILARITY = 0.85;
+
+// tests
+	@Test
+	public void groupsExactDuplicates() throws InterruptedException {
+		List<Card> cards = makeFiller(new Random(127));
+		cards.add(5, new Card("The House!", "la casa"));
+		cards.add(new Card("the  house", "La Casa"));
+		cards.add(new Card("the house", "la casa."));
+		cards.add(new Card("the house", "el casa")); // the other side isn't the same
+		DuplicateFinder finder = new DuplicateFinder(2);
+		finder.setSimilarity(1);
+		int[] groups = finder.findGroups(cards);
+		int last = cards.size() - 1;
+		assertEquals(5, groups[last - 2]);
+		assertEquals(5, groups[last - 1]);
+		assertEquals(last, groups[last]);
+		assertEquals(2, finder.getExactCount());
+		assertEquals(0, finder.getNearCount());
+		for(int i = 0; i < last - 2; ++i) assertEquals(i, groups[i]);
+	}
+
+	@Test
+	public void groupsNearDuplicates() throws InterruptedException {
+		List<Card> cards = makeFiller(new Random(131));
+		String text = "the quick brown foxes jump over the lazy dogs by the river bank";
+		cards.add(10, new Card(text, "answer"));
+		cards.add(new Card(text.replace("dogs", "dog"), "answer"));
+		cards.add(new Card(text.replace("lazy", "lazy 7"), "answer")); // numbers have to match
+		DuplicateFinder finder = new DuplicateFinder(2);
+		finder.setSimilarity(SIMILARITY);
+		int[] groups = finder.findGroups(cards);
+		int last = cards.size() - 1;
+		assertEquals(10, groups[last - 1]);
+		assertEquals(last, groups[last]);
+		assertEquals(0, finder.getExactCount());
+		assertEquals(1, finder.getNearCount());
+	}
+
+	/**
+	 * A chain of cards, each a word away from the next but two words from the one after, mustn't become one group:
+	 * every group is a card and near duplicates of that card.
+	 */
+	@Test
+	public void doesntChainNearDuplicates() throws InterruptedException {
+		List<Card> cards = makeFiller(new Random(137));
+		String[] words = "alpha bravo charlie delta echo foxtrot golf hotel india juliet kilo lima mike november oscar papa quebec romeo sierra tango".split(" ");
+		String[] others = "apple banana cherry dates elder figs grape honey iris jujube kiwi lemon mango nutmeg olive peach quince radish sage thyme".split(" ");
+		int chainStart = cards.size();
+		for(int link = 0; link < 12; ++link) {
+			String[] changed = words.clone();
+			for(int i = 0; i < link; ++i) changed[i] = others[i];
+			cards.add(new Card(join(changed), "x"));
+		}
+		DuplicateFinder finder = new DuplicateFinder(2);
+		finder.setSimilarity(SIMILARITY);
+		int[] groups = finder.findGroups(cards);
+		int grouped = 0, biggest = 0;
+		for(int first = 0; first < cards.size(); ++first) {
+			List<Card> group = new ArrayList<Card>();
+			for(int i = 0; i < cards.size(); ++i) if(groups[i] == first) group.add(cards.get(i));
+			if(group.size() < 2) continue;
+			assertTrue("group of " + first + " isn't one card and its near duplicates", hasCenter(group));
+			grouped += group.size() - 1;
+			biggest = Math.max(biggest, group.size());
+		}
+		assertTrue("nothing found in the chain", grouped > 0);
+		assertTrue("the chain was joined up", biggest <= 3);
+		assertEquals(grouped, finder.getNearCount());
+		for(int i = 0; i < chainStart; ++i) assertEquals(i, groups[i]); // the filler
+	}
+
+	@Test
+	public void mergesStats() {
+		Card seldom = new Card("a", "b", -2, 1000, 1), often = new Card("A!", "B", 2, 500, 3), never = new Card("a", "b", 5, 2000, 0);
+		Card merged = DuplicateFinder.mergeCards(Arrays.asList(seldom, often, never));
+		assertEquals("A!", merged.getSideA()); // the most viewed one's text
+		assertEquals(3, merged.getViewCount());
+		assertEquals(2000, merged.getLastSeenTime());
+		assertEquals(1, merged.getEaseBias()); // (-2 * 1 + 2 * 3 + 5 * 0) / 4
+		Card unseen = DuplicateFinder.mergeCards(Arrays.asList(new Card("first", "x", 1, 0, 0), new Card("second", "x", 4, 0, 0)));
+		assertEquals("first", unseen.getSideA());
+		assertEquals(3, unseen.getEaseBias()); // 2.5, without views the biases count the same
+	}
+
+	@Test
+	public void removesDuplicatesInPlaceOfTheFirst() throws InterruptedException {
+		CardStack stack = new CardStack();
+		stack.addCard(new Card("one", "uno", 0, 10, 1));
+		stack.addCard(new Card("two", "dos", 0, 10, 1));
+		stack.addCard(new Card("One.", "Uno", 0, 20, 4));
+		stack.addCard(new Card("three", "tres", 0, 10, 1));
+		DuplicateFinder finder = new DuplicateFinder(1);
+		finder.setSimilarity(1);
+		CardStack merged = finder.removeDuplicates(stack);
+		assertEquals(3, merged.getCount());
+		assertEquals("One.", merged.getCard(0).getSideA());
+		assertEquals(4, merged.getCard(0).getViewCount());
+		assertEquals(20, merged.getCard(0).getLastSeenTime());
+		assertEquals("two", merged.getCard(1).getSideA());
+		assertEquals("three", merged.getCard(2).getSideA());
+		assertEquals(4, stack.getCount()); // left alone
+	}
+
+// private static helpers
+	/**
+	 * @return Cards of random letters, no two of them alike.
+	 */
+	private static List<Card> makeFiller(Random random) {
+		List<Card> cards = new ArrayList<Card>();
+		for(int i = 0; i < FILLER_COUNT; ++i) cards.add(new Card(randomWords(random), randomWords(random)));
+		return cards;
+	}
+
+	private static String randomWords(Random random) {
+		StringBuilder text = new StringBuilder();
+		for(int words = 3 + random.nextInt(4); words > 0; --words) {
+			if(text.length() > 0) text.append(' ');
+			for(int length = 4 + random.nextInt(5); length > 0; --length) text.append((char)('a' + random.nextInt(26)));
+		}
+		return text.toString();
+	}
+
+	private static String join(String[] words) {
+		StringBuilder text = new StringBuilder();
+		for(String word : words) text.append(text.length() > 0 ? " " : "").append(word);
+		return text.toString();
+	}
+
+	/**
+	 * @return Whether one of the cards is at least SIMILARITY alike with each of the others.
+	 */
+	private static boolean hasCenter(List<Card> group) {
+		for(Card center : group) {
+			boolean all = true;
+			for(Card card : group) all &= card == center || similarity(center, card) >= SIMILARITY;
+			if(all) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return The Jaccard similarity of the cards' three letter pieces, each side padded with a space at either end.
+	 */
+	private static double similarity(Card card1, Card card2) {
+		HashSet<String> grams1 = grams(card1), grams2 = grams(card2);
+		HashSet<String> shared = new HashSet<String>(grams1);
+		shared.retainAll(grams2);
+		return (double)shared.size() / (grams1.size() + grams2.size() - shared.size());
+	}
+
+	private static HashSet<String> grams(Card card) {
+		HashSet<String> grams = new HashSet<String>();
+		String[] sides = { " " + DuplicateFinder.normalize(card.getSideA()) + " ", " " + DuplicateFinder.normalize(card.getSideB()) + " " };
+		for(int side = 0; side < 2; ++side) {
+			for(int i = 0; i + 3 <= sides[side].length(); ++i) grams.add(side + sides[side].substring(i, i + 3));
+		}
+		return grams;
+	}
+}
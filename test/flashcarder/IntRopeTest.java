@@ -0,0 +1,99 @@
+package flashcarder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author Atlee
+ *
+ * Fuzzes IntRope against an ArrayList doing the same things, across enough values that chunks split.
+ */
+public class IntRopeTest {
+// defaults
+	private static final int OPERATIONS = 200000;
+
+// tests
+	@Test
+	public void behavesLikeAnArrayList() {
+		Random random = new Random(31);
+		IntRope rope = new IntRope();
+		ArrayList<Integer> list = new ArrayList<Integer>();
+		for(int step = 0; step < OPERATIONS; ++step) {
+			int size = list.size();
+			int operation = random.nextInt(100);
+			if(operation < 30 || size == 0) {
+				int value = random.nextInt();
+				rope.add(value);
+				list.add(value);
+			} else if(operation < 55) {
+				int position = random.nextInt(size + 1);
+				int value = random.nextInt();
+				rope.insert(position, value);
+				list.add(position, value);
+			} else if(operation < 70) {
+				int position = random.nextInt(size);
+				assertEquals("step " + step, (int)list.remove(position), rope.remove(position));
+			} else if(operation < 78) {
+				assertEquals("step " + step, (int)list.remove(size - 1), rope.removeLast());
+			} else if(operation < 88) {
+				int position = random.nextInt(size);
+				int value = random.nextInt();
+				assertEquals("step " + step, (int)list.set(position, value), rope.set(position, value));
+			} else if(operation < 99) {
+				int position = random.nextInt(size);
+				assertEquals("step " + step, (int)list.get(position), rope.get(position));
+			} else if(random.nextInt(20) == 0) {
+				rope.clear();
+				list.clear();
+			}
+			assertEquals("step " + step, list.size(), rope.size());
+		}
+		assertArrayEquals(toArray(list), rope.toArray());
+	}
+
+	@Test
+	public void setAllReplacesEverything() {
+		Random random = new Random(37);
+		IntRope rope = new IntRope();
+		for(int round = 0; round < 50; ++round) {
+			int[] values = new int[random.nextInt(10000)];
+			for(int i = 0; i < values.length; ++i) values[i] = random.nextInt();
+			int count = values.length == 0 ? 0 : random.nextInt(values.length + 1);
+			rope.setAll(values, count);
+			assertEquals(count, rope.size());
+			for(int i = 0; i < count; ++i) assertEquals(values[i], rope.get(i));
+			rope.insert(count / 2, 42); // still works as a rope afterwards
+			assertEquals(42, rope.get(count / 2));
+		}
+	}
+
+	@Test
+	public void sortIsStable() {
+		Random random = new Random(41);
+		final int[] keys = new int[5000];
+		for(int i = 0; i < keys.length; ++i) keys[i] = random.nextInt(50);
+		int[] values = new int[keys.length];
+		for(int i = 0; i < values.length; ++i) values[i] = i;
+		IntRope.sort(values, values.length, new IntRope.Comparator() {
+			public int compare(int value1, int value2) {
+				return keys[value1] - keys[value2];
+			}
+		});
+		for(int i = 1; i < values.length; ++i) {
+			int key1 = keys[values[i - 1]], key2 = keys[values[i]];
+			if(key1 > key2 || (key1 == key2 && values[i - 1] > values[i])) throw new AssertionError("out of order at " + i);
+		}
+	}
+
+// private static helpers
+	private static int[] toArray(ArrayList<Integer> list) {
+		int[] values = new int[list.size()];
+		for(int i = 0; i < values.length; ++i) values[i] = list.get(i);
+		return values;
+	}
+}
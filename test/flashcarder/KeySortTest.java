@@ -0,0 +1,75 @@
+package flashcarder;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author Atlee
+ *
+ * Fuzzes KeySort against Collections.sort, which is stable too, so both have to give exactly the same order.
+ */
+public class KeySortTest {
+// defaults
+	private static final int ROUNDS = 200;
+
+// tests
+	@Test
+	public void numberKeysSortLikeCollectionsSort() {
+		Random random = new Random(17);
+		for(int round = 0; round < ROUNDS; ++round) {
+			final long[] keys = new long[random.nextInt(3000)];
+			int kind = round % 4;
+			for(int i = 0; i < keys.length; ++i) {
+				if(kind == 0) keys[i] = random.nextInt(10); // lots of ties
+				else if(kind == 1) keys[i] = random.nextLong(); // the whole range, negatives too
+				else if(kind == 2) keys[i] = 1380000000000L + random.nextInt(1 << 20); // times, which share their high bits
+				else keys[i] = random.nextBoolean() ? Long.MIN_VALUE : Long.MAX_VALUE;
+			}
+			assertArrayEquals("round " + round, expectedOrder(keys.length, new Comparator<Integer>() {
+				public int compare(Integer position1, Integer position2) {
+					long key1 = keys[position1], key2 = keys[position2];
+					return key1 < key2 ? -1 : key1 == key2 ? 0 : 1;
+				}
+			}), KeySort.order(keys));
+		}
+	}
+
+	@Test
+	public void textsSortLikeCollectionsSort() {
+		Random random = new Random(23);
+		String[] prefixes = { "", "card ", "the same long beginning ", "été ", "中文 " };
+		for(int round = 0; round < ROUNDS; ++round) {
+			final String[] texts = new String[random.nextInt(3000)];
+			String prefix = prefixes[round % prefixes.length];
+			for(int i = 0; i < texts.length; ++i) {
+				StringBuilder text = new StringBuilder(prefix);
+				int length = random.nextInt(round % 3 == 0 ? 3 : 12); // short texts tie a lot
+				for(int c = 0; c < length; ++c) text.append(round % 2 == 0 ? (char)('a' + random.nextInt(3)) : (char)random.nextInt(0x3000));
+				texts[i] = text.toString();
+			}
+			assertArrayEquals("round " + round, expectedOrder(texts.length, new Comparator<Integer>() {
+				public int compare(Integer position1, Integer position2) {
+					return texts[position1].compareTo(texts[position2]);
+				}
+			}), KeySort.order(texts));
+		}
+	}
+
+// private static helpers
+	private static int[] expectedOrder(int count, Comparator<Integer> comparator) {
+		Integer[] positions = new Integer[count];
+		for(int i = 0; i < count; ++i) positions[i] = i;
+		List<Integer> list = Arrays.asList(positions);
+		Collections.sort(list, comparator);
+		int[] order = new int[count];
+		for(int i = 0; i < count; ++i) order[i] = list.get(i);
+		return order;
+	}
+}
@@ -0,0 +1,127 @@
+package flashcarder;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Atlee
+ *
+ * Round trips decks through a CardStore that leaves the side texts in the file, with a cache small enough
+ * to keep missing: reading the sides back, and again after saving rewrites the file under the store.
+ */
+public class LazyCardStoreTest {
+// defaults
+	private static final int CARD_COUNT = 3000;
+	private static final long CACHE_BYTES = 64 << 10;
+
+// data
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+// tests
+	@Test
+	public void readsEverySideFromTheFile() throws IOException {
+		ArrayList<Card> cards = makeCards(new Random(97));
+		String fileName = writeDeck(cards);
+		CardStore store = CardStore.createFromFile(fileName, CACHE_BYTES);
+		try {
+			assertSameSides(cards, store);
+			Random random = new Random(101);
+			for(int i = 0; i < CARD_COUNT; ++i) { // out of order, so blocks are read again and again
+				int index = random.nextInt(CARD_COUNT);
+				assertEquals("card " + index, cards.get(index).getSideB(), store.getSideB(index));
+			}
+		} finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void readsEverySideAfterSavingOverTheFile() throws IOException {
+		ArrayList<Card> cards = makeCards(new Random(103));
+		String fileName = writeDeck(cards);
+		CardStore store = CardStore.createFromFile(fileName, CACHE_BYTES);
+		try {
+			CardStack stack = store.createStack();
+			stack.shuffle(); // so every text moves
+			stack.write(fileName, 1);
+			assertSameSides(cards, store);
+			CardStack written = CardStack.createFromFile(fileName);
+			assertEquals(CARD_COUNT, written.getCount());
+			for(int i = 0; i < CARD_COUNT; ++i) {
+				assertEquals("position " + i, stack.getCard(i).getSideA(), written.getCard(i).getSideA());
+				assertEquals("position " + i, stack.getCard(i).getSideB(), written.getCard(i).getSideB());
+			}
+			stack.write(fileName, 1); // and again, now the texts are where the last write put them
+			assertSameSides(cards, store);
+		} finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void readsEverySideAfterCompactingTheJournal() throws IOException {
+		ArrayList<Card> cards = makeCards(new Random(107));
+		String fileName = writeDeck(cards);
+		CardStore store = CardStore.createFromFile(fileName, CACHE_BYTES);
+		try {
+			CardStack stack = store.createStack();
+			ReviewJournal journal = ReviewJournal.open(fileName, stack);
+			for(int i = 0; i < CARD_COUNT; ++i) journal.recordSeen(stack.getCard(i), i % 2 == 0);
+			journal.compact();
+			journal.close();
+			assertSameSides(cards, store);
+			CardStack written = CardStack.createFromFile(fileName);
+			for(int i = 0; i < CARD_COUNT; ++i) {
+				assertEquals("card " + i, cards.get(i).getSideA(), written.getCard(i).getSideA());
+				assertEquals("card " + i, cards.get(i).getViewCount() + 1, written.getCard(i).getViewCount());
+			}
+		} finally {
+			store.close();
+		}
+	}
+
+// private methods
+	private String writeDeck(ArrayList<Card> cards) throws IOException {
+		String fileName = new File(folder.getRoot(), "deck.txt").getPath();
+		new CardStack(cards).write(fileName, 0);
+		return fileName;
+	}
+
+// private static helpers
+	/**
+	 * @return Cards with now and then a side longer than the blocks the store reads its texts in.
+	 */
+	private static ArrayList<Card> makeCards(Random random) {
+		ArrayList<Card> cards = new ArrayList<Card>(CARD_COUNT);
+		for(int i = 0; i < CARD_COUNT; ++i) {
+			String sideA = "a" + i + " été";
+			if(i % 500 == 7) sideA = longText(random, (16 << 10) + random.nextInt(50000));
+			String sideB = i % 700 == 3 ? longText(random, 40000) : "b" + random.nextInt(100);
+			cards.add(new Card(sideA, sideB, random.nextInt(7) - 3, 1380000000000L + i, random.nextInt(20)));
+		}
+		return cards;
+	}
+
+	private static String longText(Random random, int length) {
+		StringBuilder text = new StringBuilder(length);
+		while(text.length() < length) text.append((char)('a' + random.nextInt(26)));
+		return text.toString();
+	}
+
+	private static void assertSameSides(ArrayList<Card> cards, CardStore store) {
+		assertEquals(cards.size(), store.getCount());
+		for(int i = 0; i < cards.size(); ++i) {
+			assertEquals("card " + i, cards.get(i).getSideA(), store.getSideA(i));
+			assertEquals("card " + i, cards.get(i).getSideB(), store.getSideB(i));
+		}
+	}
+}
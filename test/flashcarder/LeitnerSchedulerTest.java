@@ -0,0 +1,137 @@
+package flashcarder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author Atlee
+ *
+ * Runs LeitnerScheduler on a clock the test sets, and DueQueue against sorting.
+ */
+public class LeitnerSchedulerTest {
+// defaults
+	private static final long MINUTE = 60L * 1000L;
+	private static final long DAY = 24L * 60L * MINUTE;
+	private static final long[] INTERVALS = { 10 * MINUTE, DAY, 3 * DAY, 7 * DAY, 14 * DAY, 30 * DAY, 60 * DAY, 120 * DAY, 240 * DAY };
+	private static final long START = 1380000000000L;
+
+// tests
+	@Test
+	public void dueQueueGivesCardsInDueOrderTiesFirstInFirstOut() {
+		Random random = new Random(139);
+		DueQueue queue = new DueQueue();
+		final List<Card> cards = new ArrayList<Card>();
+		final List<Long> dueTimes = new ArrayList<Long>();
+		for(int i = 0; i < 3000; ++i) {
+			Card card = new Card("a" + i, "b" + i);
+			long dueTime = START + random.nextInt(100); // lots of ties
+			cards.add(card);
+			dueTimes.add(dueTime);
+			queue.add(card, dueTime);
+		}
+		List<Integer> expected = new ArrayList<Integer>();
+		for(int i = 0; i < cards.size(); ++i) expected.add(i);
+		Collections.sort(expected, new Comparator<Integer>() { // stable, so ties stay in the order they went in
+			public int compare(Integer card1, Integer card2) {
+				return dueTimes.get(card1).compareTo(dueTimes.get(card2));
+			}
+		});
+		List<Card> peeked = queue.peek(20);
+		for(int i = 0; i < 20; ++i) assertSame("peek " + i, cards.get(expected.get(i)), peeked.get(i));
+		assertEquals(cards.size(), queue.size());
+		for(int i = 0; i < expected.size(); ++i) {
+			assertEquals("card " + i, (long)dueTimes.get(expected.get(i)), queue.peekDueTime());
+			assertSame("card " + i, cards.get(expected.get(i)), queue.remove());
+		}
+		assertNull(queue.remove());
+		assertEquals(Long.MAX_VALUE, queue.peekDueTime());
+	}
+
+	@Test
+	public void eachBoxWaitsItsInterval() {
+		assertEquals(0, LeitnerScheduler.getDueTime(new Card("never", "seen", 3, START, 0)));
+		for(int box = 0; box < INTERVALS.length; ++box) {
+			assertEquals("box " + box, START + INTERVALS[box], LeitnerScheduler.getDueTime(new Card("a", "b", box, START, 1)));
+		}
+		assertEquals(START + INTERVALS[0], LeitnerScheduler.getDueTime(new Card("a", "b", -4, START, 5))); // difficult ones are in the first box
+		assertEquals(START + INTERVALS[8], LeitnerScheduler.getDueTime(new Card("a", "b", 50, START, 60))); // and there's no box after the last
+	}
+
+	@Test
+	public void givesDueCardsMostOverdueFirst() {
+		Clock clock = new Clock(START + 100 * DAY);
+		Card newCard = new Card("new", "card");
+		Card overdue = new Card("box 1", "seen 30 days ago", 1, clock.time - 30 * DAY, 3);
+		Card justDue = new Card("box 2", "seen 3 days ago", 2, clock.time - 3 * DAY, 3);
+		Card notDue = new Card("box 3", "seen yesterday", 3, clock.time - DAY, 3);
+		CardStack cards = new CardStack();
+		cards.addCard(justDue);
+		cards.addCard(notDue);
+		cards.addCard(overdue);
+		cards.addCard(newCard);
+		clock.setCards(cards);
+		assertEquals(3, clock.getToDoCount());
+		assertEquals(1, clock.getDoneCount());
+		assertEquals(3, clock.peekCards(5).size());
+		assertSame(newCard, clock.nextCard()); // never seen, due since the beginning of time
+		assertSame(overdue, clock.nextCard());
+		assertSame(justDue, clock.nextCard());
+		assertNull(clock.nextCard()); // notDue isn't yet
+		clock.time += 6 * DAY - 1;
+		assertNull(clock.nextCard());
+		clock.time += 1;
+		assertSame(notDue, clock.nextCard());
+	}
+
+	@Test
+	public void sendsAFailedCardBackToTheFirstBox() {
+		Clock clock = new Clock(START);
+		Card card = new Card("well", "known", 5, START - 31 * DAY, 9); // box 5, due a day ago
+		CardStack cards = new CardStack();
+		cards.addCard(card);
+		clock.setCards(cards);
+		assertTrue(clock.recordsDifficultAnswers());
+		assertSame(card, clock.nextCard());
+		card.setSeen(false, clock.time); // what the session does before putBack
+		clock.putBack(card);
+		assertEquals(START + INTERVALS[0], LeitnerScheduler.getDueTime(card));
+		assertEquals(1, clock.getDoneCount());
+		clock.time += INTERVALS[0] - 1;
+		assertNull(clock.nextCard());
+		clock.time += 1;
+		assertSame(card, clock.nextCard());
+		card.setSeen(true, clock.time); // box 1 now
+		clock.putDone(card);
+		clock.time += INTERVALS[1] - 1;
+		assertNull(clock.nextCard());
+		clock.time += 1;
+		assertSame(card, clock.nextCard());
+	}
+
+// private helper classes
+	/**
+	 * A LeitnerScheduler whose time is whatever the test says.
+	 */
+	private static class Clock extends LeitnerScheduler {
+		long time;
+
+		Clock(long time) {
+			this.time = time;
+		}
+
+		@Override
+		long now() {
+			return time;
+		}
+	}
+}
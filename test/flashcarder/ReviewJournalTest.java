@@ -0,0 +1,181 @@
+package flashcarder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Atlee
+ *
+ * Round trips reviews through a deck's journal: replayed over a deck read all at once or card by card,
+ * compacted into the deck file, and thrown away once the deck file changes behind its back.
+ */
+public class ReviewJournalTest {
+// defaults
+	private static final int CARD_COUNT = 500;
+
+// data
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+// tests
+	@Test
+	public void replaysOverAWholeDeck() throws IOException {
+		String deckFileName = makeDeck();
+		CardStack reviewed = review(deckFileName, 3000, false);
+		CardStack deck = CardStack.createFromFile(deckFileName);
+		ReviewJournal journal = ReviewJournal.open(deckFileName, deck);
+		journal.close();
+		assertSameStats(reviewed, deck);
+	}
+
+	@Test
+	public void replaysCardByCard() throws IOException {
+		String deckFileName = makeDeck();
+		CardStack reviewed = review(deckFileName, 3000, false);
+		CardStack deck = CardStack.createFromFile(deckFileName);
+		ReviewJournal journal = ReviewJournal.open(deckFileName);
+		for(int i = 0; i < deck.getCount(); ++i) journal.addCard(deck.getCard(i));
+		journal.close();
+		assertSameStats(reviewed, deck);
+	}
+
+	@Test
+	public void compactsIntoTheDeckFile() throws IOException {
+		String deckFileName = makeDeck();
+		CardStack reviewed = review(deckFileName, 3000, true);
+		assertSameStats(reviewed, CardStack.createFromFile(deckFileName)); // the deck file alone has them
+		CardStack deck = CardStack.createFromFile(deckFileName);
+		ReviewJournal journal = ReviewJournal.open(deckFileName, deck); // and the emptied journal adds nothing
+		assertEquals(0, journal.getPendingCount());
+		journal.close();
+		assertSameStats(reviewed, deck);
+	}
+
+	@Test
+	public void keepsJournalingAfterCompacting() throws IOException {
+		String deckFileName = makeDeck();
+		CardStack deck = CardStack.createFromFile(deckFileName);
+		ReviewJournal journal = ReviewJournal.open(deckFileName, deck);
+		Random random = new Random(59);
+		for(int i = 0; i < 1000; ++i) journal.recordSeen(deck.getCard(random.nextInt(CARD_COUNT)), random.nextBoolean());
+		journal.compact();
+		for(int i = 0; i < 1000; ++i) journal.recordSeen(deck.getCard(random.nextInt(CARD_COUNT)), random.nextBoolean());
+		journal.flush();
+		journal.close();
+		CardStack reread = CardStack.createFromFile(deckFileName);
+		ReviewJournal.open(deckFileName, reread).close();
+		assertSameStats(deck, reread);
+	}
+
+	@Test
+	public void ignoresAJournalOfAnotherVersionOfTheDeck() throws IOException {
+		String deckFileName = makeDeck();
+		review(deckFileName, 100, false);
+		CardStack changed = CardStack.createFromFile(deckFileName);
+		changed.addCard(new Card("one more", "card"));
+		changed.write(deckFileName, 0);
+		CardStack deck = CardStack.createFromFile(deckFileName);
+		ReviewJournal.open(deckFileName, deck).close();
+		assertSameStats(changed, deck);
+	}
+
+	@Test
+	public void onlyRecordsCardsOfTheDeck() throws IOException {
+		String deckFileName = makeDeck();
+		CardStack deck = CardStack.createFromFile(deckFileName);
+		ReviewJournal journal = ReviewJournal.open(deckFileName, deck);
+		Card stranger = new Card("not", "in the deck");
+		journal.recordSeen(stranger, true);
+		assertEquals(1, stranger.getViewCount());
+		assertEquals(-1, journal.getPosition(stranger));
+		assertEquals(0, journal.getPendingCount());
+		assertTrue(journal.getPosition(deck.getCard(7)) == 7);
+		assertFalse(journal.isCompactionDue());
+		journal.close();
+	}
+
+	@Test
+	public void usesStoreIndicesAsPositions() throws IOException {
+		String deckFileName = makeDeck();
+		CardStack reviewed = review(deckFileName, 3000, false);
+		CardStore store = CardStore.createFromFile(deckFileName);
+		CardStack deck = store.createStack();
+		ReviewJournal journal = ReviewJournal.open(deckFileName, deck);
+		assertSameStats(reviewed, deck);
+		assertEquals(7, journal.getPosition(deck.getCard(7)));
+		Card added = store.getCard(store.add(new Card("added", "later"))); // in the store, not the file
+		journal.recordSeen(added, true);
+		assertEquals(-1, journal.getPosition(added));
+		assertEquals(0, journal.getPendingCount());
+		Random random = new Random(71);
+		for(int i = 0; i < 1000; ++i) journal.recordSeen(deck.getCard(random.nextInt(CARD_COUNT)), random.nextBoolean());
+		journal.flush();
+		journal.close();
+		CardStack reread = CardStack.createFromFile(deckFileName);
+		ReviewJournal.open(deckFileName, reread).close();
+		assertSameStats(deck, reread);
+	}
+
+	@Test
+	public void findsStoreCardsThatArentInStoreOrder() throws IOException {
+		CardStore store = CardStore.createFromFile(makeDeck());
+		CardStack deck = store.createEmptyStack(); // the first cards in store order, then the rest backwards
+		for(int i = 0; i < 100; ++i) deck.addCard(store.getCard(i));
+		for(int i = CARD_COUNT - 1; i >= 100; --i) deck.addCard(store.getCard(i));
+		String deckFileName = new File(folder.getRoot(), "reordered.txt").getPath();
+		deck.write(deckFileName, 0);
+		ReviewJournal journal = ReviewJournal.open(deckFileName, deck);
+		for(int i = 0; i < CARD_COUNT; ++i) assertEquals(i, journal.getPosition(deck.getCard(i)));
+		Random random = new Random(73);
+		for(int i = 0; i < 1000; ++i) journal.recordSeen(deck.getCard(random.nextInt(CARD_COUNT)), random.nextBoolean());
+		journal.flush();
+		journal.close();
+		CardStack reread = CardStack.createFromFile(deckFileName);
+		ReviewJournal.open(deckFileName, reread).close();
+		assertSameStats(deck, reread);
+	}
+
+// private methods
+	private String makeDeck() throws IOException {
+		CardStack deck = new CardStack();
+		for(int i = 0; i < CARD_COUNT; ++i) deck.addCard(new Card("side a " + i, "side b " + i % 50, i % 3, 1380000000000L + i, i % 5));
+		String deckFileName = new File(folder.getRoot(), "deck.txt").getPath();
+		deck.write(deckFileName, 0);
+		return deckFileName;
+	}
+
+	/**
+	 * Reviews random cards of a deck through its journal, then flushes or compacts it.
+	 * @return The deck as it was reviewed.
+	 */
+	private static CardStack review(String deckFileName, int reviewCount, boolean compacting) throws IOException {
+		CardStack deck = CardStack.createFromFile(deckFileName);
+		ReviewJournal journal = ReviewJournal.open(deckFileName, deck);
+		Random random = new Random(61);
+		for(int i = 0; i < reviewCount; ++i) journal.recordSeen(deck.getCard(random.nextInt(deck.getCount())), random.nextBoolean());
+		if(compacting) journal.compact();
+		else journal.flush();
+		journal.close();
+		return deck;
+	}
+
+	private static void assertSameStats(CardStack expected, CardStack actual) {
+		assertEquals(expected.getCount(), actual.getCount());
+		for(int i = 0; i < expected.getCount(); ++i) {
+			Card expectedCard = expected.getCard(i), actualCard = actual.getCard(i);
+			assertEquals("card " + i, expectedCard.getSideA(), actualCard.getSideA());
+			assertEquals("card " + i, expectedCard.getEaseBias(), actualCard.getEaseBias());
+			assertEquals("card " + i, expectedCard.getLastSeenTime(), actualCard.getLastSeenTime());
+			assertEquals("card " + i, expectedCard.getViewCount(), actualCard.getViewCount());
+		}
+	}
+}
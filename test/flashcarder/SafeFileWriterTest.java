@@ -0,0 +1,156 @@
+package flashcarder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Set;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Atlee
+ *
+ * Replaces files through SafeFileWriter, and fails partway through, which must leave the original as it was.
+ */
+public class SafeFileWriterTest {
+// data
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+// tests
+	@Test
+	public void replacesTheFile() throws IOException {
+		String fileName = fileName();
+		write(fileName, 0, "first");
+		assertEquals("first", read(fileName));
+		write(fileName, 0, "second, longer than the first");
+		assertEquals("second, longer than the first", read(fileName));
+		assertOnlyFiles("deck.txt");
+	}
+
+	@Test
+	public void leavesTheOriginalWhenWritingFails() throws IOException {
+		String fileName = fileName();
+		write(fileName, 1, "original");
+		ArrayList<String> heard = new ArrayList<String>();
+		try {
+			SafeFileWriter.write(fileName, 1, new SafeFileWriter.Content() {
+				public void writeTo(OutputStream output) throws IOException {
+					output.write(new byte[3 << 20]); // past the buffer, so some of it reaches the temporary file
+					throw new IOException("disk full");
+				}
+			}, listener(heard));
+			fail("the content failed");
+		} catch(IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("can't write "));
+			assertTrue(e.getMessage(), e.getMessage().endsWith("disk full"));
+		}
+		assertEquals("original", read(fileName));
+		assertTrue(heard.isEmpty()); // it never got as far as replacing
+		assertOnlyFiles("deck.txt"); // no temporary file, and no backup of a version that's still there
+	}
+
+	@Test
+	public void tellsTheListenerAroundReplacing() throws IOException {
+		final String fileName = fileName();
+		write(fileName, 0, "old");
+		final ArrayList<String> heard = new ArrayList<String>();
+		SafeFileWriter.write(fileName, 0, content("new"), new SafeFileWriter.ReplaceListener() {
+			public void replacing() {
+				try { heard.add("replacing " + read(fileName)); }
+				catch(IOException e) { heard.add(e.toString()); }
+			}
+
+			public void replaced(boolean done) {
+				try { heard.add("replaced " + done + " " + read(fileName)); }
+				catch(IOException e) { heard.add(e.toString()); }
+			}
+		});
+		assertEquals(2, heard.size());
+		assertEquals("replacing old", heard.get(0));
+		assertEquals("replaced true new", heard.get(1));
+	}
+
+	@Test
+	public void keepsBackupsNewestFirst() throws IOException {
+		String fileName = fileName();
+		for(int version = 1; version <= 5; ++version) write(fileName, 3, "version " + version);
+		assertEquals("version 5", read(fileName));
+		assertEquals("version 4", read(fileName + ".bak.1"));
+		assertEquals("version 3", read(fileName + ".bak.2"));
+		assertEquals("version 2", read(fileName + ".bak.3"));
+		assertFalse(new File(fileName + ".bak.4").exists());
+		write(fileName, 3, "version 6"); // the backup is of the old file, not a link to the new one
+		assertEquals("version 5", read(fileName + ".bak.1"));
+	}
+
+	@Test
+	public void keepsThePermissions() throws IOException {
+		String fileName = fileName();
+		write(fileName, 0, "private");
+		Path path = new File(fileName).toPath();
+		Assume.assumeTrue(Files.getFileAttributeView(path, PosixFileAttributeView.class) != null);
+		for(String permissions : new String[] { "rw-------", "rwxr-x---", "rw-r--r--" }) {
+			Set<PosixFilePermission> expected = PosixFilePermissions.fromString(permissions);
+			Files.setPosixFilePermissions(path, expected);
+			write(fileName, 1, permissions);
+			assertEquals(permissions, read(fileName));
+			assertEquals(expected, Files.getPosixFilePermissions(path));
+		}
+	}
+
+// private methods
+	private String fileName() {
+		return new File(folder.getRoot(), "deck.txt").getPath();
+	}
+
+	private void assertOnlyFiles(String... names) {
+		String[] files = folder.getRoot().list();
+		Arrays.sort(files);
+		assertEquals(Arrays.asList(names), Arrays.asList(files));
+	}
+
+// private static helpers
+	private static void write(String fileName, int backupCount, String text) throws IOException {
+		SafeFileWriter.write(fileName, backupCount, content(text));
+	}
+
+	private static SafeFileWriter.Content content(final String text) {
+		return new SafeFileWriter.Content() {
+			public void writeTo(OutputStream output) throws IOException {
+				output.write(text.getBytes("UTF-8"));
+			}
+		};
+	}
+
+	private static String read(String fileName) throws IOException {
+		return new String(Files.readAllBytes(new File(fileName).toPath()), "UTF-8");
+	}
+
+	private static SafeFileWriter.ReplaceListener listener(final ArrayList<String> heard) {
+		return new SafeFileWriter.ReplaceListener() {
+			public void replacing() {
+				heard.add("replacing");
+			}
+
+			public void replaced(boolean done) {
+				heard.add("replaced " + done);
+			}
+		};
+	}
+}
@@ -0,0 +1,80 @@
+package flashcarder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Atlee
+ *
+ * Round trips a snapshot, and damages its counts and lengths, which must make read give up rather than
+ * allocate what they ask for.
+ */
+public class SessionSnapshotTest {
+// defaults
+	private static final int SIDE_A_LENGTH_OFFSET = 4 + 3 * 8 + 4 + 4; // after the header, cardCount and current
+	private static final String SIDE_A = "el mar", SIDE_B = "the sea";
+	private static final int TO_DO_COUNT_OFFSET = SIDE_A_LENGTH_OFFSET + 4 + SIDE_A.length() + 4 + SIDE_B.length() + 4 + 8 + 4;
+	private static final int DONE_COUNT_OFFSET = TO_DO_COUNT_OFFSET + 4 + 3 * 4;
+
+// data
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+// tests
+	@Test
+	public void readsBackWhatItWrote() throws IOException {
+		String deckFileName = writeSnapshot();
+		SessionSnapshot snapshot = SessionSnapshot.read(deckFileName);
+		assertNotNull(snapshot);
+		assertEquals(6, snapshot.getCardCount());
+		assertEquals(2, snapshot.getCurrentPosition());
+		assertEquals(SIDE_A, snapshot.getCurrentCard().getSideA());
+		assertEquals(SIDE_B, snapshot.getCurrentCard().getSideB());
+		assertEquals(4, snapshot.getCurrentCard().getViewCount());
+		assertArrayEquals(new int[] { 5, 0, 3 }, snapshot.getToDo());
+		assertArrayEquals(new int[] { 4, 1 }, snapshot.getDone());
+	}
+
+	@Test
+	public void givesUpOnCountsLongerThanTheFile() throws IOException {
+		int[] offsets = { SIDE_A_LENGTH_OFFSET, SIDE_A_LENGTH_OFFSET + 4 + SIDE_A.length(), TO_DO_COUNT_OFFSET, DONE_COUNT_OFFSET };
+		int[] badValues = { Integer.MAX_VALUE, 1 << 28, 100, -5 };
+		for(int offset : offsets) {
+			for(int value : badValues) {
+				if(value == -5 && offset == TO_DO_COUNT_OFFSET) continue; // negative there means the order isn't kept
+				String deckFileName = writeSnapshot();
+				RandomAccessFile file = new RandomAccessFile(SessionSnapshot.getSnapshotFileName(deckFileName), "rw");
+				try {
+					file.seek(offset);
+					file.writeInt(value);
+				} finally {
+					file.close();
+				}
+				assertNull("offset " + offset + " set to " + value, SessionSnapshot.read(deckFileName));
+			}
+		}
+	}
+
+// private methods
+	/**
+	 * @return The name of a deck file with a snapshot beside it.
+	 */
+	private String writeSnapshot() throws IOException {
+		String deckFileName = new File(folder.getRoot(), "deck.txt").getPath();
+		CardStack deck = new CardStack();
+		for(int i = 0; i < 6; ++i) deck.addCard(i == 2 ? new Card(SIDE_A, SIDE_B, 1, 1380000000000L, 4) : new Card("a" + i, "b" + i));
+		deck.write(deckFileName, 0);
+		new SessionSnapshot(6, 2, deck.getCard(2), new int[] { 5, 0, 3 }, new int[] { 4, 1 }).write(deckFileName);
+		return deckFileName;
+	}
+}
@@ -0,0 +1,43 @@
+package flashcarder;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author Atlee
+ *
+ * Cards for the file format tests to write and read back.
+ */
+final class TestCards {
+	private TestCards() {
+	}
+
+	/**
+	 * @return Cards whose sides repeat now and then, with characters beyond ASCII and stats at their extremes too.
+	 */
+	static ArrayList<Card> make(Random random, int count) {
+		ArrayList<Card> cards = new ArrayList<Card>(count);
+		for(int i = 0; i < count; ++i) {
+			String sideA = random.nextInt(4) == 0 ? "common" : "a" + random.nextInt() + " été";
+			String sideB = "b" + random.nextInt(100);
+			long lastSeenTime = random.nextInt(10) == 0 ? Long.MAX_VALUE : random.nextLong() & Long.MAX_VALUE;
+			cards.add(new Card(sideA, sideB, random.nextInt(21) - 10, lastSeenTime, random.nextInt(Integer.MAX_VALUE)));
+		}
+		return cards;
+	}
+
+	static void assertSame(List<Card> expected, List<Card> actual) {
+		assertEquals(expected.size(), actual.size());
+		for(int i = 0; i < expected.size(); ++i) {
+			Card expectedCard = expected.get(i), actualCard = actual.get(i);
+			assertEquals("card " + i, expectedCard.getSideA(), actualCard.getSideA());
+			assertEquals("card " + i, expectedCard.getSideB(), actualCard.getSideB());
+			assertEquals("card " + i, expectedCard.getEaseBias(), actualCard.getEaseBias());
+			assertEquals("card " + i, expectedCard.getLastSeenTime(), actualCard.getLastSeenTime());
+			assertEquals("card " + i, expectedCard.getViewCount(), actualCard.getViewCount());
+		}
+	}
+}